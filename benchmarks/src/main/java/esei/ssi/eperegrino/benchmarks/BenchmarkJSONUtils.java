@@ -0,0 +1,128 @@
+package esei.ssi.eperegrino.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import esei.ssi.eperegrino.common.JSONUtils;
+
+/**
+ * Mide el rendimiento de la conversión entre mapas y el formato JSON
+ * simplificado de {@link JSONUtils}, comparándolo con la implementación
+ * original basada en expresiones regulares, que se conserva aquí como
+ * referencia. {@link EjecutorBancosPruebas} informa también de cuánta memoria
+ * reserva cada implementación.
+ *
+ * @author Alejandro González García
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BenchmarkJSONUtils {
+	/**
+	 * El número de pares clave-valor de los datos a convertir.
+	 */
+	@Param({ "2", "10", "50" })
+	private int entradas;
+
+	private Map<String, String> datos;
+	private String json;
+
+	/**
+	 * Genera los datos a convertir, parecidos a los de una CPV.
+	 */
+	@Setup
+	public void generarDatos() {
+		datos = new HashMap<>();
+		for (int i = 0; i < entradas; ++i) {
+			datos.put("Campo " + i, "Valor del campo número " + i + ", con algún {carácter} especial");
+		}
+
+		json = JSONUtils.map2json(datos);
+	}
+
+	@Benchmark
+	public Map<String, String> json2map() {
+		return JSONUtils.json2map(json);
+	}
+
+	@Benchmark
+	public Map<String, String> json2mapExpresionesRegulares() {
+		return json2mapOriginal(json);
+	}
+
+	@Benchmark
+	public String map2json() {
+		return JSONUtils.map2json(datos);
+	}
+
+	@Benchmark
+	public String map2jsonExpresionesRegulares() {
+		return map2jsonOriginal(datos);
+	}
+
+	/**
+	 * La implementación original de {@link JSONUtils#json2map(String)}.
+	 *
+	 * @param json La cadena a interpretar.
+	 * @return Los pares clave-valor de la cadena.
+	 */
+	private static Map<String, String> json2mapOriginal(final String json) {
+		final Map<String, String> resultado = new HashMap<>();
+		final int inicio = json.indexOf("{");
+		final int fin = json.indexOf("}");
+
+		if ((inicio != -1) && (fin != -1) && (inicio < fin)) {
+			final String contenido = json.substring((inicio + 1), fin).trim();
+			final String[] entradas = contenido.split("\\s*,\\s*");
+			for (final String entrada : entradas) {
+				final String[] par = entrada.trim().split("\\s*:\\s*", 2);
+				resultado.put(par[0].replace("\"", ""), par[1].replace("\"", ""));
+			}
+		}
+
+		return resultado;
+	}
+
+	/**
+	 * La implementación original de {@link JSONUtils#map2json(Map)}.
+	 *
+	 * @param datos Los pares clave-valor a convertir.
+	 * @return La cadena JSON resultante.
+	 */
+	private static String map2jsonOriginal(final Map<String, String> datos) {
+		final StringBuilder resultado = new StringBuilder();
+
+		resultado.append('{');
+		for (final Map.Entry<String, String> entrada : datos.entrySet()) {
+			if (resultado.length() > 1) {
+				resultado.append(',');
+			}
+			resultado.append('\"');
+			resultado.append(entrada.getKey().replaceAll("\\{|\\}|:|,|\\\"", ""));
+			resultado.append('\"');
+			resultado.append(':');
+			resultado.append('\"');
+			resultado.append(entrada.getValue().replaceAll("\\{|\\}|:|,|\\\"", ""));
+			resultado.append('\"');
+		}
+		resultado.append('}');
+
+		return resultado.toString();
+	}
+}
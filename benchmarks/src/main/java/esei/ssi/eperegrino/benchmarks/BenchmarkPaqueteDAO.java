@@ -0,0 +1,116 @@
+package esei.ssi.eperegrino.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import esei.ssi.eperegrino.common.NombresBloques;
+import esei.ssi.eperegrino.common.Paquete;
+import esei.ssi.eperegrino.common.PaqueteDAO;
+
+/**
+ * Mide el rendimiento de la lectura y escritura de paquetes con
+ * {@link PaqueteDAO}, para paquetes con la forma y el tamaño de una CPV con
+ * un número dado de sellos. El contenido de los bloques es aleatorio, pero de la
+ * misma longitud que tendría con claves RSA del tamaño dado: la clave simétrica
+ * encriptada y el resumen firmado ocupan tanto como la clave RSA.
+ *
+ * @author Alejandro González García
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BenchmarkPaqueteDAO {
+	/**
+	 * La longitud de los datos encriptados de cada carga útil, parecida a la de
+	 * un sello real.
+	 */
+	private static final int LONGITUD_DATOS_ENCRIPTADOS = 160;
+
+	/**
+	 * El número de sellos de la CPV.
+	 */
+	@Param({ "1", "10", "100", "1000" })
+	private int sellos;
+
+	/**
+	 * La longitud en bits de las claves RSA.
+	 */
+	@Param({ "2048", "4096" })
+	private int longitudClave;
+
+	private Paquete paquete;
+	private byte[] paqueteEscrito;
+	private ByteArrayOutputStream salida;
+
+	/**
+	 * Genera el paquete a escribir, y su representación a leer.
+	 *
+	 * @throws IOException Si ocurre un error al escribir el paquete.
+	 */
+	@Setup
+	public void generarPaquete() throws IOException {
+		final Random aleatorio = new Random(0);
+
+		paquete = new Paquete();
+		paquete.anadirBloque(NombresBloques.TITULO_BLOQUE_DATOS_PEREGRINO, bytesAleatorios(aleatorio, LONGITUD_DATOS_ENCRIPTADOS));
+		paquete.anadirBloque(NombresBloques.TITULO_BLOQUE_CLAVE_DATOS_PEREGRINO, bytesAleatorios(aleatorio, longitudClave / 8));
+		paquete.anadirBloque(NombresBloques.TITULO_BLOQUE_RESUMEN_DATOS_PEREGRINO_ENCRIPTADOS, bytesAleatorios(aleatorio, longitudClave / 8));
+		for (int i = 0; i < sellos; ++i) {
+			final String id = "Albergue " + i;
+
+			paquete.anadirBloque(NombresBloques.TITULO_BLOQUE_DATOS_SELLO_ALBERGUE.replace("{ID}", id), bytesAleatorios(aleatorio, LONGITUD_DATOS_ENCRIPTADOS));
+			paquete.anadirBloque(NombresBloques.TITULO_BLOQUE_CLAVE_SELLO_ALBERGUE.replace("{ID}", id), bytesAleatorios(aleatorio, longitudClave / 8));
+			paquete.anadirBloque(NombresBloques.TITULO_BLOQUE_RESUMEN_SELLO_ALBERGUE_ENCRIPTADO.replace("{ID}", id), bytesAleatorios(aleatorio, longitudClave / 8));
+		}
+
+		salida = new ByteArrayOutputStream();
+		PaqueteDAO.escribirPaquete(salida, paquete);
+		paqueteEscrito = salida.toByteArray();
+	}
+
+	@Benchmark
+	public Paquete leerPaquete() throws IOException {
+		return PaqueteDAO.leerPaquete(new ByteArrayInputStream(paqueteEscrito));
+	}
+
+	@Benchmark
+	public int escribirPaquete() throws IOException {
+		salida.reset();
+		PaqueteDAO.escribirPaquete(salida, paquete);
+
+		return salida.size();
+	}
+
+	/**
+	 * Genera bytes aleatorios.
+	 *
+	 * @param aleatorio El generador de números aleatorios a usar.
+	 * @param longitud  El número de bytes a generar.
+	 * @return Los bytes generados.
+	 */
+	private static byte[] bytesAleatorios(final Random aleatorio, final int longitud) {
+		final byte[] bytes = new byte[longitud];
+
+		aleatorio.nextBytes(bytes);
+
+		return bytes;
+	}
+}
@@ -0,0 +1,110 @@
+package esei.ssi.eperegrino.benchmarks;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import esei.ssi.eperegrino.common.ContextoCriptografico;
+import esei.ssi.eperegrino.common.GestorProveedoresJCA;
+import esei.ssi.eperegrino.common.ParametrosCriptograficos;
+import esei.ssi.eperegrino.common.SuiteCriptografica;
+import esei.ssi.eperegrino.common.Util;
+
+/**
+ * Mide el rendimiento de las operaciones criptográficas de {@link Util} que se
+ * repiten por cada carga útil al desempaquetar una CPV: comprobar su firma y
+ * desencriptarla. La carga útil se protege con la suite
+ * {@link SuiteCriptografica#CLASICA}, que es la que esperan tales operaciones.
+ *
+ * @author Alejandro González García
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BenchmarkUtil {
+	/**
+	 * La longitud en bits de las claves RSA.
+	 */
+	@Param({ "2048", "4096" })
+	private int longitudClave;
+
+	private KeyPair parClavesFirmante;
+	private KeyPair parClavesDestinatario;
+	private byte[] cargaUtilEncriptada;
+	private byte[] claveSimetricoEncriptada;
+	private byte[] resumenCargaUtil;
+
+	/**
+	 * Genera las claves y la carga útil protegida con ellas.
+	 *
+	 * @throws GeneralSecurityException Si ocurre algún error durante alguna
+	 *                                  operación criptográfica.
+	 */
+	@Setup
+	public void generarCargaUtil() throws GeneralSecurityException {
+		GestorProveedoresJCA.registrarProveedores();
+
+		final KeyPairGenerator generadorClaves = KeyPairGenerator.getInstance(
+			ParametrosCriptograficos.ALGORITMO_GENERADOR_CLAVES_ASIMETRICO, ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS
+		);
+		generadorClaves.initialize(longitudClave);
+		parClavesFirmante = generadorClaves.generateKeyPair();
+		parClavesDestinatario = generadorClaves.generateKeyPair();
+
+		final Map<String, String> datos = new HashMap<>();
+		datos.put("Nombre", "Albergue de prueba");
+		datos.put("Fecha", "Fri, 1 May 2020 12:00:00 +0200");
+		datos.put("Lugar", "Santiago de Compostela");
+		datos.put("Incidencias", "Ninguna");
+
+		final SuiteCriptografica suite = SuiteCriptografica.CLASICA;
+		final SecretKey clave = suite.generarClaveSimetrico();
+		cargaUtilEncriptada = suite.encriptarCargaUtil(datos, clave);
+		claveSimetricoEncriptada = suite.encriptarClaveSimetrico(clave, parClavesDestinatario.getPublic());
+		resumenCargaUtil = suite.firmar(cargaUtilEncriptada, parClavesFirmante.getPrivate());
+	}
+
+	@Benchmark
+	public void comprobarValidezFirma() throws GeneralSecurityException {
+		Util.comprobarValidezFirma(
+			"La carga útil",
+			parClavesFirmante.getPublic(),
+			ContextoCriptografico.actual().getCifradorAsimetrico(),
+			cargaUtilEncriptada,
+			resumenCargaUtil
+		);
+	}
+
+	@Benchmark
+	public String desencriptarCargaUtil() throws GeneralSecurityException {
+		final ContextoCriptografico contexto = ContextoCriptografico.actual();
+
+		return Util.desencriptarCargaUtil(
+			contexto.getCifradorAsimetrico(),
+			contexto.getCifradorSimetrico(),
+			parClavesDestinatario.getPrivate(),
+			claveSimetricoEncriptada,
+			cargaUtilEncriptada
+		);
+	}
+}
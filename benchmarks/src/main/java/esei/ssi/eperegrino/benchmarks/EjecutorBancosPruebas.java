@@ -0,0 +1,45 @@
+package esei.ssi.eperegrino.benchmarks;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Ejecuta los bancos de pruebas con JMH, aceptando los mismos argumentos de
+ * línea de comandos que {@code org.openjdk.jmh.Main}, pero añadiendo siempre el
+ * perfilador de recolección de basura. Así, junto al rendimiento de cada banco
+ * de pruebas se informa de cuánta memoria reserva por operación
+ * ({@code gc.alloc.rate.norm}), sin tener que pedirlo con {@code -prof gc}.
+ *
+ * @author Alejandro González García
+ */
+public final class EjecutorBancosPruebas {
+	private EjecutorBancosPruebas() {
+		// No permitir instanciar esta clase
+	}
+
+	public static void main(final String[] args) throws RunnerException, IOException {
+		final CommandLineOptions opciones;
+
+		try {
+			opciones = new CommandLineOptions(args);
+		} catch (final CommandLineOptionException exc) {
+			System.err.println("Error al interpretar los argumentos: " + exc.getMessage());
+			System.exit(1);
+			return;
+		}
+
+		// Mostrar la ayuda o las listas pedidas de la misma manera que JMH
+		if (opciones.shouldHelp() || opciones.shouldList() || opciones.shouldListWithParams() || opciones.shouldListProfilers() || opciones.shouldListResultFormats()) {
+			org.openjdk.jmh.Main.main(args);
+			return;
+		}
+
+		new Runner(new OptionsBuilder().parent(opciones).addProfiler(GCProfiler.class).build()).run();
+	}
+}
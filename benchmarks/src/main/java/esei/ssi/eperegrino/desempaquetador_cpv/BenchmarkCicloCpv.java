@@ -0,0 +1,207 @@
+package esei.ssi.eperegrino.desempaquetador_cpv;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import esei.ssi.eperegrino.common.Actor;
+import esei.ssi.eperegrino.common.ClavesActores;
+import esei.ssi.eperegrino.common.GestorProveedoresJCA;
+import esei.ssi.eperegrino.common.ParametrosCriptograficos;
+import esei.ssi.eperegrino.common.SuiteCriptografica;
+import esei.ssi.eperegrino.generador_cpv.GeneradorCpv;
+import esei.ssi.eperegrino.sellador_cpv.SelladorCpv;
+
+/**
+ * Mide el rendimiento de cada paso del ciclo de vida de una CPV: generarla,
+ * sellarla y desempaquetarla, para CPV con un número dado de sellos previos.
+ * Está en el paquete del desempaquetador porque su API no es pública.
+ * <p>
+ * Todos los albergues comparten el mismo par de claves, para no tener que
+ * generar miles de ellas. Esto no cambia el trabajo necesario para comprobar
+ * cada sello. La clave de la oficina del peregrino es siempre RSA, de la
+ * longitud dada; la del peregrino y los albergues depende de la suite.
+ *
+ * @author Alejandro González García
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BenchmarkCicloCpv {
+	/**
+	 * Un flujo de salida que descarta todo lo que se escribe en él.
+	 */
+	private static final PrintStream SALIDA_NULA = new PrintStream(new OutputStream() {
+		@Override
+		public void write(final int b) {
+			// Descartar
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) {
+			// Descartar
+		}
+	});
+
+	/**
+	 * El número de sellos de la CPV a sellar y desempaquetar.
+	 */
+	@Param({ "1", "10", "100", "1000" })
+	private int sellos;
+
+	/**
+	 * La longitud en bits de las claves RSA.
+	 */
+	@Param({ "2048", "4096" })
+	private int longitudClave;
+
+	/**
+	 * La suite criptográfica a usar para los datos del peregrino y los sellos.
+	 */
+	@Param({ "CLASICA", "MODERNA" })
+	private SuiteCriptografica suite;
+
+	private final Map<String, String> datos = new HashMap<>();
+	private final Map<String, String> datosSello = new HashMap<>();
+	private final List<Entry<String, byte[]>> albergues = new ArrayList<>();
+	private final ByteArrayOutputStream salida = new ByteArrayOutputStream();
+	private ClavesActores clavesGenerador;
+	private ClavesActores clavesSellador;
+	private ClavesActores clavesDesempaquetador;
+	private byte[] cpv;
+	private PrintStream stdoutOriginal;
+
+	/**
+	 * Genera las claves de los actores y una CPV con el número de sellos dado.
+	 *
+	 * @throws GeneralSecurityException Si ocurre algún error durante alguna
+	 *                                  operación criptográfica.
+	 * @throws IOException              Si ocurre algún error de E/S.
+	 */
+	@Setup
+	public void generarCpv() throws GeneralSecurityException, IOException {
+		GestorProveedoresJCA.registrarProveedores();
+
+		datos.put("Nombre", "Peregrino de prueba");
+		datos.put("DNI", "00000000T");
+		datos.put("Domicilio", "Rúa do Franco, 1, Santiago de Compostela");
+		datos.put("Motivación", "Medir el rendimiento");
+		datosSello.put("Nombre", "Albergue de prueba");
+		datosSello.put("Incidencias", "Ninguna");
+
+		final KeyPairGenerator generadorClavesOficina = KeyPairGenerator.getInstance(
+			ParametrosCriptograficos.ALGORITMO_GENERADOR_CLAVES_ASIMETRICO, ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS
+		);
+		generadorClavesOficina.initialize(longitudClave);
+
+		final KeyPairGenerator generadorClavesFirma;
+		if (suite == SuiteCriptografica.MODERNA) {
+			generadorClavesFirma = KeyPairGenerator.getInstance(
+				ParametrosCriptograficos.ALGORITMO_FIRMA, ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS
+			);
+		} else {
+			generadorClavesFirma = generadorClavesOficina;
+		}
+
+		final KeyPair parClavesOficina = generadorClavesOficina.generateKeyPair();
+		final KeyPair parClavesPeregrino = generadorClavesFirma.generateKeyPair();
+		final KeyPair parClavesAlbergue = generadorClavesFirma.generateKeyPair();
+
+		clavesGenerador = new ClavesActores()
+			.conClavePublica(Actor.OFICINA_PEREGRINO, parClavesOficina.getPublic().getEncoded())
+			.conClavePrivada(Actor.PEREGRINO, parClavesPeregrino.getPrivate().getEncoded());
+		clavesSellador = new ClavesActores()
+			.conClavePublica(Actor.OFICINA_PEREGRINO, parClavesOficina.getPublic().getEncoded())
+			.conClavePrivada(Actor.ALBERGUE, parClavesAlbergue.getPrivate().getEncoded());
+		clavesDesempaquetador = new ClavesActores()
+			.conClavePrivada(Actor.OFICINA_PEREGRINO, parClavesOficina.getPrivate().getEncoded())
+			.conClavePublica(Actor.PEREGRINO, parClavesPeregrino.getPublic().getEncoded());
+
+		// Generar la CPV, y sellarla en un fichero, para que el coste de cada sello
+		// no dependa de los sellos previos
+		final Path ficheroCpv = Files.createTempFile("cpv", ".bin");
+		try {
+			try (final OutputStream flujoSalida = Files.newOutputStream(ficheroCpv)) {
+				GeneradorCpv.generarPaqueteCPV(datos, flujoSalida, clavesGenerador);
+			}
+
+			try (final FileChannel canalCpv = FileChannel.open(ficheroCpv, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				for (int i = 0; i < sellos; ++i) {
+					final String id = "Albergue " + i;
+
+					SelladorCpv.sellarFicheroCpv(datosSello, canalCpv, id, clavesSellador);
+					albergues.add(new AbstractMap.SimpleImmutableEntry<>(id, parClavesAlbergue.getPublic().getEncoded()));
+				}
+			}
+
+			cpv = Files.readAllBytes(ficheroCpv);
+		} finally {
+			Files.delete(ficheroCpv);
+		}
+
+		// El desempaquetador muestra el contenido de la CPV por la salida estándar
+		stdoutOriginal = System.out;
+		System.setOut(SALIDA_NULA);
+	}
+
+	/**
+	 * Restaura la salida estándar.
+	 */
+	@TearDown
+	public void restaurarSalidaEstandar() {
+		System.setOut(stdoutOriginal);
+	}
+
+	@Benchmark
+	public int generarPaqueteCPV() throws GeneralSecurityException, IOException {
+		salida.reset();
+		GeneradorCpv.generarPaqueteCPV(datos, salida, clavesGenerador);
+
+		return salida.size();
+	}
+
+	@Benchmark
+	public int sellarCpv() throws GeneralSecurityException, IOException {
+		salida.reset();
+		SelladorCpv.sellarCpv(datosSello, new ByteArrayInputStream(cpv), salida, "Albergue nuevo", clavesSellador);
+
+		return salida.size();
+	}
+
+	@Benchmark
+	public void desempaquetarPaqueteCPV() throws GeneralSecurityException, IOException {
+		DesempaquetadorCpv.desempaquetarPaqueteCPV(new ByteArrayInputStream(cpv), albergues, clavesDesempaquetador);
+	}
+}
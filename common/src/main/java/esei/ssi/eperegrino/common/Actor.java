@@ -1,13 +1,13 @@
 package esei.ssi.eperegrino.common;
 
-import java.security.KeyFactory;
-import java.security.NoSuchAlgorithmException;
+import java.security.GeneralSecurityException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.spec.EncodedKeySpec;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Modela un actor implicado en los casos de uso de e-peregrino.
@@ -29,13 +29,15 @@ public enum Actor {
 	OFICINA_PEREGRINO;
 
 	/**
-	 * La clave privada del actor.
+	 * La clave privada del actor, junto con su objeto ya interpretado si se ha
+	 * pedido antes.
 	 */
-	private EncodedKeySpec clavePrivada = null;
+	private final AtomicReference<ClaveActor<PrivateKey>> clavePrivada = new AtomicReference<>();
 	/**
-	 * La clave pública del actor.
+	 * La clave pública del actor, junto con su objeto ya interpretado si se ha
+	 * pedido antes.
 	 */
-	private EncodedKeySpec clavePublica = null;
+	private final AtomicReference<ClaveActor<PublicKey>> clavePublica = new AtomicReference<>();
 
 	/**
 	 * Establece la clave privada del actor, a partir de su especificación de
@@ -50,7 +52,7 @@ public enum Actor {
 			throw new IllegalArgumentException("La clave privada a establecer no puede ser nula");
 		}
 
-		this.clavePrivada = clavePrivada;
+		this.clavePrivada.set(new ClaveActor<>(clavePrivada, null));
 	}
 
 	/**
@@ -83,7 +85,7 @@ public enum Actor {
 			throw new IllegalArgumentException("La clave pública a establecer no puede ser nula");
 		}
 
-		this.clavePublica = clavePublica;
+		this.clavePublica.set(new ClaveActor<>(clavePublica, null));
 	}
 
 	/**
@@ -107,7 +109,9 @@ public enum Actor {
 	/**
 	 * Obtiene el objeto PrivateKey que encapsula de manera opaca la clave privada
 	 * del actor. Es necesario haberle asociado previamente una representación de la
-	 * clave privada.
+	 * clave privada. La representación solo se interpreta la primera vez que se
+	 * pide la clave después de asociarla; las siguientes veces se devuelve el mismo
+	 * objeto.
 	 *
 	 * @return La devandicha clave privada.
 	 * @throws IllegalStateException   Si no se ha asociado una clave privada al
@@ -117,21 +121,37 @@ public enum Actor {
 	 *                                 clave privada.
 	 */
 	public final PrivateKey getClavePrivada() throws InvalidKeySpecException {
-		if (clavePrivada == null) {
+		final ClaveActor<PrivateKey> clave = clavePrivada.get();
+		PrivateKey clavePrivadaInterpretada;
+
+		if (clave == null) {
 			throw new IllegalStateException("No se puede obtener la clave privada del actor " + toString() + " sin haberle asociado una antes");
 		}
 
-		try {
-			return KeyFactory.getInstance(ParametrosCriptograficos.ALGORITMO_GENERADOR_CLAVES_ASIMETRICO, ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS).generatePrivate(clavePrivada);
-		} catch (final NoSuchAlgorithmException exc) {
-			throw new AssertionError("Se han violado invariantes en la implementación del programa");
+		clavePrivadaInterpretada = clave.getClave();
+		if (clavePrivadaInterpretada == null) {
+			try {
+				clavePrivadaInterpretada = ContextoCriptografico.actual().interpretarClavePrivada(clave.getEspecificacion().getEncoded());
+			} catch (final InvalidKeySpecException exc) {
+				throw exc;
+			} catch (final GeneralSecurityException exc) {
+				throw new AssertionError("Se han violado invariantes en la implementación del programa");
+			}
+
+			// Recordar la clave interpretada, salvo que se haya asociado otra
+			// mientras tanto
+			clavePrivada.compareAndSet(clave, new ClaveActor<>(clave.getEspecificacion(), clavePrivadaInterpretada));
 		}
+
+		return clavePrivadaInterpretada;
 	}
 
 	/**
 	 * Obtiene el objeto PublicKey que encapsula de manera opaca la clave pública
 	 * del actor. Es necesario haberle asociado previamente una representación de la
-	 * clave pública.
+	 * clave pública. La representación solo se interpreta la primera vez que se
+	 * pide la clave después de asociarla; las siguientes veces se devuelve el mismo
+	 * objeto.
 	 *
 	 * @return La devandicha clave pública.
 	 * @throws IllegalStateException   Si no se ha asociado una clave pública al
@@ -141,14 +161,72 @@ public enum Actor {
 	 *                                 clave privada.
 	 */
 	public final PublicKey getClavePublica() throws InvalidKeySpecException {
-		if (clavePublica == null) {
+		final ClaveActor<PublicKey> clave = clavePublica.get();
+		PublicKey clavePublicaInterpretada;
+
+		if (clave == null) {
 			throw new IllegalStateException("No se puede obtener la clave pública del actor " + toString() + " sin haberle asociado una antes");
 		}
 
-		try {
-			return KeyFactory.getInstance(ParametrosCriptograficos.ALGORITMO_GENERADOR_CLAVES_ASIMETRICO, ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS).generatePublic(clavePublica);
-		} catch (final NoSuchAlgorithmException exc) {
-			throw new AssertionError("Se han violado invariantes en la implementación del programa");
+		clavePublicaInterpretada = clave.getClave();
+		if (clavePublicaInterpretada == null) {
+			try {
+				clavePublicaInterpretada = ContextoCriptografico.actual().interpretarClavePublica(clave.getEspecificacion().getEncoded());
+			} catch (final InvalidKeySpecException exc) {
+				throw exc;
+			} catch (final GeneralSecurityException exc) {
+				throw new AssertionError("Se han violado invariantes en la implementación del programa");
+			}
+
+			// Recordar la clave interpretada, salvo que se haya asociado otra
+			// mientras tanto
+			clavePublica.compareAndSet(clave, new ClaveActor<>(clave.getEspecificacion(), clavePublicaInterpretada));
+		}
+
+		return clavePublicaInterpretada;
+	}
+
+	/**
+	 * Asocia la representación codificada de una clave de un actor con el objeto
+	 * que resulta de interpretarla. Al ser inmutable, se puede publicar a otros
+	 * hilos sin más sincronización.
+	 *
+	 * @param <T> El tipo del objeto que resulta de interpretar la clave.
+	 * @author Alejandro González García
+	 */
+	private static final class ClaveActor<T> {
+		private final EncodedKeySpec especificacion;
+		private final T clave;
+
+		/**
+		 * Crea una clave de un actor.
+		 *
+		 * @param especificacion La representación codificada de la clave.
+		 * @param clave          El objeto que resulta de interpretar la
+		 *                       representación, o nulo si no se ha interpretado
+		 *                       todavía.
+		 */
+		ClaveActor(final EncodedKeySpec especificacion, final T clave) {
+			this.especificacion = especificacion;
+			this.clave = clave;
+		}
+
+		/**
+		 * Obtiene la representación codificada de la clave.
+		 *
+		 * @return La descrita representación.
+		 */
+		EncodedKeySpec getEspecificacion() {
+			return especificacion;
+		}
+
+		/**
+		 * Obtiene el objeto que resulta de interpretar la clave.
+		 *
+		 * @return El descrito objeto, o nulo si no se ha interpretado todavía.
+		 */
+		T getClave() {
+			return clave;
 		}
 	}
 }
@@ -0,0 +1,390 @@
+package esei.ssi.eperegrino.common;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Guarda el contenido de los bloques de muchos paquetes fuera del montículo, en
+ * unas pocas regiones de memoria directa de gran tamaño. Sirve para mantener en
+ * memoria muchas CPV a la vez, como al cotejar un archivo entero, sin que el
+ * recolector de basura tenga que recorrer varios objetos por cada bloque.
+ * <p>
+ * Cada paquete almacenado en la arena solo ocupa en el montículo unos pocos
+ * objetos, sea cual sea su número de bloques: una tabla con los nombres de sus
+ * bloques, que se comparten entre todos los paquetes de la arena, y con la
+ * región, posición y longitud del contenido de cada uno en vectores de enteros
+ * paralelos. El contenido se copia a un vector nuevo cada vez que se pide. Si
+ * se modifica un paquete almacenado, sus bloques pasan a ser objetos del
+ * montículo, aunque su contenido sigue en la arena.
+ * <p>
+ * Al cerrar la arena se libera la memoria directa de sus regiones, y pedir el
+ * contenido de un bloque almacenado en ella provoca una
+ * {@link UncheckedIOException}. Si la máquina virtual no permite liberar la
+ * memoria directa explícitamente, se libera cuando el recolector de basura
+ * descarta las regiones.
+ * <p>
+ * Es seguro almacenar paquetes y pedir el contenido de sus bloques desde varios
+ * hilos a la vez.
+ *
+ * @author Alejandro González García
+ */
+public final class ArenaBloques implements AutoCloseable {
+	/**
+	 * El tamaño en bytes de cada región de la arena, si no se especifica otro.
+	 */
+	public static final int TAMANO_REGION_PREDETERMINADO = 16 * 1024 * 1024;
+
+	/**
+	 * Libera en el momento la memoria directa de una región, o no hace nada si la
+	 * máquina virtual no lo permite.
+	 */
+	private static final Consumer<ByteBuffer> LIBERADOR_REGIONES = crearLiberadorRegiones();
+
+	private final int tamanoRegion;
+	/**
+	 * Las regiones reservadas, en orden de reserva. Es nulo una vez cerrada la
+	 * arena. Se reemplaza en lugar de modificarse, para que se pueda leer sin
+	 * sincronización.
+	 */
+	private volatile ByteBuffer[] regiones = new ByteBuffer[0];
+	/**
+	 * Impide liberar las regiones mientras se copia contenido de ellas. Las
+	 * copias toman el cerrojo de lectura, y el cierre el de escritura.
+	 */
+	private final ReadWriteLock cerrojoRegiones = new ReentrantReadWriteLock();
+	/**
+	 * Los nombres de bloques almacenados, para que todos los paquetes usen la
+	 * misma cadena para el mismo nombre.
+	 */
+	private final Map<String, String> nombres = new HashMap<>();
+	/**
+	 * El índice de la región en la que se almacenan los bloques nuevos, o -1 si
+	 * todavía no hay ninguna.
+	 */
+	private int regionActual = -1;
+	private long bytesOcupados;
+
+	/**
+	 * Crea una arena de bloques vacía, con regiones de
+	 * {@value #TAMANO_REGION_PREDETERMINADO} bytes.
+	 */
+	public ArenaBloques() {
+		this(TAMANO_REGION_PREDETERMINADO);
+	}
+
+	/**
+	 * Crea una arena de bloques vacía.
+	 *
+	 * @param tamanoRegion El tamaño en bytes de cada región. Los bloques de mayor
+	 *                     tamaño ocupan una región propia, de su mismo tamaño.
+	 * @throws IllegalArgumentException Si el tamaño de las regiones no es
+	 *                                  positivo.
+	 */
+	public ArenaBloques(final int tamanoRegion) {
+		if (tamanoRegion < 1) {
+			throw new IllegalArgumentException("El tamaño de las regiones de una arena de bloques debe de ser positivo");
+		}
+
+		this.tamanoRegion = tamanoRegion;
+	}
+
+	/**
+	 * Crea una copia de un paquete cuyos bloques guardan su contenido en esta
+	 * arena. El paquete original no se modifica, y se puede descartar.
+	 *
+	 * @param paquete El paquete a almacenar.
+	 * @return La copia del paquete almacenada en la arena.
+	 * @throws IllegalArgumentException Si el paquete es nulo.
+	 * @throws IllegalStateException    Si la arena está cerrada.
+	 * @throws UncheckedIOException     Si no se ha podido obtener el contenido de
+	 *                                  algún bloque del paquete.
+	 */
+	public Paquete almacenar(final Paquete paquete) {
+		if (paquete == null) {
+			throw new IllegalArgumentException("El paquete a almacenar en la arena no puede ser nulo");
+		}
+
+		// Obtener el contenido de los bloques antes de sincronizar, pues puede
+		// requerir decodificarlo. Los nombres ya están ordenados
+		final List<String> nombresBloque = paquete.getNombresBloque();
+		final byte[][] contenidos = new byte[nombresBloque.size()][];
+		for (int i = 0; i < contenidos.length; ++i) {
+			contenidos[i] = paquete.getContenidoBloque(nombresBloque.get(i));
+		}
+
+		final String[] nombresTabla = new String[contenidos.length];
+		final int[] regionesTabla = new int[contenidos.length];
+		final int[] posicionesTabla = new int[contenidos.length];
+		final int[] longitudesTabla = new int[contenidos.length];
+
+		synchronized (this) {
+			if (regiones == null) {
+				throw new IllegalStateException("No se pueden almacenar bloques en una arena cerrada");
+			}
+
+			for (int i = 0; i < contenidos.length; ++i) {
+				nombresTabla[i] = nombres.computeIfAbsent(nombresBloque.get(i), nombre -> nombre);
+
+				if (contenidos[i] == null) {
+					longitudesTabla[i] = -1;
+				} else {
+					regionesTabla[i] = copiar(contenidos[i]);
+					posicionesTabla[i] = regiones[regionesTabla[i]].position() - contenidos[i].length;
+					longitudesTabla[i] = contenidos[i].length;
+				}
+			}
+		}
+
+		return new Paquete(new TablaArena(nombresTabla, regionesTabla, posicionesTabla, longitudesTabla));
+	}
+
+	/**
+	 * Obtiene el número de bytes de contenido de bloques almacenados en la arena.
+	 *
+	 * @return El descrito número, o 0 si la arena está cerrada.
+	 */
+	public synchronized long getBytesOcupados() {
+		return bytesOcupados;
+	}
+
+	/**
+	 * Obtiene el número de bytes de memoria directa reservados por la arena, que
+	 * es al menos el número de bytes ocupados.
+	 *
+	 * @return El descrito número, o 0 si la arena está cerrada.
+	 */
+	public long getBytesReservados() {
+		final ByteBuffer[] regiones = this.regiones;
+		long reservados = 0;
+
+		if (regiones != null) {
+			for (final ByteBuffer region : regiones) {
+				reservados += region.capacity();
+			}
+		}
+
+		return reservados;
+	}
+
+	/**
+	 * Cierra la arena, esperando a que terminen las lecturas en curso y liberando
+	 * la memoria directa de sus regiones. No tiene efecto si ya estaba cerrada.
+	 */
+	@Override
+	public synchronized void close() {
+		final Lock escritura = cerrojoRegiones.writeLock();
+		escritura.lock();
+		try {
+			final ByteBuffer[] regiones = this.regiones;
+			if (regiones == null) {
+				return;
+			}
+
+			// Las lecturas posteriores ven que la arena está cerrada antes de tocar las
+			// regiones, así que ya no hay quien las use
+			this.regiones = null;
+			for (final ByteBuffer region : regiones) {
+				LIBERADOR_REGIONES.accept(region);
+			}
+
+			nombres.clear();
+			bytesOcupados = 0;
+		} finally {
+			escritura.unlock();
+		}
+	}
+
+	/**
+	 * Copia el contenido de un bloque a la arena, reservando una región nueva si
+	 * no cabe en la actual. Tras la copia, la posición de la región queda justo
+	 * después del contenido copiado. Se debe de llamar con el monitor de la arena
+	 * tomado, y con la arena abierta.
+	 *
+	 * @param contenido El contenido a copiar.
+	 * @return El índice de la región donde se ha copiado el contenido.
+	 */
+	private int copiar(final byte[] contenido) {
+		ByteBuffer[] regiones = this.regiones;
+
+		final int indiceRegion;
+		if (regionActual >= 0 && regiones[regionActual].remaining() >= contenido.length) {
+			indiceRegion = regionActual;
+		} else {
+			indiceRegion = regiones.length;
+
+			regiones = Arrays.copyOf(regiones, regiones.length + 1);
+			regiones[indiceRegion] = ByteBuffer.allocateDirect(Math.max(tamanoRegion, contenido.length));
+			this.regiones = regiones;
+
+			// Si el bloque ocupa una región propia, seguir usando la actual para los
+			// siguientes, pues puede tener espacio libre
+			if (regionActual < 0 || contenido.length <= tamanoRegion) {
+				regionActual = indiceRegion;
+			}
+		}
+
+		regiones[indiceRegion].put(contenido);
+		bytesOcupados += contenido.length;
+
+		return indiceRegion;
+	}
+
+	/**
+	 * Copia a un vector nuevo un fragmento de una región de la arena.
+	 *
+	 * @param region   El índice de la región.
+	 * @param posicion La posición del fragmento en la región.
+	 * @param longitud La longitud del fragmento.
+	 * @return El contenido del fragmento.
+	 * @throws IOException Si la arena se ha cerrado.
+	 */
+	private byte[] leer(final int region, final int posicion, final int longitud) throws IOException {
+		final Lock lectura = cerrojoRegiones.readLock();
+		lectura.lock();
+		try {
+			final ByteBuffer[] regiones = this.regiones;
+			if (regiones == null) {
+				throw new IOException("La arena donde se guardaba el contenido del bloque se ha cerrado");
+			}
+
+			// Usar una vista propia de la región, para que otros hilos puedan leer
+			// otros fragmentos a la vez
+			final byte[] contenido = new byte[longitud];
+			final ByteBuffer fragmento = regiones[region].duplicate();
+			((Buffer) fragmento).position(posicion); // Buffer.position(int) existe también en Java 8
+			fragmento.get(contenido);
+
+			return contenido;
+		} finally {
+			lectura.unlock();
+		}
+	}
+
+	/**
+	 * Crea la función que libera la memoria directa de las regiones, según lo que
+	 * permita la máquina virtual. La API estándar de Java no lo permite, así que
+	 * se usan las clases internas de la máquina virtual que lo hacen, si están
+	 * disponibles.
+	 *
+	 * @return La descrita función.
+	 */
+	private static Consumer<ByteBuffer> crearLiberadorRegiones() {
+		try {
+			// Desde Java 9
+			final Class<?> claseUnsafe = Class.forName("sun.misc.Unsafe");
+			final Method invokeCleaner = claseUnsafe.getMethod("invokeCleaner", ByteBuffer.class);
+			final Field campoUnsafe = claseUnsafe.getDeclaredField("theUnsafe");
+			campoUnsafe.setAccessible(true);
+			final Object unsafe = campoUnsafe.get(null);
+
+			return region -> {
+				try {
+					invokeCleaner.invoke(unsafe, region);
+				} catch (final ReflectiveOperationException exc) {
+					// Se liberará cuando el recolector de basura descarte la región
+				}
+			};
+		} catch (final ReflectiveOperationException | RuntimeException exc) {
+			// Probar con la manera de Java 8
+		}
+
+		try {
+			final Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+			final Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+
+			return region -> {
+				try {
+					final Object limpiador = cleaner.invoke(region);
+					if (limpiador != null) {
+						clean.invoke(limpiador);
+					}
+				} catch (final ReflectiveOperationException exc) {
+					// Se liberará cuando el recolector de basura descarte la región
+				}
+			};
+		} catch (final ReflectiveOperationException | RuntimeException exc) {
+			return region -> {
+				// Se liberará cuando el recolector de basura descarte la región
+			};
+		}
+	}
+
+	/**
+	 * Los bloques de un paquete almacenado en la arena, como vectores paralelos
+	 * ordenados por nombre.
+	 */
+	private final class TablaArena implements TablaBloques {
+		private final String[] nombres;
+		private final int[] regiones;
+		private final int[] posiciones;
+		/**
+		 * La longitud del contenido de cada bloque, o -1 si no tiene contenido.
+		 */
+		private final int[] longitudes;
+
+		TablaArena(final String[] nombres, final int[] regiones, final int[] posiciones, final int[] longitudes) {
+			this.nombres = nombres;
+			this.regiones = regiones;
+			this.posiciones = posiciones;
+			this.longitudes = longitudes;
+		}
+
+		@Override
+		public List<String> getNombres() {
+			return new ArrayList<>(Arrays.asList(nombres));
+		}
+
+		@Override
+		public byte[] getContenido(final String nombreNormalizado) {
+			final int i = Arrays.binarySearch(nombres, nombreNormalizado);
+			if (i < 0 || longitudes[i] < 0) {
+				return null;
+			}
+
+			try {
+				return leer(regiones[i], posiciones[i], longitudes[i]);
+			} catch (final IOException exc) {
+				throw new UncheckedIOException("No se ha podido obtener el contenido del bloque " + nombreNormalizado, exc);
+			}
+		}
+
+		@Override
+		public Map<String, Bloque> getBloques() {
+			final Map<String, Bloque> bloques = new HashMap<>();
+
+			for (int i = 0; i < nombres.length; ++i) {
+				final int region = regiones[i];
+				final int posicion = posiciones[i];
+				final int longitud = longitudes[i];
+
+				bloques.put(nombres[i], longitud < 0 ? new Bloque(nombres[i], (byte[]) null) : new Bloque(nombres[i], new FuenteContenido() {
+					@Override
+					public byte[] cargar() throws IOException {
+						return leer(region, posicion, longitud);
+					}
+
+					@Override
+					public boolean conservarContenido() {
+						// Conservarlo lo devolvería al montículo
+						return false;
+					}
+				}));
+			}
+
+			return bloques;
+		}
+	}
+}
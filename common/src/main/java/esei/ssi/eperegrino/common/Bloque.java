@@ -1,8 +1,16 @@
 package esei.ssi.eperegrino.common;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 public final class Bloque {
     private String nombre;
-    private byte[] contenido;
+    private volatile byte[] contenido;
+    /**
+     * De dónde obtener el contenido del bloque la primera vez que se pida, si
+     * todavía no se ha obtenido. Es nulo una vez obtenido.
+     */
+    private FuenteContenido fuente;
 
     public Bloque() {
     }
@@ -12,6 +20,15 @@ public final class Bloque {
         this.contenido = contenido;
     }
 
+    /**
+     * Crea un bloque cuyo contenido se obtendrá de una fuente la primera vez que
+     * se pida, y se conservará para las siguientes veces si la fuente lo indica.
+     */
+    Bloque(String nombre, FuenteContenido fuente) {
+        this.nombre = nombre;
+        this.fuente = fuente;
+    }
+
     public String getNombre() {
         return nombre;
     }
@@ -20,17 +37,46 @@ public final class Bloque {
         this.nombre = nombre;
     }
 
+    /**
+     * Obtiene el contenido del bloque, leyéndolo y decodificándolo si es la
+     * primera vez que se pide, o cada vez si su fuente no lo conserva.
+     *
+     * @throws UncheckedIOException Si no se ha podido obtener el contenido de su
+     *                              fuente.
+     */
     public byte[] getContenido() {
-        return contenido;
+        byte[] result = contenido;
+        if (result == null) {
+            synchronized (this) {
+                result = contenido;
+                if (result == null && fuente != null) {
+                    try {
+                        result = fuente.cargar();
+                    } catch (IOException exc) {
+                        throw new UncheckedIOException("No se ha podido obtener el contenido del bloque " + nombre, exc);
+                    }
+                    // Las fuentes fuera del montículo se vuelven a leer cada vez
+                    if (fuente.conservarContenido()) {
+                        contenido = result;
+                        fuente = null;
+                    }
+                }
+            }
+        }
+        return result;
     }
 
-    public void setContenido(byte[] contenido) {
+    public synchronized void setContenido(byte[] contenido) {
         this.contenido = contenido;
+        this.fuente = null;
     }
 
     public String toString() {
+        byte[] contenido = this.contenido;
         if (contenido != null) {
             return this.nombre + ": [" + contenido.length + " posiciones]";
+        } else if (fuente != null) {
+            return this.nombre + ": [sin leer]";
         } else {
             return this.nombre + ": [vacio]";
         }
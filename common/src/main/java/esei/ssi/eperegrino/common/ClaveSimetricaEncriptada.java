@@ -0,0 +1,47 @@
+package esei.ssi.eperegrino.common;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Una clave aleatoria de un cifrador simétrico, junto con su representación
+ * encriptada para el destinatario de los datos que protege.
+ *
+ * @author Alejandro González García
+ */
+public final class ClaveSimetricaEncriptada {
+	private final SecretKey clave;
+	private final byte[] claveEncriptada;
+
+	/**
+	 * Crea una clave simétrica encriptada.
+	 *
+	 * @param clave           La clave simétrica.
+	 * @param claveEncriptada La clave encriptada con la clave pública del
+	 *                        destinatario, o nulo si todavía no se ha encriptado.
+	 */
+	ClaveSimetricaEncriptada(final SecretKey clave, final byte[] claveEncriptada) {
+		this.clave = clave;
+		this.claveEncriptada = claveEncriptada;
+	}
+
+	/**
+	 * Obtiene la clave simétrica.
+	 *
+	 * @return La descrita clave.
+	 */
+	public SecretKey getClave() {
+		return clave;
+	}
+
+	/**
+	 * Obtiene la clave simétrica encriptada con la clave pública del
+	 * destinatario.
+	 *
+	 * @return La descrita clave encriptada. No es nula para las claves obtenidas
+	 *         con
+	 *         {@link SuiteCriptografica#generarClaveSimetricoEncriptada(java.security.PublicKey)}.
+	 */
+	public byte[] getClaveEncriptada() {
+		return claveEncriptada;
+	}
+}
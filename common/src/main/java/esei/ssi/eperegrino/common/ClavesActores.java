@@ -0,0 +1,228 @@
+package esei.ssi.eperegrino.common;
+
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Asocia a cada actor implicado en los casos de uso de e-peregrino sus claves
+ * pública y privada, si se conocen. A diferencia de las claves asociadas
+ * directamente a {@link Actor}, que son compartidas por todo el programa, los
+ * objetos de esta clase son inmutables: añadir una clave crea un objeto nuevo.
+ * Por tanto, se pueden compartir entre hilos, y varias operaciones pueden usar
+ * claves distintas para el mismo actor a la vez.
+ * <p>
+ * Además de las claves de los actores, puede indicar una
+ * {@link ReservaClavesSimetricas} de la que tomar las claves simétricas de las
+ * operaciones que las usen.
+ *
+ * @author Alejandro González García
+ */
+public final class ClavesActores {
+	private final Map<Actor, PublicKey> clavesPublicas;
+	private final Map<Actor, PrivateKey> clavesPrivadas;
+	private final ReservaClavesSimetricas reservaClaves;
+
+	/**
+	 * Crea un conjunto de claves de actores vacío, sin reserva de claves
+	 * simétricas.
+	 */
+	public ClavesActores() {
+		this(new EnumMap<>(Actor.class), new EnumMap<>(Actor.class), null);
+	}
+
+	/**
+	 * Crea un conjunto de claves de actores con las claves especificadas. Los
+	 * mapas no se copian, así que no deben de modificarse después.
+	 *
+	 * @param clavesPublicas Las claves públicas de cada actor.
+	 * @param clavesPrivadas Las claves privadas de cada actor.
+	 * @param reservaClaves  La reserva de claves simétricas, o nulo si no hay.
+	 */
+	private ClavesActores(
+		final Map<Actor, PublicKey> clavesPublicas, final Map<Actor, PrivateKey> clavesPrivadas, final ReservaClavesSimetricas reservaClaves
+	) {
+		this.clavesPublicas = Collections.unmodifiableMap(clavesPublicas);
+		this.clavesPrivadas = Collections.unmodifiableMap(clavesPrivadas);
+		this.reservaClaves = reservaClaves;
+	}
+
+	/**
+	 * Obtiene un conjunto de claves igual a este, pero con la clave pública de un
+	 * actor establecida a la especificada.
+	 *
+	 * @param actor        El actor al que asociar la clave.
+	 * @param clavePublica La clave pública del actor.
+	 * @return El descrito conjunto de claves.
+	 * @throws IllegalArgumentException Si algún parámetro es nulo.
+	 */
+	public ClavesActores conClavePublica(final Actor actor, final PublicKey clavePublica) {
+		if (actor == null || clavePublica == null) {
+			throw new IllegalArgumentException("La clave pública a establecer y su actor no pueden ser nulos");
+		}
+
+		final Map<Actor, PublicKey> nuevasClavesPublicas = new EnumMap<>(Actor.class);
+		nuevasClavesPublicas.putAll(clavesPublicas);
+		nuevasClavesPublicas.put(actor, clavePublica);
+
+		return new ClavesActores(nuevasClavesPublicas, clavesPrivadas, reservaClaves);
+	}
+
+	/**
+	 * Obtiene un conjunto de claves igual a este, pero con la clave pública de un
+	 * actor establecida a partir de los bytes de su representación X509 (ASN.1).
+	 *
+	 * @param actor        El actor al que asociar la clave.
+	 * @param clavePublica Los bytes que conforman la representación X509 (ASN.1)
+	 *                     de la clave pública.
+	 * @return El descrito conjunto de claves.
+	 * @throws InvalidKeySpecException  Si no se ha podido interpretar la
+	 *                                  representación como una clave pública.
+	 * @throws IllegalArgumentException Si algún parámetro es nulo.
+	 */
+	public ClavesActores conClavePublica(final Actor actor, final byte[] clavePublica) throws InvalidKeySpecException {
+		if (clavePublica == null) {
+			throw new IllegalArgumentException("La clave pública a establecer no puede ser nula");
+		}
+
+		return conClavePublica(actor, getContexto().interpretarClavePublica(clavePublica));
+	}
+
+	/**
+	 * Obtiene un conjunto de claves igual a este, pero con la clave privada de un
+	 * actor establecida a la especificada.
+	 *
+	 * @param actor        El actor al que asociar la clave.
+	 * @param clavePrivada La clave privada del actor.
+	 * @return El descrito conjunto de claves.
+	 * @throws IllegalArgumentException Si algún parámetro es nulo.
+	 */
+	public ClavesActores conClavePrivada(final Actor actor, final PrivateKey clavePrivada) {
+		if (actor == null || clavePrivada == null) {
+			throw new IllegalArgumentException("La clave privada a establecer y su actor no pueden ser nulos");
+		}
+
+		final Map<Actor, PrivateKey> nuevasClavesPrivadas = new EnumMap<>(Actor.class);
+		nuevasClavesPrivadas.putAll(clavesPrivadas);
+		nuevasClavesPrivadas.put(actor, clavePrivada);
+
+		return new ClavesActores(clavesPublicas, nuevasClavesPrivadas, reservaClaves);
+	}
+
+	/**
+	 * Obtiene un conjunto de claves igual a este, pero con la clave privada de un
+	 * actor establecida a partir de los bytes de su representación PKCS8.
+	 *
+	 * @param actor        El actor al que asociar la clave.
+	 * @param clavePrivada Los bytes que conforman la representación PKCS8 de la
+	 *                     clave privada.
+	 * @return El descrito conjunto de claves.
+	 * @throws InvalidKeySpecException  Si no se ha podido interpretar la
+	 *                                  representación como una clave privada.
+	 * @throws IllegalArgumentException Si algún parámetro es nulo.
+	 */
+	public ClavesActores conClavePrivada(final Actor actor, final byte[] clavePrivada) throws InvalidKeySpecException {
+		if (clavePrivada == null) {
+			throw new IllegalArgumentException("La clave privada a establecer no puede ser nula");
+		}
+
+		return conClavePrivada(actor, getContexto().interpretarClavePrivada(clavePrivada));
+	}
+
+	/**
+	 * Obtiene un conjunto de claves igual a este, pero que toma las claves
+	 * simétricas de la reserva especificada.
+	 *
+	 * @param reservaClaves La reserva de claves simétricas, o nulo para generar
+	 *                      las claves en el momento.
+	 * @return El descrito conjunto de claves.
+	 */
+	public ClavesActores conReservaClaves(final ReservaClavesSimetricas reservaClaves) {
+		return new ClavesActores(clavesPublicas, clavesPrivadas, reservaClaves);
+	}
+
+	/**
+	 * Obtiene la clave pública de un actor.
+	 *
+	 * @param actor El actor del que obtener la clave.
+	 * @return La devandicha clave pública.
+	 * @throws IllegalStateException Si este conjunto no contiene una clave pública
+	 *                               para el actor.
+	 */
+	public PublicKey getClavePublica(final Actor actor) {
+		final PublicKey clavePublica = clavesPublicas.get(actor);
+
+		if (clavePublica == null) {
+			throw new IllegalStateException("No se puede obtener la clave pública del actor " + actor + " sin haberle asociado una antes");
+		}
+
+		return clavePublica;
+	}
+
+	/**
+	 * Obtiene la clave privada de un actor.
+	 *
+	 * @param actor El actor del que obtener la clave.
+	 * @return La devandicha clave privada.
+	 * @throws IllegalStateException Si este conjunto no contiene una clave privada
+	 *                               para el actor.
+	 */
+	public PrivateKey getClavePrivada(final Actor actor) {
+		final PrivateKey clavePrivada = clavesPrivadas.get(actor);
+
+		if (clavePrivada == null) {
+			throw new IllegalStateException("No se puede obtener la clave privada del actor " + actor + " sin haberle asociado una antes");
+		}
+
+		return clavePrivada;
+	}
+
+	/**
+	 * Comprueba si este conjunto contiene una clave pública para un actor.
+	 *
+	 * @param actor El actor del que comprobar la clave.
+	 * @return Verdadero si la contiene, falso en caso contrario.
+	 */
+	public boolean contieneClavePublica(final Actor actor) {
+		return clavesPublicas.containsKey(actor);
+	}
+
+	/**
+	 * Comprueba si este conjunto contiene una clave privada para un actor.
+	 *
+	 * @param actor El actor del que comprobar la clave.
+	 * @return Verdadero si la contiene, falso en caso contrario.
+	 */
+	public boolean contieneClavePrivada(final Actor actor) {
+		return clavesPrivadas.containsKey(actor);
+	}
+
+	/**
+	 * Obtiene la reserva de la que tomar las claves simétricas.
+	 *
+	 * @return La devandicha reserva, o nulo si las claves se generan en el
+	 *         momento.
+	 */
+	public ReservaClavesSimetricas getReservaClaves() {
+		return reservaClaves;
+	}
+
+	/**
+	 * Obtiene el contexto criptográfico del hilo actual, con el que interpretar
+	 * las representaciones de las claves de los actores, sean del algoritmo que
+	 * sean.
+	 *
+	 * @return El descrito contexto.
+	 */
+	private static ContextoCriptografico getContexto() {
+		try {
+			return ContextoCriptografico.actual();
+		} catch (final GeneralSecurityException exc) {
+			throw new AssertionError("Se han violado invariantes en la implementación del programa");
+		}
+	}
+}
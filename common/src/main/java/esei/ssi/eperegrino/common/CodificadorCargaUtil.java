@@ -0,0 +1,254 @@
+package esei.ssi.eperegrino.common;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+
+/**
+ * Convierte directamente entre los pares clave-valor de una carga útil y su
+ * representación encriptada, sin pasar por una cadena de texto intermedia. Los
+ * pares se escriben en el formato JSON simplificado de {@link JSONUtils},
+ * codificado en UTF-8, sobre un búfer que se reutiliza entre operaciones, y se
+ * leen de la misma manera del búfer donde se desencripta la carga útil. El
+ * resultado es el mismo que el de {@link JSONUtils#map2json(Map)} y
+ * {@link JSONUtils#json2map(String)}, pero sin dos copias completas de la
+ * carga útil en cada sentido.
+ * <p>
+ * Cada hilo debe de usar su propio codificador, que se obtiene con
+ * {@link ContextoCriptografico#getCodificadorCargaUtil()}. El búfer se borra
+ * después de cada operación, para no retener datos en claro.
+ *
+ * @author Alejandro González García
+ */
+public final class CodificadorCargaUtil {
+	/**
+	 * El tamaño inicial del búfer, suficiente para cargas útiles habituales.
+	 */
+	private static final int TAMANO_INICIAL_BUFER = 1024;
+
+	private byte[] bufer = new byte[TAMANO_INICIAL_BUFER];
+	private int posicion;
+
+	/**
+	 * Crea un codificador de cargas útiles. Solo lo debería de llamar
+	 * {@link ContextoCriptografico}.
+	 */
+	CodificadorCargaUtil() {
+		// Nada que inicializar aparte de los atributos
+	}
+
+	/**
+	 * Encripta los pares clave-valor de una carga útil, omitiendo de ellos los
+	 * caracteres especiales del formato JSON simplificado.
+	 *
+	 * @param datos    Los pares clave-valor a encriptar.
+	 * @param cifrador El cifrador a usar, ya inicializado para encriptar.
+	 * @return La carga útil encriptada.
+	 * @throws GeneralSecurityException Si ocurre algún error al encriptar.
+	 */
+	public byte[] encriptar(final Map<String, String> datos, final Cipher cifrador) throws GeneralSecurityException {
+		try {
+			codificar(datos);
+			return cifrador.doFinal(bufer, 0, posicion);
+		} finally {
+			Arrays.fill(bufer, 0, posicion, (byte) 0);
+			posicion = 0;
+		}
+	}
+
+	/**
+	 * Desencripta una carga útil, y lee sus pares clave-valor.
+	 *
+	 * @param cifrador  El cifrador a usar, ya inicializado para desencriptar.
+	 * @param cargaUtil La carga útil encriptada.
+	 * @return Los pares clave-valor de la carga útil, en el orden en que
+	 *         aparecen. Estará vacío si la carga útil no contiene un objeto JSON.
+	 * @throws GeneralSecurityException Si ocurre algún error al desencriptar.
+	 * @throws IllegalArgumentException Si alguna entrada del objeto JSON no tiene
+	 *                                  separador entre clave y valor.
+	 */
+	public Map<String, String> desencriptar(final Cipher cifrador, final byte[] cargaUtil) throws GeneralSecurityException {
+		return desencriptar(cifrador, cargaUtil, 0, cargaUtil.length);
+	}
+
+	/**
+	 * Desencripta una parte de una carga útil, y lee sus pares clave-valor. Es
+	 * útil cuando la carga útil encriptada va precedida de otros datos, como un
+	 * vector de inicialización.
+	 *
+	 * @param cifrador  El cifrador a usar, ya inicializado para desencriptar.
+	 * @param cargaUtil Los bytes que contienen la carga útil encriptada.
+	 * @param inicio    La posición del primer byte de la carga útil encriptada.
+	 * @param longitud  La longitud de la carga útil encriptada.
+	 * @return Los pares clave-valor de la carga útil, en el orden en que
+	 *         aparecen. Estará vacío si la carga útil no contiene un objeto JSON.
+	 * @throws GeneralSecurityException Si ocurre algún error al desencriptar.
+	 * @throws IllegalArgumentException Si alguna entrada del objeto JSON no tiene
+	 *                                  separador entre clave y valor.
+	 */
+	public Map<String, String> desencriptar(final Cipher cifrador, final byte[] cargaUtil, final int inicio, final int longitud) throws GeneralSecurityException {
+		// Si el cifrador falla, puede haber escrito parte de la carga útil en el
+		// búfer, así que se borra todo el espacio que podría haber usado
+		final int longitudMaxima = cifrador.getOutputSize(longitud);
+
+		asegurarCapacidad(longitudMaxima);
+		try {
+			return decodificar(bufer, 0, cifrador.doFinal(cargaUtil, inicio, longitud, bufer, 0));
+		} finally {
+			Arrays.fill(bufer, 0, longitudMaxima, (byte) 0);
+		}
+	}
+
+	/**
+	 * Lee los pares clave-valor de un objeto en el formato JSON simplificado,
+	 * codificado en UTF-8, con el mismo analizador que
+	 * {@link JSONUtils#json2map(String)}. Los caracteres que delimitan el formato
+	 * son ASCII, y en UTF-8 no pueden formar parte de otros caracteres, así que se
+	 * buscan directamente entre los bytes; solo se decodifican las claves y
+	 * valores resultantes.
+	 *
+	 * @param datos  Los bytes a leer.
+	 * @param inicio La posición del primer byte a leer.
+	 * @param fin    La posición siguiente al último byte a leer.
+	 * @return Los pares clave-valor, en el orden en que aparecen. Estará vacío si
+	 *         los bytes no contienen un objeto JSON.
+	 * @throws IllegalArgumentException Si alguna entrada del objeto no tiene
+	 *                                  separador entre clave y valor.
+	 */
+	public static Map<String, String> decodificar(final byte[] datos, final int inicio, final int fin) {
+		return JSONUtils.json2map(new TextoUtf8(datos, inicio, fin), new LinkedHashMap<>());
+	}
+
+	/**
+	 * Escribe en el búfer los pares clave-valor especificados en el formato JSON
+	 * simplificado, codificado en UTF-8.
+	 *
+	 * @param datos Los pares clave-valor a escribir.
+	 */
+	private void codificar(final Map<String, String> datos) {
+		boolean primera = true;
+
+		posicion = 0;
+		escribirAscii('{');
+		for (final Map.Entry<String, String> entrada : datos.entrySet()) {
+			if (!primera) {
+				escribirAscii(',');
+			}
+			primera = false;
+
+			escribirAscii('"');
+			escribirCadenaLimpia(entrada.getKey());
+			escribirAscii('"');
+			escribirAscii(':');
+			escribirAscii('"');
+			escribirCadenaLimpia(entrada.getValue());
+			escribirAscii('"');
+		}
+		escribirAscii('}');
+	}
+
+	/**
+	 * Escribe en el búfer una cadena codificada en UTF-8, omitiendo los caracteres
+	 * especiales del formato JSON simplificado. Los sustitutos sin pareja se
+	 * escriben como '?', igual que hace {@link String#getBytes(java.nio.charset.Charset)}.
+	 *
+	 * @param cadena La cadena a escribir.
+	 */
+	private void escribirCadenaLimpia(final String cadena) {
+		final int longitud = cadena.length();
+
+		for (int i = 0; i < longitud; ++i) {
+			final char c = cadena.charAt(i);
+
+			asegurarCapacidad(posicion + 4);
+			if (c < 0x80) {
+				if (!JSONUtils.esCaracterEspecial(c)) {
+					bufer[posicion++] = (byte) c;
+				}
+			} else if (c < 0x800) {
+				bufer[posicion++] = (byte) (0xC0 | (c >> 6));
+				bufer[posicion++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < longitud && Character.isLowSurrogate(cadena.charAt(i + 1))) {
+				final int puntoCodigo = Character.toCodePoint(c, cadena.charAt(++i));
+
+				bufer[posicion++] = (byte) (0xF0 | (puntoCodigo >> 18));
+				bufer[posicion++] = (byte) (0x80 | ((puntoCodigo >> 12) & 0x3F));
+				bufer[posicion++] = (byte) (0x80 | ((puntoCodigo >> 6) & 0x3F));
+				bufer[posicion++] = (byte) (0x80 | (puntoCodigo & 0x3F));
+			} else if (Character.isSurrogate(c)) {
+				bufer[posicion++] = '?';
+			} else {
+				bufer[posicion++] = (byte) (0xE0 | (c >> 12));
+				bufer[posicion++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				bufer[posicion++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+	}
+
+	/**
+	 * Escribe un carácter ASCII en el búfer.
+	 *
+	 * @param c El carácter a escribir.
+	 */
+	private void escribirAscii(final char c) {
+		asegurarCapacidad(posicion + 1);
+		bufer[posicion++] = (byte) c;
+	}
+
+	/**
+	 * Amplía el búfer si no tiene al menos la capacidad especificada, conservando
+	 * su contenido.
+	 *
+	 * @param capacidad La capacidad necesaria, en bytes.
+	 */
+	private void asegurarCapacidad(final int capacidad) {
+		if (capacidad > bufer.length) {
+			final byte[] buferNuevo = Arrays.copyOf(bufer, Math.max(capacidad, bufer.length * 2));
+
+			Arrays.fill(bufer, (byte) 0);
+			bufer = buferNuevo;
+		}
+	}
+
+	/**
+	 * Una vista de texto sobre un intervalo de bytes UTF-8, para leerlo con
+	 * {@link JSONUtils}. Cada byte es un carácter, lo que basta para encontrar
+	 * los caracteres ASCII que delimitan el formato; las subsecuencias se
+	 * decodifican al convertirlas a cadena.
+	 */
+	private static final class TextoUtf8 implements CharSequence {
+		private final byte[] datos;
+		private final int inicio;
+		private final int fin;
+
+		TextoUtf8(final byte[] datos, final int inicio, final int fin) {
+			this.datos = datos;
+			this.inicio = inicio;
+			this.fin = fin;
+		}
+
+		@Override
+		public int length() {
+			return fin - inicio;
+		}
+
+		@Override
+		public char charAt(final int indice) {
+			return (char) (datos[inicio + indice] & 0xFF);
+		}
+
+		@Override
+		public CharSequence subSequence(final int desde, final int hasta) {
+			return new TextoUtf8(datos, inicio + desde, inicio + hasta);
+		}
+
+		@Override
+		public String toString() {
+			return new String(datos, inicio, fin - inicio, StandardCharsets.UTF_8);
+		}
+	}
+}
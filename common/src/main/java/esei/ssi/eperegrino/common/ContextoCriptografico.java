@@ -0,0 +1,280 @@
+package esei.ssi.eperegrino.common;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.edec.EdECObjectIdentifiers;
+import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+
+/**
+ * Proporciona a cada hilo su propio conjunto de objetos de la JCA para los
+ * algoritmos definidos en {@link ParametrosCriptograficos}, de manera que se
+ * puedan reutilizar entre operaciones en lugar de obtenerlos del proveedor cada
+ * vez. Obtener estos objetos del proveedor implica buscar el servicio
+ * correspondiente en tablas sincronizadas, lo cual es costoso en comparación con
+ * operar con datos pequeños. Incluye los objetos de todas las
+ * {@link SuiteCriptografica}.
+ * <p>
+ * Los objetos devueltos no son seguros para hilos, así que no deben de
+ * compartirse con otros hilos. Los cifradores deben de inicializarse antes de
+ * cada uso, pues conservan la última inicialización que se hizo.
+ *
+ * @author Alejandro González García
+ */
+public final class ContextoCriptografico {
+	/**
+	 * El contexto de cada hilo, creado la primera vez que se pide.
+	 */
+	private static final ThreadLocal<ContextoCriptografico> CONTEXTOS = new ThreadLocal<>();
+
+	private final Cipher cifradorAsimetrico;
+	private final Cipher cifradorSimetrico;
+	private final MessageDigest resumidor;
+	private final KeyGenerator generadorClavesSimetrico;
+	private final KeyFactory factoriaClavesAsimetrico;
+	private final CodificadorCargaUtil codificadorCargaUtil;
+	private final Cipher cifradorSimetricoAutenticado;
+	private final Cipher cifradorEnvolturaClaves;
+	private final Signature firmador;
+	private final KeyFactory factoriaClavesFirma;
+	private final SecureRandom generadorAleatorio;
+
+	/**
+	 * Crea un contexto criptográfico, obteniendo del proveedor todos sus objetos.
+	 *
+	 * @throws GeneralSecurityException Si el proveedor no implementa alguno de los
+	 *                                  algoritmos.
+	 */
+	private ContextoCriptografico() throws GeneralSecurityException {
+		GestorProveedoresJCA.registrarProveedores();
+
+		cifradorAsimetrico = Cipher.getInstance(
+			ParametrosCriptograficos.ALGORITMO_ASIMETRICO,
+			ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS
+		);
+		cifradorSimetrico = Cipher.getInstance(
+			ParametrosCriptograficos.ALGORITMO_SIMETRICO,
+			ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS
+		);
+		resumidor = MessageDigest.getInstance(
+			ParametrosCriptograficos.ALGORITMO_RESUMEN,
+			ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS
+		);
+		generadorClavesSimetrico = KeyGenerator.getInstance(
+			ParametrosCriptograficos.ALGORITMO_GENERADOR_CLAVES_SIMETRICO,
+			ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS
+		);
+		generadorClavesSimetrico.init(ParametrosCriptograficos.LONGITUD_CLAVE_SIMETRICO);
+		factoriaClavesAsimetrico = KeyFactory.getInstance(
+			ParametrosCriptograficos.ALGORITMO_GENERADOR_CLAVES_ASIMETRICO,
+			ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS
+		);
+		codificadorCargaUtil = new CodificadorCargaUtil();
+		cifradorSimetricoAutenticado = Cipher.getInstance(
+			ParametrosCriptograficos.ALGORITMO_SIMETRICO_AUTENTICADO,
+			ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS
+		);
+		cifradorEnvolturaClaves = Cipher.getInstance(
+			ParametrosCriptograficos.ALGORITMO_ENVOLTURA_CLAVES,
+			ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS
+		);
+		firmador = Signature.getInstance(
+			ParametrosCriptograficos.ALGORITMO_FIRMA,
+			ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS
+		);
+		factoriaClavesFirma = KeyFactory.getInstance(
+			ParametrosCriptograficos.ALGORITMO_FIRMA,
+			ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS
+		);
+		generadorAleatorio = new SecureRandom();
+	}
+
+	/**
+	 * Obtiene el contexto criptográfico del hilo actual, creándolo si es la
+	 * primera vez que se pide.
+	 *
+	 * @return El descrito contexto.
+	 * @throws GeneralSecurityException Si no se ha podido crear el contexto.
+	 */
+	public static ContextoCriptografico actual() throws GeneralSecurityException {
+		ContextoCriptografico contexto = CONTEXTOS.get();
+
+		if (contexto == null) {
+			contexto = new ContextoCriptografico();
+			CONTEXTOS.set(contexto);
+		}
+
+		return contexto;
+	}
+
+	/**
+	 * Obtiene el cifrador asimétrico del hilo actual, para el algoritmo
+	 * {@link ParametrosCriptograficos#ALGORITMO_ASIMETRICO}.
+	 *
+	 * @return El descrito cifrador.
+	 */
+	public Cipher getCifradorAsimetrico() {
+		return cifradorAsimetrico;
+	}
+
+	/**
+	 * Obtiene el cifrador simétrico del hilo actual, para el algoritmo
+	 * {@link ParametrosCriptograficos#ALGORITMO_SIMETRICO}.
+	 *
+	 * @return El descrito cifrador.
+	 */
+	public Cipher getCifradorSimetrico() {
+		return cifradorSimetrico;
+	}
+
+	/**
+	 * Obtiene el objeto para calcular resúmenes del hilo actual, para el
+	 * algoritmo {@link ParametrosCriptograficos#ALGORITMO_RESUMEN}.
+	 *
+	 * @return El descrito objeto. Cada resumen completo lo deja listo para el
+	 *         siguiente.
+	 */
+	public MessageDigest getResumidor() {
+		return resumidor;
+	}
+
+	/**
+	 * Obtiene el generador de claves simétricas del hilo actual, ya inicializado
+	 * para generar claves de
+	 * {@link ParametrosCriptograficos#LONGITUD_CLAVE_SIMETRICO} bits.
+	 *
+	 * @return El descrito generador.
+	 */
+	public KeyGenerator getGeneradorClavesSimetrico() {
+		return generadorClavesSimetrico;
+	}
+
+	/**
+	 * Obtiene la factoría de claves asimétricas del hilo actual, para el algoritmo
+	 * {@link ParametrosCriptograficos#ALGORITMO_GENERADOR_CLAVES_ASIMETRICO}.
+	 *
+	 * @return La descrita factoría.
+	 */
+	public KeyFactory getFactoriaClavesAsimetrico() {
+		return factoriaClavesAsimetrico;
+	}
+
+	/**
+	 * Obtiene el codificador de cargas útiles del hilo actual, que reutiliza su
+	 * búfer entre operaciones.
+	 *
+	 * @return El descrito codificador.
+	 */
+	public CodificadorCargaUtil getCodificadorCargaUtil() {
+		return codificadorCargaUtil;
+	}
+
+	/**
+	 * Obtiene el cifrador simétrico autenticado del hilo actual, para el algoritmo
+	 * {@link ParametrosCriptograficos#ALGORITMO_SIMETRICO_AUTENTICADO}.
+	 *
+	 * @return El descrito cifrador.
+	 */
+	public Cipher getCifradorSimetricoAutenticado() {
+		return cifradorSimetricoAutenticado;
+	}
+
+	/**
+	 * Obtiene el cifrador con el que encriptar claves simétricas del hilo actual,
+	 * para el algoritmo
+	 * {@link ParametrosCriptograficos#ALGORITMO_ENVOLTURA_CLAVES}.
+	 *
+	 * @return El descrito cifrador.
+	 */
+	public Cipher getCifradorEnvolturaClaves() {
+		return cifradorEnvolturaClaves;
+	}
+
+	/**
+	 * Obtiene el objeto para crear y comprobar firmas digitales del hilo actual,
+	 * para el algoritmo {@link ParametrosCriptograficos#ALGORITMO_FIRMA}.
+	 *
+	 * @return El descrito objeto. Debe de inicializarse antes de cada uso.
+	 */
+	public Signature getFirmador() {
+		return firmador;
+	}
+
+	/**
+	 * Obtiene el generador de números aleatorios criptográficamente seguro del
+	 * hilo actual.
+	 *
+	 * @return El descrito generador.
+	 */
+	public SecureRandom getGeneradorAleatorio() {
+		return generadorAleatorio;
+	}
+
+	/**
+	 * Interpreta la representación X509 (ASN.1) de una clave pública, con la
+	 * factoría del algoritmo que indica la propia representación: claves de
+	 * {@link ParametrosCriptograficos#ALGORITMO_FIRMA} o, en otro caso, de
+	 * {@link ParametrosCriptograficos#ALGORITMO_GENERADOR_CLAVES_ASIMETRICO}.
+	 *
+	 * @param clavePublica Los bytes de la representación de la clave.
+	 * @return La clave pública interpretada.
+	 * @throws InvalidKeySpecException Si no se ha podido interpretar la
+	 *                                 representación como una clave pública.
+	 */
+	public PublicKey interpretarClavePublica(final byte[] clavePublica) throws InvalidKeySpecException {
+		final ASN1ObjectIdentifier algoritmo;
+
+		try {
+			algoritmo = SubjectPublicKeyInfo.getInstance(clavePublica).getAlgorithm().getAlgorithm();
+		} catch (final IllegalArgumentException | IllegalStateException exc) {
+			throw new InvalidKeySpecException("La representación de la clave pública no es válida", exc);
+		}
+
+		return getFactoriaClaves(algoritmo).generatePublic(new X509EncodedKeySpec(clavePublica));
+	}
+
+	/**
+	 * Interpreta la representación PKCS8 de una clave privada, de la misma manera
+	 * que {@link #interpretarClavePublica(byte[])}.
+	 *
+	 * @param clavePrivada Los bytes de la representación de la clave.
+	 * @return La clave privada interpretada.
+	 * @throws InvalidKeySpecException Si no se ha podido interpretar la
+	 *                                 representación como una clave privada.
+	 */
+	public PrivateKey interpretarClavePrivada(final byte[] clavePrivada) throws InvalidKeySpecException {
+		final ASN1ObjectIdentifier algoritmo;
+
+		try {
+			algoritmo = PrivateKeyInfo.getInstance(clavePrivada).getPrivateKeyAlgorithm().getAlgorithm();
+		} catch (final IllegalArgumentException | IllegalStateException exc) {
+			throw new InvalidKeySpecException("La representación de la clave privada no es válida", exc);
+		}
+
+		return getFactoriaClaves(algoritmo).generatePrivate(new PKCS8EncodedKeySpec(clavePrivada));
+	}
+
+	/**
+	 * Obtiene la factoría de claves del hilo actual para un algoritmo de claves.
+	 *
+	 * @param algoritmo El identificador del algoritmo, tal y como aparece en la
+	 *                  representación de las claves.
+	 * @return La descrita factoría.
+	 */
+	private KeyFactory getFactoriaClaves(final ASN1ObjectIdentifier algoritmo) {
+		return EdECObjectIdentifiers.id_Ed25519.equals(algoritmo) ? factoriaClavesFirma : factoriaClavesAsimetrico;
+	}
+}
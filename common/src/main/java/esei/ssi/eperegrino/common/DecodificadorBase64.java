@@ -0,0 +1,106 @@
+package esei.ssi.eperegrino.common;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Decodifica texto en Base64 dividido en líneas directamente desde un búfer,
+ * sin copiarlo ni quitarle antes los saltos de línea. Acepta lo mismo que
+ * {@link java.util.Base64#getDecoder()}, salvo por los saltos de línea, que se
+ * ignoran.
+ *
+ * @author Alejandro González García
+ */
+final class DecodificadorBase64 {
+	/**
+	 * El valor de cada carácter del alfabeto Base64, o -1 si no pertenece a él.
+	 */
+	private static final int[] VALORES = new int[256];
+
+	static {
+		final String alfabeto = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+
+		Arrays.fill(VALORES, -1);
+		for (int i = 0; i < alfabeto.length(); ++i) {
+			VALORES[alfabeto.charAt(i)] = i;
+		}
+	}
+
+	private DecodificadorBase64() {
+		// No permitir instanciar esta clase
+	}
+
+	/**
+	 * Decodifica un fragmento de un búfer. Se recorre el fragmento dos veces: la
+	 * primera para calcular el tamaño exacto del resultado, y la segunda para
+	 * decodificarlo. No se modifican la posición ni el límite del búfer.
+	 *
+	 * @param texto El búfer que contiene el texto en Base64.
+	 * @param desde La posición del primer byte del texto.
+	 * @param hasta La posición siguiente al último byte del texto.
+	 * @return Los bytes decodificados.
+	 * @throws IllegalArgumentException Si el texto no está codificado en Base64
+	 *                                  correctamente.
+	 */
+	static byte[] decodificar(final ByteBuffer texto, final int desde, final int hasta) {
+		int caracteres = 0;
+		int relleno = 0;
+
+		for (int i = desde; i < hasta; ++i) {
+			final byte b = texto.get(i);
+			if (b == '\n' || b == '\r') {
+				continue;
+			}
+
+			if (b == '=') {
+				++relleno;
+			} else if (relleno > 0) {
+				throw new IllegalArgumentException("Hay caracteres después del relleno de Base64");
+			} else {
+				++caracteres;
+			}
+		}
+
+		if (relleno > 2 || (relleno > 0 && (caracteres + relleno) % 4 != 0) || caracteres % 4 == 1) {
+			throw new IllegalArgumentException("La longitud del texto en Base64 no es válida");
+		}
+
+		final byte[] resultado = new byte[caracteres / 4 * 3 + Math.max(0, caracteres % 4 - 1)];
+		int acumulado = 0;
+		int acumulados = 0;
+		int j = 0;
+
+		for (int i = desde; i < hasta; ++i) {
+			final byte b = texto.get(i);
+			if (b == '\n' || b == '\r') {
+				continue;
+			}
+			if (b == '=') {
+				break;
+			}
+
+			final int valor = VALORES[b & 0xFF];
+			if (valor < 0) {
+				throw new IllegalArgumentException("Carácter no válido en el texto en Base64: " + (b & 0xFF));
+			}
+
+			acumulado = acumulado << 6 | valor;
+			if (++acumulados == 4) {
+				resultado[j++] = (byte) (acumulado >> 16);
+				resultado[j++] = (byte) (acumulado >> 8);
+				resultado[j++] = (byte) acumulado;
+				acumulado = 0;
+				acumulados = 0;
+			}
+		}
+
+		if (acumulados == 2) {
+			resultado[j] = (byte) (acumulado >> 4);
+		} else if (acumulados == 3) {
+			resultado[j++] = (byte) (acumulado >> 10);
+			resultado[j] = (byte) (acumulado >> 2);
+		}
+
+		return resultado;
+	}
+}
@@ -0,0 +1,20 @@
+package esei.ssi.eperegrino.common;
+
+/**
+ * Los formatos en los que se puede guardar un paquete.
+ *
+ * @author Alejandro González García
+ */
+public enum FormatoPaquete {
+	/**
+	 * El formato de texto original, con el contenido de cada bloque codificado en
+	 * Base64 entre marcas de inicio y fin de bloque.
+	 */
+	TEXTO,
+	/**
+	 * Un formato binario compacto y versionado, que guarda el contenido de los
+	 * bloques sin codificar. Sus ficheros empiezan por
+	 * {@link PaqueteDAO#MAGIA_BINARIO}.
+	 */
+	BINARIO;
+}
@@ -0,0 +1,30 @@
+package esei.ssi.eperegrino.common;
+
+import java.io.IOException;
+
+/**
+ * Obtiene bajo demanda el contenido de un bloque cuyo contenido todavía no se ha
+ * leído o decodificado.
+ *
+ * @author Alejandro González García
+ */
+interface FuenteContenido {
+	/**
+	 * Lee y decodifica el contenido del bloque.
+	 *
+	 * @return El contenido del bloque.
+	 * @throws IOException Si ocurre un error de E/S, o el contenido está mal
+	 *                     formado.
+	 */
+	byte[] cargar() throws IOException;
+
+	/**
+	 * Indica si el bloque debe de conservar el contenido cargado, para no volver a
+	 * cargarlo la próxima vez que se pida.
+	 *
+	 * @return Verdadero si se debe de conservar, que es lo predeterminado.
+	 */
+	default boolean conservarContenido() {
+		return true;
+	}
+}
@@ -9,18 +9,34 @@ import java.util.Map;
 public final class JSONUtils {
     /**
      * Parsea una cadena en el formato JSON simplificado y devuelve los pares
-     * clave-valor en un Map<String,String>
+     * clave-valor en un Map<String,String>. Se recorre la cadena una sola vez,
+     * sin expresiones regulares ni cadenas intermedias: solo se crean las claves
+     * y valores resultantes
      */
     public static Map<String, String> json2map(String json) {
-        Map<String, String> resultado = new HashMap<String, String>();
-        int inicio = json.indexOf("{");
-        int fin = json.indexOf("}");
+        return json2map(json, new HashMap<String, String>());
+    }
+
+    /**
+     * Parsea un texto en el formato JSON simplificado, anadiendo sus pares
+     * clave-valor al Map indicado, que se devuelve. Solo se usan charAt para
+     * buscar los caracteres del formato, que son ASCII, y subSequence y toString
+     * para obtener las claves y valores, asi que el texto puede ser una vista de
+     * otra representacion, como los bytes UTF-8 de CodificadorCargaUtil
+     */
+    static <M extends Map<String, String>> M json2map(CharSequence json, M resultado) {
+        int inicio = buscar(json, '{', 0, json.length());
+        int fin = buscar(json, '}', 0, json.length());
         if ((inicio != -1) && (fin != -1) && (inicio < fin)) {
-            String contenido = json.substring((inicio + 1), fin).trim();
-            String[] entradas = contenido.split("\\s*,\\s*"); // Separar por ","
-            for (String entrada : entradas) {
-                String[] par = entrada.trim().split("\\s*:\\s*", 2); // Separar por ";"
-                resultado.put(par[0].replace("\"", ""), par[1].replace("\"", ""));
+            int inicioEntrada = inicio + 1;
+            while (inicioEntrada <= fin) {
+                // Cada entrada termina en el siguiente "," o en el final del contenido
+                int finEntrada = buscar(json, ',', inicioEntrada, fin);
+                if (finEntrada == -1) {
+                    finEntrada = fin;
+                }
+                anadirEntrada(resultado, json, inicioEntrada, finEntrada);
+                inicioEntrada = finEntrada + 1;
             }
         }
         return resultado;
@@ -32,7 +48,7 @@ public final class JSONUtils {
      * "especiales" presentes en claves y valores
      */
     public static String map2json(Map<String, String> datos) {
-        StringBuilder resultado = new StringBuilder();
+        StringBuilder resultado = new StringBuilder(datos != null ? 2 + datos.size() * 32 : 2);
         resultado.append('{');
         if (datos != null) {
             for (Map.Entry<String, String> entrada : datos.entrySet()) {
@@ -40,11 +56,11 @@ public final class JSONUtils {
                     resultado.append(',');
                 }
                 resultado.append('\"');
-                resultado.append(limpiarCadena(entrada.getKey()));
+                anadirCadenaLimpia(resultado, entrada.getKey());
                 resultado.append('\"');
                 resultado.append(':');
                 resultado.append('\"');
-                resultado.append(limpiarCadena(entrada.getValue()));
+                anadirCadenaLimpia(resultado, entrada.getValue());
                 resultado.append('\"');
             }
         }
@@ -53,10 +69,127 @@ public final class JSONUtils {
     }
 
     /**
-     * TRAMPA: Elimina caracteres del formato JSON simplificado ('{' '}' ',' ':'
-     * '"') para facilitar el parseo
+     * Indica si el caracter es uno de los del formato JSON simplificado, que se
+     * omiten de claves y valores al escribirlos
+     */
+    static boolean esCaracterEspecial(char c) {
+        switch (c) {
+            case '{':
+            case '}':
+            case ':':
+            case ',':
+            case '\"':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Anade al Map el par clave-valor de la entrada comprendida entre las
+     * posiciones indicadas del texto, separado por el primer ":". Se ignoran
+     * los espacios alrededor de la clave y el valor, las comillas, y las entradas
+     * vacias
+     */
+    private static void anadirEntrada(Map<String, String> resultado, CharSequence json, int inicio, int fin) {
+        inicio = saltarEspacios(json, inicio, fin);
+        fin = retrocederEspacios(json, inicio, fin);
+        if (inicio == fin) {
+            return;
+        }
+
+        int separador = buscar(json, ':', inicio, fin);
+        if (separador == -1) {
+            throw new IllegalArgumentException("Entrada sin separador \":\" en la posicion " + inicio + " del texto JSON");
+        }
+
+        String clave = extraerCadena(json, inicio, retrocederEspacios(json, inicio, separador));
+        String valor = extraerCadena(json, saltarEspacios(json, separador + 1, fin), fin);
+        resultado.put(clave, valor);
+    }
+
+    /**
+     * Devuelve la primera posicion del intervalo con el caracter indicado, o -1
+     * si no aparece
+     */
+    private static int buscar(CharSequence texto, char c, int inicio, int fin) {
+        for (int i = inicio; i < fin; i++) {
+            if (texto.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Devuelve la primera posicion del intervalo que no es un espacio en blanco
+     */
+    private static int saltarEspacios(CharSequence texto, int inicio, int fin) {
+        while ((inicio < fin) && esEspacio(texto.charAt(inicio))) {
+            inicio++;
+        }
+        return inicio;
+    }
+
+    /**
+     * Devuelve la posicion siguiente al ultimo caracter del intervalo que no es
+     * un espacio en blanco
+     */
+    private static int retrocederEspacios(CharSequence texto, int inicio, int fin) {
+        while ((fin > inicio) && esEspacio(texto.charAt(fin - 1))) {
+            fin--;
+        }
+        return fin;
+    }
+
+    /**
+     * Indica si el caracter es un espacio en blanco. Solo se consideran los
+     * ASCII, que son los unicos que se pueden reconocer sin decodificar el texto
+     */
+    private static boolean esEspacio(char c) {
+        return (c < 0x80) && Character.isWhitespace(c);
+    }
+
+    /**
+     * Extrae el intervalo indicado del texto, sin comillas. En el caso
+     * habitual, una cadena entre comillas, solo se crea la subcadena resultante
+     */
+    private static String extraerCadena(CharSequence texto, int inicio, int fin) {
+        if ((fin - inicio >= 2) && (texto.charAt(inicio) == '\"') && (texto.charAt(fin - 1) == '\"')) {
+            inicio++;
+            fin--;
+        }
+
+        int comilla = buscar(texto, '\"', inicio, fin);
+        if (comilla == -1) {
+            return texto.subSequence(inicio, fin).toString();
+        }
+
+        // Unir los tramos entre comillas, obteniendo cada uno con toString
+        StringBuilder resultado = new StringBuilder(fin - inicio);
+        int inicioTramo = inicio;
+        while (comilla != -1) {
+            resultado.append(texto.subSequence(inicioTramo, comilla).toString());
+            inicioTramo = comilla + 1;
+            comilla = buscar(texto, '\"', inicioTramo, fin);
+        }
+        resultado.append(texto.subSequence(inicioTramo, fin).toString());
+        return resultado.toString();
+    }
+
+    /**
+     * TRAMPA: Anade la cadena omitiendo los caracteres del formato JSON
+     * simplificado ('{' '}' ',' ':' '"') para facilitar el parseo
      */
-    private static String limpiarCadena(String cadena) {
-        return cadena.replaceAll("\\{|\\}|:|,|\\\"", "");
+    private static void anadirCadenaLimpia(StringBuilder resultado, String cadena) {
+        int inicioTramo = 0;
+        for (int i = 0; i < cadena.length(); i++) {
+            if (esCaracterEspecial(cadena.charAt(i))) {
+                // Copiar de una vez el tramo anterior, sin el caracter especial
+                resultado.append(cadena, inicioTramo, i);
+                inicioTramo = i + 1;
+            }
+        }
+        resultado.append(cadena, inicioTramo, cadena.length());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,142 @@
+package esei.ssi.eperegrino.common;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Divide en líneas una secuencia de bytes, sin decodificarlos a caracteres. Las
+ * líneas se exponen como un rango de posiciones del almacenamiento del lector,
+ * que solo es válido hasta la siguiente llamada a {@link #siguienteLinea()}.
+ * Las implementaciones reconocen los mismos terminadores de línea que
+ * {@link java.io.BufferedReader#readLine()}: '\n', '\r' y "\r\n".
+ *
+ * @author Alejandro González García
+ */
+abstract class LectorLineas {
+	/**
+	 * La posición del primer byte de la línea actual.
+	 */
+	protected int inicioLinea = 0;
+	/**
+	 * La posición siguiente al último byte de la línea actual, excluyendo su
+	 * terminador.
+	 */
+	protected int finLinea = 0;
+
+	/**
+	 * Avanza hasta la siguiente línea.
+	 *
+	 * @return Verdadero si se ha leído una línea, falso si se ha llegado al final.
+	 * @throws IOException Si ocurre un error de E/S durante la lectura.
+	 */
+	abstract boolean siguienteLinea() throws IOException;
+
+	/**
+	 * Obtiene el byte en una posición del almacenamiento del lector. La posición
+	 * debe de pertenecer a la línea actual.
+	 *
+	 * @param posicion La posición del byte.
+	 * @return El descrito byte.
+	 */
+	abstract byte getByte(int posicion);
+
+	/**
+	 * Decodifica un fragmento de la línea actual como texto.
+	 *
+	 * @param desde        La posición del primer byte del fragmento.
+	 * @param hasta        La posición siguiente al último byte del fragmento.
+	 * @param codificacion La codificación de caracteres a usar.
+	 * @return El fragmento decodificado.
+	 */
+	abstract String getTexto(int desde, int hasta, Charset codificacion);
+
+	/**
+	 * Obtiene la posición en la secuencia de bytes completa del primer byte de la
+	 * línea actual.
+	 *
+	 * @return La descrita posición.
+	 */
+	abstract long getPosicionLinea();
+
+	/**
+	 * Obtiene la posición en la secuencia de bytes completa siguiente al
+	 * terminador de la línea actual. Si el terminador es "\r\n", la posición
+	 * puede ser la del '\n'.
+	 *
+	 * @return La descrita posición.
+	 */
+	abstract long getPosicionSiguienteLinea();
+
+	/**
+	 * Obtiene la posición del primer byte de la línea actual.
+	 *
+	 * @return La descrita posición.
+	 */
+	final int getInicioLinea() {
+		return inicioLinea;
+	}
+
+	/**
+	 * Obtiene la posición siguiente al último byte de la línea actual,
+	 * excluyendo su terminador.
+	 *
+	 * @return La descrita posición.
+	 */
+	final int getFinLinea() {
+		return finLinea;
+	}
+
+	/**
+	 * Comprueba si la línea actual empieza por los bytes especificados.
+	 *
+	 * @param prefijo Los bytes a comprobar.
+	 * @return Verdadero si la línea empieza por esos bytes, falso en otro caso.
+	 */
+	final boolean empiezaPor(final byte[] prefijo) {
+		return finLinea - inicioLinea >= prefijo.length && contieneEn(inicioLinea, prefijo);
+	}
+
+	/**
+	 * Comprueba si la línea actual consiste exactamente en los bytes
+	 * especificados.
+	 *
+	 * @param texto Los bytes a comprobar.
+	 * @return Verdadero si la línea es igual a esos bytes, falso en otro caso.
+	 */
+	final boolean esIgualA(final byte[] texto) {
+		return finLinea - inicioLinea == texto.length && contieneEn(inicioLinea, texto);
+	}
+
+	/**
+	 * Busca la última aparición de unos bytes en la línea actual, a partir de una
+	 * posición.
+	 *
+	 * @param texto Los bytes a buscar.
+	 * @param desde La posición a partir de la que buscar.
+	 * @return La posición del primer byte de la última aparición, o -1 si no
+	 *         aparecen.
+	 */
+	final int buscarUltima(final byte[] texto, final int desde) {
+		for (int i = finLinea - texto.length; i >= desde; --i) {
+			if (contieneEn(i, texto)) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Comprueba si los bytes especificados están en una posición de la línea
+	 * actual. Se asume que caben en ella.
+	 */
+	private boolean contieneEn(final int posicion, final byte[] texto) {
+		for (int i = 0; i < texto.length; ++i) {
+			if (getByte(posicion + i) != texto[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
@@ -0,0 +1,86 @@
+package esei.ssi.eperegrino.common;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Divide en líneas los bytes de un búfer, típicamente un fichero proyectado en
+ * memoria, leyéndolos directamente de él sin copiarlos. Las posiciones de las
+ * líneas son posiciones absolutas del búfer.
+ *
+ * @author Alejandro González García
+ */
+final class LectorLineasBuffer extends LectorLineas {
+	private final ByteBuffer bufer;
+	/**
+	 * La posición del primer byte del búfer todavía no consumido.
+	 */
+	private int posicion;
+	private final int limite;
+
+	/**
+	 * Crea un lector de líneas sobre los bytes restantes de un búfer. No se
+	 * modifican la posición ni el límite del búfer.
+	 *
+	 * @param bufer El búfer del que leer. Se asume que no es nulo.
+	 */
+	LectorLineasBuffer(final ByteBuffer bufer) {
+		this.bufer = bufer;
+		this.posicion = bufer.position();
+		this.limite = bufer.limit();
+	}
+
+	@Override
+	boolean siguienteLinea() {
+		if (posicion >= limite) {
+			return false;
+		}
+
+		int i = posicion;
+		while (i < limite && bufer.get(i) != '\n' && bufer.get(i) != '\r') {
+			++i;
+		}
+
+		inicioLinea = posicion;
+		finLinea = i;
+
+		if (i < limite) {
+			posicion = i + 1;
+			if (bufer.get(i) == '\r' && posicion < limite && bufer.get(posicion) == '\n') {
+				++posicion;
+			}
+		} else {
+			posicion = limite;
+		}
+
+		return true;
+	}
+
+	@Override
+	byte getByte(final int indice) {
+		return bufer.get(indice);
+	}
+
+	@Override
+	String getTexto(final int desde, final int hasta, final Charset codificacion) {
+		final byte[] texto = new byte[hasta - desde];
+		final ByteBuffer fragmento = bufer.duplicate();
+
+		// Mediante Buffer, pues ByteBuffer.position(int) no existe en Java 8
+		((Buffer) fragmento).position(desde);
+		fragmento.get(texto);
+
+		return new String(texto, codificacion);
+	}
+
+	@Override
+	long getPosicionLinea() {
+		return inicioLinea;
+	}
+
+	@Override
+	long getPosicionSiguienteLinea() {
+		return posicion;
+	}
+}
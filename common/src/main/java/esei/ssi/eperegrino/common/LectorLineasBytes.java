@@ -0,0 +1,155 @@
+package esei.ssi.eperegrino.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Divide en líneas un flujo de bytes. Las líneas se exponen como un rango del
+ * búfer interno del lector, que se va rellenando a medida que se lee del flujo.
+ *
+ * @author Alejandro González García
+ */
+final class LectorLineasBytes extends LectorLineas {
+	/**
+	 * El tamaño inicial del búfer de lectura. Crecerá si alguna línea no cabe en
+	 * él.
+	 */
+	private static final int TAMANO_BUFER_INICIAL = 8192;
+
+	private final InputStream entrada;
+	private byte[] bufer = new byte[TAMANO_BUFER_INICIAL];
+	/**
+	 * La posición del primer byte del búfer todavía no consumido.
+	 */
+	private int posicion = 0;
+	/**
+	 * La posición siguiente al último byte válido del búfer.
+	 */
+	private int limite = 0;
+	/**
+	 * La posición en el flujo del primer byte del búfer.
+	 */
+	private long desplazamiento = 0;
+	/**
+	 * Verdadero si la última línea terminó en '\r', y por tanto un '\n' a
+	 * continuación forma parte del mismo terminador.
+	 */
+	private boolean saltarSaltoLinea = false;
+	private boolean finFlujo = false;
+
+	/**
+	 * Crea un lector de líneas sobre un flujo de entrada.
+	 *
+	 * @param entrada El flujo de entrada del que leer. Se asume que no es nulo.
+	 */
+	LectorLineasBytes(final InputStream entrada) {
+		this.entrada = entrada;
+	}
+
+	@Override
+	boolean siguienteLinea() throws IOException {
+		int explorados = 0;
+
+		while (true) {
+			if (saltarSaltoLinea) {
+				if (posicion < limite) {
+					if (bufer[posicion] == '\n') {
+						++posicion;
+					}
+					saltarSaltoLinea = false;
+				} else if (!rellenar()) {
+					saltarSaltoLinea = false;
+				}
+				continue;
+			}
+
+			for (int i = posicion + explorados; i < limite; ++i) {
+				final byte b = bufer[i];
+				if (b == '\n' || b == '\r') {
+					inicioLinea = posicion;
+					finLinea = i;
+					posicion = i + 1;
+					saltarSaltoLinea = b == '\r';
+					return true;
+				}
+			}
+			explorados = limite - posicion;
+
+			if (!rellenar()) {
+				// La última línea puede no tener terminador
+				if (explorados > 0) {
+					inicioLinea = posicion;
+					finLinea = limite;
+					posicion = limite;
+					return true;
+				}
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Obtiene el búfer que contiene la línea actual.
+	 *
+	 * @return El descrito búfer. No debe de modificarse.
+	 */
+	byte[] getBufer() {
+		return bufer;
+	}
+
+	@Override
+	byte getByte(final int indice) {
+		return bufer[indice];
+	}
+
+	@Override
+	long getPosicionLinea() {
+		return desplazamiento + inicioLinea;
+	}
+
+	@Override
+	long getPosicionSiguienteLinea() {
+		return desplazamiento + posicion;
+	}
+
+	@Override
+	String getTexto(final int desde, final int hasta, final Charset codificacion) {
+		return new String(bufer, desde, hasta - desde, codificacion);
+	}
+
+	/**
+	 * Lee más datos del flujo de entrada al búfer, moviendo antes los datos no
+	 * consumidos a su inicio y agrandándolo si no queda espacio libre.
+	 *
+	 * @return Verdadero si se ha podido intentar leer más datos, falso si ya se
+	 *         llegó al final del flujo.
+	 * @throws IOException Si ocurre un error de E/S durante la lectura.
+	 */
+	private boolean rellenar() throws IOException {
+		if (finFlujo) {
+			return false;
+		}
+
+		if (posicion > 0) {
+			System.arraycopy(bufer, posicion, bufer, 0, limite - posicion);
+			desplazamiento += posicion;
+			limite -= posicion;
+			posicion = 0;
+		}
+
+		if (limite == bufer.length) {
+			bufer = Arrays.copyOf(bufer, bufer.length * 2);
+		}
+
+		final int leidos = entrada.read(bufer, limite, bufer.length - limite);
+		if (leidos < 0) {
+			finFlujo = true;
+			return false;
+		}
+		limite += leidos;
+
+		return true;
+	}
+}
@@ -0,0 +1,205 @@
+package esei.ssi.eperegrino.common;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lee registros de pares clave-valor de un texto, uno por línea, para procesar
+ * varios registros en lote. Se admiten dos formatos, que se distinguen por la
+ * primera línea no vacía del texto:
+ * <ul>
+ * <li>Líneas JSON: cada línea es un objeto en el formato JSON simplificado que
+ * entiende {@link JSONUtils#json2map(String)}.</li>
+ * <li>CSV: la primera línea contiene los nombres de los campos, separados por
+ * comas, y cada línea siguiente los valores de un registro. Los campos pueden
+ * ir entre comillas dobles para contener comas, y dos comillas dobles seguidas
+ * dentro de un campo entre comillas representan una comilla doble.</li>
+ * </ul>
+ * Las líneas vacías se ignoran.
+ *
+ * @author Alejandro González García
+ */
+public final class LectorRegistros {
+	private static final char SEPARADOR_CSV = ',';
+	private static final char COMILLAS_CSV = '"';
+
+	private final BufferedReader entrada;
+	/**
+	 * Los nombres de los campos de un texto CSV, o nulo si todavía no se sabe el
+	 * formato del texto o es de líneas JSON.
+	 */
+	private String[] camposCsv = null;
+	private boolean formatoDetectado = false;
+	private int numeroLinea = 0;
+
+	/**
+	 * Crea un lector de registros sobre un texto.
+	 *
+	 * @param entrada El lector del que obtener el texto.
+	 * @throws IllegalArgumentException Si la entrada es nula.
+	 */
+	public LectorRegistros(final BufferedReader entrada) {
+		if (entrada == null) {
+			throw new IllegalArgumentException("La entrada de los registros no puede ser nula");
+		}
+
+		this.entrada = entrada;
+	}
+
+	/**
+	 * Lee el siguiente registro del texto. Si el registro está mal formado, se
+	 * lanza una excepción, pero el lector queda listo para leer el registro
+	 * siguiente.
+	 *
+	 * @return Los pares clave-valor del registro leído, o nulo si no quedan más
+	 *         registros.
+	 * @throws IOException              Si ocurre un error de E/S durante la
+	 *                                  lectura.
+	 * @throws IllegalArgumentException Si el registro leído está mal formado. El
+	 *                                  mensaje de la excepción indica su línea.
+	 */
+	public Map<String, String> siguienteRegistro() throws IOException {
+		String linea;
+
+		do {
+			linea = entrada.readLine();
+			if (linea == null) {
+				return null;
+			}
+			++numeroLinea;
+		} while (linea.trim().isEmpty());
+
+		if (!formatoDetectado) {
+			if (!linea.trim().startsWith("{")) {
+				camposCsv = dividirLineaCsv(linea).toArray(new String[0]);
+				formatoDetectado = true;
+				return siguienteRegistro();
+			}
+
+			formatoDetectado = true;
+		}
+
+		return camposCsv == null ? interpretarLineaJson(linea) : interpretarLineaCsv(linea);
+	}
+
+	/**
+	 * Obtiene el número de la última línea leída, empezando por 1.
+	 *
+	 * @return El descrito número, o 0 si no se ha leído ninguna línea.
+	 */
+	public int getNumeroLinea() {
+		return numeroLinea;
+	}
+
+	/**
+	 * Interpreta una línea de texto en el formato JSON simplificado.
+	 *
+	 * @param linea La línea a interpretar.
+	 * @return Los pares clave-valor de la línea.
+	 * @throws IllegalArgumentException Si la línea no contiene pares clave-valor.
+	 */
+	private Map<String, String> interpretarLineaJson(final String linea) {
+		final Map<String, String> registro;
+
+		try {
+			registro = JSONUtils.json2map(linea);
+		} catch (final RuntimeException exc) {
+			throw new IllegalArgumentException("La línea " + numeroLinea + " no es un objeto JSON válido", exc);
+		}
+
+		if (registro.isEmpty()) {
+			throw new IllegalArgumentException("La línea " + numeroLinea + " no es un objeto JSON válido");
+		}
+
+		return registro;
+	}
+
+	/**
+	 * Interpreta una línea de valores CSV, asociando cada valor al nombre de su
+	 * campo.
+	 *
+	 * @param linea La línea a interpretar.
+	 * @return Los pares clave-valor de la línea.
+	 * @throws IllegalArgumentException Si la línea no contiene tantos valores como
+	 *                                  campos, o está mal formada.
+	 */
+	private Map<String, String> interpretarLineaCsv(final String linea) {
+		final List<String> valores = dividirLineaCsv(linea);
+		final Map<String, String> registro;
+
+		if (valores.size() != camposCsv.length) {
+			throw new IllegalArgumentException(
+				"La línea " + numeroLinea + " tiene " + valores.size() + " valores, pero se esperaban " + camposCsv.length
+			);
+		}
+
+		registro = new HashMap<>();
+		for (int i = 0; i < camposCsv.length; ++i) {
+			registro.put(camposCsv[i], valores.get(i));
+		}
+
+		return registro;
+	}
+
+	/**
+	 * Divide una línea CSV en sus campos, eliminando las comillas que los
+	 * delimiten.
+	 *
+	 * @param linea La línea a dividir.
+	 * @return Los campos de la línea.
+	 * @throws IllegalArgumentException Si algún campo entre comillas no está
+	 *                                  cerrado, o va seguido de algo distinto de
+	 *                                  un separador.
+	 */
+	private List<String> dividirLineaCsv(final String linea) {
+		final List<String> campos = new ArrayList<>();
+		final StringBuilder campo = new StringBuilder();
+		int i = 0;
+
+		while (true) {
+			campo.setLength(0);
+
+			if (i < linea.length() && linea.charAt(i) == COMILLAS_CSV) {
+				// Campo entre comillas
+				++i;
+				while (true) {
+					if (i >= linea.length()) {
+						throw new IllegalArgumentException("La línea " + numeroLinea + " tiene un campo entre comillas sin cerrar");
+					}
+
+					final char c = linea.charAt(i++);
+					if (c != COMILLAS_CSV) {
+						campo.append(c);
+					} else if (i < linea.length() && linea.charAt(i) == COMILLAS_CSV) {
+						campo.append(COMILLAS_CSV);
+						++i;
+					} else {
+						break;
+					}
+				}
+
+				if (i < linea.length() && linea.charAt(i) != SEPARADOR_CSV) {
+					throw new IllegalArgumentException("La línea " + numeroLinea + " tiene texto tras un campo entre comillas");
+				}
+
+				campos.add(campo.toString());
+			} else {
+				// Campo sin comillas
+				while (i < linea.length() && linea.charAt(i) != SEPARADOR_CSV) {
+					campo.append(linea.charAt(i++));
+				}
+
+				campos.add(campo.toString().trim());
+			}
+
+			if (i >= linea.length()) {
+				return campos;
+			}
+			++i; // Saltar el separador
+		}
+	}
+}
@@ -1,5 +1,8 @@
 package esei.ssi.eperegrino.common;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Contiene los nombres de bloques generados por este sistema, que otras partes
  * del sistema esperarán encontrar en los paquetes.
@@ -10,12 +13,56 @@ public final class NombresBloques {
 	public static final String TITULO_BLOQUE_DATOS_PEREGRINO = "DATOS PEREGRINO";
 	public static final String TITULO_BLOQUE_CLAVE_DATOS_PEREGRINO = "CLAVE DATOS PEREGRINO";
 	public static final String TITULO_BLOQUE_RESUMEN_DATOS_PEREGRINO_ENCRIPTADOS = "RESUMEN DATOS PEREGRINO ENCRIPTADOS";
+	public static final String TITULO_BLOQUE_SUITE_DATOS_PEREGRINO = "SUITE DATOS PEREGRINO";
 
 	public static final String TITULO_BLOQUE_DATOS_SELLO_ALBERGUE = "DATOS SELLO ALBERGUE {ID}";
 	public static final String TITULO_BLOQUE_CLAVE_SELLO_ALBERGUE = "CLAVE DATOS SELLO ALBERGUE {ID}";
 	public static final String TITULO_BLOQUE_RESUMEN_SELLO_ALBERGUE_ENCRIPTADO = "RESUMEN DATOS SELLO ALBERGUE {ID}";
+	public static final String TITULO_BLOQUE_SUITE_SELLO_ALBERGUE = "SUITE SELLO ALBERGUE {ID}";
+
+	/**
+	 * El comienzo del nombre, ya normalizado por {@link Paquete}, de los bloques
+	 * con los datos del sello de un albergue. Le sigue el identificador del
+	 * albergue.
+	 */
+	private static final String PREFIJO_BLOQUE_DATOS_SELLO_ALBERGUE = Paquete.normalizarNombre(
+		TITULO_BLOQUE_DATOS_SELLO_ALBERGUE.replace("{ID}", "")
+	) + "_";
 
 	private NombresBloques() {
 		// No permitir instanciar esta clase
 	}
+
+	/**
+	 * Normaliza un identificador de albergue de la misma manera que
+	 * {@link Paquete} normaliza los nombres de sus bloques. Dos identificadores
+	 * con la misma forma normalizada se refieren a los mismos bloques.
+	 *
+	 * @param id El identificador a normalizar.
+	 * @return El identificador normalizado.
+	 */
+	public static String normalizarIdentificadorAlbergue(final String id) {
+		return Paquete.normalizarNombre(id);
+	}
+
+	/**
+	 * Obtiene los identificadores de los albergues que han sellado una CPV, a
+	 * partir de los nombres de los bloques con los datos de sus sellos, sin leer
+	 * el contenido de ningún bloque. Los identificadores se obtienen normalizados,
+	 * como los devolvería {@link #normalizarIdentificadorAlbergue(String)}.
+	 *
+	 * @param cpv El paquete con los datos de la CPV.
+	 * @return Los identificadores de los albergues, ordenados alfabéticamente.
+	 */
+	public static List<String> getIdentificadoresAlbergues(final Paquete cpv) {
+		final List<String> ids = new ArrayList<>();
+
+		for (final String nombreBloque : cpv.getNombresBloque()) {
+			if (nombreBloque.startsWith(PREFIJO_BLOQUE_DATOS_SELLO_ALBERGUE) && nombreBloque.length() > PREFIJO_BLOQUE_DATOS_SELLO_ALBERGUE.length()) {
+				ids.add(nombreBloque.substring(PREFIJO_BLOQUE_DATOS_SELLO_ALBERGUE.length()));
+			}
+		}
+
+		return ids;
+	}
 }
@@ -11,6 +11,11 @@ import java.util.Map;
  */
 public final class Paquete {
     private Map<String, Bloque> bloques;
+    /**
+     * La tabla compacta de la que se leen los bloques mientras no se modifique
+     * el paquete, o nulo si los bloques están en el mapa.
+     */
+    private TablaBloques tabla;
 
     public Paquete() {
         this.bloques = new HashMap<String, Bloque>();
@@ -20,6 +25,14 @@ public final class Paquete {
         this.bloques = bloques;
     }
 
+    /**
+     * Crea un paquete que lee sus bloques de una tabla compacta. Si se modifica,
+     * los bloques de la tabla se pasan a objetos de bloque.
+     */
+    Paquete(TablaBloques tabla) {
+        this.tabla = tabla;
+    }
+
     private Bloque getBloque(String nombreBloque) {
         Bloque result = null;
         if (this.bloques != null) {
@@ -30,6 +43,9 @@ public final class Paquete {
     }
 
     public byte[] getContenidoBloque(String nombreBloque) {
+        if (this.tabla != null) {
+            return this.tabla.getContenido(normalizarNombre(nombreBloque));
+        }
         Bloque bloque = getBloque(nombreBloque);
         if (bloque != null) {
             return bloque.getContenido();
@@ -38,7 +54,7 @@ public final class Paquete {
         }
     }
 
-    private void anadirBloque(Bloque bloque) {
+    void anadirBloque(Bloque bloque) {
         this.anadirBloque(bloque.getNombre(), bloque);
     }
 
@@ -47,6 +63,7 @@ public final class Paquete {
     }
 
     private void anadirBloque(String nombreBloque, Bloque bloque) {
+        materializar();
         if (this.bloques == null) {
             this.bloques = new HashMap<String, Bloque>();
         }
@@ -56,6 +73,7 @@ public final class Paquete {
 
     public void actualizarBloque(String nombre, byte[] contenido) {
         Bloque bloque = new Bloque(nombre, contenido);
+        materializar();
         if (this.bloques != null && this.bloques.containsKey(bloque.getNombre())) {
             this.bloques.replace(bloque.getNombre(), bloque);
         } else {
@@ -64,6 +82,7 @@ public final class Paquete {
     }
 
     public void eliminarBloque(String nombreBloque) {
+        materializar();
         if (this.bloques != null) {
             if (this.bloques.containsKey(nombreBloque)) {
                 this.bloques.remove(nombreBloque);
@@ -72,13 +91,27 @@ public final class Paquete {
     }
 
     public List<String> getNombresBloque() {
+        if (this.tabla != null) {
+            return this.tabla.getNombres();
+        }
         List<String> result = new ArrayList<String>(this.bloques.keySet());
 
         Collections.sort(result);
         return result;
     }
 
-    private String normalizarNombre(String nombreBloque) {
+    /**
+     * Pasa los bloques de la tabla compacta, si la hay, a objetos de bloque que
+     * se pueden modificar.
+     */
+    private void materializar() {
+        if (this.tabla != null) {
+            this.bloques = this.tabla.getBloques();
+            this.tabla = null;
+        }
+    }
+
+    static String normalizarNombre(String nombreBloque) {
         String result = nombreBloque.trim().replaceAll(" ", "_").toUpperCase();
         return result;
     }
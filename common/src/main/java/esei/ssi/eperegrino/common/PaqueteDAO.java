@@ -1,14 +1,29 @@
 package esei.ssi.eperegrino.common;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintStream;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.List;
 
 /**
  * @author ribadas
@@ -26,25 +41,344 @@ public final class PaqueteDAO {
 	public final static String FIN_BLOQUE_FORMATO = FIN_BLOQUE + " %s" + MARCA_CABECERA;
 	public final static int ANCHO_LINEA = 65;
 
+	/**
+	 * Los bytes con los que empieza un paquete en formato binario. El primero no
+	 * es ASCII, para que no se pueda confundir con un paquete en formato de texto.
+	 */
+	public final static byte[] MAGIA_BINARIO = { (byte) 0x89, 'C', 'P', 'V' };
+	/**
+	 * La versión del formato binario que escribe esta clase.
+	 */
+	public final static int VERSION_BINARIO = 1;
+
+	/**
+	 * La codificación de caracteres del texto de los paquetes.
+	 */
+	private final static Charset CODIFICACION = StandardCharsets.UTF_8;
+	private final static byte[] MARCA_CABECERA_BYTES = MARCA_CABECERA.getBytes(StandardCharsets.US_ASCII);
+	private final static byte[] INICIO_PAQUETE_BYTES = INICIO_PAQUETE.getBytes(StandardCharsets.US_ASCII);
+	private final static byte[] FIN_PAQUETE_BYTES = FIN_PAQUETE.getBytes(StandardCharsets.US_ASCII);
+	private final static byte[] INICIO_BLOQUE_BYTES = INICIO_BLOQUE.getBytes(StandardCharsets.US_ASCII);
+	private final static byte[] FIN_BLOQUE_BYTES = FIN_BLOQUE.getBytes(StandardCharsets.US_ASCII);
+	/**
+	 * La posición en un paquete binario del número de bloques que contiene,
+	 * justo después de la marca y la versión.
+	 */
+	private final static int POSICION_NUMERO_BLOQUES_BINARIO = MAGIA_BINARIO.length + 1;
+	/**
+	 * El número de bytes que se reservan de una vez al leer de un flujo un bloque
+	 * de un paquete binario, antes de comprobar que el flujo contiene tantos.
+	 */
+	private final static int TAMANO_RESERVA_LECTURA = 64 * 1024;
+
+	/**
+	 * Lee un paquete de un flujo de entrada, detectando automáticamente su
+	 * formato.
+	 *
+	 * @param entrada El flujo del que leer el paquete.
+	 * @return El paquete leído. Si el flujo está en formato de texto y no contiene
+	 *         el inicio de un paquete, el paquete estará vacío.
+	 * @throws IOException Si ocurre un error de E/S, o el paquete está mal
+	 *                     formado.
+	 */
 	public static Paquete leerPaquete(InputStream entrada) throws IOException {
-		Paquete result = null;
+		PushbackInputStream flujo = new PushbackInputStream(entrada, MAGIA_BINARIO.length);
+
+		if (detectarFormato(flujo) == FormatoPaquete.BINARIO) {
+			return leerPaqueteBinario(flujo);
+		} else {
+			return leerPaqueteTexto(flujo);
+		}
+	}
 
-		BufferedReader in = new BufferedReader(new InputStreamReader(entrada));
-		String linea = in.readLine();
+	/**
+	 * Lee un paquete guardado en un fichero, detectando automáticamente su
+	 * formato. El fichero se proyecta en memoria, y tanto la búsqueda de las
+	 * marcas como la decodificación del contenido de los bloques se hacen
+	 * directamente sobre la proyección, sin pasar por flujos ni decodificar los
+	 * bytes a caracteres. El resultado es el mismo que el de
+	 * {@link #leerPaquete(InputStream)}.
+	 *
+	 * @param fichero El fichero del que leer el paquete.
+	 * @return El paquete leído. Si el fichero está en formato de texto y no
+	 *         contiene el inicio de un paquete, el paquete estará vacío.
+	 * @throws IOException Si ocurre un error de E/S, o el paquete está mal
+	 *                     formado.
+	 */
+	public static Paquete leerPaquete(Path fichero) throws IOException {
+		return leerPaquete(new OrigenBuffer(proyectarFichero(fichero)), false);
+	}
 
-		result = new Paquete();
+	/**
+	 * Lee un paquete guardado en un fichero, proyectándolo en memoria, sin
+	 * decodificar el contenido de sus bloques. Cada bloque conserva el fragmento
+	 * de la proyección que le corresponde, y lo decodifica la primera vez que se
+	 * pide su contenido. Así, consultar solamente los nombres de los bloques con
+	 * {@link Paquete#getNombresBloque()} no requiere decodificar nada.
+	 * <p>
+	 * Los bloques mantienen la proyección del fichero en memoria mientras no se
+	 * haya pedido su contenido, aunque no es necesario mantener el fichero
+	 * abierto. Si el contenido de un bloque está mal formado, se lanzará una
+	 * {@link java.io.UncheckedIOException} al pedirlo.
+	 *
+	 * @param fichero El fichero del que leer el paquete.
+	 * @return El paquete leído. Si el fichero está en formato de texto y no
+	 *         contiene el inicio de un paquete, el paquete estará vacío.
+	 * @throws IOException Si ocurre un error de E/S, o la estructura del paquete
+	 *                     está mal formada.
+	 */
+	public static Paquete leerPaquetePerezoso(Path fichero) throws IOException {
+		return leerPaquete(new OrigenBuffer(proyectarFichero(fichero)), true);
+	}
 
-		// Modificado por Alejandro para evitar lanzar NullPointerException
-		// si el paquete no contiene INICIO_PAQUETE
-		while (linea != null && !linea.equals(INICIO_PAQUETE)) {
-			linea = in.readLine();
+	/**
+	 * Lee un paquete guardado en un fichero, guardando el contenido de sus
+	 * bloques en una arena fuera del montículo. Los bloques se decodifican uno a
+	 * uno, como en {@link #leerPaquetePerezoso(Path)}, y se copian a la arena, de
+	 * manera que el paquete leído no ocupa memoria del montículo por su contenido.
+	 *
+	 * @param fichero El fichero del que leer el paquete.
+	 * @param arena   La arena donde guardar el contenido de los bloques.
+	 * @return El paquete leído. Si el fichero está en formato de texto y no
+	 *         contiene el inicio de un paquete, el paquete estará vacío.
+	 * @throws IOException Si ocurre un error de E/S, o el paquete está mal
+	 *                     formado.
+	 * @throws IllegalStateException Si la arena está cerrada.
+	 */
+	public static Paquete leerPaquete(Path fichero, ArenaBloques arena) throws IOException {
+		try {
+			return arena.almacenar(leerPaquetePerezoso(fichero));
+		} catch (final UncheckedIOException exc) {
+			throw exc.getCause();
+		}
+	}
+
+	/**
+	 * Lee un paquete contenido en un búfer, sin decodificar el contenido de sus
+	 * bloques hasta que se pida, de la misma manera que
+	 * {@link #leerPaquetePerezoso(Path)}. Los bloques conservan referencias al
+	 * búfer, por lo que no debe de modificarse mientras se usa el paquete.
+	 *
+	 * @param datos El búfer que contiene el paquete, desde su posición hasta su
+	 *              límite. No se modifican su posición ni su límite.
+	 * @return El paquete leído. Si el búfer está en formato de texto y no contiene
+	 *         el inicio de un paquete, el paquete estará vacío.
+	 * @throws IOException Si la estructura del paquete está mal formada.
+	 */
+	public static Paquete leerPaquetePerezoso(ByteBuffer datos) throws IOException {
+		return leerPaquete(new OrigenBuffer(datos), true);
+	}
+
+	private static MappedByteBuffer proyectarFichero(Path fichero) throws IOException {
+		try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ)) {
+			if (canal.size() > Integer.MAX_VALUE) {
+				throw new IOException("El fichero " + fichero + " es demasiado grande para proyectarlo en memoria");
+			}
+
+			// La proyección sigue siendo válida después de cerrar el canal
+			return canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+		}
+	}
+
+	/**
+	 * Lee un paquete guardado en un fichero o un búfer, en cualquiera de los
+	 * formatos. Es la única lectura de paquetes guardados: todas las demás,
+	 * salvo las de flujos, se basan en ella. Se recorre la estructura del paquete
+	 * para anotar dónde está el contenido de cada bloque, y ese contenido se
+	 * obtiene de su fragmento inmediatamente o la primera vez que se pida.
+	 *
+	 * @param origen   De dónde leer el paquete.
+	 * @param perezoso Verdadero para obtener el contenido de los bloques cuando
+	 *                 se pida, falso para obtenerlo ahora.
+	 * @return El paquete leído. Si está en formato de texto y no contiene el
+	 *         inicio de un paquete, el paquete estará vacío.
+	 * @throws IOException Si ocurre un error de E/S, o el paquete está mal
+	 *                     formado.
+	 */
+	private static Paquete leerPaquete(OrigenDatos origen, boolean perezoso) throws IOException {
+		Paquete result = new Paquete();
+
+		if (detectarFormato(origen) == FormatoPaquete.BINARIO) {
+			indexarPaqueteBinario(origen, result, perezoso);
+		} else {
+			indexarPaqueteTexto(origen, result, perezoso);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Escribe un paquete en el formato especificado.
+	 *
+	 * @param out     El flujo a donde escribir el paquete.
+	 * @param paquete El paquete a escribir.
+	 * @param formato El formato en el que escribirlo.
+	 * @throws IOException Si ocurre un error de E/S.
+	 */
+	public static void escribirPaquete(OutputStream out, Paquete paquete, FormatoPaquete formato) throws IOException {
+		if (formato == FormatoPaquete.BINARIO) {
+			escribirPaqueteBinario(out, paquete);
+		} else {
+			escribirPaquete(out, paquete);
+		}
+	}
+
+	/**
+	 * Convierte un paquete al formato especificado, detectando automáticamente
+	 * el formato en el que está.
+	 *
+	 * @param entrada El flujo del que leer el paquete a convertir.
+	 * @param salida  El flujo a donde escribir el paquete convertido.
+	 * @param formato El formato al que convertirlo.
+	 * @throws IOException Si ocurre un error de E/S, o el paquete está mal
+	 *                     formado.
+	 */
+	public static void convertirPaquete(InputStream entrada, OutputStream salida, FormatoPaquete formato) throws IOException {
+		escribirPaquete(salida, leerPaquete(entrada), formato);
+	}
+
+	/**
+	 * Lee un paquete guardado en un fichero, en cualquiera de los formatos, sin
+	 * leer ni decodificar el contenido de sus bloques. En su lugar, se recorre el
+	 * fichero una vez para anotar dónde empieza y cuánto ocupa cada bloque, y el
+	 * contenido de un bloque se lee del fichero y decodifica la primera vez que
+	 * se pide con {@link Paquete#getContenidoBloque(String)}. Así, quien solo
+	 * necesite algunos bloques de un paquete grande no paga por decodificar el
+	 * resto.
+	 * <p>
+	 * El canal debe de permanecer abierto mientras se pida el contenido de
+	 * bloques del paquete devuelto. Si ocurre un error al leer el contenido de un
+	 * bloque en ese momento, se lanzará una {@link java.io.UncheckedIOException}.
+	 *
+	 * @param canal El canal del fichero que contiene el paquete.
+	 * @return El paquete leído. Si el fichero está en formato de texto y no
+	 *         contiene el inicio de un paquete, el paquete estará vacío.
+	 * @throws IOException Si ocurre un error de E/S, o el paquete está mal
+	 *                     formado.
+	 */
+	public static Paquete leerPaqueteIndexado(FileChannel canal) throws IOException {
+		return leerPaquete(new OrigenFichero(canal), true);
+	}
+
+	/**
+	 * Recorre la estructura de un paquete en formato de texto, sin decodificar el
+	 * contenido de sus bloques.
+	 *
+	 * @param origen   De dónde leer el paquete.
+	 * @param result   El paquete al que añadir los bloques encontrados.
+	 * @param perezoso Verdadero para obtener el contenido de los bloques cuando
+	 *                 se pida, falso para obtenerlo ahora.
+	 * @return La posición de la marca de fin de paquete, o -1 si no contiene el
+	 *         inicio de un paquete.
+	 * @throws IOException Si ocurre un error de E/S, o el paquete está mal
+	 *                     formado.
+	 */
+	private static long indexarPaqueteTexto(OrigenDatos origen, Paquete result, boolean perezoso) throws IOException {
+		LectorLineas in = origen.lectorLineas();
+
+		if (!buscarInicioPaquete(in)) {
+			return -1;
+		}
+
+		String nombreBloque = avanzarHastaBloque(in);
+		while (nombreBloque != null) {
+			long inicioContenido = in.getPosicionSiguienteLinea();
+			saltarContenidoBloque(in);
+
+			anadirBloque(result, nombreBloque, new Fragmento(origen, inicioContenido, in.getPosicionLinea() - inicioContenido, true), perezoso);
+			nombreBloque = avanzarHastaBloque(in);
+		}
+
+		return in.getPosicionLinea();
+	}
+
+	/**
+	 * Recorre la estructura de un paquete en formato binario, sin leer el
+	 * contenido de sus bloques.
+	 *
+	 * @param origen   De dónde leer el paquete.
+	 * @param result   El paquete al que añadir los bloques encontrados.
+	 * @param perezoso Verdadero para obtener el contenido de los bloques cuando
+	 *                 se pida, falso para obtenerlo ahora.
+	 * @return La posición donde termina el último bloque.
+	 * @throws IOException Si ocurre un error de E/S, o el paquete está mal
+	 *                     formado.
+	 */
+	private static long indexarPaqueteBinario(OrigenDatos origen, Paquete result, boolean perezoso) throws IOException {
+		ByteBuffer cabecera = origen.ver(0, POSICION_NUMERO_BLOQUES_BINARIO + Integer.BYTES);
+		int version = cabecera.get(cabecera.position() + MAGIA_BINARIO.length) & 0xFF;
+		if (version != VERSION_BINARIO) {
+			throw new IOException("Versión de paquete binario no soportada: " + version);
+		}
+
+		int numeroBloques = cabecera.getInt(cabecera.position() + POSICION_NUMERO_BLOQUES_BINARIO);
+		if (numeroBloques < 0) {
+			throw new IOException("Paquete binario mal formado: número de bloques negativo");
+		}
+
+		long posicion = POSICION_NUMERO_BLOQUES_BINARIO + Integer.BYTES;
+		for (int i = 0; i < numeroBloques; i++) {
+			ByteBuffer longitud = origen.ver(posicion, Short.BYTES);
+			int longitudNombre = longitud.getShort(longitud.position()) & 0xFFFF;
+			posicion += Short.BYTES;
+
+			String nombre = new String(origen.copiar(posicion, longitudNombre), CODIFICACION);
+			posicion += longitudNombre;
+
+			longitud = origen.ver(posicion, Integer.BYTES);
+			int tamanoContenido = longitud.getInt(longitud.position());
+			posicion += Integer.BYTES;
+
+			if (tamanoContenido < 0 || posicion + tamanoContenido > origen.getTamano()) {
+				throw new IOException("Paquete binario mal formado: tamaño de bloque no válido");
+			}
+
+			anadirBloque(result, nombre, new Fragmento(origen, posicion, tamanoContenido, false), perezoso);
+			posicion += tamanoContenido;
 		}
 
-		if (INICIO_PAQUETE.equals(linea)) {
-			Bloque bloque = leerBloque(in);
+		return posicion;
+	}
+
+	/**
+	 * Añade a un paquete un bloque cuyo contenido se obtiene de una fuente,
+	 * inmediatamente o la primera vez que se pida.
+	 *
+	 * @param paquete      El paquete al que añadir el bloque.
+	 * @param nombreBloque El nombre del bloque.
+	 * @param fuente       La fuente del contenido del bloque.
+	 * @param perezoso     Verdadero si el contenido se obtendrá cuando se pida,
+	 *                     falso para obtenerlo ahora.
+	 * @throws IOException Si el contenido se obtiene ahora y ocurre un error.
+	 */
+	private static void anadirBloque(Paquete paquete, String nombreBloque, FuenteContenido fuente, boolean perezoso) throws IOException {
+		if (perezoso) {
+			paquete.anadirBloque(new Bloque(nombreBloque, fuente));
+		} else {
+			try {
+				paquete.anadirBloque(nombreBloque, fuente.cargar());
+			} catch (final IOException exc) {
+				throw new IOException("No se ha podido obtener el contenido del bloque " + nombreBloque, exc);
+			}
+		}
+	}
+
+	private static Paquete leerPaqueteTexto(InputStream entrada) throws IOException {
+		Paquete result = null;
+
+		// Leer las líneas como bytes, sin decodificarlas a caracteres, y acumular
+		// el contenido Base64 de cada bloque en un búfer reutilizado entre bloques.
+		// Así cada bloque solo reserva memoria para su contenido ya decodificado
+		LectorLineasBytes in = new LectorLineasBytes(entrada);
+		AcumuladorBase64 acumulador = new AcumuladorBase64();
+
+		result = new Paquete();
+
+		if (buscarInicioPaquete(in)) {
+			Bloque bloque = leerBloque(in, acumulador);
 			while (bloque != null) {
 				result.anadirBloque(bloque.getNombre(), bloque.getContenido());
-				bloque = leerBloque(in);
+				bloque = leerBloque(in, acumulador);
 			}
 		}
 
@@ -52,7 +386,7 @@ public final class PaqueteDAO {
 	}
 
 	public static void escribirPaquete(OutputStream out, Paquete paquete) throws IOException {
-		final PrintStream outPs = new PrintStream(out);
+		final PrintStream outPs = new PrintStream(out, false, CODIFICACION.name());
 
 		outPs.println(INICIO_PAQUETE);
 
@@ -67,6 +401,92 @@ public final class PaqueteDAO {
 		}
 	}
 
+	/**
+	 * Añade bloques al final de un paquete guardado en un fichero, sin volver a
+	 * decodificar ni escribir los bloques que ya contiene: solamente se recorren
+	 * sus líneas para localizar la marca de fin de paquete y comprobar los
+	 * nombres de los bloques. Los nuevos bloques y otra marca de fin se escriben
+	 * a continuación de la marca de fin actual, y después se sustituye esa marca
+	 * por espacios, que la lectura ignora. Así, si la escritura se interrumpe a
+	 * medias, el fichero sigue conteniendo el paquete original completo.
+	 * <p>
+	 * El resultado es un paquete en el mismo formato de texto que el escrito por
+	 * {@link #escribirPaquete(OutputStream, Paquete)}, pero no idéntico: los
+	 * bloques añadidos quedan después de los que ya había, en lugar de en orden
+	 * alfabético, y cada adición deja una línea de espacios donde estaba la marca
+	 * de fin anterior. Ninguna de las dos diferencias afecta a la lectura. Si el
+	 * paquete está en formato binario, los bloques se escriben al final del
+	 * fichero y se actualiza el número de bloques de la cabecera.
+	 *
+	 * @param canal          El canal del fichero que contiene el paquete, abierto
+	 *                       para lectura y escritura.
+	 * @param bloquesNuevos  Un paquete con los bloques a añadir.
+	 * @throws IOException Si el fichero no contiene un paquete completo, ya
+	 *                     contiene algún bloque con el mismo nombre que uno de
+	 *                     los nuevos, o ocurre un error de E/S.
+	 */
+	public static void anadirBloques(FileChannel canal, Paquete bloquesNuevos) throws IOException {
+		OrigenDatos origen = new OrigenFichero(canal);
+		if (detectarFormato(origen) == FormatoPaquete.BINARIO) {
+			anadirBloquesBinario(canal, bloquesNuevos);
+			return;
+		}
+
+		Paquete existentes = new Paquete();
+		long posicionFin = indexarPaqueteTexto(origen, existentes, true);
+		if (posicionFin < 0) {
+			throw new IOException("El fichero no contiene un paquete: no se ha encontrado " + INICIO_PAQUETE);
+		}
+		comprobarBloquesNuevos(existentes, bloquesNuevos);
+
+		// Empezar una línea nueva justo después de la marca de fin actual, de manera
+		// que el paquete original sigue terminando en ella hasta que se sustituya
+		canal.position(posicionFin + FIN_PAQUETE_BYTES.length);
+
+		// No cerrar el flujo, pues cerraría el canal que nos han pasado
+		final PrintStream outPs = new PrintStream(new BufferedOutputStream(Channels.newOutputStream(canal)), false, CODIFICACION.name());
+
+		outPs.println();
+		for (String nombreBloque : bloquesNuevos.getNombresBloque()) {
+			escribirBloque(outPs, nombreBloque, bloquesNuevos.getContenidoBloque(nombreBloque));
+		}
+
+		outPs.println(FIN_PAQUETE);
+		outPs.flush();
+
+		if (outPs.checkError()) {
+			throw new IOException("Ha ocurrido un error de E/S durante la escritura de un paquete");
+		}
+
+		// Descartar lo que hubiera después de la marca de fin anterior, y asegurarse
+		// de que lo escrito está en el disco antes de sustituirla
+		canal.truncate(canal.position());
+		canal.force(false);
+
+		ByteBuffer espacios = ByteBuffer.allocate(FIN_PAQUETE_BYTES.length);
+		Arrays.fill(espacios.array(), (byte) ' ');
+		escribirCompleto(canal, espacios, posicionFin);
+	}
+
+	/**
+	 * Comprueba que ninguno de los bloques de un paquete guardado se vaya a
+	 * añadir otra vez, pues uno de los dos bloques se ignoraría al leerlo.
+	 *
+	 * @param existentes    Los bloques que ya están en el paquete.
+	 * @param bloquesNuevos Un paquete con los bloques que se van a añadir.
+	 * @throws IOException Si alguno de los bloques nuevos tiene el mismo nombre
+	 *                     que uno existente.
+	 */
+	private static void comprobarBloquesNuevos(Paquete existentes, Paquete bloquesNuevos) throws IOException {
+		List<String> nombresNuevos = bloquesNuevos.getNombresBloque();
+
+		for (String nombreBloque : existentes.getNombresBloque()) {
+			if (nombresNuevos.contains(nombreBloque)) {
+				throw new IOException("El paquete ya contiene un bloque llamado " + nombreBloque);
+			}
+		}
+	}
+
 	private static void escribirBloque(PrintStream out, String nombreBloque, byte[] contenido) {
 		if ((nombreBloque != null) && (contenido != null)) {
 			out.printf(INICIO_BLOQUE_FORMATO + "\n", nombreBloque);
@@ -84,49 +504,524 @@ public final class PaqueteDAO {
 		}
 	}
 
-	private static Bloque leerBloque(BufferedReader in) throws IOException {
-		String linea = in.readLine();
+	/**
+	 * Avanza hasta la línea de inicio del paquete.
+	 *
+	 * @param in El lector de líneas del paquete.
+	 * @return Verdadero si se ha encontrado el inicio del paquete, falso si no
+	 *         está presente.
+	 * @throws IOException Si ocurre un error de E/S.
+	 */
+	private static boolean buscarInicioPaquete(LectorLineas in) throws IOException {
+		boolean hayLinea = in.siguienteLinea();
 
-		while ((!linea.startsWith(INICIO_BLOQUE) && (!linea.equals(FIN_PAQUETE)))) {
-			linea = in.readLine();
+		// Modificado por Alejandro para evitar lanzar NullPointerException
+		// si el paquete no contiene INICIO_PAQUETE
+		while (hayLinea && !in.esIgualA(INICIO_PAQUETE_BYTES)) {
+			hayLinea = in.siguienteLinea();
 		}
 
-		if (linea.equals(FIN_PAQUETE)) {
+		return hayLinea;
+	}
+
+	private static Bloque leerBloque(LectorLineasBytes in, AcumuladorBase64 acumulador) throws IOException {
+		String nombreBloque = avanzarHastaBloque(in);
+
+		if (nombreBloque == null) {
 			return null; // No hay más bloques
 		} else {
 			Bloque result = new Bloque();
-			result.setNombre(extraerNombreBloque(linea));
-			result.setContenido(extraerContenidoBloque(in));
+			result.setNombre(nombreBloque);
+			result.setContenido(extraerContenidoBloque(in, acumulador, nombreBloque));
 			return result;
 		}
 	}
 
-	private static String extraerNombreBloque(String texto) {
-		int inicioNombreBloque = INICIO_BLOQUE.length() + 1;
-		int finNombreBloque = texto.lastIndexOf(MARCA_CABECERA);
-		return texto.substring(inicioNombreBloque, finNombreBloque);
+	/**
+	 * Avanza hasta la cabecera del siguiente bloque, o el final del paquete.
+	 *
+	 * @param in El lector de líneas del paquete.
+	 * @return El nombre del bloque encontrado, o nulo si no hay más bloques.
+	 * @throws IOException Si ocurre un error de E/S, o el paquete está mal
+	 *                     formado.
+	 */
+	private static String avanzarHastaBloque(LectorLineas in) throws IOException {
+		siguienteLineaObligatoria(in);
+
+		while ((!in.empiezaPor(INICIO_BLOQUE_BYTES) && (!in.esIgualA(FIN_PAQUETE_BYTES)))) {
+			siguienteLineaObligatoria(in);
+		}
+
+		return in.esIgualA(FIN_PAQUETE_BYTES) ? null : extraerNombreBloque(in);
+	}
+
+	private static String extraerNombreBloque(LectorLineas in) throws IOException {
+		int inicioNombreBloque = in.getInicioLinea() + INICIO_BLOQUE_BYTES.length + 1;
+		int finNombreBloque = in.buscarUltima(MARCA_CABECERA_BYTES, inicioNombreBloque);
+
+		if (finNombreBloque < 0) {
+			throw new IOException("Cabecera de bloque mal formada: " + in.getTexto(in.getInicioLinea(), in.getFinLinea(), CODIFICACION));
+		}
+
+		return in.getTexto(inicioNombreBloque, finNombreBloque, CODIFICACION);
+	}
+
+	private static byte[] extraerContenidoBloque(LectorLineasBytes in, AcumuladorBase64 acumulador, String nombreBloque) throws IOException {
+		acumulador.reset();
+
+		siguienteLineaObligatoria(in); // Avanzar una linea
+		while (!in.empiezaPor(FIN_BLOQUE_BYTES)) {
+			acumulador.write(in.getBufer(), in.getInicioLinea(), in.getFinLinea() - in.getInicioLinea());
+			siguienteLineaObligatoria(in);
+		}
+
+		try {
+			return acumulador.decodificar();
+		} catch (final IllegalArgumentException exc) {
+			throw new IOException("El contenido del bloque " + nombreBloque + " no está codificado en Base64 correctamente", exc);
+		}
 	}
 
-	private static byte[] extraerContenidoBloque(BufferedReader in) throws IOException {
-		List<String> partesBloque = new ArrayList<String>();
-		int tamanoBloque = 0;
+	/**
+	 * Avanza hasta la línea de fin del bloque actual, sin leer su contenido.
+	 *
+	 * @param in El lector de líneas del paquete.
+	 * @throws IOException Si ocurre un error de E/S, o el paquete termina antes.
+	 */
+	private static void saltarContenidoBloque(LectorLineas in) throws IOException {
+		siguienteLineaObligatoria(in);
+		while (!in.empiezaPor(FIN_BLOQUE_BYTES)) {
+			siguienteLineaObligatoria(in);
+		}
+	}
 
-		String linea = in.readLine(); // Avanzar una linea
-		while (!linea.startsWith(FIN_BLOQUE)) {
-			partesBloque.add(linea);
-			tamanoBloque += linea.length();
-			linea = in.readLine();
+	/**
+	 * Avanza a la siguiente línea de un paquete que todavía no ha terminado.
+	 *
+	 * @param in El lector de líneas del paquete.
+	 * @throws EOFException Si el paquete termina antes de lo esperado.
+	 * @throws IOException  Si ocurre algún otro error de E/S.
+	 */
+	private static void siguienteLineaObligatoria(LectorLineas in) throws IOException {
+		if (!in.siguienteLinea()) {
+			throw new EOFException("El paquete termina antes de encontrar " + FIN_PAQUETE);
 		}
+	}
 
-		byte[] result = new byte[tamanoBloque];
-		int posicion = 0;
-		for (String parte : partesBloque) {
-			byte[] contenidoParte = parte.getBytes();
-			for (byte b : contenidoParte) {
-				result[posicion] = b;
-				posicion++;
+	/**
+	 * Lee de un fichero los bytes necesarios para llenar un búfer, sin cambiar la
+	 * posición del canal.
+	 *
+	 * @param canal    El canal del fichero a leer.
+	 * @param destino  El búfer a llenar.
+	 * @param posicion La posición del fichero desde la que leer.
+	 * @throws EOFException Si el fichero termina antes de llenar el búfer.
+	 * @throws IOException  Si ocurre algún otro error de E/S.
+	 */
+	private static void leerCompleto(FileChannel canal, ByteBuffer destino, long posicion) throws IOException {
+		while (destino.hasRemaining()) {
+			int leidos = canal.read(destino, posicion);
+			if (leidos < 0) {
+				throw new EOFException("El fichero termina antes de lo esperado");
 			}
+			posicion += leidos;
+		}
+	}
+
+	/**
+	 * Lee de un flujo el número de bytes indicado por un paquete. Como ese número
+	 * no es de fiar hasta haberlos leído, la memoria se reserva poco a poco, a
+	 * medida que llegan los bytes, en lugar de toda de una vez, para que un
+	 * paquete dañado o malicioso no pueda agotarla declarando un tamaño enorme.
+	 *
+	 * @param in     El flujo del que leer.
+	 * @param tamano El número de bytes a leer.
+	 * @return Los bytes leídos.
+	 * @throws EOFException Si el flujo termina antes de leerlos todos.
+	 * @throws IOException  Si ocurre algún otro error de E/S.
+	 */
+	private static byte[] leerCompleto(DataInputStream in, int tamano) throws IOException {
+		byte[] result = new byte[Math.min(tamano, TAMANO_RESERVA_LECTURA)];
+		int leidos = 0;
+
+		while (leidos < tamano) {
+			if (leidos == result.length) {
+				result = Arrays.copyOf(result, (int) Math.min(tamano, 2L * result.length));
+			}
+
+			int n = in.read(result, leidos, result.length - leidos);
+			if (n < 0) {
+				throw new EOFException("El paquete binario termina antes de lo esperado");
+			}
+			leidos += n;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Escribe en un fichero todos los bytes que quedan en un búfer, sin cambiar
+	 * la posición del canal.
+	 *
+	 * @param canal    El canal del fichero a escribir.
+	 * @param origen   El búfer a escribir.
+	 * @param posicion La posición del fichero desde la que escribir.
+	 * @throws IOException Si ocurre un error de E/S.
+	 */
+	private static void escribirCompleto(FileChannel canal, ByteBuffer origen, long posicion) throws IOException {
+		while (origen.hasRemaining()) {
+			posicion += canal.write(origen, posicion);
+		}
+	}
+
+	/**
+	 * Decodifica un texto en Base64 sin saltos de línea, reservando solamente
+	 * memoria para el resultado.
+	 *
+	 * @param texto    El búfer que contiene el texto.
+	 * @param longitud La longitud del texto en el búfer.
+	 * @return Los bytes decodificados.
+	 * @throws IllegalArgumentException Si el texto no está codificado en Base64
+	 *                                  correctamente.
+	 */
+	private static byte[] decodificarBase64(byte[] texto, int longitud) {
+		ByteBuffer decodificado = Base64.getDecoder().decode(ByteBuffer.wrap(texto, 0, longitud));
+
+		// El decodificador reserva exactamente el tamaño necesario cuando el
+		// relleno del texto es correcto, así que normalmente no se copia
+		if (decodificado.arrayOffset() == 0 && decodificado.remaining() == decodificado.array().length) {
+			return decodificado.array();
+		} else {
+			return Arrays.copyOfRange(decodificado.array(), decodificado.arrayOffset(), decodificado.arrayOffset() + decodificado.remaining());
+		}
+	}
+
+	/**
+	 * Detecta el formato de un paquete a partir de sus primeros bytes, sin
+	 * consumirlos del flujo.
+	 *
+	 * @param flujo El flujo del que leer el paquete.
+	 * @return El formato detectado.
+	 * @throws IOException Si ocurre un error de E/S.
+	 */
+	private static FormatoPaquete detectarFormato(PushbackInputStream flujo) throws IOException {
+		byte[] inicio = new byte[MAGIA_BINARIO.length];
+		int leidos = 0;
+		int n = 0;
+
+		while (leidos < inicio.length && (n = flujo.read(inicio, leidos, inicio.length - leidos)) >= 0) {
+			leidos += n;
+		}
+		flujo.unread(inicio, 0, leidos);
+
+		return leidos == inicio.length && Arrays.equals(inicio, MAGIA_BINARIO) ? FormatoPaquete.BINARIO : FormatoPaquete.TEXTO;
+	}
+
+	/**
+	 * Detecta el formato de un paquete guardado a partir de sus primeros bytes.
+	 *
+	 * @param origen De dónde leer el paquete.
+	 * @return El formato detectado.
+	 * @throws IOException Si ocurre un error de E/S.
+	 */
+	private static FormatoPaquete detectarFormato(OrigenDatos origen) throws IOException {
+		return origen.getTamano() >= MAGIA_BINARIO.length && Arrays.equals(origen.copiar(0, MAGIA_BINARIO.length), MAGIA_BINARIO) ? FormatoPaquete.BINARIO : FormatoPaquete.TEXTO;
+	}
+
+	private static Paquete leerPaqueteBinario(InputStream entrada) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(entrada));
+		Paquete result = new Paquete();
+
+		in.readFully(new byte[MAGIA_BINARIO.length]);
+		int version = in.readUnsignedByte();
+		if (version != VERSION_BINARIO) {
+			throw new IOException("Versión de paquete binario no soportada: " + version);
+		}
+
+		int numeroBloques = in.readInt();
+		if (numeroBloques < 0) {
+			throw new IOException("Paquete binario mal formado: número de bloques negativo");
+		}
+
+		for (int i = 0; i < numeroBloques; i++) {
+			byte[] nombre = leerCompleto(in, in.readUnsignedShort());
+
+			int tamanoContenido = in.readInt();
+			if (tamanoContenido < 0) {
+				throw new IOException("Paquete binario mal formado: tamaño de bloque negativo");
+			}
+			byte[] contenido = leerCompleto(in, tamanoContenido);
+
+			result.anadirBloque(new String(nombre, CODIFICACION), contenido);
+		}
+
+		return result;
+	}
+
+	private static void escribirPaqueteBinario(OutputStream out, Paquete paquete) throws IOException {
+		DataOutputStream outDs = new DataOutputStream(new BufferedOutputStream(out));
+
+		outDs.write(MAGIA_BINARIO);
+		outDs.writeByte(VERSION_BINARIO);
+		outDs.writeInt(contarBloquesConContenido(paquete));
+		escribirBloquesBinario(outDs, paquete);
+
+		outDs.flush();
+	}
+
+	private static void anadirBloquesBinario(FileChannel canal, Paquete bloquesNuevos) throws IOException {
+		Paquete existentes = new Paquete();
+		long finBloques = indexarPaqueteBinario(new OrigenFichero(canal), existentes, true);
+		comprobarBloquesNuevos(existentes, bloquesNuevos);
+
+		ByteBuffer numeroBloques = ByteBuffer.allocate(Integer.BYTES);
+
+		leerCompleto(canal, numeroBloques, POSICION_NUMERO_BLOQUES_BINARIO);
+		// Llamar a los métodos de Buffer, y no a los que ByteBuffer redefine desde
+		// Java 9, para que la clase compilada siga funcionando en Java 8
+		((Buffer) numeroBloques).flip();
+		int numeroBloquesNuevo = numeroBloques.getInt() + contarBloquesConContenido(bloquesNuevos);
+
+		// Escribir primero los bloques, y después actualizar la cabecera, para que
+		// una interrupción a medias no deje un paquete con bloques incompletos. Los
+		// restos de una interrupción anterior, tras el último bloque, se sobrescriben
+		canal.position(finBloques);
+		DataOutputStream outDs = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(canal)));
+		escribirBloquesBinario(outDs, bloquesNuevos);
+		outDs.flush();
+		canal.truncate(canal.position());
+
+		((Buffer) numeroBloques).clear();
+		((Buffer) numeroBloques.putInt(numeroBloquesNuevo)).flip();
+		canal.force(false);
+		escribirCompleto(canal, numeroBloques, POSICION_NUMERO_BLOQUES_BINARIO);
+	}
+
+	private static void escribirBloquesBinario(DataOutputStream out, Paquete paquete) throws IOException {
+		for (String nombreBloque : paquete.getNombresBloque()) {
+			byte[] contenido = paquete.getContenidoBloque(nombreBloque);
+
+			if (contenido != null) {
+				byte[] nombre = nombreBloque.getBytes(CODIFICACION);
+				if (nombre.length > 0xFFFF) {
+					throw new IOException("El nombre del bloque " + nombreBloque + " es demasiado largo para el formato binario");
+				}
+
+				out.writeShort(nombre.length);
+				out.write(nombre);
+				out.writeInt(contenido.length);
+				out.write(contenido);
+			}
+		}
+	}
+
+	private static int contarBloquesConContenido(Paquete paquete) {
+		int result = 0;
+		for (String nombreBloque : paquete.getNombresBloque()) {
+			if (paquete.getContenidoBloque(nombreBloque) != null) {
+				result++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Búfer de bytes que acumula el texto Base64 de un bloque, y lo decodifica
+	 * directamente desde su array interno, sin copias intermedias.
+	 */
+	private static final class AcumuladorBase64 extends ByteArrayOutputStream {
+		AcumuladorBase64() {
+			super(1024);
+		}
+
+		byte[] decodificar() {
+			return decodificarBase64(buf, count);
+		}
+	}
+
+	/**
+	 * El contenido de un bloque guardado en un fragmento de un paquete, que se
+	 * lee y decodifica cuando se pide.
+	 */
+	private static final class Fragmento implements FuenteContenido {
+		private final OrigenDatos origen;
+		private final long posicion;
+		private final long longitud;
+		/**
+		 * Verdadero si el fragmento es texto en Base64, posiblemente dividido en
+		 * líneas, o falso si contiene el contenido sin codificar.
+		 */
+		private final boolean base64;
+
+		Fragmento(OrigenDatos origen, long posicion, long longitud, boolean base64) {
+			this.origen = origen;
+			this.posicion = posicion;
+			this.longitud = longitud;
+			this.base64 = base64;
+		}
+
+		@Override
+		public byte[] cargar() throws IOException {
+			if (!base64) {
+				return origen.copiar(posicion, longitud);
+			}
+
+			ByteBuffer texto = origen.ver(posicion, longitud);
+			try {
+				return DecodificadorBase64.decodificar(texto, texto.position(), texto.limit());
+			} catch (final IllegalArgumentException exc) {
+				throw new IOException("El contenido del bloque no está codificado en Base64 correctamente", exc);
+			}
+		}
+	}
+
+	/**
+	 * Los bytes de un paquete guardado, de los que se leen su estructura y el
+	 * contenido de sus bloques. Las posiciones empiezan en el primer byte del
+	 * paquete. Es seguro leer de un origen desde varios hilos a la vez.
+	 */
+	private static abstract class OrigenDatos {
+		/**
+		 * Obtiene el número de bytes del paquete.
+		 *
+		 * @return El descrito número.
+		 * @throws IOException Si ocurre un error de E/S.
+		 */
+		abstract long getTamano() throws IOException;
+
+		/**
+		 * Crea un lector de las líneas del paquete, desde su principio, cuyas
+		 * posiciones son las del origen.
+		 *
+		 * @return El descrito lector.
+		 * @throws IOException Si ocurre un error de E/S.
+		 */
+		abstract LectorLineas lectorLineas() throws IOException;
+
+		/**
+		 * Obtiene un búfer con un fragmento del paquete entre su posición y su
+		 * límite, que puede compartir los bytes con el origen y no debe de
+		 * modificarse.
+		 *
+		 * @param posicion La posición del primer byte del fragmento.
+		 * @param longitud El número de bytes del fragmento.
+		 * @return El descrito búfer.
+		 * @throws EOFException Si el fragmento no está entero en el paquete.
+		 * @throws IOException  Si ocurre algún otro error de E/S.
+		 */
+		abstract ByteBuffer ver(long posicion, long longitud) throws IOException;
+
+		/**
+		 * Copia un fragmento del paquete a un vector nuevo.
+		 *
+		 * @param posicion La posición del primer byte del fragmento.
+		 * @param longitud El número de bytes del fragmento.
+		 * @return Los bytes del fragmento.
+		 * @throws EOFException Si el fragmento no está entero en el paquete.
+		 * @throws IOException  Si ocurre algún otro error de E/S.
+		 */
+		abstract byte[] copiar(long posicion, long longitud) throws IOException;
+
+		/**
+		 * Comprueba que un fragmento esté entero en el paquete. Es la única
+		 * comprobación de límites de las lecturas de paquetes guardados.
+		 *
+		 * @param posicion La posición del primer byte del fragmento.
+		 * @param longitud El número de bytes del fragmento.
+		 * @throws EOFException Si el fragmento no está entero en el paquete.
+		 * @throws IOException  Si ocurre algún otro error de E/S.
+		 */
+		final void comprobarFragmento(long posicion, long longitud) throws IOException {
+			if (posicion < 0 || longitud < 0 || posicion + longitud > getTamano()) {
+				throw new EOFException("El paquete termina antes de lo esperado");
+			}
+			if (longitud > Integer.MAX_VALUE) {
+				throw new IOException("El bloque es demasiado grande para leerlo en memoria");
+			}
+		}
+	}
+
+	/**
+	 * Un paquete contenido en un búfer, típicamente un fichero proyectado en
+	 * memoria, del que se leen los fragmentos sin copiarlos.
+	 */
+	private static final class OrigenBuffer extends OrigenDatos {
+		private final ByteBuffer datos;
+
+		/**
+		 * Crea un origen con los bytes restantes de un búfer, sin modificar su
+		 * posición ni su límite.
+		 *
+		 * @param datos El búfer que contiene el paquete.
+		 */
+		OrigenBuffer(ByteBuffer datos) {
+			this.datos = datos.slice();
+		}
+
+		@Override
+		long getTamano() {
+			return datos.limit();
+		}
+
+		@Override
+		LectorLineas lectorLineas() {
+			return new LectorLineasBuffer(datos);
+		}
+
+		@Override
+		ByteBuffer ver(long posicion, long longitud) throws IOException {
+			comprobarFragmento(posicion, longitud);
+
+			// Usar una vista propia del búfer, para que otros hilos puedan leer otros
+			// fragmentos a la vez. Acotarla como Buffer, que es lo que existe en Java 8
+			ByteBuffer fragmento = datos.duplicate();
+			((Buffer) fragmento).limit((int) (posicion + longitud)).position((int) posicion);
+			return fragmento;
+		}
+
+		@Override
+		byte[] copiar(long posicion, long longitud) throws IOException {
+			byte[] result = new byte[(int) longitud];
+			ver(posicion, longitud).get(result);
+			return result;
+		}
+	}
+
+	/**
+	 * Un paquete guardado en un fichero abierto, del que se leen los fragmentos
+	 * cuando se piden. El canal debe de permanecer abierto mientras se lean.
+	 */
+	private static final class OrigenFichero extends OrigenDatos {
+		private final FileChannel canal;
+
+		OrigenFichero(FileChannel canal) {
+			this.canal = canal;
+		}
+
+		@Override
+		long getTamano() throws IOException {
+			return canal.size();
+		}
+
+		@Override
+		LectorLineas lectorLineas() throws IOException {
+			// No cerrar el flujo, pues cerraría el canal que nos han pasado
+			canal.position(0);
+			return new LectorLineasBytes(Channels.newInputStream(canal));
+		}
+
+		@Override
+		ByteBuffer ver(long posicion, long longitud) throws IOException {
+			return ByteBuffer.wrap(copiar(posicion, longitud));
+		}
+
+		@Override
+		byte[] copiar(long posicion, long longitud) throws IOException {
+			comprobarFragmento(posicion, longitud);
+
+			byte[] result = new byte[(int) longitud];
+			leerCompleto(canal, ByteBuffer.wrap(result), posicion);
+			return result;
 		}
-		return Base64.getDecoder().decode(result);
 	}
-}
\ No newline at end of file
+}
@@ -38,6 +38,37 @@ public final class ParametrosCriptograficos {
 	 * (hash) de los datos, cuando sea necesario.
 	 */
 	public static final String ALGORITMO_RESUMEN = "SHA-512";
+	/**
+	 * El algoritmo a emplear para codificar datos de manera simétrica y
+	 * autenticada en {@link SuiteCriptografica#MODERNA}.
+	 */
+	public static final String ALGORITMO_SIMETRICO_AUTENTICADO = "AES/GCM/NoPadding";
+	/**
+	 * La longitud en bytes del vector de inicialización de
+	 * {@link #ALGORITMO_SIMETRICO_AUTENTICADO}, que precede a los datos cifrados.
+	 */
+	public static final int LONGITUD_VECTOR_INICIALIZACION = 12;
+	/**
+	 * La longitud en bits de la etiqueta de autenticación de
+	 * {@link #ALGORITMO_SIMETRICO_AUTENTICADO}.
+	 */
+	public static final int LONGITUD_ETIQUETA_AUTENTICACION = 128;
+	/**
+	 * El algoritmo a emplear para encriptar claves simétricas con la clave pública
+	 * del destinatario en {@link SuiteCriptografica#MODERNA}.
+	 */
+	public static final String ALGORITMO_ENVOLTURA_CLAVES = "RSA/NONE/OAEPWithSHA256AndMGF1Padding";
+	/**
+	 * El algoritmo de firma digital de {@link SuiteCriptografica#MODERNA}, y para
+	 * el que generar las claves de los actores que firman.
+	 */
+	public static final String ALGORITMO_FIRMA = "Ed25519";
+	/**
+	 * El algoritmo de código de autenticación de mensajes con el que identificar
+	 * las firmas ya comprobadas, de manera que solo quien conozca la clave pueda
+	 * darlas por válidas.
+	 */
+	public static final String ALGORITMO_HUELLA_FIRMAS = "HmacSHA512";
 	/**
 	 * El proveedor de los algoritmos a emplear para realizar operaciones
 	 * criptográficas. Los usuarios de esta variable pueden asumir que el proveedor
@@ -0,0 +1,124 @@
+package esei.ssi.eperegrino.common;
+
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ejecuta en paralelo las tareas de un lote, como generar o sellar muchas CPV,
+ * recordando cuáles terminan correctamente y los fallos del resto.
+ * Un fallo en una tarea no detiene las demás.
+ * <p>
+ * El número de tareas pendientes de ejecutar está acotado: si se envían tareas
+ * más rápido de lo que se ejecutan, el hilo que las envía ejecuta la siguiente
+ * en lugar de encolarla. Así, un lote muy grande no necesita estar completo en
+ * memoria.
+ *
+ * @author Alejandro González García
+ */
+public final class ProcesadorLote implements AutoCloseable {
+	/**
+	 * El número de tareas que se pueden encolar por cada hilo del procesador.
+	 */
+	private static final int TAREAS_ENCOLADAS_POR_HILO = 4;
+
+	private final ThreadPoolExecutor ejecutor;
+	private final Queue<String> correctas = new ConcurrentLinkedQueue<>();
+	private final Queue<String> fallos = new ConcurrentLinkedQueue<>();
+	private final long inicio = System.nanoTime();
+
+	/**
+	 * Una tarea de un lote.
+	 *
+	 * @author Alejandro González García
+	 */
+	@FunctionalInterface
+	public interface TareaLote {
+		/**
+		 * Ejecuta la tarea.
+		 *
+		 * @throws Exception Si la tarea falla por cualquier motivo.
+		 */
+		void ejecutar() throws Exception;
+	}
+
+	/**
+	 * Crea un procesador de lotes.
+	 *
+	 * @param hilos El número de hilos con los que ejecutar las tareas.
+	 * @throws IllegalArgumentException Si el número de hilos no es positivo.
+	 */
+	public ProcesadorLote(final int hilos) {
+		if (hilos < 1) {
+			throw new IllegalArgumentException("El número de hilos de un procesador de lotes debe de ser positivo");
+		}
+
+		ejecutor = new ThreadPoolExecutor(
+			hilos, hilos, 0, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<>(hilos * TAREAS_ENCOLADAS_POR_HILO),
+			new ThreadPoolExecutor.CallerRunsPolicy()
+		);
+	}
+
+	/**
+	 * Envía una tarea del lote para ejecutarla.
+	 *
+	 * @param descripcion Una descripción de la tarea, que se mostrará al usuario si
+	 *                    falla.
+	 * @param tarea       La tarea a ejecutar.
+	 * @throws IllegalArgumentException Si algún parámetro es nulo.
+	 */
+	public void enviar(final String descripcion, final TareaLote tarea) {
+		if (descripcion == null || tarea == null) {
+			throw new IllegalArgumentException("La tarea a enviar y su descripción no pueden ser nulas");
+		}
+
+		ejecutor.execute(() -> {
+			try {
+				tarea.ejecutar();
+				correctas.add(descripcion);
+			} catch (final Exception exc) {
+				anadirFallo(descripcion, exc);
+			}
+		});
+	}
+
+	/**
+	 * Anota el fallo de una parte del lote que no se ha llegado a enviar como
+	 * tarea, por ejemplo porque sus datos de entrada no son válidos.
+	 *
+	 * @param descripcion Una descripción de la parte del lote que ha fallado.
+	 * @param causa       La excepción que describe el fallo.
+	 */
+	public void anadirFallo(final String descripcion, final Exception causa) {
+		fallos.add(descripcion + ": " + causa);
+	}
+
+	/**
+	 * Espera a que terminen todas las tareas enviadas, y obtiene el resultado del
+	 * lote. Después de llamar a este método no se pueden enviar más tareas.
+	 *
+	 * @return El resultado del lote.
+	 * @throws InterruptedException Si se interrumpe la espera.
+	 */
+	public ResultadoLote finalizar() throws InterruptedException {
+		ejecutor.shutdown();
+		while (!ejecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+			// Seguir esperando
+		}
+
+		return new ResultadoLote(new ArrayList<>(correctas), new ArrayList<>(fallos), System.nanoTime() - inicio);
+	}
+
+	/**
+	 * Detiene el procesador de lotes, descartando las tareas que no hayan empezado
+	 * a ejecutarse todavía. No tiene efecto si ya ha finalizado.
+	 */
+	@Override
+	public void close() {
+		ejecutor.shutdownNow();
+	}
+}
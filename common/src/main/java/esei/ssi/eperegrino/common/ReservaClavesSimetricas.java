@@ -0,0 +1,298 @@
+package esei.ssi.eperegrino.common;
+
+import java.io.PrintStream;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Una reserva acotada de claves simétricas aleatorias, que un hilo en segundo
+ * plano mantiene llena. Las operaciones que reciben una reserva, como
+ * {@link SuiteCriptografica#generarClaveSimetricoEncriptada(PublicKey, ReservaClavesSimetricas)}
+ * o las que usan unas {@link ClavesActores} con reserva, toman las claves de
+ * ella, de manera que generar una CPV o un sello no tiene que esperar a obtener
+ * aleatoriedad. Si la reserva está vacía, la clave se genera en el momento,
+ * como si no hubiera reserva.
+ * <p>
+ * Si se conoce de antemano con qué suite y para qué destinatario se van a
+ * encriptar las claves, como en un lote de sellos, la reserva también puede
+ * encriptarlas en segundo plano, y así se ahorra la operación asimétrica.
+ * <p>
+ * Está pensada para los modos que generan muchas claves, como los lotes o el
+ * servicio. Puede haber varias reservas abiertas a la vez, y cada clave de una
+ * reserva se entrega una única vez, así que es seguro compartirla entre hilos.
+ *
+ * @author Alejandro González García
+ */
+public final class ReservaClavesSimetricas implements AutoCloseable {
+	/**
+	 * El número de claves a mantener en la reserva, si no se especifica otro.
+	 */
+	public static final int CAPACIDAD_PREDETERMINADA = 256;
+
+	private final BlockingQueue<ClaveSimetricaEncriptada> claves;
+	private final SuiteCriptografica suite;
+	private final PublicKey clavePublicaDestinatario;
+	private final Thread rellenador;
+	private final LongAdder aciertos = new LongAdder();
+	private final LongAdder fallos = new LongAdder();
+	private final LongAdder preparadas = new LongAdder();
+	private final LongAdder nanosPreparacion = new LongAdder();
+	/**
+	 * El error que ha impedido seguir llenando la reserva, o nulo si no ha habido
+	 * ninguno.
+	 */
+	private volatile GeneralSecurityException errorRelleno;
+
+	/**
+	 * Crea una reserva de claves simétricas vacía, sin empezar a llenarla.
+	 *
+	 * @param capacidad                El número de claves a mantener en la
+	 *                                 reserva.
+	 * @param suite                    La suite con la que encriptar las claves, o
+	 *                                 nulo para no encriptarlas.
+	 * @param clavePublicaDestinatario La clave pública con la que encriptar las
+	 *                                 claves, o nulo para no encriptarlas.
+	 */
+	private ReservaClavesSimetricas(final int capacidad, final SuiteCriptografica suite, final PublicKey clavePublicaDestinatario) {
+		claves = new ArrayBlockingQueue<>(capacidad);
+		this.suite = suite;
+		this.clavePublicaDestinatario = clavePublicaDestinatario;
+
+		rellenador = new Thread(this::rellenar, "Rellenador de la reserva de claves simétricas");
+		rellenador.setDaemon(true);
+	}
+
+	/**
+	 * Abre una reserva de claves simétricas, y empieza a llenarla en segundo
+	 * plano.
+	 *
+	 * @param capacidad El número de claves a mantener en la reserva.
+	 * @return La reserva abierta, que se debe de cerrar cuando ya no se use.
+	 * @throws IllegalArgumentException Si la capacidad no es positiva.
+	 */
+	public static ReservaClavesSimetricas abrir(final int capacidad) {
+		return iniciar(new ReservaClavesSimetricas(comprobarCapacidad(capacidad), null, null));
+	}
+
+	/**
+	 * Abre una reserva de claves simétricas que se encriptan para un destinatario,
+	 * y empieza a llenarla en segundo plano.
+	 *
+	 * @param capacidad                El número de claves a mantener en la
+	 *                                 reserva.
+	 * @param suite                    La suite con la que encriptar las claves.
+	 * @param clavePublicaDestinatario La clave pública con la que encriptar las
+	 *                                 claves, normalmente la de la oficina del
+	 *                                 peregrino.
+	 * @return La reserva abierta, que se debe de cerrar cuando ya no se use.
+	 * @throws IllegalArgumentException Si algún parámetro es nulo, o la capacidad
+	 *                                  no es positiva.
+	 */
+	public static ReservaClavesSimetricas abrir(final int capacidad, final SuiteCriptografica suite, final PublicKey clavePublicaDestinatario) {
+		if (suite == null || clavePublicaDestinatario == null) {
+			throw new IllegalArgumentException("La suite y el destinatario de las claves de la reserva no pueden ser nulos");
+		}
+
+		return iniciar(new ReservaClavesSimetricas(comprobarCapacidad(capacidad), suite, clavePublicaDestinatario));
+	}
+
+	/**
+	 * Obtiene una clave simétrica aleatoria de la reserva encriptada para un
+	 * destinatario, o la genera en el momento con el contexto criptográfico del
+	 * hilo actual si la reserva está vacía. Si la reserva ya la ha encriptado con
+	 * la misma suite y para el mismo destinatario, no se vuelve a encriptar. Si
+	 * la ha encriptado con otra suite o para otro destinatario, no se toma de la
+	 * reserva, sino que se genera en el momento, y cuenta como un fallo.
+	 *
+	 * @param suite                    La suite con la que encriptar la clave.
+	 * @param clavePublicaDestinatario La clave pública del destinatario.
+	 * @return La clave obtenida, junto con su representación encriptada.
+	 * @throws GeneralSecurityException Si ocurre algún error al generar o
+	 *                                  encriptar la clave.
+	 */
+	ClaveSimetricaEncriptada obtenerClaveEncriptada(final SuiteCriptografica suite, final PublicKey clavePublicaDestinatario) throws GeneralSecurityException {
+		// Comprobar la suite y el destinatario antes de tomar la clave, para no
+		// gastar una encriptación que otra operación podría aprovechar
+		final boolean encriptadaParaDestinatario = this.suite == suite && this.clavePublicaDestinatario.equals(clavePublicaDestinatario);
+		final ClaveSimetricaEncriptada preparada;
+		if (this.suite == null || encriptadaParaDestinatario) {
+			preparada = tomar();
+		} else {
+			fallos.increment();
+			preparada = null;
+		}
+
+		if (preparada != null && encriptadaParaDestinatario) {
+			return preparada;
+		}
+
+		final SecretKey clave = preparada != null ? preparada.getClave() : ContextoCriptografico.actual().getGeneradorClavesSimetrico().generateKey();
+
+		return new ClaveSimetricaEncriptada(clave, suite.encriptarClaveSimetrico(clave, clavePublicaDestinatario));
+	}
+
+	/**
+	 * Obtiene el número de claves que se han tomado de la reserva.
+	 *
+	 * @return El descrito número.
+	 */
+	public long getAciertos() {
+		return aciertos.sum();
+	}
+
+	/**
+	 * Obtiene el número de claves que se han generado en el momento porque la
+	 * reserva estaba vacía, o sus claves estaban encriptadas con otra suite o para
+	 * otro destinatario.
+	 *
+	 * @return El descrito número.
+	 */
+	public long getFallos() {
+		return fallos.sum();
+	}
+
+	/**
+	 * Obtiene el número de claves preparadas que hay en la reserva, listas para
+	 * tomarse.
+	 *
+	 * @return El descrito número.
+	 */
+	public int getClavesDisponibles() {
+		return claves.size();
+	}
+
+	/**
+	 * Obtiene el error que ha impedido seguir llenando la reserva. Mientras tanto,
+	 * las claves se generan en el momento, donde el mismo error se notifica a
+	 * quien las pide.
+	 *
+	 * @return El descrito error, o nulo si no ha habido ninguno.
+	 */
+	public GeneralSecurityException getErrorRelleno() {
+		return errorRelleno;
+	}
+
+	/**
+	 * Obtiene el tiempo medio que ha llevado preparar cada clave de la reserva,
+	 * incluyendo encriptarla si se encriptan, pero no la espera a que haya hueco
+	 * para ella.
+	 *
+	 * @return El descrito tiempo, en nanosegundos, o 0 si todavía no se ha
+	 *         preparado ninguna clave.
+	 */
+	public double getNanosPreparacionMedios() {
+		final long numeroPreparadas = preparadas.sum();
+
+		return numeroPreparadas > 0 ? (double) nanosPreparacion.sum() / numeroPreparadas : 0;
+	}
+
+	/**
+	 * Muestra cuántas claves se han tomado de la reserva, cuántas se han generado
+	 * en el momento, y cuánto lleva preparar cada clave de la reserva. Si no se ha
+	 * podido llenar la reserva, también muestra por qué.
+	 *
+	 * @param salida El flujo donde mostrarlo.
+	 */
+	public void mostrar(final PrintStream salida) {
+		salida.printf(
+			"Reserva de claves simétricas%s: %d claves tomadas de la reserva, %d generadas en el momento (%.3f ms para preparar cada una)%n",
+			suite == null ? "" : " encriptadas", getAciertos(), getFallos(), getNanosPreparacionMedios() / 1e6
+		);
+
+		final GeneralSecurityException errorRelleno = this.errorRelleno;
+		if (errorRelleno != null) {
+			salida.println("No se ha podido llenar la reserva de claves simétricas: " + errorRelleno);
+		}
+	}
+
+	/**
+	 * Deja de llenar la reserva, y descarta las claves que no se hayan tomado. A
+	 * partir de entonces, las claves que se pidan a la reserva se generan en el
+	 * momento.
+	 *
+	 * @throws InterruptedException Si se interrumpe la espera a que termine el
+	 *                              hilo que llena la reserva.
+	 */
+	@Override
+	public void close() throws InterruptedException {
+		rellenador.interrupt();
+		rellenador.join();
+		claves.clear();
+	}
+
+	/**
+	 * Comprueba que la capacidad de una reserva sea válida.
+	 *
+	 * @param capacidad La capacidad a comprobar.
+	 * @return La misma capacidad.
+	 * @throws IllegalArgumentException Si la capacidad no es positiva.
+	 */
+	private static int comprobarCapacidad(final int capacidad) {
+		if (capacidad < 1) {
+			throw new IllegalArgumentException("La capacidad de la reserva de claves simétricas debe de ser positiva");
+		}
+
+		return capacidad;
+	}
+
+	/**
+	 * Empieza a llenar una reserva.
+	 *
+	 * @param reserva La reserva a abrir.
+	 * @return La misma reserva.
+	 */
+	private static ReservaClavesSimetricas iniciar(final ReservaClavesSimetricas reserva) {
+		reserva.rellenador.start();
+
+		return reserva;
+	}
+
+	/**
+	 * Toma una clave de la reserva, anotando si estaba vacía.
+	 *
+	 * @return La clave tomada, o nulo si la reserva estaba vacía.
+	 */
+	private ClaveSimetricaEncriptada tomar() {
+		final ClaveSimetricaEncriptada preparada = claves.poll();
+
+		if (preparada != null) {
+			aciertos.increment();
+		} else {
+			fallos.increment();
+		}
+
+		return preparada;
+	}
+
+	/**
+	 * Prepara claves y las añade a la reserva mientras no se cierre, esperando
+	 * cuando está llena.
+	 */
+	private void rellenar() {
+		try {
+			final ContextoCriptografico contexto = ContextoCriptografico.actual();
+
+			while (!Thread.currentThread().isInterrupted()) {
+				final long inicio = System.nanoTime();
+				final SecretKey clave = contexto.getGeneradorClavesSimetrico().generateKey();
+				final byte[] claveEncriptada = suite == null ? null : suite.encriptarClaveSimetrico(clave, clavePublicaDestinatario);
+
+				nanosPreparacion.add(System.nanoTime() - inicio);
+				preparadas.increment();
+
+				claves.put(new ClaveSimetricaEncriptada(clave, claveEncriptada));
+			}
+		} catch (final InterruptedException exc) {
+			// Se ha cerrado la reserva
+		} catch (final GeneralSecurityException exc) {
+			// No se pueden preparar claves en este hilo, así que la reserva queda vacía,
+			// y las claves se prepararán en el momento, donde también se notificará
+			errorRelleno = exc;
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package esei.ssi.eperegrino.common;
+
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Modela el resultado de procesar un lote de tareas, como el que obtiene un
+ * {@link ProcesadorLote}.
+ *
+ * @author Alejandro González García
+ */
+public final class ResultadoLote {
+	private final List<String> correctas;
+	private final List<String> fallos;
+	private final long duracionNanos;
+
+	/**
+	 * Crea el resultado de un lote.
+	 *
+	 * @param correctas     Las descripciones de las tareas que terminaron
+	 *                      correctamente.
+	 * @param fallos        Las descripciones de los fallos del lote.
+	 * @param duracionNanos El tiempo que ha llevado procesar el lote, en
+	 *                      nanosegundos.
+	 */
+	public ResultadoLote(final List<String> correctas, final List<String> fallos, final long duracionNanos) {
+		this.correctas = Collections.unmodifiableList(correctas);
+		this.fallos = Collections.unmodifiableList(fallos);
+		this.duracionNanos = duracionNanos;
+	}
+
+	/**
+	 * Obtiene el número de tareas del lote que terminaron correctamente.
+	 *
+	 * @return El descrito número.
+	 */
+	public int getCorrectas() {
+		return correctas.size();
+	}
+
+	/**
+	 * Obtiene las descripciones de las tareas del lote que terminaron
+	 * correctamente, sin un orden definido.
+	 *
+	 * @return Las descritas descripciones. La lista no es modificable.
+	 */
+	public List<String> getDescripcionesCorrectas() {
+		return correctas;
+	}
+
+	/**
+	 * Obtiene las descripciones de los fallos del lote, sin un orden definido.
+	 *
+	 * @return Las descritas descripciones. La lista no es modificable.
+	 */
+	public List<String> getFallos() {
+		return fallos;
+	}
+
+	/**
+	 * Obtiene el tiempo que ha llevado procesar el lote.
+	 *
+	 * @return El descrito tiempo, en nanosegundos.
+	 */
+	public long getDuracionNanos() {
+		return duracionNanos;
+	}
+
+	/**
+	 * Obtiene el número de tareas correctas del lote procesadas por segundo.
+	 *
+	 * @return El descrito número.
+	 */
+	public double getRendimiento() {
+		return duracionNanos > 0 ? correctas.size() * 1e9 / duracionNanos : 0;
+	}
+
+	/**
+	 * Muestra un resumen del resultado del lote, incluyendo sus fallos.
+	 *
+	 * @param salida El flujo donde mostrar el resumen.
+	 */
+	public void mostrar(final PrintStream salida) {
+		mostrar(salida, false);
+	}
+
+	/**
+	 * Muestra un resumen del resultado del lote, incluyendo sus fallos y,
+	 * opcionalmente, las tareas que terminaron correctamente. Cada fallo se
+	 * muestra en una línea que empieza por "- ", y cada tarea correcta, en una
+	 * que empieza por "+ ".
+	 *
+	 * @param salida            El flujo donde mostrar el resumen.
+	 * @param detallarCorrectas Verdadero si se deben de mostrar también las tareas
+	 *                          que terminaron correctamente.
+	 */
+	public void mostrar(final PrintStream salida, final boolean detallarCorrectas) {
+		salida.printf(
+			"Lote procesado en %.3f s: %d correctas, %d fallidas (%.2f por segundo)%n",
+			duracionNanos / 1e9, correctas.size(), fallos.size(), getRendimiento()
+		);
+
+		if (detallarCorrectas) {
+			for (final String correcta : correctas) {
+				salida.println("+ " + correcta);
+			}
+		}
+
+		for (final String fallo : fallos) {
+			salida.println("- " + fallo);
+		}
+	}
+}
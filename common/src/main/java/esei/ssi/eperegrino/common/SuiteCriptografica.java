@@ -0,0 +1,384 @@
+package esei.ssi.eperegrino.common;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Las combinaciones de algoritmos criptográficos con las que se puede proteger
+ * una carga útil de una CPV: los datos del peregrino o el sello de un albergue.
+ * Cada carga útil se protege de la misma manera con cualquier suite: se encripta
+ * con una clave simétrica aleatoria, esa clave se encripta con la clave pública
+ * de la oficina del peregrino, y la carga útil encriptada se firma con la clave
+ * privada de su autor. Las suites difieren en los algoritmos empleados para
+ * cada paso.
+ * <p>
+ * La suite de cada carga útil se anota en un bloque del paquete, para poder
+ * interpretarla después. Las CPV que no anotan la suite de una carga útil usan
+ * {@link #CLASICA}, de manera que las CPV generadas antes de existir las suites
+ * se siguen pudiendo desempaquetar.
+ *
+ * @author Alejandro González García
+ */
+public enum SuiteCriptografica {
+	/**
+	 * La suite original: AES en modo ECB, claves simétricas encriptadas con RSA y
+	 * relleno PKCS #1 v1.5, y firmas que consisten en el resumen SHA-512 de la
+	 * carga útil encriptado con la clave privada RSA del autor. Todos los actores
+	 * usan claves RSA.
+	 */
+	CLASICA("1") {
+		@Override
+		public byte[] encriptarCargaUtil(final Map<String, String> datos, final SecretKey clave) throws GeneralSecurityException {
+			final ContextoCriptografico contexto = ContextoCriptografico.actual();
+			final Cipher cifradorSimetrico = contexto.getCifradorSimetrico();
+
+			cifradorSimetrico.init(Cipher.ENCRYPT_MODE, clave);
+			return contexto.getCodificadorCargaUtil().encriptar(datos, cifradorSimetrico);
+		}
+
+		@Override
+		public Map<String, String> desencriptarCargaUtil(final byte[] cargaUtil, final SecretKey clave) throws GeneralSecurityException {
+			final ContextoCriptografico contexto = ContextoCriptografico.actual();
+			final Cipher cifradorSimetrico = contexto.getCifradorSimetrico();
+
+			cifradorSimetrico.init(Cipher.DECRYPT_MODE, clave);
+			return contexto.getCodificadorCargaUtil().desencriptar(cifradorSimetrico, cargaUtil);
+		}
+
+		@Override
+		public byte[] encriptarClaveSimetrico(final SecretKey clave, final PublicKey clavePublicaDestinatario) throws GeneralSecurityException {
+			final Cipher cifradorAsimetrico = ContextoCriptografico.actual().getCifradorAsimetrico();
+
+			cifradorAsimetrico.init(Cipher.ENCRYPT_MODE, clavePublicaDestinatario);
+			return cifradorAsimetrico.doFinal(clave.getEncoded());
+		}
+
+		@Override
+		public SecretKey desencriptarClaveSimetrico(final byte[] claveEncriptada, final PrivateKey clavePrivadaDestinatario) throws GeneralSecurityException {
+			return Util.desencriptarClaveSimetrico(
+				ContextoCriptografico.actual().getCifradorAsimetrico(), clavePrivadaDestinatario, claveEncriptada
+			);
+		}
+
+		@Override
+		public byte[] firmar(final byte[] datos, final PrivateKey clavePrivadaFirmante) throws GeneralSecurityException {
+			final ContextoCriptografico contexto = ContextoCriptografico.actual();
+			final Cipher cifradorAsimetrico = contexto.getCifradorAsimetrico();
+
+			cifradorAsimetrico.init(Cipher.ENCRYPT_MODE, clavePrivadaFirmante);
+			return cifradorAsimetrico.doFinal(contexto.getResumidor().digest(datos));
+		}
+
+		@Override
+		public void comprobarFirma(
+			final String contenidoEsperado, final byte[] datos, final byte[] firma, final PublicKey clavePublicaFirmante
+		) throws GeneralSecurityException {
+			Util.comprobarValidezFirma(
+				contenidoEsperado, clavePublicaFirmante, ContextoCriptografico.actual().getCifradorAsimetrico(), datos, firma
+			);
+		}
+	},
+	/**
+	 * Una suite más rápida y robusta: AES en modo GCM, que autentica la carga
+	 * útil, claves simétricas encriptadas con RSA-OAEP, y firmas Ed25519. La
+	 * oficina del peregrino sigue usando claves RSA, pero los actores que firman
+	 * usan claves Ed25519, mucho más rápidas de usar que las claves privadas RSA.
+	 */
+	MODERNA("2") {
+		@Override
+		public byte[] encriptarCargaUtil(final Map<String, String> datos, final SecretKey clave) throws GeneralSecurityException {
+			final ContextoCriptografico contexto = ContextoCriptografico.actual();
+			final Cipher cifradorSimetrico = contexto.getCifradorSimetricoAutenticado();
+			final byte[] vectorInicializacion = new byte[ParametrosCriptograficos.LONGITUD_VECTOR_INICIALIZACION];
+
+			// La carga útil encriptada va precedida del vector de inicialización
+			contexto.getGeneradorAleatorio().nextBytes(vectorInicializacion);
+			cifradorSimetrico.init(
+				Cipher.ENCRYPT_MODE, clave,
+				new GCMParameterSpec(ParametrosCriptograficos.LONGITUD_ETIQUETA_AUTENTICACION, vectorInicializacion)
+			);
+			final byte[] datosEncriptados = contexto.getCodificadorCargaUtil().encriptar(datos, cifradorSimetrico);
+
+			final byte[] cargaUtil = Arrays.copyOf(vectorInicializacion, vectorInicializacion.length + datosEncriptados.length);
+			System.arraycopy(datosEncriptados, 0, cargaUtil, vectorInicializacion.length, datosEncriptados.length);
+
+			return cargaUtil;
+		}
+
+		@Override
+		public Map<String, String> desencriptarCargaUtil(final byte[] cargaUtil, final SecretKey clave) throws GeneralSecurityException {
+			final ContextoCriptografico contexto = ContextoCriptografico.actual();
+			final Cipher cifradorSimetrico = contexto.getCifradorSimetricoAutenticado();
+			final int longitudVector = ParametrosCriptograficos.LONGITUD_VECTOR_INICIALIZACION;
+
+			if (cargaUtil.length < longitudVector) {
+				throw new GeneralSecurityException("La carga útil encriptada es demasiado corta para contener un vector de inicialización");
+			}
+
+			cifradorSimetrico.init(
+				Cipher.DECRYPT_MODE, clave,
+				new GCMParameterSpec(ParametrosCriptograficos.LONGITUD_ETIQUETA_AUTENTICACION, cargaUtil, 0, longitudVector)
+			);
+			return contexto.getCodificadorCargaUtil().desencriptar(
+				cifradorSimetrico, cargaUtil, longitudVector, cargaUtil.length - longitudVector
+			);
+		}
+
+		@Override
+		public byte[] encriptarClaveSimetrico(final SecretKey clave, final PublicKey clavePublicaDestinatario) throws GeneralSecurityException {
+			final Cipher cifradorEnvolturaClaves = ContextoCriptografico.actual().getCifradorEnvolturaClaves();
+
+			cifradorEnvolturaClaves.init(Cipher.ENCRYPT_MODE, clavePublicaDestinatario);
+			return cifradorEnvolturaClaves.doFinal(clave.getEncoded());
+		}
+
+		@Override
+		public SecretKey desencriptarClaveSimetrico(final byte[] claveEncriptada, final PrivateKey clavePrivadaDestinatario) throws GeneralSecurityException {
+			final Cipher cifradorEnvolturaClaves = ContextoCriptografico.actual().getCifradorEnvolturaClaves();
+
+			cifradorEnvolturaClaves.init(Cipher.DECRYPT_MODE, clavePrivadaDestinatario);
+			return new SecretKeySpec(
+				cifradorEnvolturaClaves.doFinal(claveEncriptada),
+				ParametrosCriptograficos.ALGORITMO_GENERADOR_CLAVES_SIMETRICO
+			);
+		}
+
+		@Override
+		public byte[] firmar(final byte[] datos, final PrivateKey clavePrivadaFirmante) throws GeneralSecurityException {
+			final Signature firmador = ContextoCriptografico.actual().getFirmador();
+
+			firmador.initSign(clavePrivadaFirmante);
+			firmador.update(datos);
+			return firmador.sign();
+		}
+
+		@Override
+		public void comprobarFirma(
+			final String contenidoEsperado, final byte[] datos, final byte[] firma, final PublicKey clavePublicaFirmante
+		) throws GeneralSecurityException {
+			final Signature firmador = ContextoCriptografico.actual().getFirmador();
+
+			firmador.initVerify(clavePublicaFirmante);
+			firmador.update(datos);
+			if (!firmador.verify(firma)) {
+				throw new GeneralSecurityException(contenidoEsperado + " no se corresponde con el firmado. Es posible que la clave pública no sea de la misma entidad, o los datos se hayan modificado de manera no autorizada");
+			}
+		}
+	};
+
+	private final String identificador;
+
+	/**
+	 * Crea una suite criptográfica.
+	 *
+	 * @param identificador El identificador de la suite, que se anota en los
+	 *                      paquetes.
+	 */
+	private SuiteCriptografica(final String identificador) {
+		this.identificador = identificador;
+	}
+
+	/**
+	 * Encripta los pares clave-valor de una carga útil con un cifrador simétrico.
+	 *
+	 * @param datos Los pares clave-valor a encriptar.
+	 * @param clave La clave del cifrador simétrico, obtenida con
+	 *              {@link #generarClaveSimetrico()}.
+	 * @return La carga útil encriptada.
+	 * @throws GeneralSecurityException Si ocurre algún error al encriptar.
+	 */
+	public abstract byte[] encriptarCargaUtil(Map<String, String> datos, SecretKey clave) throws GeneralSecurityException;
+
+	/**
+	 * Desencripta una carga útil encriptada con
+	 * {@link #encriptarCargaUtil(Map, SecretKey)}, y lee sus pares clave-valor.
+	 *
+	 * @param cargaUtil La carga útil encriptada.
+	 * @param clave     La clave del cifrador simétrico.
+	 * @return Los pares clave-valor de la carga útil, en el orden en que fueron
+	 *         escritos. Estará vacío si la carga útil no contiene un objeto JSON.
+	 * @throws GeneralSecurityException Si ocurre algún error al desencriptar, o
+	 *                                  la suite detecta que la carga útil ha sido
+	 *                                  modificada.
+	 * @throws IllegalArgumentException Si alguna entrada del objeto JSON no tiene
+	 *                                  separador entre clave y valor.
+	 */
+	public abstract Map<String, String> desencriptarCargaUtil(byte[] cargaUtil, SecretKey clave) throws GeneralSecurityException;
+
+	/**
+	 * Encripta la clave de un cifrador simétrico con la clave pública de su
+	 * destinatario.
+	 *
+	 * @param clave                    La clave a encriptar.
+	 * @param clavePublicaDestinatario La clave pública del destinatario.
+	 * @return La clave encriptada.
+	 * @throws GeneralSecurityException Si ocurre algún error al encriptar.
+	 */
+	public abstract byte[] encriptarClaveSimetrico(SecretKey clave, PublicKey clavePublicaDestinatario) throws GeneralSecurityException;
+
+	/**
+	 * Desencripta la clave de un cifrador simétrico encriptada con
+	 * {@link #encriptarClaveSimetrico(SecretKey, PublicKey)}.
+	 *
+	 * @param claveEncriptada          La clave encriptada.
+	 * @param clavePrivadaDestinatario La clave privada del destinatario.
+	 * @return La clave del cifrador simétrico.
+	 * @throws GeneralSecurityException Si ocurre algún error al desencriptar.
+	 */
+	public abstract SecretKey desencriptarClaveSimetrico(byte[] claveEncriptada, PrivateKey clavePrivadaDestinatario) throws GeneralSecurityException;
+
+	/**
+	 * Firma digitalmente unos datos.
+	 *
+	 * @param datos                Los datos a firmar.
+	 * @param clavePrivadaFirmante La clave privada del firmante.
+	 * @return La firma de los datos.
+	 * @throws GeneralSecurityException Si ocurre algún error al firmar, o la
+	 *                                  clave no es del tipo que usa la suite.
+	 */
+	public abstract byte[] firmar(byte[] datos, PrivateKey clavePrivadaFirmante) throws GeneralSecurityException;
+
+	/**
+	 * Comprueba la validez de una firma creada con
+	 * {@link #firmar(byte[], PrivateKey)}.
+	 *
+	 * @param contenidoEsperado    Una descripción textual del contenido firmado,
+	 *                             que se puede mostrar al usuario.
+	 * @param datos                Los datos firmados.
+	 * @param firma                La firma de los datos.
+	 * @param clavePublicaFirmante La clave pública del firmante.
+	 * @throws GeneralSecurityException Si ocurre algún error al comprobar la
+	 *                                  firma, o no es válida.
+	 */
+	public abstract void comprobarFirma(String contenidoEsperado, byte[] datos, byte[] firma, PublicKey clavePublicaFirmante)
+			throws GeneralSecurityException;
+
+	/**
+	 * Genera una clave aleatoria para el cifrador simétrico de la suite.
+	 *
+	 * @return La clave generada.
+	 * @throws GeneralSecurityException Si ocurre algún error al generar la clave.
+	 */
+	public SecretKey generarClaveSimetrico() throws GeneralSecurityException {
+		return ContextoCriptografico.actual().getGeneradorClavesSimetrico().generateKey();
+	}
+
+	/**
+	 * Genera una clave aleatoria para el cifrador simétrico de la suite, y la
+	 * encripta con la clave pública de su destinatario, como
+	 * {@link #generarClaveSimetrico()} seguido de
+	 * {@link #encriptarClaveSimetrico(SecretKey, PublicKey)}.
+	 *
+	 * @param clavePublicaDestinatario La clave pública del destinatario.
+	 * @return La clave generada, junto con su representación encriptada.
+	 * @throws GeneralSecurityException Si ocurre algún error al generar o
+	 *                                  encriptar la clave.
+	 */
+	public ClaveSimetricaEncriptada generarClaveSimetricoEncriptada(final PublicKey clavePublicaDestinatario) throws GeneralSecurityException {
+		return generarClaveSimetricoEncriptada(clavePublicaDestinatario, null);
+	}
+
+	/**
+	 * Obtiene una clave aleatoria para el cifrador simétrico de la suite,
+	 * encriptada con la clave pública de su destinatario, como
+	 * {@link #generarClaveSimetricoEncriptada(PublicKey)}, pero tomándola de una
+	 * reserva de claves si se especifica. Si la reserva encripta sus claves con
+	 * esta suite para el mismo destinatario, se toma de ella ya encriptada.
+	 *
+	 * @param clavePublicaDestinatario La clave pública del destinatario.
+	 * @param reserva                  La reserva de la que tomar la clave, o nulo
+	 *                                 para generarla en el momento.
+	 * @return La clave obtenida, junto con su representación encriptada.
+	 * @throws GeneralSecurityException Si ocurre algún error al generar o
+	 *                                  encriptar la clave.
+	 */
+	public ClaveSimetricaEncriptada generarClaveSimetricoEncriptada(
+		final PublicKey clavePublicaDestinatario, final ReservaClavesSimetricas reserva
+	) throws GeneralSecurityException {
+		if (reserva != null) {
+			return reserva.obtenerClaveEncriptada(this, clavePublicaDestinatario);
+		}
+
+		final SecretKey clave = generarClaveSimetrico();
+
+		return new ClaveSimetricaEncriptada(clave, encriptarClaveSimetrico(clave, clavePublicaDestinatario));
+	}
+
+	/**
+	 * Obtiene el identificador de la suite, que se anota en los paquetes.
+	 *
+	 * @return El descrito identificador.
+	 */
+	public String getIdentificador() {
+		return identificador;
+	}
+
+	/**
+	 * Anota en un paquete que una carga útil usa esta suite. No se anota nada
+	 * para {@link #CLASICA}, ya que es la que se asume si no hay anotación.
+	 *
+	 * @param paquete      El paquete donde anotar la suite.
+	 * @param tituloBloque El nombre del bloque donde anotarla.
+	 */
+	public void anotar(final Paquete paquete, final String tituloBloque) {
+		if (this != CLASICA) {
+			paquete.anadirBloque(tituloBloque, identificador.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * Obtiene la suite que usa una carga útil de un paquete, anotada con
+	 * {@link #anotar(Paquete, String)}.
+	 *
+	 * @param paquete      El paquete del que leer la suite.
+	 * @param tituloBloque El nombre del bloque donde está anotada.
+	 * @return La suite anotada, o {@link #CLASICA} si no hay ninguna anotada.
+	 * @throws NoSuchAlgorithmException Si la suite anotada no se conoce.
+	 */
+	public static SuiteCriptografica leer(final Paquete paquete, final String tituloBloque) throws NoSuchAlgorithmException {
+		final byte[] identificador = paquete.getContenidoBloque(tituloBloque);
+
+		return identificador == null ? CLASICA : deIdentificador(new String(identificador, StandardCharsets.UTF_8).trim());
+	}
+
+	/**
+	 * Obtiene la suite con un identificador.
+	 *
+	 * @param identificador El identificador de la suite.
+	 * @return La suite con ese identificador.
+	 * @throws NoSuchAlgorithmException Si no hay una suite con ese identificador.
+	 */
+	public static SuiteCriptografica deIdentificador(final String identificador) throws NoSuchAlgorithmException {
+		for (final SuiteCriptografica suite : values()) {
+			if (suite.identificador.equals(identificador)) {
+				return suite;
+			}
+		}
+
+		throw new NoSuchAlgorithmException("La suite criptográfica \"" + identificador + "\" no se conoce. Es posible que la CPV se haya generado con una versión más reciente de e-peregrino");
+	}
+
+	/**
+	 * Obtiene la suite con la que firma el poseedor de una clave privada, según
+	 * el algoritmo de la clave: {@link #MODERNA} para claves de
+	 * {@link ParametrosCriptograficos#ALGORITMO_FIRMA}, y {@link #CLASICA} para el
+	 * resto.
+	 *
+	 * @param clavePrivadaFirmante La clave privada del firmante.
+	 * @return La descrita suite.
+	 */
+	public static SuiteCriptografica paraClaveFirma(final PrivateKey clavePrivadaFirmante) {
+		return ParametrosCriptograficos.ALGORITMO_FIRMA.equals(clavePrivadaFirmante.getAlgorithm()) ? MODERNA : CLASICA;
+	}
+}
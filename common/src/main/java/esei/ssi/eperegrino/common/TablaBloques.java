@@ -0,0 +1,39 @@
+package esei.ssi.eperegrino.common;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Una representación compacta de los bloques de un paquete, que no necesita un
+ * objeto por bloque. Un {@link Paquete} lee sus bloques de ella mientras no se
+ * modifique.
+ *
+ * @author Alejandro González García
+ */
+interface TablaBloques {
+	/**
+	 * Obtiene los nombres normalizados de los bloques de la tabla.
+	 *
+	 * @return Una lista nueva con los descritos nombres, en orden alfabético.
+	 */
+	List<String> getNombres();
+
+	/**
+	 * Obtiene el contenido de un bloque de la tabla.
+	 *
+	 * @param nombreNormalizado El nombre normalizado del bloque.
+	 * @return El contenido del bloque, o nulo si la tabla no contiene el bloque o
+	 *         no tiene contenido.
+	 * @throws java.io.UncheckedIOException Si no se ha podido obtener el
+	 *                                      contenido del bloque.
+	 */
+	byte[] getContenido(String nombreNormalizado);
+
+	/**
+	 * Crea un objeto de bloque por cada bloque de la tabla, para que el paquete
+	 * los pueda modificar.
+	 *
+	 * @return Un mapa nuevo con los descritos bloques, por nombre normalizado.
+	 */
+	Map<String, Bloque> getBloques();
+}
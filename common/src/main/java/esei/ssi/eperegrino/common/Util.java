@@ -4,7 +4,6 @@ import java.io.File;
 import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
-import java.security.MessageDigest;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.util.Arrays;
@@ -12,7 +11,6 @@ import java.util.Scanner;
 
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
-import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.SecretKeySpec;
 
 /**
@@ -79,10 +77,7 @@ public final class Util {
 		final byte[] resumenCargaUtil
 	) throws GeneralSecurityException {
 		// Calcular el hash de la carga útil
-		final byte[] hashCargaUtil = MessageDigest.getInstance(
-			ParametrosCriptograficos.ALGORITMO_RESUMEN,
-			ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS
-		).digest(cargaUtil);
+		final byte[] hashCargaUtil = ContextoCriptografico.actual().getResumidor().digest(cargaUtil);
 
 		// Ahora desencriptar el hash del contenido firmado por la entidad
 		cifradorAsimetrico.init(Cipher.DECRYPT_MODE, clavePublicaFirmante);
@@ -125,21 +120,72 @@ public final class Util {
 		final byte[] claveSimetricoEncriptada,
 		final byte[] cargaUtilSimetrico
 	) throws GeneralSecurityException {
-		SecretKey claveCifradorSimetrico;
+		return desencriptarCargaUtil(
+			cifradorSimetrico,
+			desencriptarClaveSimetrico(cifradorAsimetrico, clavePrivadaDestinatario, claveSimetricoEncriptada),
+			cargaUtilSimetrico
+		);
+	}
 
+	/**
+	 * Desencripta la clave de un cifrador simétrico, cifrada con un cifrador
+	 * asimétrico del que conocemos la clave privada. Es el primer paso de
+	 * {@link #desencriptarCargaUtil(Cipher, Cipher, PrivateKey, byte[], byte[])}.
+	 * La implementación de este método asume que sus parámetros de entrada son no
+	 * nulos y, en el caso del cifrador, ha sido inicializado con el algoritmo
+	 * correspondiente.
+	 *
+	 * @param cifradorAsimetrico       El cifrador asimétrico que se ha empleado
+	 *                                 para cifrar la clave del cifrador simétrico.
+	 * @param clavePrivadaDestinatario La clave privada del destinatario de la carga
+	 *                                 útil, con la que se descifrará la clave del
+	 *                                 cifrador simétrico.
+	 * @param claveSimetricoEncriptada Los bytes que contienen la clave del cifrador
+	 *                                 simétrico, encriptada con el cifrador
+	 *                                 asimétrico.
+	 * @return La clave del cifrador simétrico.
+	 * @throws GeneralSecurityException Si ocurre algún error al realizar alguna
+	 *                                  operación criptográfica.
+	 */
+	public static SecretKey desencriptarClaveSimetrico(
+		final Cipher cifradorAsimetrico,
+		final PrivateKey clavePrivadaDestinatario,
+		final byte[] claveSimetricoEncriptada
+	) throws GeneralSecurityException {
 		// Obtener la clave del cifrador simétrico desencriptándola con cifrador asimétrico
-		// (esto ha garantizado confidencialidad)
+		// (esto ha garantizado confidencialidad). SecretKeySpec ya es una clave que el
+		// cifrador acepta, así que no hace falta pasarla por una SecretKeyFactory
 		cifradorAsimetrico.init(Cipher.DECRYPT_MODE, clavePrivadaDestinatario);
-		claveCifradorSimetrico = SecretKeyFactory.getInstance(
-			ParametrosCriptograficos.ALGORITMO_GENERADOR_CLAVES_SIMETRICO,
-			ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS
-		).generateSecret(
-			new SecretKeySpec(
-				cifradorAsimetrico.doFinal(claveSimetricoEncriptada),
-				ParametrosCriptograficos.ALGORITMO_GENERADOR_CLAVES_SIMETRICO
-			)
+		return new SecretKeySpec(
+			cifradorAsimetrico.doFinal(claveSimetricoEncriptada),
+			ParametrosCriptograficos.ALGORITMO_GENERADOR_CLAVES_SIMETRICO
 		);
+	}
 
+	/**
+	 * Desencripta una carga útil encriptada con un cifrador simétrico, cuya clave
+	 * ya se conoce. Es el segundo paso de
+	 * {@link #desencriptarCargaUtil(Cipher, Cipher, PrivateKey, byte[], byte[])}.
+	 * La implementación de este método asume que sus parámetros de entrada son no
+	 * nulos y, en el caso del cifrador, ha sido inicializado con el algoritmo
+	 * correspondiente.
+	 *
+	 * @param cifradorSimetrico      El cifrador simétrico que se ha empleado para
+	 *                               cifrar la carga útil.
+	 * @param claveCifradorSimetrico La clave con la que se ha cifrado la carga
+	 *                               útil.
+	 * @param cargaUtilSimetrico     La carga útil que ha sido cifrada con el
+	 *                               cifrador simétrico.
+	 * @return Una cadena de texto que contiene la carga útil descifrada,
+	 *         interpretando sus bytes según la codificación UTF-8.
+	 * @throws GeneralSecurityException Si ocurre algún error al realizar alguna
+	 *                                  operación criptográfica.
+	 */
+	public static String desencriptarCargaUtil(
+		final Cipher cifradorSimetrico,
+		final SecretKey claveCifradorSimetrico,
+		final byte[] cargaUtilSimetrico
+	) throws GeneralSecurityException {
 		// Desencriptar la carga útil encriptada con el cifrador asimétrico, usando
 		// la clave obtenida anteriormente
 		cifradorSimetrico.init(Cipher.DECRYPT_MODE, claveCifradorSimetrico);
@@ -0,0 +1,138 @@
+package esei.ssi.eperegrino.common;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+
+import org.junit.Test;
+
+/**
+ * La batería de tests de JUnit a ejecutar sobre la clase JSONUtils y el
+ * codificador de cargas útiles equivalente.
+ *
+ * @author Alejandro González García
+ */
+public final class TestJSONUtils {
+	/**
+	 * Comprueba que un mapa convertido a JSON y leído de nuevo sea igual al
+	 * original, una vez omitidos los caracteres especiales.
+	 */
+	@Test
+	public void testMapJsonMap() {
+		final Map<String, String> datos = new HashMap<>();
+		datos.put("Nombre", "Alejandro");
+		datos.put("Fecha de creación", "2019-11-30 12:00");
+		datos.put("Motivo, \"especial\"", "{Aprobar}");
+		datos.put("Vacío", "");
+
+		final Map<String, String> esperado = new HashMap<>();
+		esperado.put("Nombre", "Alejandro");
+		esperado.put("Fecha de creación", "2019-11-30 1200");
+		esperado.put("Motivo especial", "Aprobar");
+		esperado.put("Vacío", "");
+
+		assertEquals(esperado, JSONUtils.json2map(JSONUtils.map2json(datos)));
+	}
+
+	/**
+	 * Comprueba que se ignoren los espacios alrededor de separadores, el texto
+	 * fuera de las llaves y las comillas, como hacía la implementación original.
+	 */
+	@Test
+	public void testJson2mapFormatoLibre() {
+		final Map<String, String> esperado = new HashMap<>();
+		esperado.put("a", " b ");
+		esperado.put("c", "d:e");
+		esperado.put("sin comillas", "valor");
+
+		assertEquals(
+			esperado,
+			JSONUtils.json2map("basura { \"a\" :\t\" b \" ,\n\"c\":\"d:e\" , sin comillas : valor } más basura")
+		);
+	}
+
+	/**
+	 * Comprueba que las cadenas que no contienen un objeto JSON den lugar a un
+	 * mapa vacío.
+	 */
+	@Test
+	public void testJson2mapSinObjeto() {
+		assertTrue(JSONUtils.json2map("").isEmpty());
+		assertTrue(JSONUtils.json2map("{}").isEmpty());
+		assertTrue(JSONUtils.json2map("{ }").isEmpty());
+		assertTrue(JSONUtils.json2map("} a:b {").isEmpty());
+	}
+
+	/**
+	 * Comprueba que una entrada sin separador se rechace.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testJson2mapEntradaSinSeparador() {
+		JSONUtils.json2map("{\"a\":\"b\",\"c\"}");
+	}
+
+	/**
+	 * Comprueba que el codificador de cargas útiles lea los bytes UTF-8 igual que
+	 * {@link JSONUtils#json2map(String)} lee la cadena, incluso con espacios en
+	 * blanco que no son ASCII y comillas dentro de las cadenas.
+	 */
+	@Test
+	public void testDecodificarComoJson2map() {
+		final String json = "{\u3000\"a\"\u2003:\t\" b \"\u00A0, \"c\"\"d\" : ñ\"e\"ñ ,\n }";
+		final byte[] bytes = ("xx" + json + "xx").getBytes(StandardCharsets.UTF_8);
+
+		final Map<String, String> leido = CodificadorCargaUtil.decodificar(bytes, 2, bytes.length - 2);
+		assertEquals(JSONUtils.json2map(json), leido);
+		assertEquals("ñeñ", leido.get("cd"));
+		// Los espacios que no son ASCII forman parte de la entrada
+		assertEquals(" b \u00A0", leido.get("\u3000a\u2003"));
+		assertEquals(2, leido.size());
+	}
+
+	/**
+	 * Comprueba que el codificador de cargas útiles encripte exactamente los mismos
+	 * bytes que {@link JSONUtils#map2json(Map)} codificado en UTF-8, incluyendo
+	 * caracteres de varios bytes y sustitutos sin pareja, y que los lea de nuevo
+	 * en el mismo orden.
+	 *
+	 * @throws GeneralSecurityException Si ocurre algún error criptográfico.
+	 */
+	@Test
+	public void testCodificadorCargaUtilEquivalente() throws GeneralSecurityException {
+		final ContextoCriptografico contexto = ContextoCriptografico.actual();
+		final CodificadorCargaUtil codificador = contexto.getCodificadorCargaUtil();
+		final Cipher cifrador = contexto.getCifradorSimetrico();
+		final SecretKey clave = contexto.getGeneradorClavesSimetrico().generateKey();
+
+		final Map<String, String> datos = new LinkedHashMap<>();
+		datos.put("Nombre", "Alejandro González");
+		datos.put("Motivo, \"especial\"", "{Aprobar} \u20AC \uD83D\uDE00 \uD800 fin");
+		final StringBuilder largo = new StringBuilder();
+		for (int i = 0; i < 2000; ++i) {
+			largo.append("ñ");
+		}
+		datos.put("Largo", largo.toString());
+
+		cifrador.init(Cipher.ENCRYPT_MODE, clave);
+		final byte[] cargaUtil = codificador.encriptar(datos, cifrador);
+
+		final byte[] esperado = JSONUtils.map2json(datos).getBytes(StandardCharsets.UTF_8);
+		cifrador.init(Cipher.DECRYPT_MODE, clave);
+		assertArrayEquals(esperado, cifrador.doFinal(cargaUtil));
+
+		cifrador.init(Cipher.DECRYPT_MODE, clave);
+		final Map<String, String> leido = codificador.desencriptar(cifrador, cargaUtil);
+		final String json = new String(esperado, StandardCharsets.UTF_8);
+		assertEquals(JSONUtils.json2map(json), leido);
+		assertEquals(json, JSONUtils.map2json(leido));
+	}
+}
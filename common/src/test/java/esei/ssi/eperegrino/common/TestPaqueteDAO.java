@@ -0,0 +1,441 @@
+package esei.ssi.eperegrino.common;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * La batería de tests de JUnit a ejecutar sobre la clase PaqueteDAO.
+ *
+ * @author Alejandro González García
+ */
+public final class TestPaqueteDAO {
+	/**
+	 * Crea un paquete con bloques de contenido aleatorio, de tamaños que cubren
+	 * todos los casos de relleno de Base64 y bloques de varias líneas.
+	 *
+	 * @return El descrito paquete.
+	 */
+	static Paquete crearPaquetePrueba() {
+		final Random rng = new Random(1234);
+		final Paquete paquete = new Paquete();
+
+		for (int i = 0; i < 12; ++i) {
+			final byte[] contenido = new byte[i * 97];
+			rng.nextBytes(contenido);
+			paquete.anadirBloque("BLOQUE DE PRUEBA " + i, contenido);
+		}
+		paquete.anadirBloque("DATOS SELLO ALBERGUE Logroño", new byte[] { 1, 2, 3 });
+
+		return paquete;
+	}
+
+	/**
+	 * Comprueba que dos paquetes tengan los mismos bloques, con el mismo
+	 * contenido.
+	 */
+	static void assertPaquetesIguales(final Paquete esperado, final Paquete obtenido) {
+		assertEquals(esperado.getNombresBloque(), obtenido.getNombresBloque());
+		for (final String nombreBloque : esperado.getNombresBloque()) {
+			assertArrayEquals(esperado.getContenidoBloque(nombreBloque), obtenido.getContenidoBloque(nombreBloque));
+		}
+	}
+
+	/**
+	 * Comprueba que un paquete escrito y leído de nuevo tenga los mismos bloques.
+	 */
+	@Test
+	public void testEscribirYLeerPaquete() throws IOException {
+		final Paquete paquete = crearPaquetePrueba();
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+		PaqueteDAO.escribirPaquete(bos, paquete);
+
+		assertPaquetesIguales(paquete, PaqueteDAO.leerPaquete(new ByteArrayInputStream(bos.toByteArray())));
+	}
+
+	/**
+	 * Comprueba que se lean correctamente paquetes con saltos de línea de
+	 * distintas plataformas, y con texto antes del inicio del paquete.
+	 */
+	@Test
+	public void testLeerPaqueteSaltosLinea() throws IOException {
+		final Paquete paquete = crearPaquetePrueba();
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+		PaqueteDAO.escribirPaquete(bos, paquete);
+		final String texto = "Texto previo\n" + new String(bos.toByteArray(), StandardCharsets.UTF_8).replaceAll("\r?\n", "\r\n");
+
+		assertPaquetesIguales(paquete, PaqueteDAO.leerPaquete(new ByteArrayInputStream(texto.getBytes(StandardCharsets.UTF_8))));
+	}
+
+	/**
+	 * Comprueba que un flujo sin inicio de paquete dé lugar a un paquete vacío.
+	 */
+	@Test
+	public void testLeerPaqueteSinInicio() throws IOException {
+		assertTrue(PaqueteDAO.leerPaquete(new ByteArrayInputStream("Nada que ver".getBytes(StandardCharsets.UTF_8))).getNombresBloque().isEmpty());
+	}
+
+	/**
+	 * Comprueba que un paquete truncado se rechace.
+	 */
+	@Test(expected = EOFException.class)
+	public void testLeerPaqueteTruncado() throws IOException {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+		PaqueteDAO.escribirPaquete(bos, crearPaquetePrueba());
+
+		PaqueteDAO.leerPaquete(new ByteArrayInputStream(bos.toByteArray(), 0, bos.size() / 2));
+	}
+
+	/**
+	 * Comprueba que un paquete escrito en formato binario se lea de nuevo
+	 * detectando su formato, y que ocupe menos que en formato de texto.
+	 */
+	@Test
+	public void testEscribirYLeerPaqueteBinario() throws IOException {
+		final Paquete paquete = crearPaquetePrueba();
+		final ByteArrayOutputStream bosBinario = new ByteArrayOutputStream();
+		final ByteArrayOutputStream bosTexto = new ByteArrayOutputStream();
+
+		PaqueteDAO.escribirPaquete(bosBinario, paquete, FormatoPaquete.BINARIO);
+		PaqueteDAO.escribirPaquete(bosTexto, paquete, FormatoPaquete.TEXTO);
+
+		assertPaquetesIguales(paquete, PaqueteDAO.leerPaquete(new ByteArrayInputStream(bosBinario.toByteArray())));
+		assertTrue(bosBinario.size() < bosTexto.size());
+	}
+
+	/**
+	 * Comprueba que un paquete binario que declara un bloque más grande que el
+	 * propio paquete se rechace, sin reservar memoria para todo el bloque.
+	 */
+	@Test(expected = EOFException.class)
+	public void testLeerPaqueteBinarioTamanoFalso() throws IOException {
+		final ByteBuffer paquete = ByteBuffer.allocate(PaqueteDAO.MAGIA_BINARIO.length + 16);
+
+		paquete.put(PaqueteDAO.MAGIA_BINARIO).put((byte) PaqueteDAO.VERSION_BINARIO).putInt(1);
+		paquete.putShort((short) 1).put((byte) 'A').putInt(Integer.MAX_VALUE - 8).putInt(1234);
+
+		PaqueteDAO.leerPaquete(new ByteArrayInputStream(paquete.array()));
+	}
+
+	/**
+	 * Comprueba que la conversión de un paquete de texto a binario, y de vuelta a
+	 * texto, dé lugar al mismo texto.
+	 */
+	@Test
+	public void testConvertirPaquete() throws IOException {
+		final ByteArrayOutputStream bosTexto = new ByteArrayOutputStream();
+		final ByteArrayOutputStream bosBinario = new ByteArrayOutputStream();
+		final ByteArrayOutputStream bosConvertido = new ByteArrayOutputStream();
+
+		PaqueteDAO.escribirPaquete(bosTexto, crearPaquetePrueba());
+		PaqueteDAO.convertirPaquete(new ByteArrayInputStream(bosTexto.toByteArray()), bosBinario, FormatoPaquete.BINARIO);
+		PaqueteDAO.convertirPaquete(new ByteArrayInputStream(bosBinario.toByteArray()), bosConvertido, FormatoPaquete.TEXTO);
+
+		assertArrayEquals(bosTexto.toByteArray(), bosConvertido.toByteArray());
+	}
+
+	/**
+	 * Comprueba que se puedan añadir bloques a paquetes guardados en ficheros, en
+	 * cualquiera de los formatos.
+	 */
+	@Test
+	public void testAnadirBloques() throws IOException {
+		final Paquete bloquesNuevos = new Paquete();
+		bloquesNuevos.anadirBloque("BLOQUE NUEVO", new byte[] { 4, 5, 6 });
+		bloquesNuevos.anadirBloque("BLOQUE NUEVO 2", new byte[] { 7 });
+		final Paquete otrosBloquesNuevos = new Paquete();
+		otrosBloquesNuevos.anadirBloque("A BLOQUE NUEVO", new byte[] { 8, 9 });
+
+		for (final FormatoPaquete formato : FormatoPaquete.values()) {
+			final Paquete paquete = crearPaquetePrueba();
+			final Path fichero = Files.createTempFile("paquete", null);
+
+			try {
+				try (final OutputStream out = Files.newOutputStream(fichero)) {
+					PaqueteDAO.escribirPaquete(out, paquete, formato);
+				}
+				try (final FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+					PaqueteDAO.anadirBloques(canal, bloquesNuevos);
+					PaqueteDAO.anadirBloques(canal, otrosBloquesNuevos);
+				}
+
+				paquete.anadirBloque("BLOQUE NUEVO", new byte[] { 4, 5, 6 });
+				paquete.anadirBloque("BLOQUE NUEVO 2", new byte[] { 7 });
+				paquete.anadirBloque("A BLOQUE NUEVO", new byte[] { 8, 9 });
+				try (final InputStream in = Files.newInputStream(fichero)) {
+					assertPaquetesIguales(paquete, PaqueteDAO.leerPaquete(in));
+				}
+				assertPaquetesIguales(paquete, PaqueteDAO.leerPaquete(fichero));
+			} finally {
+				Files.delete(fichero);
+			}
+		}
+	}
+
+	/**
+	 * Comprueba que no se puedan añadir a un paquete guardado en un fichero
+	 * bloques con el nombre de otros que ya contiene, y que el fichero no cambie
+	 * al intentarlo.
+	 */
+	@Test
+	public void testAnadirBloquesRepetidos() throws IOException {
+		final Paquete bloquesNuevos = new Paquete();
+		bloquesNuevos.anadirBloque("BLOQUE NUEVO", new byte[] { 4, 5, 6 });
+		bloquesNuevos.anadirBloque("bloque de prueba 3", new byte[] { 7 });
+
+		for (final FormatoPaquete formato : FormatoPaquete.values()) {
+			final Path fichero = Files.createTempFile("paquete", null);
+
+			try {
+				try (final OutputStream out = Files.newOutputStream(fichero)) {
+					PaqueteDAO.escribirPaquete(out, crearPaquetePrueba(), formato);
+				}
+				final byte[] contenidoFichero = Files.readAllBytes(fichero);
+
+				try (final FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+					PaqueteDAO.anadirBloques(canal, bloquesNuevos);
+					fail();
+				} catch (final IOException exc) {
+					// Esperado
+				}
+
+				assertArrayEquals(contenidoFichero, Files.readAllBytes(fichero));
+			} finally {
+				Files.delete(fichero);
+			}
+		}
+	}
+
+	/**
+	 * Comprueba que la lectura indexada de un paquete guardado en un fichero dé
+	 * lugar a los mismos bloques, en cualquiera de los formatos.
+	 */
+	@Test
+	public void testLeerPaqueteIndexado() throws IOException {
+		final Paquete paquete = crearPaquetePrueba();
+
+		for (final FormatoPaquete formato : FormatoPaquete.values()) {
+			final Path fichero = Files.createTempFile("paquete", null);
+
+			try {
+				try (final OutputStream out = Files.newOutputStream(fichero)) {
+					PaqueteDAO.escribirPaquete(out, paquete, formato);
+				}
+				try (final FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ)) {
+					assertPaquetesIguales(paquete, PaqueteDAO.leerPaqueteIndexado(canal));
+				}
+			} finally {
+				Files.delete(fichero);
+			}
+		}
+	}
+
+	/**
+	 * Comprueba que la lectura indexada solo decodifique los bloques que se piden,
+	 * de manera que un bloque dañado no impida leer los demás.
+	 */
+	@Test(expected = UncheckedIOException.class)
+	public void testLeerPaqueteIndexadoBloqueDanado() throws IOException {
+		final Paquete paquete = new Paquete();
+		paquete.anadirBloque("BLOQUE A", new byte[] { 1, 2, 3 });
+		paquete.anadirBloque("BLOQUE B", new byte[] { 4, 5, 6 });
+
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		PaqueteDAO.escribirPaquete(bos, paquete);
+		// "AQID" es la codificación en Base64 del contenido del bloque A
+		final String texto = new String(bos.toByteArray(), StandardCharsets.UTF_8).replace("AQID", "A!ID");
+
+		final Path fichero = Files.createTempFile("paquete", null);
+		try {
+			Files.write(fichero, texto.getBytes(StandardCharsets.UTF_8));
+
+			try (final FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ)) {
+				final Paquete paqueteLeido = PaqueteDAO.leerPaqueteIndexado(canal);
+
+				assertArrayEquals(new byte[] { 4, 5, 6 }, paqueteLeido.getContenidoBloque("BLOQUE B"));
+				paqueteLeido.getContenidoBloque("BLOQUE A");
+			}
+		} finally {
+			Files.delete(fichero);
+		}
+	}
+
+	/**
+	 * Comprueba que la lectura de un paquete proyectando su fichero en memoria dé
+	 * lugar a los mismos bloques que la lectura de un flujo, en cualquiera de los
+	 * formatos y con cualquier tipo de salto de línea.
+	 */
+	@Test
+	public void testLeerPaqueteProyectado() throws IOException {
+		final Paquete paquete = crearPaquetePrueba();
+		final ByteArrayOutputStream bosTexto = new ByteArrayOutputStream();
+		final ByteArrayOutputStream bosBinario = new ByteArrayOutputStream();
+
+		PaqueteDAO.escribirPaquete(bosTexto, paquete, FormatoPaquete.TEXTO);
+		PaqueteDAO.escribirPaquete(bosBinario, paquete, FormatoPaquete.BINARIO);
+		final byte[] textoCrLf = new String(bosTexto.toByteArray(), StandardCharsets.UTF_8).replaceAll("\r?\n", "\r\n").getBytes(StandardCharsets.UTF_8);
+
+		for (final byte[] contenidoFichero : new byte[][] { bosTexto.toByteArray(), bosBinario.toByteArray(), textoCrLf, new byte[0] }) {
+			final Path fichero = Files.createTempFile("paquete", null);
+
+			try {
+				Files.write(fichero, contenidoFichero);
+
+				assertPaquetesIguales(
+					PaqueteDAO.leerPaquete(new ByteArrayInputStream(contenidoFichero)),
+					PaqueteDAO.leerPaquete(fichero)
+				);
+			} finally {
+				Files.delete(fichero);
+			}
+		}
+	}
+
+	/**
+	 * Comprueba que la lectura perezosa de un paquete dé lugar a los mismos
+	 * bloques, en cualquiera de los formatos.
+	 */
+	@Test
+	public void testLeerPaquetePerezoso() throws IOException {
+		final Paquete paquete = crearPaquetePrueba();
+
+		for (final FormatoPaquete formato : FormatoPaquete.values()) {
+			final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			PaqueteDAO.escribirPaquete(bos, paquete, formato);
+
+			assertPaquetesIguales(paquete, PaqueteDAO.leerPaquetePerezoso(ByteBuffer.wrap(bos.toByteArray())));
+		}
+	}
+
+	/**
+	 * Comprueba que la lectura perezosa de un paquete permita consultar los
+	 * nombres de sus bloques sin decodificarlos, de manera que un bloque dañado
+	 * solo dé error al pedir su contenido.
+	 */
+	@Test(expected = UncheckedIOException.class)
+	public void testLeerPaquetePerezosoBloqueDanado() throws IOException {
+		final Paquete paquete = new Paquete();
+		paquete.anadirBloque("BLOQUE A", new byte[] { 1, 2, 3 });
+		paquete.anadirBloque("BLOQUE B", new byte[] { 4, 5, 6 });
+
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		PaqueteDAO.escribirPaquete(bos, paquete);
+		// "AQID" es la codificación en Base64 del contenido del bloque A
+		final String texto = new String(bos.toByteArray(), StandardCharsets.UTF_8).replace("AQID", "A!ID");
+
+		final Paquete paqueteLeido = PaqueteDAO.leerPaquetePerezoso(ByteBuffer.wrap(texto.getBytes(StandardCharsets.UTF_8)));
+
+		assertEquals(paquete.getNombresBloque(), paqueteLeido.getNombresBloque());
+		assertArrayEquals(new byte[] { 4, 5, 6 }, paqueteLeido.getContenidoBloque("BLOQUE B"));
+		paqueteLeido.getContenidoBloque("BLOQUE A");
+	}
+
+	/**
+	 * Comprueba que un paquete leído a una arena de bloques tenga los mismos
+	 * bloques, incluso si algunos no caben en una región, y que su contenido deje
+	 * de estar disponible al cerrar la arena.
+	 */
+	@Test(expected = UncheckedIOException.class)
+	public void testLeerPaqueteArena() throws IOException {
+		final Paquete paquete = crearPaquetePrueba();
+		final Path fichero = Files.createTempFile("paquete", ".cpv");
+		final Paquete paqueteLeido;
+
+		try {
+			try (final OutputStream salida = Files.newOutputStream(fichero)) {
+				PaqueteDAO.escribirPaquete(salida, paquete, FormatoPaquete.BINARIO);
+			}
+
+			// Los bloques de mayor tamaño no caben en una región
+			try (final ArenaBloques arena = new ArenaBloques(512)) {
+				paqueteLeido = PaqueteDAO.leerPaquete(fichero, arena);
+
+				assertPaquetesIguales(paquete, paqueteLeido);
+				assertPaquetesIguales(paquete, arena.almacenar(paqueteLeido));
+				assertTrue(arena.getBytesReservados() >= arena.getBytesOcupados());
+			}
+		} finally {
+			Files.delete(fichero);
+		}
+
+		paqueteLeido.getContenidoBloque("BLOQUE DE PRUEBA 1");
+	}
+
+	/**
+	 * Comprueba que una arena de bloques lleve la cuenta de los bytes que ocupa y
+	 * reserva, que los paquetes almacenados en ella se puedan modificar, y que
+	 * tras cerrarla se libere su memoria y no se pueda usar.
+	 */
+	@Test
+	public void testArenaBloquesCuentasYCierre() {
+		final Random aleatorio = new Random(1234);
+		final Paquete paquete = new Paquete();
+		final int[] longitudes = { 100, 300, 600, 200 };
+		for (int i = 0; i < longitudes.length; ++i) {
+			final byte[] contenido = new byte[longitudes[i]];
+			aleatorio.nextBytes(contenido);
+			paquete.anadirBloque("Bloque " + i, contenido);
+		}
+
+		final ArenaBloques arena = new ArenaBloques(512);
+		final Paquete paqueteArena = arena.almacenar(paquete);
+
+		assertPaquetesIguales(paquete, paqueteArena);
+		assertEquals(1200, arena.getBytesOcupados());
+		// Los dos primeros bloques comparten región, el tercero ocupa una propia, y
+		// el cuarto ya no cabe en la primera
+		assertEquals(512 + 600 + 512, arena.getBytesReservados());
+
+		// Modificar el paquete almacenado no afecta al resto de sus bloques
+		paqueteArena.anadirBloque("Bloque 4", new byte[] { 1, 2, 3 });
+		assertArrayEquals(paquete.getContenidoBloque("Bloque 2"), paqueteArena.getContenidoBloque("Bloque 2"));
+		assertArrayEquals(new byte[] { 1, 2, 3 }, paqueteArena.getContenidoBloque("Bloque 4"));
+		assertEquals(1200, arena.getBytesOcupados());
+
+		final Paquete otroPaqueteArena = arena.almacenar(paquete);
+		arena.close();
+
+		assertEquals(0, arena.getBytesOcupados());
+		assertEquals(0, arena.getBytesReservados());
+
+		try {
+			otroPaqueteArena.getContenidoBloque("Bloque 0");
+			fail("Se ha leído un bloque de una arena cerrada");
+		} catch (final UncheckedIOException exc) {
+			// Lo esperado
+		}
+		try {
+			paqueteArena.getContenidoBloque("Bloque 1");
+			fail("Se ha leído un bloque de una arena cerrada");
+		} catch (final UncheckedIOException exc) {
+			// Lo esperado
+		}
+		try {
+			arena.almacenar(paquete);
+			fail("Se ha almacenado un paquete en una arena cerrada");
+		} catch (final IllegalStateException exc) {
+			// Lo esperado
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package esei.ssi.eperegrino.desempaquetador_cpv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import esei.ssi.eperegrino.common.ContextoCriptografico;
+import esei.ssi.eperegrino.common.NombresBloques;
+
+/**
+ * Resuelve la clave pública de un albergue a partir de su identificador, para
+ * comprobar los sellos de una CPV sin tener que conocer de antemano qué
+ * albergues la han sellado.
+ * <p>
+ * Las claves se leen del almacén solo cuando se piden, y las últimas claves
+ * usadas se recuerdan ya interpretadas, descartando las que lleven más tiempo
+ * sin usarse cuando se llena su capacidad. Es seguro pedir claves desde varios
+ * hilos a la vez.
+ *
+ * @author Alejandro González García
+ */
+public abstract class AlmacenClavesAlbergues implements Closeable {
+	/**
+	 * La extensión de los ficheros de clave pública, tal y como los escribe el
+	 * generador de claves.
+	 */
+	static final String EXTENSION_CLAVE_PUBLICA = ".publica";
+	/**
+	 * El número de claves interpretadas a recordar, si no se especifica otro.
+	 */
+	public static final int CAPACIDAD_PREDETERMINADA = 1024;
+
+	private final Map<String, PublicKey> clavesRecientes;
+
+	/**
+	 * Inicializa la parte común de un almacén de claves de albergues.
+	 *
+	 * @param capacidad El número máximo de claves interpretadas a recordar.
+	 * @throws IllegalArgumentException Si la capacidad no es positiva.
+	 */
+	protected AlmacenClavesAlbergues(final int capacidad) {
+		if (capacidad < 1) {
+			throw new IllegalArgumentException("La capacidad de un almacén de claves de albergues debe de ser positiva");
+		}
+
+		clavesRecientes = new LinkedHashMap<String, PublicKey>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, PublicKey> entrada) {
+				return size() > capacidad;
+			}
+		};
+	}
+
+	/**
+	 * Abre el almacén de claves de albergues guardado en la ruta especificada. Si
+	 * es un directorio, se usará un {@link AlmacenClavesDirectorio}; si es un
+	 * fichero, un {@link AlmacenClavesIndexado}.
+	 *
+	 * @param ruta      La ruta del almacén.
+	 * @param capacidad El número máximo de claves interpretadas a recordar.
+	 * @return El almacén abierto, que se debe de cerrar cuando ya no se use.
+	 * @throws IOException              Si ocurre un error de E/S al abrir el
+	 *                                  almacén.
+	 * @throws IllegalArgumentException Si la ruta es nula, o la capacidad no es
+	 *                                  positiva.
+	 */
+	public static AlmacenClavesAlbergues abrir(final Path ruta, final int capacidad) throws IOException {
+		if (ruta == null) {
+			throw new IllegalArgumentException("La ruta del almacén de claves de albergues no puede ser nula");
+		}
+
+		return Files.isDirectory(ruta) ? new AlmacenClavesDirectorio(ruta, capacidad) : new AlmacenClavesIndexado(ruta, capacidad);
+	}
+
+	/**
+	 * Obtiene la clave pública de un albergue. Los identificadores se comparan una
+	 * vez normalizados con {@link NombresBloques#normalizarIdentificadorAlbergue(String)},
+	 * de la misma manera que los nombres de bloques de un paquete.
+	 *
+	 * @param id El identificador del albergue.
+	 * @return La clave pública del albergue, o nulo si el almacén no la contiene.
+	 * @throws IOException              Si ocurre un error de E/S al leer la clave.
+	 * @throws GeneralSecurityException Si la clave leída no se puede interpretar.
+	 */
+	final PublicKey obtenerClavePublica(final String id) throws IOException, GeneralSecurityException {
+		final String idNormalizado = NombresBloques.normalizarIdentificadorAlbergue(id);
+		PublicKey clave;
+
+		synchronized (clavesRecientes) {
+			clave = clavesRecientes.get(idNormalizado);
+		}
+
+		if (clave == null) {
+			// Leer e interpretar la clave sin bloquear a quienes piden otras. Si dos hilos
+			// piden la misma a la vez, ambos la interpretan, pero el resultado es igual
+			final byte[] representacionClave = leerClavePublica(idNormalizado);
+			if (representacionClave == null) {
+				return null;
+			}
+
+			clave = ContextoCriptografico.actual().interpretarClavePublica(representacionClave);
+
+			synchronized (clavesRecientes) {
+				clavesRecientes.put(idNormalizado, clave);
+			}
+		}
+
+		return clave;
+	}
+
+	/**
+	 * Lee del almacén la representación de la clave pública de un albergue.
+	 *
+	 * @param idNormalizado El identificador normalizado del albergue.
+	 * @return La representación X509 de la clave pública del albergue, o nulo si
+	 *         el almacén no la contiene.
+	 * @throws IOException Si ocurre un error de E/S al leer la clave.
+	 */
+	protected abstract byte[] leerClavePublica(String idNormalizado) throws IOException;
+
+	/**
+	 * Libera los recursos asociados al almacén. Por defecto, no hace nada.
+	 *
+	 * @throws IOException Si ocurre un error de E/S al liberar los recursos.
+	 */
+	@Override
+	public void close() throws IOException {
+		// No hay recursos que liberar
+	}
+}
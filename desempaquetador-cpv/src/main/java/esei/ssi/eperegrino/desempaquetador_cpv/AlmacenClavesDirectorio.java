@@ -0,0 +1,55 @@
+package esei.ssi.eperegrino.desempaquetador_cpv;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import esei.ssi.eperegrino.common.NombresBloques;
+
+/**
+ * Un almacén de claves de albergues guardado en un directorio, que contiene un
+ * fichero {@code <id>.publica} con la clave pública de cada albergue, como los
+ * que escribe el generador de claves.
+ * <p>
+ * Al abrir el almacén solo se listan los nombres de los ficheros del
+ * directorio; el contenido de cada uno se lee la primera vez que se necesita.
+ *
+ * @author Alejandro González García
+ */
+final class AlmacenClavesDirectorio extends AlmacenClavesAlbergues {
+	private final Map<String, Path> ficheros = new HashMap<>();
+
+	/**
+	 * Abre un almacén de claves de albergues guardado en un directorio.
+	 *
+	 * @param directorio El directorio del almacén.
+	 * @param capacidad  El número máximo de claves interpretadas a recordar.
+	 * @throws IOException              Si ocurre un error de E/S al listar el
+	 *                                  directorio.
+	 * @throws IllegalArgumentException Si la capacidad no es positiva.
+	 */
+	AlmacenClavesDirectorio(final Path directorio, final int capacidad) throws IOException {
+		super(capacidad);
+
+		try (final DirectoryStream<Path> contenido = Files.newDirectoryStream(directorio, "*" + EXTENSION_CLAVE_PUBLICA)) {
+			for (final Path fichero : contenido) {
+				final String nombre = fichero.getFileName().toString();
+
+				ficheros.put(
+					NombresBloques.normalizarIdentificadorAlbergue(nombre.substring(0, nombre.length() - EXTENSION_CLAVE_PUBLICA.length())),
+					fichero
+				);
+			}
+		}
+	}
+
+	@Override
+	protected byte[] leerClavePublica(final String idNormalizado) throws IOException {
+		final Path fichero = ficheros.get(idNormalizado);
+
+		return fichero == null ? null : Files.readAllBytes(fichero);
+	}
+}
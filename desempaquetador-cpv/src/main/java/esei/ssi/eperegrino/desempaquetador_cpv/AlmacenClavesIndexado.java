@@ -0,0 +1,65 @@
+package esei.ssi.eperegrino.desempaquetador_cpv;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import esei.ssi.eperegrino.common.Paquete;
+import esei.ssi.eperegrino.common.PaqueteDAO;
+
+/**
+ * Un almacén de claves de albergues guardado en un único fichero con formato de
+ * paquete, en cualquiera de sus formatos, que contiene un bloque por albergue
+ * cuyo nombre es el identificador del albergue y cuyo contenido es su clave
+ * pública.
+ * <p>
+ * Al abrir el almacén solo se indexan las posiciones de los bloques del
+ * fichero, con {@link PaqueteDAO#leerPaqueteIndexado(FileChannel)}; el
+ * contenido de cada uno se lee y decodifica la primera vez que se necesita.
+ *
+ * @author Alejandro González García
+ */
+final class AlmacenClavesIndexado extends AlmacenClavesAlbergues {
+	private final FileChannel canal;
+	private final Paquete claves;
+
+	/**
+	 * Abre un almacén de claves de albergues guardado en un fichero.
+	 *
+	 * @param fichero   El fichero del almacén.
+	 * @param capacidad El número máximo de claves interpretadas a recordar.
+	 * @throws IOException              Si ocurre un error de E/S al indexar el
+	 *                                  fichero, o está mal formado.
+	 * @throws IllegalArgumentException Si la capacidad no es positiva.
+	 */
+	AlmacenClavesIndexado(final Path fichero, final int capacidad) throws IOException {
+		super(capacidad);
+
+		canal = FileChannel.open(fichero, StandardOpenOption.READ);
+		try {
+			claves = PaqueteDAO.leerPaqueteIndexado(canal);
+		} catch (final IOException | RuntimeException exc) {
+			canal.close();
+			throw exc;
+		}
+	}
+
+	@Override
+	protected byte[] leerClavePublica(final String idNormalizado) throws IOException {
+		try {
+			// El paquete normaliza los nombres de sus bloques de la misma manera
+			synchronized (claves) {
+				return claves.getContenidoBloque(idNormalizado);
+			}
+		} catch (final UncheckedIOException exc) {
+			throw exc.getCause();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		canal.close();
+	}
+}
@@ -0,0 +1,130 @@
+package esei.ssi.eperegrino.desempaquetador_cpv;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+
+/**
+ * Modela los argumentos de operación del modo de verificación de archivos del
+ * desempaquetador de CPV.
+ *
+ * @author Alejandro González García
+ */
+final class ArgumentosArchivoDesempaquetador {
+	private final File directorioArchivo;
+	private final File ficheroInforme;
+	private final int hilos;
+	private final File ficheroClavePrivadaOficina;
+	private final File ficheroClavePublicaPeregrino;
+	private final List<Entry<String, byte[]>> albergues;
+	private final File ficheroCache;
+
+	/**
+	 * Crea un objeto de argumentos de operación para el modo de verificación de
+	 * archivos del desempaquetador de CPV.
+	 *
+	 * @param directorioArchivo            El directorio raíz del árbol de CPV a
+	 *                                     verificar.
+	 * @param ficheroInforme               El fichero donde escribir el informe.
+	 * @param hilos                        El número de hilos con los que hacer
+	 *                                     las operaciones asimétricas.
+	 * @param ficheroClavePrivadaOficina   El fichero que contiene la clave privada
+	 *                                     de la oficina del peregrino.
+	 * @param ficheroClavePublicaPeregrino El fichero que contiene la clave pública
+	 *                                     del peregrino propietario de las CPV.
+	 * @param albergues                    Una lista de identificadores de albergues
+	 *                                     cuyos sellos se comprobarán, asociados con
+	 *                                     su clave pública.
+	 * @param ficheroCache                 El fichero de la caché de firmas
+	 *                                     verificadas, o nulo para no usar una.
+	 * @throws IllegalArgumentException Si algún parámetro distinto del fichero de
+	 *                                  la caché es nulo, o el número de hilos no
+	 *                                  es positivo.
+	 */
+	public ArgumentosArchivoDesempaquetador(
+		final File directorioArchivo, final File ficheroInforme, final int hilos, final File ficheroClavePrivadaOficina,
+		final File ficheroClavePublicaPeregrino, final List<Entry<String, byte[]>> albergues, final File ficheroCache
+	) {
+		if (directorioArchivo == null || ficheroInforme == null || ficheroClavePrivadaOficina == null || ficheroClavePublicaPeregrino == null || albergues == null) {
+			throw new IllegalArgumentException("Los argumentos del desempaquetador de CPV no pueden ser nulos");
+		}
+
+		if (hilos < 1) {
+			throw new IllegalArgumentException("El número de hilos debe de ser positivo");
+		}
+
+		this.directorioArchivo = directorioArchivo;
+		this.ficheroInforme = ficheroInforme;
+		this.hilos = hilos;
+		this.ficheroClavePrivadaOficina = ficheroClavePrivadaOficina;
+		this.ficheroClavePublicaPeregrino = ficheroClavePublicaPeregrino;
+		this.albergues = Collections.unmodifiableList(albergues);
+		this.ficheroCache = ficheroCache;
+	}
+
+	/**
+	 * Obtiene el directorio raíz del árbol de CPV a verificar.
+	 *
+	 * @return El descrito directorio.
+	 */
+	public File getDirectorioArchivo() {
+		return directorioArchivo;
+	}
+
+	/**
+	 * Obtiene el fichero donde escribir el informe.
+	 *
+	 * @return El descrito fichero.
+	 */
+	public File getFicheroInforme() {
+		return ficheroInforme;
+	}
+
+	/**
+	 * Obtiene el número de hilos con los que hacer las operaciones asimétricas.
+	 *
+	 * @return El descrito número.
+	 */
+	public int getHilos() {
+		return hilos;
+	}
+
+	/**
+	 * Obtiene el fichero que contiene la clave privada de la oficina del peregrino.
+	 *
+	 * @return El descrito fichero.
+	 */
+	public File getFicheroClavePrivadaOficina() {
+		return ficheroClavePrivadaOficina;
+	}
+
+	/**
+	 * Obtiene el fichero que contiene la clave pública del peregrino propietario de
+	 * las CPV.
+	 *
+	 * @return El descrito fichero.
+	 */
+	public File getFicheroClavePublicaPeregrino() {
+		return ficheroClavePublicaPeregrino;
+	}
+
+	/**
+	 * Obtiene la lista de identificadores de albergues cuyos sellos se
+	 * comprobarán, asociados con su clave pública.
+	 *
+	 * @return La lista descrita. No se garantiza que sea una lista modificable.
+	 */
+	public List<Entry<String, byte[]>> getAlbergues() {
+		return albergues;
+	}
+
+	/**
+	 * Obtiene el fichero de la caché de firmas verificadas.
+	 *
+	 * @return El descrito fichero, o nulo si no se debe de usar una caché.
+	 */
+	public File getFicheroCache() {
+		return ficheroCache;
+	}
+}
@@ -15,6 +15,7 @@ final class ArgumentosDesempaquetador {
 	private final File ficheroClavePrivadaOficina;
 	private final File ficheroClavePublicaPeregrino;
 	private final List<Entry<String, byte[]>> albergues;
+	private final File almacenAlbergues;
 
 	/**
 	 * Crea un objeto de argumentos de operación para el desempaquetador de CPV.
@@ -39,6 +40,34 @@ final class ArgumentosDesempaquetador {
 		this.ficheroClavePrivadaOficina = ficheroClavePrivadaOficina;
 		this.ficheroClavePublicaPeregrino = ficheroClavePublicaPeregrino;
 		this.albergues = Collections.unmodifiableList(albergues);
+		this.almacenAlbergues = null;
+	}
+
+	/**
+	 * Crea un objeto de argumentos de operación para el desempaquetador de CPV,
+	 * que obtendrá las claves públicas de los albergues que hayan sellado la CPV
+	 * de un almacén de claves.
+	 *
+	 * @param ficheroPaquete               El fichero que contiene la CPV a
+	 *                                     desempaquetar.
+	 * @param ficheroClavePrivadaOficina   El fichero que contiene la clave privada
+	 *                                     de la oficina del peregrino.
+	 * @param ficheroClavePublicaPeregrino El fichero que contiene la clave pública
+	 *                                     del peregrino propietario de la CPV.
+	 * @param almacenAlbergues             El directorio o fichero del almacén de
+	 *                                     claves de albergues.
+	 * @throws IllegalArgumentException Si algún parámetro es nulo.
+	 */
+	public ArgumentosDesempaquetador(final File ficheroPaquete, final File ficheroClavePrivadaOficina, final File ficheroClavePublicaPeregrino, final File almacenAlbergues) {
+		if (ficheroPaquete == null || ficheroClavePrivadaOficina == null || ficheroClavePublicaPeregrino == null || almacenAlbergues == null) {
+			throw new IllegalArgumentException("Los argumentos del desempaquetador de CPV no pueden ser nulos");
+		}
+
+		this.ficheroPaquete = ficheroPaquete;
+		this.ficheroClavePrivadaOficina = ficheroClavePrivadaOficina;
+		this.ficheroClavePublicaPeregrino = ficheroClavePublicaPeregrino;
+		this.albergues = Collections.emptyList();
+		this.almacenAlbergues = almacenAlbergues;
 	}
 
 	/**
@@ -78,4 +107,14 @@ final class ArgumentosDesempaquetador {
 	public List<Entry<String, byte[]>> getAlbergues() {
 		return albergues;
 	}
+
+	/**
+	 * Obtiene el directorio o fichero del almacén de claves de albergues.
+	 *
+	 * @return El descrito directorio o fichero, o nulo si los albergues se han
+	 *         especificado como una lista.
+	 */
+	public File getAlmacenAlbergues() {
+		return almacenAlbergues;
+	}
 }
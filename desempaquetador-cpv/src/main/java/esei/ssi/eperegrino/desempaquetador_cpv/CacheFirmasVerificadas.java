@@ -0,0 +1,300 @@
+package esei.ssi.eperegrino.desempaquetador_cpv;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import esei.ssi.eperegrino.common.ContextoCriptografico;
+import esei.ssi.eperegrino.common.ParametrosCriptograficos;
+import esei.ssi.eperegrino.common.SuiteCriptografica;
+
+/**
+ * Recuerda qué firmas de cargas útiles de CPV ya se han comprobado que son
+ * válidas, para no repetir su comprobación al volver a verificar las mismas CPV.
+ * Cada firma se identifica por una huella de la carga útil encriptada, la firma,
+ * la clave pública del firmante y la suite criptográfica. La caché no guarda
+ * las claves simétricas de las cargas útiles, así que desencriptarlas sigue
+ * requiriendo la clave privada de la oficina del peregrino.
+ * <p>
+ * Las huellas se guardan en un fichero al que solo se añaden registros, y se
+ * indexan en memoria al abrirlo. Como mucho se recuerdan tantas huellas como la
+ * capacidad de la caché, descartando las que lleven más tiempo sin usarse.
+ * Cuando el fichero contiene demasiados registros respecto a la capacidad, se
+ * reescribe solo con las huellas recordadas.
+ * <p>
+ * Las huellas son códigos de autenticación de mensajes cuya clave se deriva de
+ * la clave privada de la oficina del peregrino, de manera que quien pueda
+ * modificar el fichero no puede hacer pasar por válida una firma que no lo es.
+ * Es seguro usar la caché desde varios hilos a la vez.
+ *
+ * @author Alejandro González García
+ */
+final class CacheFirmasVerificadas implements Closeable {
+	/**
+	 * El número de huellas a recordar, si no se especifica otro.
+	 */
+	static final int CAPACIDAD_PREDETERMINADA = 100000;
+	/**
+	 * La cabecera con la que empieza el fichero de la caché, que identifica su
+	 * formato.
+	 */
+	private static final byte[] CABECERA = "CPV-FIRMAS-VERIFICADAS-1\n".getBytes(StandardCharsets.US_ASCII);
+	/**
+	 * La longitud en bytes de cada huella, y por tanto de cada registro del
+	 * fichero.
+	 */
+	private static final int LONGITUD_HUELLA = 64;
+	/**
+	 * El número de registros del fichero por cada huella de capacidad a partir del
+	 * cual se reescribe.
+	 */
+	private static final int REGISTROS_POR_HUELLA_COMPACTACION = 2;
+
+	private final Path fichero;
+	private final int capacidad;
+	private final ThreadLocal<Mac> generadoresHuellas;
+	private final Map<ByteBuffer, Boolean> huellas;
+	private OutputStream registro;
+	private int registrosFichero;
+	private IOException errorEscritura;
+
+	/**
+	 * Crea una caché de firmas verificadas vacía, sin leer su fichero.
+	 *
+	 * @param fichero      El fichero de la caché.
+	 * @param capacidad    El número máximo de huellas a recordar.
+	 * @param claveHuellas La clave con la que calcular las huellas.
+	 */
+	private CacheFirmasVerificadas(final Path fichero, final int capacidad, final SecretKey claveHuellas) {
+		this.fichero = fichero.toAbsolutePath();
+		this.capacidad = capacidad;
+
+		generadoresHuellas = ThreadLocal.withInitial(() -> {
+			try {
+				final Mac generadorHuellas = Mac.getInstance(
+					ParametrosCriptograficos.ALGORITMO_HUELLA_FIRMAS, ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS
+				);
+				generadorHuellas.init(claveHuellas);
+
+				return generadorHuellas;
+			} catch (final GeneralSecurityException exc) {
+				// Ya se ha comprobado al abrir la caché que se puede crear
+				throw new AssertionError("Se han violado invariantes en la implementación del programa", exc);
+			}
+		});
+
+		huellas = new LinkedHashMap<ByteBuffer, Boolean>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<ByteBuffer, Boolean> entrada) {
+				return size() > capacidad;
+			}
+		};
+	}
+
+	/**
+	 * Abre la caché de firmas verificadas guardada en un fichero, creándolo si no
+	 * existe.
+	 *
+	 * @param fichero             El fichero de la caché.
+	 * @param capacidad           El número máximo de huellas a recordar.
+	 * @param clavePrivadaOficina La clave privada de la oficina del peregrino, de
+	 *                            la que se deriva la clave de las huellas.
+	 * @return La caché abierta, que se debe de cerrar cuando ya no se use.
+	 * @throws IOException              Si ocurre un error de E/S al leer o crear el
+	 *                                  fichero, o no es un fichero de caché de
+	 *                                  firmas verificadas.
+	 * @throws GeneralSecurityException Si no se puede derivar la clave de las
+	 *                                  huellas.
+	 * @throws IllegalArgumentException Si algún parámetro es nulo, o la capacidad
+	 *                                  no es positiva.
+	 */
+	static CacheFirmasVerificadas abrir(final Path fichero, final int capacidad, final PrivateKey clavePrivadaOficina) throws IOException, GeneralSecurityException {
+		if (fichero == null || clavePrivadaOficina == null) {
+			throw new IllegalArgumentException("Un parámetro recibido para abrir la caché de firmas verificadas es nulo, y no debería de serlo");
+		}
+
+		if (capacidad < 1) {
+			throw new IllegalArgumentException("La capacidad de la caché de firmas verificadas debe de ser positiva");
+		}
+
+		final SecretKey claveHuellas = new SecretKeySpec(
+			ContextoCriptografico.actual().getResumidor().digest(clavePrivadaOficina.getEncoded()),
+			ParametrosCriptograficos.ALGORITMO_HUELLA_FIRMAS
+		);
+
+		// Comprobar que el algoritmo de las huellas está disponible
+		Mac.getInstance(
+			ParametrosCriptograficos.ALGORITMO_HUELLA_FIRMAS, ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS
+		).init(claveHuellas);
+
+		final CacheFirmasVerificadas cache = new CacheFirmasVerificadas(fichero, capacidad, claveHuellas);
+		cache.cargar();
+
+		return cache;
+	}
+
+	/**
+	 * Calcula la huella de la firma de una carga útil.
+	 *
+	 * @param suite                La suite criptográfica de la carga útil.
+	 * @param datos                La carga útil encriptada.
+	 * @param firma                La firma de la carga útil encriptada.
+	 * @param clavePublicaFirmante La clave pública del firmante.
+	 * @return La huella calculada.
+	 */
+	byte[] calcularHuella(final SuiteCriptografica suite, final byte[] datos, final byte[] firma, final PublicKey clavePublicaFirmante) {
+		final Mac generadorHuellas = generadoresHuellas.get();
+
+		// Preceder cada campo de su longitud, para que no se puedan confundir sus
+		// límites
+		generadorHuellas.update(suite.getIdentificador().getBytes(StandardCharsets.UTF_8));
+		for (final byte[] campo : new byte[][] { datos, firma, clavePublicaFirmante.getEncoded() }) {
+			generadorHuellas.update(ByteBuffer.allocate(Integer.BYTES).putInt(campo.length).array());
+			generadorHuellas.update(campo);
+		}
+
+		return generadorHuellas.doFinal();
+	}
+
+	/**
+	 * Comprueba si ya se ha comprobado que la firma con la huella especificada es
+	 * válida.
+	 *
+	 * @param huella La huella de la firma, calculada con
+	 *               {@link #calcularHuella(SuiteCriptografica, byte[], byte[], PublicKey)}.
+	 * @return Verdadero si la firma es válida, falso si no se sabe.
+	 */
+	boolean contiene(final byte[] huella) {
+		synchronized (huellas) {
+			return huellas.get(ByteBuffer.wrap(huella)) != null;
+		}
+	}
+
+	/**
+	 * Recuerda que la firma con la huella especificada es válida. Si no se puede
+	 * guardar en el fichero, se sigue recordando en memoria, y el error se
+	 * notifica al cerrar la caché.
+	 *
+	 * @param huella La huella de la firma, calculada con
+	 *               {@link #calcularHuella(SuiteCriptografica, byte[], byte[], PublicKey)}.
+	 */
+	void anotar(final byte[] huella) {
+		synchronized (huellas) {
+			if (huellas.put(ByteBuffer.wrap(huella), Boolean.TRUE) == null && registro != null) {
+				try {
+					registro.write(huella);
+
+					if (++registrosFichero > capacidad * REGISTROS_POR_HUELLA_COMPACTACION) {
+						compactar();
+					}
+				} catch (final IOException exc) {
+					errorEscritura = exc;
+					registro = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Guarda en el fichero las huellas pendientes, y lo cierra.
+	 *
+	 * @throws IOException Si ocurre un error de E/S al escribir el fichero, ahora
+	 *                     o al anotar alguna huella.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (huellas) {
+			if (registro != null) {
+				registro.close();
+				registro = null;
+			}
+
+			if (errorEscritura != null) {
+				throw new IOException("No se han podido guardar todas las firmas verificadas en " + fichero, errorEscritura);
+			}
+		}
+	}
+
+	/**
+	 * Lee las huellas del fichero de la caché, y lo prepara para añadir nuevas.
+	 * Un registro incompleto al final del fichero, que puede quedar si el proceso
+	 * terminó mientras lo escribía, se descarta.
+	 *
+	 * @throws IOException Si ocurre un error de E/S, o el fichero no es de caché
+	 *                     de firmas verificadas.
+	 */
+	private void cargar() throws IOException {
+		if (!Files.exists(fichero) || Files.size(fichero) == 0) {
+			Files.write(fichero, CABECERA);
+		} else {
+			final byte[] contenido = Files.readAllBytes(fichero);
+
+			if (contenido.length < CABECERA.length || !Arrays.equals(Arrays.copyOf(contenido, CABECERA.length), CABECERA)) {
+				throw new IOException("El fichero " + fichero + " no es una caché de firmas verificadas");
+			}
+
+			for (int i = CABECERA.length; i + LONGITUD_HUELLA <= contenido.length; i += LONGITUD_HUELLA) {
+				huellas.put(ByteBuffer.wrap(Arrays.copyOfRange(contenido, i, i + LONGITUD_HUELLA)), Boolean.TRUE);
+				++registrosFichero;
+			}
+
+			// Reescribir el fichero si sobran registros, o alguno está incompleto
+			if ((contenido.length - CABECERA.length) % LONGITUD_HUELLA != 0 || registrosFichero > capacidad * REGISTROS_POR_HUELLA_COMPACTACION) {
+				compactar();
+				return;
+			}
+		}
+
+		registro = new BufferedOutputStream(Files.newOutputStream(fichero, StandardOpenOption.APPEND));
+	}
+
+	/**
+	 * Reescribe el fichero de la caché con las huellas recordadas, de menos a más
+	 * recientemente usadas, para conservar ese orden al volver a leerlo. El
+	 * fichero nuevo reemplaza al anterior de manera atómica.
+	 *
+	 * @throws IOException Si ocurre un error de E/S al reescribir el fichero.
+	 */
+	private void compactar() throws IOException {
+		if (registro != null) {
+			registro.close();
+			registro = null;
+		}
+
+		final Path temporal = Files.createTempFile(fichero.getParent(), fichero.getFileName().toString(), ".tmp");
+		try {
+			try (final OutputStream salida = new BufferedOutputStream(Files.newOutputStream(temporal))) {
+				salida.write(CABECERA);
+				for (final ByteBuffer huella : huellas.keySet()) {
+					salida.write(huella.array());
+				}
+			}
+
+			Files.move(temporal, fichero, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporal);
+		}
+
+		registrosFichero = huellas.size();
+		registro = new BufferedOutputStream(Files.newOutputStream(fichero, StandardOpenOption.APPEND));
+	}
+}
@@ -0,0 +1,227 @@
+package esei.ssi.eperegrino.desempaquetador_cpv;
+
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.SecretKey;
+
+import esei.ssi.eperegrino.common.NombresBloques;
+import esei.ssi.eperegrino.common.Paquete;
+import esei.ssi.eperegrino.common.SuiteCriptografica;
+
+/**
+ * Agrupa los bloques de una CPV que protegen una misma carga útil (los datos
+ * del peregrino o el sello de un albergue): la carga útil encriptada con un
+ * cifrador simétrico, la clave de ese cifrador encriptada para la oficina del
+ * peregrino, y el resumen de la carga útil encriptada firmado por su autor.
+ * Los algoritmos con los que se hace todo ello son los de la
+ * {@link SuiteCriptografica} anotada para la carga útil en la CPV.
+ * <p>
+ * Los pasos para comprobar y desencriptar la carga útil se exponen por
+ * separado, para poder hacerlos en momentos distintos.
+ *
+ * @author Alejandro González García
+ */
+final class CargaUtilCifrada {
+	private final String descripcion;
+	private final String mensajeFormatoInvalido;
+	private final SuiteCriptografica suite;
+	private final byte[] datosEncriptados;
+	private final byte[] claveSimetricoEncriptada;
+	private final byte[] resumenDatosEncriptados;
+
+	/**
+	 * Crea una carga útil cifrada.
+	 *
+	 * @param descripcion              Una descripción textual de la carga útil,
+	 *                                 que se puede mostrar al usuario.
+	 * @param mensajeFormatoInvalido   El mensaje de error a usar si la carga útil
+	 *                                 desencriptada no sigue el formato JSON.
+	 * @param suite                    La suite criptográfica de la carga útil.
+	 * @param datosEncriptados         La carga útil encriptada.
+	 * @param claveSimetricoEncriptada La clave del cifrador simétrico, encriptada.
+	 * @param resumenDatosEncriptados  El resumen firmado de la carga útil
+	 *                                 encriptada.
+	 */
+	private CargaUtilCifrada(
+		final String descripcion, final String mensajeFormatoInvalido, final SuiteCriptografica suite,
+		final byte[] datosEncriptados, final byte[] claveSimetricoEncriptada, final byte[] resumenDatosEncriptados
+	) {
+		this.descripcion = descripcion;
+		this.mensajeFormatoInvalido = mensajeFormatoInvalido;
+		this.suite = suite;
+		this.datosEncriptados = datosEncriptados;
+		this.claveSimetricoEncriptada = claveSimetricoEncriptada;
+		this.resumenDatosEncriptados = resumenDatosEncriptados;
+	}
+
+	/**
+	 * Obtiene los bloques de una CPV que protegen los datos del peregrino.
+	 *
+	 * @param cpv El paquete con los datos de la CPV.
+	 * @return La carga útil cifrada con los datos del peregrino.
+	 * @throws NoSuchElementException   Si falta algún bloque de los datos del
+	 *                                  peregrino.
+	 * @throws NoSuchAlgorithmException Si la suite criptográfica anotada para los
+	 *                                  datos del peregrino no se conoce.
+	 */
+	static CargaUtilCifrada leerDatosPeregrino(final Paquete cpv) throws NoSuchAlgorithmException {
+		final byte[] datosPeregrinoEncriptados = cpv.getContenidoBloque(NombresBloques.TITULO_BLOQUE_DATOS_PEREGRINO);
+		if (datosPeregrinoEncriptados == null) {
+			throw new NoSuchElementException("CPV mal formada: no contiene un bloque con los datos del peregrino");
+		}
+
+		final byte[] claveSimetricoDatosPeregrinoEncriptada = cpv.getContenidoBloque(NombresBloques.TITULO_BLOQUE_CLAVE_DATOS_PEREGRINO);
+		if (claveSimetricoDatosPeregrinoEncriptada == null) {
+			throw new NoSuchElementException("CPV mal formada: no contiene un bloque con la clave del cifrador simétrico usado para encriptar los datos del peregrino");
+		}
+
+		final byte[] resumenDatosPeregrinoEncriptados = cpv.getContenidoBloque(NombresBloques.TITULO_BLOQUE_RESUMEN_DATOS_PEREGRINO_ENCRIPTADOS);
+		if (resumenDatosPeregrinoEncriptados == null) {
+			throw new NoSuchElementException("CPV mal formada: no contiene un bloque con el resumen de los datos del peregrino encriptados");
+		}
+
+		return new CargaUtilCifrada(
+			"El bloque de datos del peregrino",
+			"CPV mal formada: los datos del peregrino no siguen el formato JSON. Esto puede indicar que esta CPV ha sido destinada a otra oficina del peregrino, o que una clave de encriptación ha sido modificada durante su envío",
+			SuiteCriptografica.leer(cpv, NombresBloques.TITULO_BLOQUE_SUITE_DATOS_PEREGRINO),
+			datosPeregrinoEncriptados,
+			claveSimetricoDatosPeregrinoEncriptada,
+			resumenDatosPeregrinoEncriptados
+		);
+	}
+
+	/**
+	 * Obtiene los bloques de una CPV que protegen el sello de un albergue.
+	 *
+	 * @param cpv El paquete con los datos de la CPV.
+	 * @param id  El identificador del albergue.
+	 * @return La carga útil cifrada con el sello del albergue, o nulo si la CPV no
+	 *         contiene datos del sello.
+	 * @throws NoSuchElementException   Si la CPV contiene datos del sello, pero le
+	 *                                  falta algún otro bloque del mismo.
+	 * @throws NoSuchAlgorithmException Si la suite criptográfica anotada para el
+	 *                                  sello no se conoce.
+	 */
+	static CargaUtilCifrada leerSelloAlbergue(final Paquete cpv, final String id) throws NoSuchAlgorithmException {
+		final byte[] datosSelloAlbergueEncriptados = cpv.getContenidoBloque(
+			NombresBloques.TITULO_BLOQUE_DATOS_SELLO_ALBERGUE.replace("{ID}", id)
+		);
+		if (datosSelloAlbergueEncriptados == null) {
+			return null;
+		}
+
+		final byte[] claveSimetricoDatosSelloEncriptada = cpv.getContenidoBloque(
+			NombresBloques.TITULO_BLOQUE_CLAVE_SELLO_ALBERGUE.replace("{ID}", id)
+		);
+		if (claveSimetricoDatosSelloEncriptada == null) {
+			throw new NoSuchElementException("CPV mal formada: no contiene un bloque con la clave del cifrador simétrico usado para encriptar el sello del albergue \"" + id + "\"");
+		}
+
+		final byte[] resumenDatosSelloEncriptados = cpv.getContenidoBloque(
+			NombresBloques.TITULO_BLOQUE_RESUMEN_SELLO_ALBERGUE_ENCRIPTADO.replace("{ID}", id)
+		);
+		if (resumenDatosSelloEncriptados == null) {
+			throw new NoSuchElementException("CPV mal formada: no contiene un bloque con el resumen de los datos del sello del albergue \"" + id + "\" encriptados");
+		}
+
+		return new CargaUtilCifrada(
+			"El sello del albergue \"" + id + "\"",
+			"CPV mal formada: el sello del albergue \"" + id + "\" no sigue el formato JSON. Esto puede indicar que esta CPV ha sido destinada a otra oficina del peregrino, o que una clave de encriptación ha sido modificada durante su envío",
+			SuiteCriptografica.leer(cpv, NombresBloques.TITULO_BLOQUE_SUITE_SELLO_ALBERGUE.replace("{ID}", id)),
+			datosSelloAlbergueEncriptados,
+			claveSimetricoDatosSelloEncriptada,
+			resumenDatosSelloEncriptados
+		);
+	}
+
+	/**
+	 * Comprueba que la carga útil encriptada coincide con la firmada por su autor.
+	 *
+	 * @param clavePublicaFirmante La clave pública del autor de la carga útil.
+	 * @throws GeneralSecurityException Si ocurre algún error durante alguna
+	 *                                  operación criptográfica, o la firma no es
+	 *                                  válida.
+	 */
+	void comprobarFirma(final PublicKey clavePublicaFirmante) throws GeneralSecurityException {
+		suite.comprobarFirma(descripcion, datosEncriptados, resumenDatosEncriptados, clavePublicaFirmante);
+	}
+
+	/**
+	 * Comprueba que la carga útil encriptada coincide con la firmada por su autor,
+	 * de la misma manera que {@link #comprobarFirma(PublicKey)}, pero sin repetir
+	 * la comprobación si la caché especificada recuerda que la firma es válida.
+	 * Si no lo recuerda y la firma es válida, se anota en la caché.
+	 *
+	 * @param clavePublicaFirmante La clave pública del autor de la carga útil.
+	 * @param cache                La caché de firmas verificadas a consultar.
+	 * @throws GeneralSecurityException Si ocurre algún error durante alguna
+	 *                                  operación criptográfica, o la firma no es
+	 *                                  válida.
+	 */
+	void comprobarFirma(final PublicKey clavePublicaFirmante, final CacheFirmasVerificadas cache) throws GeneralSecurityException {
+		final byte[] huella = cache.calcularHuella(suite, datosEncriptados, resumenDatosEncriptados, clavePublicaFirmante);
+
+		if (!cache.contiene(huella)) {
+			comprobarFirma(clavePublicaFirmante);
+			cache.anotar(huella);
+		}
+	}
+
+	/**
+	 * Desencripta la clave del cifrador simétrico con el que se encriptó la carga
+	 * útil.
+	 *
+	 * @param clavePrivadaOficina La clave privada de la oficina del peregrino.
+	 * @return La clave del cifrador simétrico.
+	 * @throws GeneralSecurityException Si ocurre algún error durante alguna
+	 *                                  operación criptográfica.
+	 */
+	SecretKey desencriptarClave(final PrivateKey clavePrivadaOficina) throws GeneralSecurityException {
+		return suite.desencriptarClaveSimetrico(claveSimetricoEncriptada, clavePrivadaOficina);
+	}
+
+	/**
+	 * Desencripta la carga útil, y lee sus pares clave-valor directamente de los
+	 * bytes desencriptados, comprobando que siga el formato JSON. Si no lo sigue,
+	 * o la suite detecta que la carga útil ha sido modificada, la clave del
+	 * cifrador simétrico usada no es la correcta.
+	 *
+	 * @param clave La clave del cifrador simétrico, obtenida con
+	 *              {@link #desencriptarClave(PrivateKey)}.
+	 * @return Los pares clave-valor de la carga útil, en el orden en que fueron
+	 *         escritos.
+	 * @throws GeneralSecurityException Si ocurre algún error durante alguna
+	 *                                  operación criptográfica, o la carga útil
+	 *                                  no sigue el formato JSON.
+	 */
+	Map<String, String> desencriptar(final SecretKey clave) throws GeneralSecurityException {
+		final Map<String, String> cargaUtil;
+
+		try {
+			cargaUtil = suite.desencriptarCargaUtil(datosEncriptados, clave);
+		} catch (final IllegalArgumentException | AEADBadTagException exc) {
+			throw new GeneralSecurityException(mensajeFormatoInvalido, exc);
+		}
+
+		if (cargaUtil.isEmpty()) {
+			throw new GeneralSecurityException(mensajeFormatoInvalido);
+		}
+
+		return cargaUtil;
+	}
+
+	/**
+	 * Obtiene la descripción textual de la carga útil.
+	 *
+	 * @return La descrita descripción.
+	 */
+	String getDescripcion() {
+		return descripcion;
+	}
+}
@@ -1,27 +1,42 @@
 package esei.ssi.eperegrino.desempaquetador_cpv;
 
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.security.GeneralSecurityException;
+import java.security.KeyException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.List;
 import java.util.NoSuchElementException;
-
-import javax.crypto.Cipher;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
 
 import esei.ssi.eperegrino.common.Actor;
-import esei.ssi.eperegrino.common.GestorProveedoresJCA;
+import esei.ssi.eperegrino.common.ClavesActores;
 import esei.ssi.eperegrino.common.JSONUtils;
 import esei.ssi.eperegrino.common.NombresBloques;
 import esei.ssi.eperegrino.common.Paquete;
 import esei.ssi.eperegrino.common.PaqueteDAO;
-import esei.ssi.eperegrino.common.ParametrosCriptograficos;
-import esei.ssi.eperegrino.common.Util;
 
-final class DesempaquetadorCpv {
+public final class DesempaquetadorCpv {
 	private static final String SEPARADOR_BLOQUES = "----------";
+	/**
+	 * Lo que se muestra en lugar del contenido de un sello que no se ha podido
+	 * comprobar porque su albergue no está en la lista de albergues conocidos.
+	 */
+	private static final String SELLO_SIN_VERIFICAR = "(sin verificar: el albergue no está en la lista de albergues conocidos)";
 
 	/**
 	 * Punto de entrada de la aplicación.
@@ -30,14 +45,32 @@ final class DesempaquetadorCpv {
 	 *             por {@link LectorArgumentosLineaComandos}.
 	 */
 	public static void main(final String[] args) {
+		if (args.length > 0 && LectorArgumentosLineaComandos.OPCION_ARCHIVO.equals(args[0])) {
+			VerificadorArchivoCpv.main(LectorArgumentosLineaComandos.interpretarArchivo(args));
+			return;
+		}
+
 		final ArgumentosDesempaquetador argumentos = LectorArgumentosLineaComandos.interpretar(args);
 
 		try {
-			// Establecer claves comunes e invariantes
-			Actor.OFICINA_PEREGRINO.setClavePrivada(Files.readAllBytes(argumentos.getFicheroClavePrivadaOficina().toPath()));
-			Actor.PEREGRINO.setClavePublica(Files.readAllBytes(argumentos.getFicheroClavePublicaPeregrino().toPath()));
+			// Leer claves comunes e invariantes
+			final ClavesActores claves = new ClavesActores()
+				.conClavePrivada(Actor.OFICINA_PEREGRINO, Files.readAllBytes(argumentos.getFicheroClavePrivadaOficina().toPath()))
+				.conClavePublica(Actor.PEREGRINO, Files.readAllBytes(argumentos.getFicheroClavePublicaPeregrino().toPath()));
 
-			desempaquetarPaqueteCPV(new FileInputStream(argumentos.getFicheroPaquete()), argumentos.getAlbergues());
+			// Leer el paquete indexando sus bloques, para decodificar solamente los que
+			// se vayan a comprobar
+			try (final FileChannel canalPaquete = FileChannel.open(argumentos.getFicheroPaquete().toPath(), StandardOpenOption.READ)) {
+				final Paquete cpv = PaqueteDAO.leerPaqueteIndexado(canalPaquete);
+
+				if (argumentos.getAlmacenAlbergues() != null) {
+					try (final AlmacenClavesAlbergues almacen = AlmacenClavesAlbergues.abrir(argumentos.getAlmacenAlbergues().toPath(), AlmacenClavesAlbergues.CAPACIDAD_PREDETERMINADA)) {
+						desempaquetarCPV(cpv, almacen, claves, ForkJoinPool.commonPool());
+					}
+				} else {
+					desempaquetarCPV(cpv, argumentos.getAlbergues(), claves, ForkJoinPool.commonPool());
+				}
+			}
 		} catch (final Exception exc) {
 			System.err.println("Ha ocurrido un error durante el desempaquetado de la credencial");
 			exc.printStackTrace();
@@ -52,9 +85,10 @@ final class DesempaquetadorCpv {
 	 * al actor que se espera que haya generado la información.
 	 *
 	 * @param flujoEntradaPaquete El flujo de entrada con los datos de la CPV.
-	 * @param albergues           Los albergues cuyos sellos se comprobará si
-	 *                            existen en la CPV, y de ser así se validarán y
-	 *                            mostrarán.
+	 * @param albergues           Los albergues que pueden haber sellado la CPV,
+	 *                            asociados con su clave pública. Se comprobarán y
+	 *                            mostrarán todos los sellos que contenga la CPV
+	 *                            de albergues de la lista.
 	 * @throws IOException              Si ocurre algún error de E/S durante la
 	 *                                  lectura de algún dato.
 	 * @throws GeneralSecurityException Si ocurre algún error durante alguna
@@ -66,139 +100,426 @@ final class DesempaquetadorCpv {
 	 * @throws IllegalArgumentException Si algún parámetro es nulo.
 	 */
 	static void desempaquetarPaqueteCPV(final InputStream flujoEntradaPaquete, final List<Entry<String, byte[]>> albergues) throws IOException, GeneralSecurityException {
-		Paquete cpv;
-		Cipher cifradorSimetrico, cifradorAsimetrico;
-		String datosPeregrino;
-
 		if (flujoEntradaPaquete == null || albergues == null) {
 			throw new IllegalArgumentException("Un parámetro recibido para desempaquetar el paquete de la CPV es nulo, y no debería de serlo");
 		}
 
-		cpv = PaqueteDAO.leerPaquete(flujoEntradaPaquete);
+		desempaquetarCPV(PaqueteDAO.leerPaquete(flujoEntradaPaquete), albergues);
+	}
 
-		// Obtener los datos del peregrino y de su firma
-		final byte[] datosPeregrinoEncriptados = cpv.getContenidoBloque(NombresBloques.TITULO_BLOQUE_DATOS_PEREGRINO);
-		if (datosPeregrinoEncriptados == null) {
-			throw new NoSuchElementException("CPV mal formada: no contiene un bloque con los datos del peregrino");
+	/**
+	 * Desempaqueta un paquete que representa una credencial de peregrino virtual
+	 * (CPV) de la misma manera que
+	 * {@link #desempaquetarPaqueteCPV(InputStream, List)}, pero usando las claves
+	 * especificadas en lugar de las asociadas a los actores. Es seguro
+	 * desempaquetar varios paquetes a la vez desde distintos hilos con este
+	 * método.
+	 *
+	 * @param flujoEntradaPaquete El flujo de entrada con los datos de la CPV.
+	 * @param albergues           Los albergues que pueden haber sellado la CPV,
+	 *                            asociados con su clave pública. Se comprobarán y
+	 *                            mostrarán todos los sellos que contenga la CPV
+	 *                            de albergues de la lista.
+	 * @param claves              Las claves a usar. Deben de contener la clave
+	 *                            privada de {@link Actor#OFICINA_PEREGRINO} y la
+	 *                            pública de {@link Actor#PEREGRINO}.
+	 * @throws IOException              Si ocurre algún error de E/S durante la
+	 *                                  lectura de algún dato.
+	 * @throws GeneralSecurityException Si ocurre algún error durante alguna
+	 *                                  operación criptográfica, o alguna firma
+	 *                                  digital o carga útil contenida en la CPV no
+	 *                                  es válida.
+	 * @throws NoSuchElementException   Si falta algún bloque necesario en el
+	 *                                  paquete.
+	 * @throws IllegalStateException    Si falta alguna clave necesaria.
+	 * @throws IllegalArgumentException Si algún parámetro es nulo.
+	 */
+	static void desempaquetarPaqueteCPV(final InputStream flujoEntradaPaquete, final List<Entry<String, byte[]>> albergues, final ClavesActores claves) throws IOException, GeneralSecurityException {
+		if (flujoEntradaPaquete == null || albergues == null || claves == null) {
+			throw new IllegalArgumentException("Un parámetro recibido para desempaquetar el paquete de la CPV es nulo, y no debería de serlo");
 		}
 
-		final byte[] claveSimetricoDatosPeregrinoEncriptada = cpv.getContenidoBloque(NombresBloques.TITULO_BLOQUE_CLAVE_DATOS_PEREGRINO);
-		if (claveSimetricoDatosPeregrinoEncriptada == null) {
-			throw new NoSuchElementException("CPV mal formada: no contiene un bloque con la clave del cifrador simétrico usado para encriptar los datos del peregrino");
+		desempaquetarCPV(PaqueteDAO.leerPaquete(flujoEntradaPaquete), albergues, claves, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Desempaqueta un paquete ya leído que representa una credencial de peregrino
+	 * virtual (CPV), de la misma manera que
+	 * {@link #desempaquetarPaqueteCPV(InputStream, List)}. Solo se obtiene el
+	 * contenido de los bloques del peregrino y de los sellos que contiene.
+	 *
+	 * @param cpv       El paquete con los datos de la CPV.
+	 * @param albergues Los albergues que pueden haber sellado la CPV, asociados
+	 *                  con su clave pública. Se comprobarán y mostrarán todos los
+	 *                  sellos que contenga la CPV de albergues de la lista.
+	 * @throws IOException              Si ocurre algún error de E/S durante la
+	 *                                  lectura de algún dato.
+	 * @throws GeneralSecurityException Si ocurre algún error durante alguna
+	 *                                  operación criptográfica, o alguna firma
+	 *                                  digital o carga útil contenida en la CPV no
+	 *                                  es válida.
+	 * @throws NoSuchElementException   Si falta algún bloque necesario en el
+	 *                                  paquete.
+	 * @throws IllegalArgumentException Si algún parámetro es nulo.
+	 */
+	static void desempaquetarCPV(final Paquete cpv, final List<Entry<String, byte[]>> albergues) throws IOException, GeneralSecurityException {
+		desempaquetarCPV(cpv, albergues, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Desempaqueta un paquete ya leído que representa una credencial de peregrino
+	 * virtual (CPV), de la misma manera que
+	 * {@link #desempaquetarCPV(Paquete, List)}, pero comprobando los sellos de los
+	 * albergues en el ejecutor especificado. Los sellos se muestran en el orden de
+	 * la lista de albergues, y el primero inválido en ese orden detiene el
+	 * desempaquetado. Los albergues de la lista que no han sellado la CPV no se
+	 * mencionan, y los sellos de albergues que no están en la lista se muestran
+	 * al final como sellos sin verificar, sin su contenido.
+	 *
+	 * @param cpv       El paquete con los datos de la CPV.
+	 * @param albergues Los albergues que pueden haber sellado la CPV, asociados
+	 *                  con su clave pública. Se comprobarán y mostrarán todos los
+	 *                  sellos que contenga la CPV de albergues de la lista.
+	 * @param ejecutor  El ejecutor en el que comprobar los sellos de los
+	 *                  albergues.
+	 * @throws IOException              Si ocurre algún error de E/S durante la
+	 *                                  lectura de algún dato.
+	 * @throws GeneralSecurityException Si ocurre algún error durante alguna
+	 *                                  operación criptográfica, o alguna firma
+	 *                                  digital o carga útil contenida en la CPV no
+	 *                                  es válida.
+	 * @throws NoSuchElementException   Si falta algún bloque necesario en el
+	 *                                  paquete.
+	 * @throws IllegalArgumentException Si algún parámetro es nulo.
+	 */
+	static void desempaquetarCPV(final Paquete cpv, final List<Entry<String, byte[]>> albergues, final Executor ejecutor) throws IOException, GeneralSecurityException {
+		if (cpv == null || albergues == null || ejecutor == null) {
+			throw new IllegalArgumentException("Un parámetro recibido para desempaquetar el paquete de la CPV es nulo, y no debería de serlo");
 		}
 
-		final byte[] resumenDatosPeregrinoEncriptados = cpv.getContenidoBloque(NombresBloques.TITULO_BLOQUE_RESUMEN_DATOS_PEREGRINO_ENCRIPTADOS);
-		if (resumenDatosPeregrinoEncriptados == null) {
-			throw new NoSuchElementException("CPV mal formada: no contiene un bloque con el resumen de los datos del peregrino encriptados");
+		desempaquetarCPV(
+			cpv,
+			albergues,
+			new ClavesActores()
+				.conClavePrivada(Actor.OFICINA_PEREGRINO, Actor.OFICINA_PEREGRINO.getClavePrivada())
+				.conClavePublica(Actor.PEREGRINO, Actor.PEREGRINO.getClavePublica()),
+			ejecutor
+		);
+	}
+
+	/**
+	 * Desempaqueta un paquete ya leído que representa una credencial de peregrino
+	 * virtual (CPV) de la misma manera que
+	 * {@link #desempaquetarCPV(Paquete, List, Executor)}, pero usando las claves
+	 * especificadas en lugar de las asociadas a los actores.
+	 *
+	 * @param cpv       El paquete con los datos de la CPV.
+	 * @param albergues Los albergues que pueden haber sellado la CPV, asociados
+	 *                  con su clave pública. Se comprobarán y mostrarán todos los
+	 *                  sellos que contenga la CPV de albergues de la lista.
+	 * @param claves    Las claves a usar. Deben de contener la clave privada de
+	 *                  {@link Actor#OFICINA_PEREGRINO} y la pública de
+	 *                  {@link Actor#PEREGRINO}.
+	 * @param ejecutor  El ejecutor en el que comprobar los sellos de los
+	 *                  albergues.
+	 * @throws IOException              Si ocurre algún error de E/S durante la
+	 *                                  lectura de algún dato.
+	 * @throws GeneralSecurityException Si ocurre algún error durante alguna
+	 *                                  operación criptográfica, o alguna firma
+	 *                                  digital o carga útil contenida en la CPV no
+	 *                                  es válida.
+	 * @throws NoSuchElementException   Si falta algún bloque necesario en el
+	 *                                  paquete.
+	 * @throws IllegalStateException    Si falta alguna clave necesaria.
+	 * @throws IllegalArgumentException Si algún parámetro es nulo.
+	 */
+	static void desempaquetarCPV(final Paquete cpv, final List<Entry<String, byte[]>> albergues, final ClavesActores claves, final Executor ejecutor) throws IOException, GeneralSecurityException {
+		if (cpv == null || albergues == null || claves == null || ejecutor == null) {
+			throw new IllegalArgumentException("Un parámetro recibido para desempaquetar el paquete de la CPV es nulo, y no debería de serlo");
 		}
 
-		// Registrar los proveedores JCA que usaremos
-		GestorProveedoresJCA.registrarProveedores();
+		// Indexar la lista por identificador normalizado, como aparecen en los nombres
+		// de los bloques, para comprobar solo los sellos que contiene la CPV sin
+		// buscar cada albergue de la lista en ella
+		final Map<String, byte[]> clavesAlbergues = new HashMap<>();
+		final Map<String, Integer> posicionesAlbergues = new HashMap<>();
+		final Map<String, String> idsOriginales = new HashMap<>();
+		for (final Entry<String, byte[]> albergue : albergues) {
+			final String idNormalizado = NombresBloques.normalizarIdentificadorAlbergue(albergue.getKey());
 
-		// Inicializar el cifrador asimétrico
-		cifradorAsimetrico = Cipher.getInstance(
-			ParametrosCriptograficos.ALGORITMO_ASIMETRICO,
-			ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS
-		);
+			clavesAlbergues.put(idNormalizado, albergue.getValue());
+			posicionesAlbergues.putIfAbsent(idNormalizado, posicionesAlbergues.size());
+			idsOriginales.putIfAbsent(idNormalizado, albergue.getKey());
+		}
 
-		// Comprobar que hemos los datos recibidos coinciden con los firmados
-		Util.comprobarValidezFirma(
-			"El bloque de datos del peregrino",
-			Actor.PEREGRINO.getClavePublica(),
-			cifradorAsimetrico,
-			datosPeregrinoEncriptados,
-			resumenDatosPeregrinoEncriptados
-		);
+		// Mostrar los sellos en el orden de la lista. Los de albergues que no están
+		// en ella no se pueden comprobar, así que solo se mencionan al final
+		final List<String> idsNormalizados = NombresBloques.getIdentificadoresAlbergues(cpv);
+		idsNormalizados.sort(Comparator.comparing(id -> posicionesAlbergues.getOrDefault(id, Integer.MAX_VALUE)));
 
-		// Inicializar el cifrador simétrico
-		cifradorSimetrico = Cipher.getInstance(
-			ParametrosCriptograficos.ALGORITMO_SIMETRICO,
-			ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS
-		);
+		final List<String> idsAlbergues = new ArrayList<>(idsNormalizados.size());
+		final List<String> idsSinVerificar = new ArrayList<>();
+		for (final String idNormalizado : idsNormalizados) {
+			if (clavesAlbergues.containsKey(idNormalizado)) {
+				idsAlbergues.add(idsOriginales.get(idNormalizado));
+			} else {
+				idsSinVerificar.add(idNormalizado);
+			}
+		}
 
-		// Desencriptar los datos del peregrino, y mostrarlos por la salida
-		// estándar
-		datosPeregrino = Util.desencriptarCargaUtil(
-			cifradorAsimetrico,
-			cifradorSimetrico,
-			Actor.OFICINA_PEREGRINO.getClavePrivada(),
-			claveSimetricoDatosPeregrinoEncriptada,
-			datosPeregrinoEncriptados
+		desempaquetarCPV(
+			cpv,
+			idsAlbergues,
+			new AlmacenClavesAlbergues(Math.max(1, clavesAlbergues.size())) {
+				@Override
+				protected byte[] leerClavePublica(final String idNormalizado) {
+					return clavesAlbergues.get(idNormalizado);
+				}
+			},
+			claves,
+			ejecutor,
+			System.out
 		);
 
-		// Los datos del peregrino deben de ser una cadena de texto interpretable como JSON.
-		// Si no lo son, la clave del cifrador simétrico que usamos no es la correcta
-		if (JSONUtils.json2map(datosPeregrino).isEmpty()) {
-			throw new GeneralSecurityException("CPV mal formada: los datos del peregrino no siguen el formato JSON. Esto puede indicar que esta CPV ha sido destinada a otra oficina del peregrino, o que una clave de encriptación ha sido modificada durante su envío");
+		for (final String id : idsSinVerificar) {
+			System.out.println("Sello del albergue \"" + id + "\":");
+			System.out.println(SELLO_SIN_VERIFICAR);
+			System.out.println(SEPARADOR_BLOQUES);
 		}
+	}
 
-		System.out.println("-- Credencial de Peregrino Virtual --");
-		System.out.println("Datos del peregrino:");
-		System.out.println(datosPeregrino);
-		System.out.println(SEPARADOR_BLOQUES);
-
-		// Ahora repetir similares estrategias para cada albergue
-		for (final Entry<String, byte[]> datosAlbergue : albergues) {
-			final String id = datosAlbergue.getKey();
-			final byte[] clavePublicaAlbergue = datosAlbergue.getValue();
-			String sello;
-
-			// Obtener los datos del albergue y su firma
-			final byte[] datosSelloAlbergueEncriptados = cpv.getContenidoBloque(
-				NombresBloques.TITULO_BLOQUE_DATOS_SELLO_ALBERGUE.replace("{ID}", id)
-			);
-			if (datosSelloAlbergueEncriptados == null) {
-				// Avisar en lugar de lanzar una excepción, para permitir pasar como parámetro
-				// todos los albergues posibles, y mostrar solamente aquellos contenidos en la
-				// CPV
-				System.out.println("No se han encontrado datos del sello para el albergue con identificador \"" + id + "\". Ignorando albergue");
-				continue;
-			}
+	/**
+	 * Desempaqueta un paquete ya leído que representa una credencial de peregrino
+	 * virtual (CPV) de la misma manera que
+	 * {@link #desempaquetarCPV(Paquete, List, ClavesActores, Executor)}, pero
+	 * comprobando los sellos de todos los albergues que la hayan sellado, según
+	 * los nombres de sus bloques, con las claves públicas del almacén
+	 * especificado. Los identificadores de los albergues se muestran normalizados,
+	 * tal y como aparecen en los nombres de los bloques.
+	 *
+	 * @param cpv      El paquete con los datos de la CPV.
+	 * @param almacen  El almacén del que obtener las claves públicas de los
+	 *                 albergues.
+	 * @param claves   Las claves a usar. Deben de contener la clave privada de
+	 *                 {@link Actor#OFICINA_PEREGRINO} y la pública de
+	 *                 {@link Actor#PEREGRINO}.
+	 * @param ejecutor El ejecutor en el que comprobar los sellos de los
+	 *                 albergues.
+	 * @throws IOException              Si ocurre algún error de E/S durante la
+	 *                                  lectura de algún dato.
+	 * @throws GeneralSecurityException Si ocurre algún error durante alguna
+	 *                                  operación criptográfica, alguna firma
+	 *                                  digital o carga útil contenida en la CPV no
+	 *                                  es válida, o el almacén no contiene la clave
+	 *                                  pública de algún albergue que la ha
+	 *                                  sellado.
+	 * @throws NoSuchElementException   Si falta algún bloque necesario en el
+	 *                                  paquete.
+	 * @throws IllegalStateException    Si falta alguna clave necesaria.
+	 * @throws IllegalArgumentException Si algún parámetro es nulo.
+	 */
+	static void desempaquetarCPV(final Paquete cpv, final AlmacenClavesAlbergues almacen, final ClavesActores claves, final Executor ejecutor) throws IOException, GeneralSecurityException {
+		if (cpv == null || almacen == null || claves == null || ejecutor == null) {
+			throw new IllegalArgumentException("Un parámetro recibido para desempaquetar el paquete de la CPV es nulo, y no debería de serlo");
+		}
 
-			final byte[] claveSimetricoDatosSelloEncriptada = cpv.getContenidoBloque(
-				NombresBloques.TITULO_BLOQUE_CLAVE_SELLO_ALBERGUE.replace("{ID}", id)
-			);
-			if (claveSimetricoDatosSelloEncriptada == null) {
-				throw new NoSuchElementException("CPV mal formada: no contiene un bloque con la clave del cifrador simétrico usado para encriptar el sello del albergue \"" + id + "\"");
-			}
+		desempaquetarCPV(cpv, almacen, claves, ejecutor, System.out);
+	}
 
-			final byte[] resumenDatosSelloEncriptados = cpv.getContenidoBloque(
-				NombresBloques.TITULO_BLOQUE_RESUMEN_SELLO_ALBERGUE_ENCRIPTADO.replace("{ID}", id)
-			);
-			if (resumenDatosSelloEncriptados == null) {
-				throw new NoSuchElementException("CPV mal formada: no contiene un bloque con el resumen de los datos del sello del albergue \"" + id + "\" encriptados");
+	/**
+	 * Desempaqueta un paquete ya leído que representa una credencial de peregrino
+	 * virtual (CPV) de la misma manera que
+	 * {@link #desempaquetarCPV(Paquete, AlmacenClavesAlbergues, ClavesActores, Executor)},
+	 * pero mostrando los contenidos del paquete por el flujo especificado en lugar
+	 * de la salida estándar. Así, se pueden desempaquetar varias CPV a la vez sin
+	 * mezclar sus contenidos.
+	 *
+	 * @param cpv      El paquete con los datos de la CPV.
+	 * @param almacen  El almacén del que obtener las claves públicas de los
+	 *                 albergues.
+	 * @param claves   Las claves a usar. Deben de contener la clave privada de
+	 *                 {@link Actor#OFICINA_PEREGRINO} y la pública de
+	 *                 {@link Actor#PEREGRINO}.
+	 * @param ejecutor El ejecutor en el que comprobar los sellos de los
+	 *                 albergues.
+	 * @param salida   El flujo por el que mostrar los contenidos del paquete.
+	 * @throws IOException              Si ocurre algún error de E/S durante la
+	 *                                  lectura de algún dato.
+	 * @throws GeneralSecurityException Si ocurre algún error durante alguna
+	 *                                  operación criptográfica, alguna firma
+	 *                                  digital o carga útil contenida en la CPV no
+	 *                                  es válida, o el almacén no contiene la clave
+	 *                                  pública de algún albergue que la ha
+	 *                                  sellado.
+	 * @throws NoSuchElementException   Si falta algún bloque necesario en el
+	 *                                  paquete.
+	 * @throws IllegalStateException    Si falta alguna clave necesaria.
+	 * @throws IllegalArgumentException Si algún parámetro es nulo.
+	 */
+	public static void desempaquetarCPV(
+		final Paquete cpv, final AlmacenClavesAlbergues almacen, final ClavesActores claves, final Executor ejecutor, final PrintStream salida
+	) throws IOException, GeneralSecurityException {
+		if (cpv == null || almacen == null || claves == null || ejecutor == null || salida == null) {
+			throw new IllegalArgumentException("Un parámetro recibido para desempaquetar el paquete de la CPV es nulo, y no debería de serlo");
+		}
+
+		desempaquetarCPV(cpv, NombresBloques.getIdentificadoresAlbergues(cpv), almacen, claves, ejecutor, salida);
+	}
+
+	/**
+	 * Desempaqueta un paquete ya leído que representa una credencial de peregrino
+	 * virtual (CPV), comprobando los sellos de los albergues especificados con las
+	 * claves públicas de un almacén.
+	 *
+	 * @param cpv          El paquete con los datos de la CPV.
+	 * @param idsAlbergues Los identificadores de los albergues que han sellado la
+	 *                     CPV, en el orden en que se mostrarán sus sellos.
+	 * @param almacen      El almacén del que obtener las claves públicas de los
+	 *                     albergues.
+	 * @param claves       Las claves a usar.
+	 * @param ejecutor     El ejecutor en el que comprobar los sellos de los
+	 *                     albergues.
+	 * @param salida       El flujo por el que mostrar los contenidos del paquete.
+	 * @throws IOException              Si ocurre algún error de E/S durante la
+	 *                                  lectura de algún dato.
+	 * @throws GeneralSecurityException Si ocurre algún error durante alguna
+	 *                                  operación criptográfica, o alguna firma
+	 *                                  digital o carga útil contenida en la CPV no
+	 *                                  es válida.
+	 */
+	private static void desempaquetarCPV(
+		final Paquete cpv, final List<String> idsAlbergues, final AlmacenClavesAlbergues almacen, final ClavesActores claves, final Executor ejecutor,
+		final PrintStream salida
+	) throws IOException, GeneralSecurityException {
+		String datosPeregrino;
+
+		// Obtener los datos del peregrino y de su firma, junto con la suite
+		// criptográfica con la que se protegieron
+		final CargaUtilCifrada cargaDatosPeregrino = CargaUtilCifrada.leerDatosPeregrino(cpv);
+
+		// Comprobar que hemos los datos recibidos coinciden con los firmados
+		cargaDatosPeregrino.comprobarFirma(claves.getClavePublica(Actor.PEREGRINO));
+
+		// Desencriptar los datos del peregrino, y mostrarlos por la salida. Deben
+		// de ser una cadena de texto interpretable como JSON
+		datosPeregrino = JSONUtils.map2json(cargaDatosPeregrino.desencriptar(
+			cargaDatosPeregrino.desencriptarClave(claves.getClavePrivada(Actor.OFICINA_PEREGRINO))
+		));
+
+		salida.println("-- Credencial de Peregrino Virtual --");
+		salida.println("Datos del peregrino:");
+		salida.println(datosPeregrino);
+		salida.println(SEPARADOR_BLOQUES);
+
+		// Ahora repetir similares estrategias para cada albergue. Las comprobaciones
+		// de cada sello son independientes, así que se hacen en paralelo, pero sus
+		// resultados se muestran en el orden de los identificadores
+		final PrivateKey clavePrivadaOficina = claves.getClavePrivada(Actor.OFICINA_PEREGRINO);
+		final List<FutureTask<String>> tareas = new ArrayList<>(idsAlbergues.size());
+		try {
+			for (final String id : idsAlbergues) {
+				final FutureTask<String> tarea = new FutureTask<>(
+					() -> desempaquetarSelloAlbergue(cpv, id, almacen, clavePrivadaOficina)
+				);
+				tareas.add(tarea);
+				ejecutor.execute(tarea);
 			}
 
-			// Establecer la clave pública del albergue actual
-			Actor.ALBERGUE.setClavePublica(clavePublicaAlbergue);
-
-			// Comprobar que el sello coincide con el firmado
-			Util.comprobarValidezFirma(
-				"El sello del albergue \"" + id + "\"",
-				Actor.ALBERGUE.getClavePublica(),
-				cifradorAsimetrico,
-				datosSelloAlbergueEncriptados,
-				resumenDatosSelloEncriptados
-			);
-
-			// Obtener y mostrar el sello
-			sello = Util.desencriptarCargaUtil(
-				cifradorAsimetrico,
-				cifradorSimetrico,
-				Actor.OFICINA_PEREGRINO.getClavePrivada(),
-				claveSimetricoDatosSelloEncriptada,
-				datosSelloAlbergueEncriptados
-			);
-
-			// El sello debe de ser una cadena interpretable como JSON.
-			// Si no lo es, la clave del cifrador simétrico que usamos no es la correcta
-			if (JSONUtils.json2map(sello).isEmpty()) {
-				throw new GeneralSecurityException("CPV mal formada: el sello del albergue \"" + id + "\" no sigue el formato JSON. Esto puede indicar que esta CPV ha sido destinada a otra oficina del peregrino, o que una clave de encriptación ha sido modificada durante su envío");
+			for (int i = 0; i < tareas.size(); ++i) {
+				final String id = idsAlbergues.get(i);
+				final String sello = obtenerResultado(tareas.get(i));
+
+				salida.println("Sello del albergue \"" + id + "\":");
+				salida.println(sello);
+				salida.println(SEPARADOR_BLOQUES);
+			}
+		} finally {
+			// Si algún sello no es válido, no seguir comprobando los demás
+			for (final FutureTask<String> tarea : tareas) {
+				tarea.cancel(false);
 			}
+		}
+	}
 
-			System.out.println("Sello del albergue \"" + id + "\":");
-			System.out.println(sello);
-			System.out.println(SEPARADOR_BLOQUES);
+	/**
+	 * Comprueba y desencripta el sello de un albergue contenido en una CPV. Es
+	 * seguro ejecutar este método desde varios hilos a la vez, pues cada hilo usa
+	 * sus propios objetos de la JCA.
+	 *
+	 * @param cpv                  El paquete con los datos de la CPV.
+	 * @param id                   El identificador del albergue.
+	 * @param almacen              El almacén del que obtener la clave pública del
+	 *                             albergue.
+	 * @param clavePrivadaOficina  La clave privada de la oficina del peregrino.
+	 * @return El sello del albergue.
+	 * @throws IOException              Si ocurre un error de E/S al leer la clave
+	 *                                  pública del albergue.
+	 * @throws GeneralSecurityException Si ocurre algún error durante alguna
+	 *                                  operación criptográfica, la firma o el
+	 *                                  contenido del sello no son válidos, o el
+	 *                                  almacén no contiene la clave pública del
+	 *                                  albergue.
+	 * @throws NoSuchElementException   Si a la CPV le falta algún bloque del sello.
+	 */
+	private static String desempaquetarSelloAlbergue(
+		final Paquete cpv, final String id, final AlmacenClavesAlbergues almacen, final PrivateKey clavePrivadaOficina
+	) throws IOException, GeneralSecurityException {
+		PublicKey clavePublicaAlbergue;
+
+		// Obtener los datos del albergue y su firma, junto con la suite criptográfica
+		// con la que se protegieron
+		final CargaUtilCifrada cargaSello = CargaUtilCifrada.leerSelloAlbergue(cpv, id);
+		if (cargaSello == null) {
+			throw new NoSuchElementException("CPV mal formada: no contiene un bloque con los datos del sello del albergue \"" + id + "\"");
+		}
+
+		// Comprobar que el sello coincide con el firmado. La clave pública del
+		// albergue se obtiene aquí en lugar de asociarla a Actor.ALBERGUE,
+		// que es compartido por todos los hilos
+		clavePublicaAlbergue = almacen.obtenerClavePublica(id);
+		if (clavePublicaAlbergue == null) {
+			throw new KeyException("No se conoce la clave pública del albergue \"" + id + "\", así que no se puede comprobar su sello");
+		}
+
+		cargaSello.comprobarFirma(clavePublicaAlbergue);
+
+		// Obtener el sello, que debe de ser una cadena interpretable como JSON. Sus
+		// pares se leen en orden, así que se muestra tal y como se escribió
+		return JSONUtils.map2json(cargaSello.desencriptar(cargaSello.desencriptarClave(clavePrivadaOficina)));
+	}
+
+	/**
+	 * Espera a que termine la comprobación de un sello, y obtiene su resultado,
+	 * relanzando la excepción que haya causado su fallo si es de un tipo
+	 * esperado.
+	 *
+	 * @param tarea La tarea que comprueba el sello.
+	 * @return El resultado de la tarea.
+	 * @throws IOException              Si ocurrió algún error de E/S durante la
+	 *                                  tarea, o se ha interrumpido la espera.
+	 * @throws GeneralSecurityException Si ocurrió algún error criptográfico
+	 *                                  durante la tarea.
+	 */
+	private static String obtenerResultado(final FutureTask<String> tarea) throws IOException, GeneralSecurityException {
+		try {
+			return tarea.get();
+		} catch (final InterruptedException exc) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Se ha interrumpido la espera por la comprobación de un sello");
+		} catch (final ExecutionException exc) {
+			final Throwable causa = exc.getCause();
+
+			if (causa instanceof GeneralSecurityException) {
+				throw (GeneralSecurityException) causa;
+			} else if (causa instanceof IOException) {
+				throw (IOException) causa;
+			} else if (causa instanceof RuntimeException) {
+				throw (RuntimeException) causa;
+			} else if (causa instanceof Error) {
+				throw (Error) causa;
+			} else {
+				throw new AssertionError("Se han violado invariantes en la implementación del programa", causa);
+			}
 		}
 	}
 }
@@ -15,6 +15,21 @@ import java.util.Map.Entry;
  * @author Alejandro González García
  */
 final class LectorArgumentosLineaComandos {
+	/**
+	 * El primer argumento que indica que se deben de verificar todas las CPV de
+	 * un directorio, en vez de desempaquetar una.
+	 */
+	static final String OPCION_ARCHIVO = "--archivo";
+	/**
+	 * El primer argumento que indica que las claves públicas de los albergues se
+	 * deben de obtener de un almacén de claves, en vez de una lista.
+	 */
+	static final String OPCION_ALMACEN = "--almacen";
+	/**
+	 * El argumento que sigue a {@link #OPCION_ARCHIVO} para indicar que se debe de
+	 * usar una caché de firmas verificadas.
+	 */
+	static final String OPCION_CACHE = "--cache";
 	/**
 	 * Interpreta los argumentos de línea de comandos especificados, deteniendo la
 	 * ejecución de la aplicación si alguno es inválido, o encapsulando dichos
@@ -30,18 +45,13 @@ final class LectorArgumentosLineaComandos {
 			mostrarSintaxisYSalir();
 		}
 
+		if (OPCION_ALMACEN.equals(args[0])) {
+			return interpretarAlmacen(args);
+		}
+
 		// Empezar leyendo el número de albergues, ya que eso
 		// influye en el número de argumentos necesarios
-		short nAlbergues = 0;
-		try {
-			nAlbergues = Short.parseShort(args[1]);
-			if (nAlbergues < 0) {
-				throw new NumberFormatException();
-			}
-		} catch (final NumberFormatException exc) {
-			System.err.println("El número de albergues especificado no es un entero positivo");
-			mostrarSintaxisYSalir();
-		}
+		final short nAlbergues = leerNumeroAlbergues(args[1]);
 
 		// Ahora que sabemos el número de albergues, podemos hacer
 		// una comparación exacta con el número de argumentos esperado
@@ -60,12 +70,147 @@ final class LectorArgumentosLineaComandos {
 		final File ficheroPublicaPeregrino = new File(args[args.length - 1]);
 		comprobarFicheroPlausible(ficheroPublicaPeregrino, "la clave pública del peregrino");
 
+		final List<Entry<String, byte[]>> listaAlbergues = leerAlbergues(args, 2, nAlbergues);
+
+		return new ArgumentosDesempaquetador(ficheroPaquete, ficheroPrivadaOficina, ficheroPublicaPeregrino, listaAlbergues);
+	}
+
+	/**
+	 * Interpreta los argumentos de línea de comandos cuando se especifica un
+	 * almacén de claves de albergues, en vez de una lista.
+	 *
+	 * @param args Los argumentos de línea de comandos a interpretar, cuyo primero
+	 *             es {@link #OPCION_ALMACEN}.
+	 * @return Los descritos argumentos de operación del desempaquetador de CPV.
+	 */
+	private static ArgumentosDesempaquetador interpretarAlmacen(final String[] args) {
+		if (args.length != 5) {
+			mostrarSintaxisYSalir();
+		}
+
+		final File almacenAlbergues = new File(args[1]);
+		if (!almacenAlbergues.canRead()) {
+			System.err.println("No se puede leer el almacén de claves de albergues " + almacenAlbergues.getAbsolutePath());
+			System.exit(2);
+		}
+
+		final File ficheroPaquete = new File(args[2]);
+		comprobarFicheroPlausible(ficheroPaquete, "la credencial virtual del peregrino");
+
+		final File ficheroPrivadaOficina = new File(args[3]);
+		comprobarFicheroPlausible(ficheroPrivadaOficina, "la clave privada de la oficina del peregrino");
+
+		final File ficheroPublicaPeregrino = new File(args[4]);
+		comprobarFicheroPlausible(ficheroPublicaPeregrino, "la clave pública del peregrino");
+
+		return new ArgumentosDesempaquetador(ficheroPaquete, ficheroPrivadaOficina, ficheroPublicaPeregrino, almacenAlbergues);
+	}
+
+	/**
+	 * Interpreta los argumentos de línea de comandos del modo de verificación de
+	 * archivos, de la misma manera que {@link #interpretar(String[])}. Se asume
+	 * que el primer argumento es {@link #OPCION_ARCHIVO}.
+	 *
+	 * @param args Los argumentos de línea de comandos a interpretar, tal cual son
+	 *             pasados al método estático main.
+	 * @return Los descritos argumentos de operación del modo de verificación de
+	 *         archivos.
+	 */
+	public static ArgumentosArchivoDesempaquetador interpretarArchivo(String[] args) {
+		// Si se especifica una caché, leer su fichero, y seguir interpretando el
+		// resto de argumentos como si no estuviese
+		File ficheroCache = null;
+		if (args.length > 2 && OPCION_CACHE.equals(args[1])) {
+			ficheroCache = new File(args[2]);
+
+			final String[] argsSinCache = new String[args.length - 2];
+			argsSinCache[0] = args[0];
+			System.arraycopy(args, 3, argsSinCache, 1, args.length - 3);
+			args = argsSinCache;
+		}
+
+		// Como mínimo, necesitaremos la opción, el directorio, el informe, el número
+		// de hilos, el número de albergues y las dos claves
+		if (args.length < 7) {
+			mostrarSintaxisYSalir();
+		}
+
+		final short nAlbergues = leerNumeroAlbergues(args[4]);
+		if (args.length != 7 + nAlbergues * 2) {
+			mostrarSintaxisYSalir();
+		}
+
+		final File directorioArchivo = new File(args[1]);
+		if (!directorioArchivo.canRead() || !directorioArchivo.isDirectory()) {
+			System.err.println("No se puede leer el directorio " + directorioArchivo.getAbsolutePath() + " con las credenciales virtuales del peregrino, o no es un directorio");
+			System.exit(2);
+		}
+
+		final File ficheroInforme = new File(args[2]);
+
+		int hilos = 0;
+		try {
+			hilos = Integer.parseInt(args[3]);
+			if (hilos < 1) {
+				throw new NumberFormatException();
+			}
+		} catch (final NumberFormatException exc) {
+			System.err.println("El número de hilos especificado no es un entero positivo");
+			mostrarSintaxisYSalir();
+		}
+
+		final File ficheroPrivadaOficina = new File(args[args.length - 2]);
+		comprobarFicheroPlausible(ficheroPrivadaOficina, "la clave privada de la oficina del peregrino");
+
+		final File ficheroPublicaPeregrino = new File(args[args.length - 1]);
+		comprobarFicheroPlausible(ficheroPublicaPeregrino, "la clave pública del peregrino");
+
+		final List<Entry<String, byte[]>> listaAlbergues = leerAlbergues(args, 5, nAlbergues);
+
+		return new ArgumentosArchivoDesempaquetador(directorioArchivo, ficheroInforme, hilos, ficheroPrivadaOficina, ficheroPublicaPeregrino, listaAlbergues, ficheroCache);
+	}
+
+	/**
+	 * Interpreta el número de albergues especificado como argumento, finalizando
+	 * el proceso de la aplicación si no es válido.
+	 *
+	 * @param argumento El argumento a interpretar.
+	 * @return El número de albergues.
+	 */
+	private static short leerNumeroAlbergues(final String argumento) {
+		short nAlbergues = 0;
+
+		try {
+			nAlbergues = Short.parseShort(argumento);
+			if (nAlbergues < 0) {
+				throw new NumberFormatException();
+			}
+		} catch (final NumberFormatException exc) {
+			System.err.println("El número de albergues especificado no es un entero positivo");
+			mostrarSintaxisYSalir();
+		}
+
+		return nAlbergues;
+	}
+
+	/**
+	 * Lee los identificadores y claves públicas de albergues especificados como
+	 * argumentos consecutivos, finalizando el proceso de la aplicación si alguna
+	 * clave no se puede leer.
+	 *
+	 * @param args       Los argumentos de línea de comandos.
+	 * @param primero    La posición del identificador del primer albergue.
+	 * @param nAlbergues El número de albergues a leer.
+	 * @return Una lista con los identificadores de los albergues, asociados con su
+	 *         clave pública.
+	 */
+	private static List<Entry<String, byte[]>> leerAlbergues(final String[] args, final int primero, final short nAlbergues) {
 		// Para cada albergue, leer su identificador y clave pública,
 		// y añadir esa información a una lista
 		final List<Entry<String, byte[]>> listaAlbergues = new ArrayList<>(nAlbergues);
 		for (int i = 0; i < nAlbergues; ++i) {
-			 final String identificadorAlbergue = args[2 * (i + 1)];
-			 final File ficheroPublicaAlbergue = new File(args[2 * (i + 1) + 1]);
+			 final String identificadorAlbergue = args[primero + 2 * i];
+			 final File ficheroPublicaAlbergue = new File(args[primero + 2 * i + 1]);
 
 			 // Abortar el proceso si algún fichero de clave pública no se puede leer
 			 comprobarFicheroPlausible(ficheroPublicaAlbergue, "la clave pública del albergue \"" + identificadorAlbergue + "\"");
@@ -79,7 +224,7 @@ final class LectorArgumentosLineaComandos {
 			}
 		}
 
-		return new ArgumentosDesempaquetador(ficheroPaquete, ficheroPrivadaOficina, ficheroPublicaPeregrino, listaAlbergues);
+		return listaAlbergues;
 	}
 
 	/**
@@ -89,6 +234,8 @@ final class LectorArgumentosLineaComandos {
 	 */
 	private static void mostrarSintaxisYSalir() {
 		System.out.println("Sintaxis: DesempaquetarCredencial (fichero paquete) (núm. albergues) [identificador albergue 1] [clave pública albergue 1] ... [identificador albergue N] [clave pública albergue N] (fichero clave privada oficina) (fichero clave pública peregrino)");
+		System.out.println("         DesempaquetarCredencial " + OPCION_ALMACEN + " (directorio de ficheros <id>.publica o fichero paquete de claves de albergues) (fichero paquete) (fichero clave privada oficina) (fichero clave pública peregrino)");
+		System.out.println("         DesempaquetarCredencial " + OPCION_ARCHIVO + " [" + OPCION_CACHE + " (fichero caché firmas verificadas)] (directorio) (fichero informe) (núm. hilos) (núm. albergues) [identificador albergue 1] [clave pública albergue 1] ... [identificador albergue N] [clave pública albergue N] (fichero clave privada oficina) (fichero clave pública peregrino)");
 		System.exit(1);
 	}
 
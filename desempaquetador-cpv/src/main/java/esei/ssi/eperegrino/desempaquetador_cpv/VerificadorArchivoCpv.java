@@ -0,0 +1,572 @@
+package esei.ssi.eperegrino.desempaquetador_cpv;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import javax.crypto.SecretKey;
+
+import esei.ssi.eperegrino.common.Actor;
+import esei.ssi.eperegrino.common.ClavesActores;
+import esei.ssi.eperegrino.common.ContextoCriptografico;
+import esei.ssi.eperegrino.common.NombresBloques;
+import esei.ssi.eperegrino.common.Paquete;
+import esei.ssi.eperegrino.common.PaqueteDAO;
+import esei.ssi.eperegrino.common.ResultadoLote;
+
+/**
+ * Contiene la lógica de negocio del modo de verificación de archivos del
+ * desempaquetador de CPV, que comprueba todas las CPV guardadas en un árbol de
+ * directorios y escribe un informe con el resultado de cada una.
+ * <p>
+ * Cada CPV pasa por tres etapas, cada una con sus propios hilos: lectura del
+ * paquete, operaciones con el cifrador asimétrico (comprobar las firmas y
+ * desencriptar las claves simétricas) y operaciones con el cifrador simétrico
+ * (desencriptar las cargas útiles). Las etapas se comunican mediante colas de
+ * capacidad acotada, de manera que una etapa rápida espera a la siguiente en
+ * lugar de acumular CPV en memoria.
+ *
+ * @author Alejandro González García
+ */
+final class VerificadorArchivoCpv {
+	/**
+	 * El número de CPV que se pueden encolar para una etapa por cada uno de sus
+	 * hilos.
+	 */
+	private static final int CPV_ENCOLADAS_POR_HILO = 2;
+	/**
+	 * El número máximo de hilos de la etapa de lectura, que está limitada por la
+	 * E/S en lugar de por el procesador.
+	 */
+	private static final int MAXIMO_HILOS_LECTURA = 4;
+	/**
+	 * La proporción de hilos de la etapa asimétrica por cada hilo de la etapa
+	 * simétrica, que es mucho más rápida.
+	 */
+	private static final int HILOS_ASIMETRICO_POR_HILO_SIMETRICO = 4;
+	/**
+	 * Marca el final de la entrada de una etapa. Cada hilo de la etapa termina al
+	 * recibir una.
+	 */
+	private static final VerificacionCpv FIN = new VerificacionCpv(null);
+
+	private final Map<String, PublicKey> clavesAlbergues;
+	private final ClavesActores claves;
+	private final CacheFirmasVerificadas cache;
+	private final Writer informe;
+	private final Queue<String> correctas = new ConcurrentLinkedQueue<>();
+	private final Queue<String> fallos = new ConcurrentLinkedQueue<>();
+	/**
+	 * El primer error inesperado que ha hecho terminar un hilo de alguna etapa, o
+	 * nulo si no ha habido ninguno.
+	 */
+	private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+	/**
+	 * Crea un verificador de archivos de CPV.
+	 *
+	 * @param clavesAlbergues Las claves públicas de los albergues cuyos sellos se
+	 *                        comprobarán, por identificador.
+	 * @param claves          Las claves a usar para comprobar los datos del
+	 *                        peregrino.
+	 * @param cache           La caché de firmas verificadas a usar, o nulo para
+	 *                        comprobar todas las firmas.
+	 * @param informe         Donde escribir el informe.
+	 */
+	private VerificadorArchivoCpv(
+		final Map<String, PublicKey> clavesAlbergues, final ClavesActores claves, final CacheFirmasVerificadas cache, final Writer informe
+	) {
+		this.clavesAlbergues = clavesAlbergues;
+		this.claves = claves;
+		this.cache = cache;
+		this.informe = informe;
+	}
+
+	/**
+	 * Punto de entrada del modo de verificación de archivos de la aplicación.
+	 *
+	 * @param argumentos Los argumentos de operación del modo de verificación de
+	 *                   archivos.
+	 */
+	static void main(final ArgumentosArchivoDesempaquetador argumentos) {
+		try {
+			final ClavesActores claves = new ClavesActores()
+				.conClavePrivada(Actor.OFICINA_PEREGRINO, Files.readAllBytes(argumentos.getFicheroClavePrivadaOficina().toPath()))
+				.conClavePublica(Actor.PEREGRINO, Files.readAllBytes(argumentos.getFicheroClavePublicaPeregrino().toPath()));
+
+			final ResultadoLote resultado;
+			try (
+				final CacheFirmasVerificadas cache = argumentos.getFicheroCache() == null ? null : CacheFirmasVerificadas.abrir(
+					argumentos.getFicheroCache().toPath(), CacheFirmasVerificadas.CAPACIDAD_PREDETERMINADA, claves.getClavePrivada(Actor.OFICINA_PEREGRINO)
+				);
+				final BufferedWriter informe = Files.newBufferedWriter(argumentos.getFicheroInforme().toPath(), StandardCharsets.UTF_8)
+			) {
+				resultado = verificarArchivo(argumentos.getDirectorioArchivo().toPath(), argumentos.getAlbergues(), claves, argumentos.getHilos(), cache, informe);
+			}
+
+			resultado.mostrar(System.out);
+		} catch (final Exception exc) {
+			System.err.println("Ha ocurrido un error durante la verificación del archivo de credenciales");
+			exc.printStackTrace();
+		}
+	}
+
+	/**
+	 * Comprueba todas las CPV contenidas en un árbol de directorios, de la misma
+	 * manera que {@link DesempaquetadorCpv#desempaquetarCPV(Paquete, List, ClavesActores, java.util.concurrent.Executor)},
+	 * pero sin mostrar sus contenidos. Por cada fichero normal del árbol se escribe
+	 * una línea en el informe, con campos separados por tabuladores: {@code OK},
+	 * la ruta del fichero y el número de sellos comprobados, seguidos de los
+	 * identificadores de los albergues cuyos sellos no se han podido comprobar,
+	 * separados por comas, si los hay; o bien {@code ERROR}, la ruta del fichero
+	 * y la descripción del error.
+	 *
+	 * @param directorio El directorio raíz del árbol a comprobar.
+	 * @param albergues  Los albergues que pueden haber sellado las CPV, asociados
+	 *                   con su clave pública. Se comprobarán todos los sellos que
+	 *                   contenga cada CPV de albergues de la lista, y los de
+	 *                   albergues que no están en ella se anotan como sin
+	 *                   verificar.
+	 * @param claves     Las claves a usar. Deben de contener la clave privada de
+	 *                   {@link Actor#OFICINA_PEREGRINO} y la pública de
+	 *                   {@link Actor#PEREGRINO}.
+	 * @param hilos      El número de hilos de la etapa asimétrica, que es la más
+	 *                   costosa. El resto de etapas se dimensionan en función de
+	 *                   él.
+	 * @param informe    Donde escribir el informe. No se cierra.
+	 * @return El resultado de la verificación, con la ruta de cada fichero como
+	 *         descripción de su tarea.
+	 * @throws IOException              Si ocurre un error de E/S al recorrer el
+	 *                                  árbol de directorios o escribir el informe.
+	 * @throws GeneralSecurityException Si alguna clave pública de albergue no se
+	 *                                  puede interpretar.
+	 * @throws InterruptedException     Si se interrumpe la espera a que terminen
+	 *                                  las etapas.
+	 * @throws IllegalArgumentException Si algún parámetro es nulo, o el número de
+	 *                                  hilos no es positivo.
+	 */
+	static ResultadoLote verificarArchivo(
+		final Path directorio, final List<Entry<String, byte[]>> albergues, final ClavesActores claves, final int hilos, final Writer informe
+	) throws IOException, GeneralSecurityException, InterruptedException {
+		return verificarArchivo(directorio, albergues, claves, hilos, null, informe);
+	}
+
+	/**
+	 * Comprueba todas las CPV contenidas en un árbol de directorios de la misma
+	 * manera que {@link #verificarArchivo(Path, List, ClavesActores, int, Writer)},
+	 * pero sin repetir la comprobación de las firmas que la caché especificada
+	 * recuerda que son válidas. Así, volver a verificar un archivo ya verificado
+	 * se ahorra la operación asimétrica de cada firma, aunque cada carga útil
+	 * sigue requiriendo desencriptar su clave simétrica con la clave privada de
+	 * la oficina, pues la caché no guarda claves.
+	 *
+	 * @param directorio El directorio raíz del árbol a comprobar.
+	 * @param albergues  Los albergues que pueden haber sellado las CPV, asociados
+	 *                   con su clave pública.
+	 * @param claves     Las claves a usar. Deben de contener la clave privada de
+	 *                   {@link Actor#OFICINA_PEREGRINO} y la pública de
+	 *                   {@link Actor#PEREGRINO}.
+	 * @param hilos      El número de hilos de la etapa asimétrica.
+	 * @param cache      La caché de firmas verificadas a usar, o nulo para
+	 *                   comprobar todas las firmas. No se cierra.
+	 * @param informe    Donde escribir el informe. No se cierra.
+	 * @return El resultado de la verificación, con la ruta de cada fichero como
+	 *         descripción de su tarea.
+	 * @throws IOException              Si ocurre un error de E/S al recorrer el
+	 *                                  árbol de directorios o escribir el informe.
+	 * @throws GeneralSecurityException Si alguna clave pública de albergue no se
+	 *                                  puede interpretar.
+	 * @throws InterruptedException     Si se interrumpe la espera a que terminen
+	 *                                  las etapas.
+	 * @throws IllegalArgumentException Si algún parámetro distinto de la caché es
+	 *                                  nulo, o el número de hilos no es positivo.
+	 */
+	static ResultadoLote verificarArchivo(
+		final Path directorio, final List<Entry<String, byte[]>> albergues, final ClavesActores claves, final int hilos,
+		final CacheFirmasVerificadas cache, final Writer informe
+	) throws IOException, GeneralSecurityException, InterruptedException {
+		if (directorio == null || albergues == null || claves == null || informe == null) {
+			throw new IllegalArgumentException("Un parámetro recibido para verificar el archivo de CPV es nulo, y no debería de serlo");
+		}
+
+		if (hilos < 1) {
+			throw new IllegalArgumentException("El número de hilos debe de ser positivo");
+		}
+
+		// Interpretar las claves de los albergues una sola vez para todo el archivo,
+		// indexándolas por su identificador tal y como aparece en los nombres de los
+		// bloques
+		final Map<String, PublicKey> clavesAlbergues = new HashMap<>();
+		for (final Entry<String, byte[]> albergue : albergues) {
+			clavesAlbergues.put(
+				NombresBloques.normalizarIdentificadorAlbergue(albergue.getKey()),
+				ContextoCriptografico.actual().interpretarClavePublica(albergue.getValue())
+			);
+		}
+
+		final long inicio = System.nanoTime();
+		final VerificadorArchivoCpv verificador = new VerificadorArchivoCpv(clavesAlbergues, claves, cache, informe);
+
+		final int hilosLectura = Math.min(hilos, MAXIMO_HILOS_LECTURA);
+		final int hilosSimetrico = Math.max(1, hilos / HILOS_ASIMETRICO_POR_HILO_SIMETRICO);
+
+		final BlockingQueue<VerificacionCpv> colaLectura = new ArrayBlockingQueue<>(hilosLectura * CPV_ENCOLADAS_POR_HILO);
+		final BlockingQueue<VerificacionCpv> colaAsimetrico = new ArrayBlockingQueue<>(hilos * CPV_ENCOLADAS_POR_HILO);
+		final BlockingQueue<VerificacionCpv> colaSimetrico = new ArrayBlockingQueue<>(hilosSimetrico * CPV_ENCOLADAS_POR_HILO);
+
+		final ExecutorService ejecutor = Executors.newFixedThreadPool(hilosLectura + hilos + hilosSimetrico);
+		try {
+			final CountDownLatch fin = new CountDownLatch(hilosLectura + hilos + hilosSimetrico);
+
+			verificador.iniciarEtapa(ejecutor, fin, hilosLectura, colaLectura, colaAsimetrico, hilos, verificador::leer);
+			verificador.iniciarEtapa(ejecutor, fin, hilos, colaAsimetrico, colaSimetrico, hilosSimetrico, verificador::operarAsimetrico);
+			verificador.iniciarEtapa(ejecutor, fin, hilosSimetrico, colaSimetrico, null, 0, verificador::operarSimetrico);
+
+			// Alimentar la primera etapa con los ficheros del árbol. Si no cabe
+			// ninguno más en su cola, esperar a que se vayan leyendo
+			try (final Stream<Path> ficheros = Files.walk(directorio)) {
+				ficheros.filter(Files::isRegularFile).sorted().forEachOrdered(fichero -> {
+					try {
+						colaLectura.put(new VerificacionCpv(fichero));
+					} catch (final InterruptedException exc) {
+						Thread.currentThread().interrupt();
+						throw new IllegalStateException(exc);
+					}
+				});
+			} finally {
+				for (int i = 0; i < hilosLectura; ++i) {
+					colaLectura.put(FIN);
+				}
+			}
+
+			fin.await();
+		} finally {
+			ejecutor.shutdownNow();
+		}
+
+		informe.flush();
+
+		// Los errores inesperados de los hilos de las etapas no son fallos de una
+		// CPV concreta, así que no se pueden ocultar en el resultado
+		final Throwable error = verificador.error.get();
+		if (error instanceof Error) {
+			throw (Error) error;
+		} else if (error != null) {
+			throw (RuntimeException) error;
+		}
+
+		return new ResultadoLote(new ArrayList<>(verificador.correctas), new ArrayList<>(verificador.fallos), System.nanoTime() - inicio);
+	}
+
+	/**
+	 * Inicia los hilos de una etapa. Cada hilo toma CPV de la cola de entrada de
+	 * la etapa, las procesa y, si no ha habido errores, las pasa a la cola de
+	 * salida. Cuando terminan todos los hilos de la etapa, se marca el final de la
+	 * entrada de la siguiente.
+	 *
+	 * @param ejecutor        El ejecutor en el que iniciar los hilos.
+	 * @param fin             El contador que decrementa cada hilo al terminar.
+	 * @param hilos           El número de hilos de la etapa.
+	 * @param entrada         La cola de entrada de la etapa.
+	 * @param salida          La cola de entrada de la siguiente etapa, o nulo si
+	 *                        esta es la última.
+	 * @param hilosSiguiente  El número de hilos de la siguiente etapa.
+	 * @param procesamiento   El procesamiento que hace la etapa a cada CPV.
+	 */
+	private void iniciarEtapa(
+		final ExecutorService ejecutor, final CountDownLatch fin, final int hilos,
+		final BlockingQueue<VerificacionCpv> entrada, final BlockingQueue<VerificacionCpv> salida,
+		final int hilosSiguiente, final ProcesamientoEtapa procesamiento
+	) {
+		final AtomicInteger hilosActivos = new AtomicInteger(hilos);
+
+		for (int i = 0; i < hilos; ++i) {
+			ejecutor.execute(() -> {
+				boolean entradaTerminada = false;
+
+				try {
+					VerificacionCpv verificacion;
+					while ((verificacion = entrada.take()) != FIN) {
+						try {
+							procesamiento.procesar(verificacion);
+							if (salida != null) {
+								salida.put(verificacion);
+							}
+						} catch (final InterruptedException exc) {
+							throw exc;
+						} catch (final Exception exc) {
+							anotarFallo(verificacion.getRuta(), exc);
+						}
+					}
+
+					entradaTerminada = true;
+				} catch (final InterruptedException exc) {
+					Thread.currentThread().interrupt();
+				} catch (final RuntimeException | Error exc) {
+					// Recordar el error para lanzarlo cuando terminen todas las etapas
+					error.compareAndSet(null, exc);
+				} finally {
+					try {
+						// El último hilo en terminar avisa a la siguiente etapa, aunque
+						// termine por un error, para que no se quede esperando
+						if (hilosActivos.decrementAndGet() == 0) {
+							if (!entradaTerminada) {
+								descartarEntrada(entrada);
+							}
+
+							if (salida != null) {
+								for (int j = 0; j < hilosSiguiente; ++j) {
+									salida.put(FIN);
+								}
+							}
+						}
+					} catch (final InterruptedException exc) {
+						Thread.currentThread().interrupt();
+					} finally {
+						fin.countDown();
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Anota como fallidas las CPV que quedan en la entrada de una etapa que se ha
+	 * quedado sin hilos por un error, hasta que la anterior marque su final. Así
+	 * la etapa anterior no se queda esperando a que haya hueco en la cola.
+	 *
+	 * @param entrada La cola de entrada de la etapa.
+	 * @throws InterruptedException Si se interrumpe la espera a que lleguen más
+	 *                              CPV.
+	 */
+	private void descartarEntrada(final BlockingQueue<VerificacionCpv> entrada) throws InterruptedException {
+		VerificacionCpv verificacion;
+
+		while ((verificacion = entrada.take()) != FIN) {
+			fallos.add(verificacion.getRuta() + ": no se ha verificado por un error previo: " + error.get());
+		}
+	}
+
+	/**
+	 * Primera etapa: lee el paquete de una CPV, y obtiene los bloques que protegen
+	 * los datos del peregrino y los sellos de los albergues.
+	 *
+	 * @param verificacion La CPV a procesar.
+	 * @throws IOException              Si ocurre un error de E/S, o el fichero no
+	 *                                  contiene un paquete.
+	 * @throws NoSuchAlgorithmException Si la CPV usa una suite criptográfica que
+	 *                                  no se conoce.
+	 */
+	private void leer(final VerificacionCpv verificacion) throws IOException, NoSuchAlgorithmException {
+		final Paquete cpv = PaqueteDAO.leerPaquete(verificacion.getRuta());
+		final List<CargaUtilCifrada> cargas = new ArrayList<>();
+		final List<PublicKey> firmantes = new ArrayList<>();
+		final List<String> idsSinVerificar = new ArrayList<>();
+
+		cargas.add(CargaUtilCifrada.leerDatosPeregrino(cpv));
+		firmantes.add(claves.getClavePublica(Actor.PEREGRINO));
+
+		// Comprobar solo los sellos que contiene la CPV. Los de albergues que no
+		// están en la lista no se pueden comprobar, así que solo se anotan
+		for (final String id : NombresBloques.getIdentificadoresAlbergues(cpv)) {
+			final PublicKey clavePublicaAlbergue = clavesAlbergues.get(id);
+			if (clavePublicaAlbergue == null) {
+				idsSinVerificar.add(id);
+			} else {
+				cargas.add(CargaUtilCifrada.leerSelloAlbergue(cpv, id));
+				firmantes.add(clavePublicaAlbergue);
+			}
+		}
+
+		verificacion.setCargas(cargas, firmantes);
+		verificacion.setIdsSinVerificar(idsSinVerificar);
+	}
+
+	/**
+	 * Segunda etapa: comprueba las firmas de las cargas útiles de una CPV, y
+	 * desencripta las claves simétricas con las que se encriptaron. La caché de
+	 * firmas verificadas solo evita la comprobación de las firmas: desencriptar
+	 * cada clave simétrica es siempre una operación asimétrica.
+	 *
+	 * @param verificacion La CPV a procesar.
+	 * @throws GeneralSecurityException Si alguna firma no es válida, o falla
+	 *                                  alguna operación criptográfica.
+	 */
+	private void operarAsimetrico(final VerificacionCpv verificacion) throws GeneralSecurityException {
+		final PrivateKey clavePrivadaOficina = claves.getClavePrivada(Actor.OFICINA_PEREGRINO);
+		final List<CargaUtilCifrada> cargas = verificacion.getCargas();
+		final List<SecretKey> clavesSimetrico = new ArrayList<>(cargas.size());
+
+		for (int i = 0; i < cargas.size(); ++i) {
+			if (cache == null) {
+				cargas.get(i).comprobarFirma(verificacion.getFirmantes().get(i));
+			} else {
+				cargas.get(i).comprobarFirma(verificacion.getFirmantes().get(i), cache);
+			}
+			clavesSimetrico.add(cargas.get(i).desencriptarClave(clavePrivadaOficina));
+		}
+
+		verificacion.setClavesSimetrico(clavesSimetrico);
+	}
+
+	/**
+	 * Tercera etapa: desencripta las cargas útiles de una CPV, y anota en el
+	 * informe que es válida.
+	 *
+	 * @param verificacion La CPV a procesar.
+	 * @throws GeneralSecurityException Si alguna carga útil no se puede
+	 *                                  desencriptar o no sigue el formato JSON.
+	 * @throws IOException              Si ocurre un error de E/S al escribir el
+	 *                                  informe.
+	 */
+	private void operarSimetrico(final VerificacionCpv verificacion) throws GeneralSecurityException, IOException {
+		final List<CargaUtilCifrada> cargas = verificacion.getCargas();
+
+		for (int i = 0; i < cargas.size(); ++i) {
+			cargas.get(i).desencriptar(verificacion.getClavesSimetrico().get(i));
+		}
+
+		// La primera carga útil son los datos del peregrino; el resto, sellos
+		if (verificacion.getIdsSinVerificar().isEmpty()) {
+			escribirLineaInforme("OK", verificacion.getRuta(), Integer.toString(cargas.size() - 1));
+		} else {
+			escribirLineaInforme(
+				"OK", verificacion.getRuta(), Integer.toString(cargas.size() - 1), String.join(",", verificacion.getIdsSinVerificar())
+			);
+		}
+		correctas.add(verificacion.getRuta().toString());
+	}
+
+	/**
+	 * Anota en el informe y en los fallos que una CPV no es válida.
+	 *
+	 * @param ruta  La ruta del fichero de la CPV.
+	 * @param causa El motivo por el que no es válida.
+	 */
+	private void anotarFallo(final Path ruta, final Exception causa) {
+		fallos.add(ruta + ": " + causa);
+
+		try {
+			escribirLineaInforme("ERROR", ruta, causa.toString());
+		} catch (final IOException exc) {
+			fallos.add(ruta + ": no se ha podido escribir en el informe: " + exc);
+		}
+	}
+
+	/**
+	 * Escribe una línea en el informe, sustituyendo por espacios los tabuladores y
+	 * saltos de línea de sus campos.
+	 *
+	 * @param estado   El estado de la CPV.
+	 * @param ruta     La ruta del fichero de la CPV.
+	 * @param detalles Información adicional sobre el estado, un campo por
+	 *                 elemento.
+	 * @throws IOException Si ocurre un error de E/S al escribir.
+	 */
+	private void escribirLineaInforme(final String estado, final Path ruta, final String... detalles) throws IOException {
+		final StringBuilder linea = new StringBuilder(estado).append('\t').append(ruta.toString().replaceAll("[\t\r\n]", " "));
+		for (final String detalle : detalles) {
+			linea.append('\t').append(detalle.replaceAll("[\t\r\n]", " "));
+		}
+		linea.append(System.lineSeparator());
+
+		synchronized (informe) {
+			informe.write(linea.toString());
+		}
+	}
+
+	/**
+	 * El procesamiento que hace una etapa a cada CPV.
+	 *
+	 * @author Alejandro González García
+	 */
+	@FunctionalInterface
+	private interface ProcesamientoEtapa {
+		/**
+		 * Procesa una CPV.
+		 *
+		 * @param verificacion La CPV a procesar.
+		 * @throws Exception Si la CPV no es válida, o no se ha podido procesar.
+		 */
+		void procesar(VerificacionCpv verificacion) throws Exception;
+	}
+
+	/**
+	 * El estado de la verificación de una CPV, que se va completando al pasar por
+	 * cada etapa. Las colas entre etapas garantizan que cada etapa vea lo que
+	 * escribieron las anteriores.
+	 *
+	 * @author Alejandro González García
+	 */
+	private static final class VerificacionCpv {
+		private final Path ruta;
+		private List<CargaUtilCifrada> cargas;
+		private List<PublicKey> firmantes;
+		private List<SecretKey> clavesSimetrico;
+		private List<String> idsSinVerificar;
+
+		/**
+		 * Crea el estado de la verificación de una CPV.
+		 *
+		 * @param ruta La ruta del fichero de la CPV.
+		 */
+		VerificacionCpv(final Path ruta) {
+			this.ruta = ruta;
+		}
+
+		Path getRuta() {
+			return ruta;
+		}
+
+		List<CargaUtilCifrada> getCargas() {
+			return cargas;
+		}
+
+		List<PublicKey> getFirmantes() {
+			return firmantes;
+		}
+
+		void setCargas(final List<CargaUtilCifrada> cargas, final List<PublicKey> firmantes) {
+			this.cargas = cargas;
+			this.firmantes = firmantes;
+		}
+
+		List<SecretKey> getClavesSimetrico() {
+			return clavesSimetrico;
+		}
+
+		void setClavesSimetrico(final List<SecretKey> clavesSimetrico) {
+			this.clavesSimetrico = clavesSimetrico;
+		}
+
+		List<String> getIdsSinVerificar() {
+			return idsSinVerificar;
+		}
+
+		void setIdsSinVerificar(final List<String> idsSinVerificar) {
+			this.idsSinVerificar = idsSinVerificar;
+		}
+	}
+}
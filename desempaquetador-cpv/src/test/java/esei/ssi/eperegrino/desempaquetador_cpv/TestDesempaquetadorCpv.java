@@ -1,15 +1,23 @@
 package esei.ssi.eperegrino.desempaquetador_cpv;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.hamcrest.CoreMatchers.allOf;
 import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.GeneralSecurityException;
+import java.security.KeyException;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
@@ -20,15 +28,27 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import esei.ssi.eperegrino.common.Actor;
+import esei.ssi.eperegrino.common.ClavesActores;
+import esei.ssi.eperegrino.common.FormatoPaquete;
 import esei.ssi.eperegrino.common.GestorProveedoresJCA;
 import esei.ssi.eperegrino.common.JSONUtils;
+import esei.ssi.eperegrino.common.NombresBloques;
+import esei.ssi.eperegrino.common.Paquete;
+import esei.ssi.eperegrino.common.PaqueteDAO;
 import esei.ssi.eperegrino.common.ParametrosCriptograficos;
+import esei.ssi.eperegrino.common.ResultadoLote;
+import esei.ssi.eperegrino.common.SuiteCriptografica;
 import esei.ssi.eperegrino.generador_cpv.GeneradorCpv;
 import esei.ssi.eperegrino.sellador_cpv.SelladorCpv;
 
@@ -82,6 +102,12 @@ public final class TestDesempaquetadorCpv {
 	 * Una referencia a la salida estándar vinculada inicialmente al programa.
 	 */
 	private static final PrintStream stdoutOriginal = System.out;
+	/**
+	 * Una carpeta temporal para los ficheros de cada prueba, que JUnit borra al
+	 * terminarla.
+	 */
+	@Rule
+	public final TemporaryFolder carpetaTemporal = new TemporaryFolder();
 
 	static {
 		// Inicializar pares clave-valor
@@ -188,6 +214,421 @@ public final class TestDesempaquetadorCpv {
 		);
 	}
 
+	/**
+	 * Comprueba que el empaquetado, sellado y desempaquetado de una CPV funcione
+	 * usando conjuntos de claves explícitos, sin depender de las claves asociadas
+	 * a los actores.
+	 */
+	@Test
+	public void testEmpaquetarSellarYDesempaquetarPaqueteCpvClavesExplicitas() throws Exception {
+		final byte[] claveInvalidaAleatoria = new byte[8];
+		new Random().nextBytes(claveInvalidaAleatoria);
+
+		// Las claves de los actores no deben de usarse
+		Actor.OFICINA_PEREGRINO.setClavePublica(claveInvalidaAleatoria);
+		Actor.OFICINA_PEREGRINO.setClavePrivada(claveInvalidaAleatoria);
+		Actor.PEREGRINO.setClavePublica(claveInvalidaAleatoria);
+		Actor.PEREGRINO.setClavePrivada(claveInvalidaAleatoria);
+		Actor.ALBERGUE.setClavePrivada(claveInvalidaAleatoria);
+
+		GeneradorCpv.generarPaqueteCPV(
+			datos,
+			bos,
+			new ClavesActores()
+				.conClavePublica(Actor.OFICINA_PEREGRINO, clavePublicaOficinaPeregrino)
+				.conClavePrivada(Actor.PEREGRINO, clavePrivadaPeregrino)
+		);
+
+		final byte[] salidaPaquete = bos.toByteArray();
+		bos.reset();
+
+		SelladorCpv.sellarCpv(
+			datosSello,
+			new ByteArrayInputStream(salidaPaquete),
+			bos,
+			"Albergue de prueba",
+			new ClavesActores()
+				.conClavePublica(Actor.OFICINA_PEREGRINO, clavePublicaOficinaPeregrino)
+				.conClavePrivada(Actor.ALBERGUE, clavePrivadaAlbergue)
+		);
+
+		final List<Entry<String, byte[]>> albergues = new ArrayList<>();
+		albergues.add(new AbstractMap.SimpleImmutableEntry<>("Albergue de prueba", clavePublicaAlbergue));
+
+		DesempaquetadorCpv.desempaquetarPaqueteCPV(
+			new ByteArrayInputStream(bos.toByteArray()),
+			albergues,
+			new ClavesActores()
+				.conClavePrivada(Actor.OFICINA_PEREGRINO, clavePrivadaOficinaPeregrino)
+				.conClavePublica(Actor.PEREGRINO, clavePublicaPeregrino)
+		);
+
+		assertThat(
+			stdout.toString(StandardCharsets.UTF_8.displayName()),
+			allOf(
+				containsString(JSONUtils.map2json(datos)),
+				containsString(JSONUtils.map2json(datosSello))
+			)
+		);
+	}
+
+	/**
+	 * Comprueba que una CPV generada y sellada con claves Ed25519 use la suite
+	 * criptográfica moderna, que la anota en el paquete, y que se pueda
+	 * desempaquetar junto con un sello de la suite clásica en la misma CPV.
+	 */
+	@Test
+	public void testEmpaquetarSellarYDesempaquetarPaqueteCpvSuiteModerna() throws Exception {
+		final KeyPairGenerator generadorClavesFirma = KeyPairGenerator.getInstance(
+			ParametrosCriptograficos.ALGORITMO_FIRMA, ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS
+		);
+		final KeyPair parClavesPeregrino = generadorClavesFirma.generateKeyPair();
+		final KeyPair parClavesAlbergue = generadorClavesFirma.generateKeyPair();
+
+		GeneradorCpv.generarPaqueteCPV(
+			datos,
+			bos,
+			new ClavesActores()
+				.conClavePublica(Actor.OFICINA_PEREGRINO, clavePublicaOficinaPeregrino)
+				.conClavePrivada(Actor.PEREGRINO, parClavesPeregrino.getPrivate().getEncoded())
+		);
+
+		byte[] salidaPaquete = bos.toByteArray();
+		bos.reset();
+
+		SelladorCpv.sellarCpv(
+			datosSello,
+			new ByteArrayInputStream(salidaPaquete),
+			bos,
+			"Albergue moderno",
+			new ClavesActores()
+				.conClavePublica(Actor.OFICINA_PEREGRINO, clavePublicaOficinaPeregrino)
+				.conClavePrivada(Actor.ALBERGUE, parClavesAlbergue.getPrivate().getEncoded())
+		);
+
+		salidaPaquete = bos.toByteArray();
+		bos.reset();
+
+		SelladorCpv.sellarCpv(
+			datosSello,
+			new ByteArrayInputStream(salidaPaquete),
+			bos,
+			"Albergue clasico",
+			new ClavesActores()
+				.conClavePublica(Actor.OFICINA_PEREGRINO, clavePublicaOficinaPeregrino)
+				.conClavePrivada(Actor.ALBERGUE, clavePrivadaAlbergue)
+		);
+
+		final Paquete cpv = PaqueteDAO.leerPaquete(new ByteArrayInputStream(bos.toByteArray()));
+		assertEquals(SuiteCriptografica.MODERNA, SuiteCriptografica.leer(cpv, NombresBloques.TITULO_BLOQUE_SUITE_DATOS_PEREGRINO));
+		assertEquals(SuiteCriptografica.MODERNA, SuiteCriptografica.leer(cpv, NombresBloques.TITULO_BLOQUE_SUITE_SELLO_ALBERGUE.replace("{ID}", "Albergue moderno")));
+		assertEquals(SuiteCriptografica.CLASICA, SuiteCriptografica.leer(cpv, NombresBloques.TITULO_BLOQUE_SUITE_SELLO_ALBERGUE.replace("{ID}", "Albergue clasico")));
+
+		final List<Entry<String, byte[]>> albergues = new ArrayList<>();
+		albergues.add(new AbstractMap.SimpleImmutableEntry<>("Albergue moderno", parClavesAlbergue.getPublic().getEncoded()));
+		albergues.add(new AbstractMap.SimpleImmutableEntry<>("Albergue clasico", clavePublicaAlbergue));
+
+		DesempaquetadorCpv.desempaquetarPaqueteCPV(
+			new ByteArrayInputStream(bos.toByteArray()),
+			albergues,
+			new ClavesActores()
+				.conClavePrivada(Actor.OFICINA_PEREGRINO, clavePrivadaOficinaPeregrino)
+				.conClavePublica(Actor.PEREGRINO, parClavesPeregrino.getPublic().getEncoded())
+		);
+
+		final String salida = stdout.toString(StandardCharsets.UTF_8.displayName());
+		assertThat(salida, containsString(JSONUtils.map2json(datos)));
+		assertThat(salida, containsString("Sello del albergue \"Albergue moderno\""));
+		assertThat(salida, containsString("Sello del albergue \"Albergue clasico\""));
+	}
+
+	/**
+	 * Comprueba que los sellos de varios albergues, comprobados en paralelo, se
+	 * muestren en el orden en que se especificaron los albergues.
+	 */
+	@Test
+	public void testDesempaquetarPaqueteCpvVariosSellosEnOrden() throws Exception {
+		final String[] idsAlbergues = { "Albergue A", "Albergue B", "Albergue C", "Albergue D" };
+		final ExecutorService ejecutor = Executors.newFixedThreadPool(3);
+
+		Actor.OFICINA_PEREGRINO.setClavePublica(clavePublicaOficinaPeregrino);
+		Actor.PEREGRINO.setClavePrivada(clavePrivadaPeregrino);
+
+		GeneradorCpv.generarPaqueteCPV(datos, bos);
+
+		Actor.ALBERGUE.setClavePrivada(clavePrivadaAlbergue);
+
+		for (final String id : idsAlbergues) {
+			final byte[] salidaPaquete = bos.toByteArray();
+			bos.reset();
+
+			SelladorCpv.sellarCpv(datosSello, new ByteArrayInputStream(salidaPaquete), bos, id);
+		}
+
+		Actor.OFICINA_PEREGRINO.setClavePrivada(clavePrivadaOficinaPeregrino);
+		Actor.PEREGRINO.setClavePublica(clavePublicaPeregrino);
+
+		// Pedir los albergues en orden inverso al de sellado
+		final List<Entry<String, byte[]>> albergues = new ArrayList<>();
+		for (int i = idsAlbergues.length - 1; i >= 0; --i) {
+			albergues.add(new AbstractMap.SimpleImmutableEntry<>(idsAlbergues[i], clavePublicaAlbergue));
+		}
+
+		try {
+			DesempaquetadorCpv.desempaquetarCPV(
+				PaqueteDAO.leerPaquete(new ByteArrayInputStream(bos.toByteArray())),
+				albergues,
+				ejecutor
+			);
+		} finally {
+			ejecutor.shutdown();
+		}
+
+		final String salida = stdout.toString(StandardCharsets.UTF_8.displayName());
+		int posicionAnterior = -1;
+		for (final Entry<String, byte[]> albergue : albergues) {
+			final int posicion = salida.indexOf("Sello del albergue \"" + albergue.getKey() + "\"");
+
+			assertTrue(posicion > posicionAnterior);
+			posicionAnterior = posicion;
+		}
+	}
+
+	/**
+	 * Comprueba que solo se comprueben y mencionen los sellos que contiene la CPV,
+	 * aunque la lista de albergues incluya otros, y que un sello de un albergue
+	 * que no está en la lista se muestre como sin verificar.
+	 */
+	@Test
+	public void testDesempaquetarPaqueteCpvSoloSellosPresentes() throws Exception {
+		final ClavesActores claves = new ClavesActores()
+			.conClavePublica(Actor.OFICINA_PEREGRINO, clavePublicaOficinaPeregrino)
+			.conClavePrivada(Actor.OFICINA_PEREGRINO, clavePrivadaOficinaPeregrino)
+			.conClavePublica(Actor.PEREGRINO, clavePublicaPeregrino)
+			.conClavePrivada(Actor.PEREGRINO, clavePrivadaPeregrino)
+			.conClavePrivada(Actor.ALBERGUE, clavePrivadaAlbergue);
+
+		GeneradorCpv.generarPaqueteCPV(datos, bos, claves);
+
+		final byte[] salidaPaquete = bos.toByteArray();
+		bos.reset();
+
+		SelladorCpv.sellarCpv(datosSello, new ByteArrayInputStream(salidaPaquete), bos, "Albergue A", claves);
+
+		final List<Entry<String, byte[]>> albergues = new ArrayList<>();
+		albergues.add(new AbstractMap.SimpleImmutableEntry<>("Albergue B", clavePublicaAlbergue));
+		albergues.add(new AbstractMap.SimpleImmutableEntry<>("Albergue A", clavePublicaAlbergue));
+
+		DesempaquetadorCpv.desempaquetarPaqueteCPV(new ByteArrayInputStream(bos.toByteArray()), albergues, claves);
+
+		assertThat(stdout.toString(StandardCharsets.UTF_8.displayName()), allOf(
+			containsString("Sello del albergue \"Albergue A\""),
+			not(containsString("Albergue B"))
+		));
+
+		stdout.reset();
+		DesempaquetadorCpv.desempaquetarPaqueteCPV(new ByteArrayInputStream(bos.toByteArray()), albergues.subList(0, 1), claves);
+
+		assertThat(stdout.toString(StandardCharsets.UTF_8.displayName()), allOf(
+			containsString("Sello del albergue \"ALBERGUE_A\""),
+			containsString("sin verificar"),
+			not(containsString(JSONUtils.map2json(datosSello)))
+		));
+	}
+
+	/**
+	 * Comprueba que los sellos de una CPV se comprueben con las claves de un
+	 * almacén de claves de albergues, tanto en forma de directorio como de
+	 * fichero indexado, sin especificar qué albergues la han sellado.
+	 */
+	@Test
+	public void testDesempaquetarPaqueteCpvAlmacenClavesAlbergues() throws Exception {
+		final Path directorio = carpetaTemporal.newFolder("almacen-claves").toPath();
+		final Path ficheroIndexado = carpetaTemporal.newFile("almacen-claves.paquete").toPath();
+		final ClavesActores claves = new ClavesActores()
+			.conClavePublica(Actor.OFICINA_PEREGRINO, clavePublicaOficinaPeregrino)
+			.conClavePrivada(Actor.OFICINA_PEREGRINO, clavePrivadaOficinaPeregrino)
+			.conClavePublica(Actor.PEREGRINO, clavePublicaPeregrino)
+			.conClavePrivada(Actor.PEREGRINO, clavePrivadaPeregrino)
+			.conClavePrivada(Actor.ALBERGUE, clavePrivadaAlbergue);
+		final Paquete paqueteClaves = new Paquete();
+
+		GeneradorCpv.generarPaqueteCPV(datos, bos, claves);
+
+		for (final String id : new String[] { "Albergue A", "Albergue B" }) {
+			final byte[] salidaPaquete = bos.toByteArray();
+			bos.reset();
+
+			SelladorCpv.sellarCpv(datosSello, new ByteArrayInputStream(salidaPaquete), bos, id, claves);
+		}
+
+		final Paquete cpv = PaqueteDAO.leerPaquete(new ByteArrayInputStream(bos.toByteArray()));
+
+		// El almacén contiene más albergues de los que han sellado la CPV
+		for (final String id : new String[] { "Albergue A", "Albergue B", "Albergue C" }) {
+			Files.write(directorio.resolve(id + AlmacenClavesAlbergues.EXTENSION_CLAVE_PUBLICA), clavePublicaAlbergue);
+			paqueteClaves.anadirBloque(id, clavePublicaAlbergue);
+		}
+
+		try (final OutputStream salidaClaves = Files.newOutputStream(ficheroIndexado)) {
+			PaqueteDAO.escribirPaquete(salidaClaves, paqueteClaves, FormatoPaquete.BINARIO);
+		}
+
+		for (final Path ruta : new Path[] { directorio, ficheroIndexado }) {
+			try (final AlmacenClavesAlbergues almacen = AlmacenClavesAlbergues.abrir(ruta, 1)) {
+				DesempaquetadorCpv.desempaquetarCPV(cpv, almacen, claves, ForkJoinPool.commonPool());
+			}
+
+			final String salida = stdout.toString(StandardCharsets.UTF_8.displayName());
+			stdout.reset();
+
+			assertThat(salida, allOf(
+				containsString("Sello del albergue \"ALBERGUE_A\""),
+				containsString("Sello del albergue \"ALBERGUE_B\""),
+				not(containsString("ALBERGUE_C"))
+			));
+		}
+	}
+
+	/**
+	 * Comprueba que el desempaquetado falle si el almacén de claves de albergues
+	 * no contiene la clave de algún albergue que ha sellado la CPV.
+	 */
+	@Test(expected = KeyException.class)
+	public void testDesempaquetarPaqueteCpvAlmacenSinClaveAlbergue() throws Exception {
+		final Path directorio = carpetaTemporal.newFolder("almacen-claves").toPath();
+		final ClavesActores claves = new ClavesActores()
+			.conClavePublica(Actor.OFICINA_PEREGRINO, clavePublicaOficinaPeregrino)
+			.conClavePrivada(Actor.OFICINA_PEREGRINO, clavePrivadaOficinaPeregrino)
+			.conClavePublica(Actor.PEREGRINO, clavePublicaPeregrino)
+			.conClavePrivada(Actor.PEREGRINO, clavePrivadaPeregrino)
+			.conClavePrivada(Actor.ALBERGUE, clavePrivadaAlbergue);
+
+		GeneradorCpv.generarPaqueteCPV(datos, bos, claves);
+
+		final byte[] salidaPaquete = bos.toByteArray();
+		bos.reset();
+
+		SelladorCpv.sellarCpv(datosSello, new ByteArrayInputStream(salidaPaquete), bos, "Albergue desconocido", claves);
+
+		try (final AlmacenClavesAlbergues almacen = AlmacenClavesAlbergues.abrir(directorio, AlmacenClavesAlbergues.CAPACIDAD_PREDETERMINADA)) {
+			DesempaquetadorCpv.desempaquetarCPV(
+				PaqueteDAO.leerPaquete(new ByteArrayInputStream(bos.toByteArray())), almacen, claves, ForkJoinPool.commonPool()
+			);
+		}
+	}
+
+	/**
+	 * Comprueba que la verificación de un archivo de CPV informe de cada fichero
+	 * del árbol de directorios, incluyendo los de subdirectorios y los que no son
+	 * CPV válidas.
+	 */
+	@Test
+	public void testVerificarArchivoCpv() throws Exception {
+		final Path directorio = carpetaTemporal.newFolder("archivo-cpv").toPath();
+		final StringWriter informe = new StringWriter();
+		final ClavesActores claves = new ClavesActores()
+			.conClavePublica(Actor.OFICINA_PEREGRINO, clavePublicaOficinaPeregrino)
+			.conClavePrivada(Actor.OFICINA_PEREGRINO, clavePrivadaOficinaPeregrino)
+			.conClavePublica(Actor.PEREGRINO, clavePublicaPeregrino)
+			.conClavePrivada(Actor.PEREGRINO, clavePrivadaPeregrino)
+			.conClavePrivada(Actor.ALBERGUE, clavePrivadaAlbergue);
+
+		Files.createDirectory(directorio.resolve("sub"));
+
+		for (int i = 0; i < 6; ++i) {
+			GeneradorCpv.generarPaqueteCPV(datos, bos, claves);
+
+			// Sellar la mitad de las CPV
+			if (i % 2 == 0) {
+				final byte[] salidaPaquete = bos.toByteArray();
+				bos.reset();
+
+				SelladorCpv.sellarCpv(datosSello, new ByteArrayInputStream(salidaPaquete), bos, "Albergue de prueba", claves);
+			}
+
+			Files.write(directorio.resolve(i < 3 ? "cpv" + i : "sub/cpv" + i), bos.toByteArray());
+			bos.reset();
+		}
+
+		Files.write(directorio.resolve("sub/invalido"), "No es una CPV".getBytes(StandardCharsets.UTF_8));
+
+		final List<Entry<String, byte[]>> albergues = new ArrayList<>();
+		albergues.add(new AbstractMap.SimpleImmutableEntry<>("Albergue de prueba", clavePublicaAlbergue));
+
+		final ResultadoLote resultado = VerificadorArchivoCpv.verificarArchivo(directorio, albergues, claves, 3, informe);
+
+		assertEquals(6, resultado.getCorrectas());
+		assertEquals(1, resultado.getFallos().size());
+
+		final String[] lineas = informe.toString().split(System.lineSeparator());
+		assertEquals(7, lineas.length);
+		assertThat(informe.toString(), allOf(
+			containsString("ERROR\t" + directorio.resolve("sub/invalido") + "\t"),
+			containsString("OK\t" + directorio.resolve("sub/cpv4") + "\t1"),
+			containsString("OK\t" + directorio.resolve("sub/cpv5") + "\t0")
+		));
+	}
+
+	/**
+	 * Comprueba que la verificación de un archivo de CPV con una caché de firmas
+	 * verificadas anote las firmas comprobadas, y que al volver a verificarlo las
+	 * encuentre todas en la caché, aun después de cerrarla y abrirla de nuevo.
+	 */
+	@Test
+	public void testVerificarArchivoCpvCacheFirmas() throws Exception {
+		final Path directorio = carpetaTemporal.newFolder("archivo-cpv").toPath();
+		final Path ficheroCache = carpetaTemporal.newFile("firmas-verificadas.cache").toPath();
+		final ClavesActores claves = new ClavesActores()
+			.conClavePublica(Actor.OFICINA_PEREGRINO, clavePublicaOficinaPeregrino)
+			.conClavePrivada(Actor.OFICINA_PEREGRINO, clavePrivadaOficinaPeregrino)
+			.conClavePublica(Actor.PEREGRINO, clavePublicaPeregrino)
+			.conClavePrivada(Actor.PEREGRINO, clavePrivadaPeregrino)
+			.conClavePrivada(Actor.ALBERGUE, clavePrivadaAlbergue);
+		final List<Entry<String, byte[]>> albergues = new ArrayList<>();
+		albergues.add(new AbstractMap.SimpleImmutableEntry<>("Albergue de prueba", clavePublicaAlbergue));
+
+		for (int i = 0; i < 2; ++i) {
+			GeneradorCpv.generarPaqueteCPV(datos, bos, claves);
+
+			final byte[] salidaPaquete = bos.toByteArray();
+			bos.reset();
+
+			SelladorCpv.sellarCpv(datosSello, new ByteArrayInputStream(salidaPaquete), bos, "Albergue de prueba", claves);
+
+			Files.write(directorio.resolve("cpv" + i), bos.toByteArray());
+			bos.reset();
+		}
+
+		long tamanoCache = -1;
+		for (int i = 0; i < 2; ++i) {
+			final ResultadoLote resultado;
+
+			try (final CacheFirmasVerificadas cache = CacheFirmasVerificadas.abrir(
+				ficheroCache, CacheFirmasVerificadas.CAPACIDAD_PREDETERMINADA, claves.getClavePrivada(Actor.OFICINA_PEREGRINO)
+			)) {
+				resultado = VerificadorArchivoCpv.verificarArchivo(directorio, albergues, claves, 2, cache, new StringWriter());
+			}
+
+			assertEquals(2, resultado.getCorrectas());
+			assertTrue(resultado.getFallos().isEmpty());
+
+			// La segunda verificación no debe de anotar ninguna firma nueva
+			if (i == 0) {
+				tamanoCache = Files.size(ficheroCache);
+			} else {
+				assertEquals(tamanoCache, Files.size(ficheroCache));
+			}
+		}
+
+		// Dos CPV con un sello cada una: cuatro firmas distintas
+		try (final CacheFirmasVerificadas cache = CacheFirmasVerificadas.abrir(ficheroCache, 4, claves.getClavePrivada(Actor.OFICINA_PEREGRINO))) {
+			final CargaUtilCifrada cargaDatosPeregrino = CargaUtilCifrada.leerDatosPeregrino(PaqueteDAO.leerPaquete(directorio.resolve("cpv0")));
+			cargaDatosPeregrino.comprobarFirma(claves.getClavePublica(Actor.PEREGRINO), cache);
+		}
+		assertEquals(tamanoCache, Files.size(ficheroCache));
+	}
+
 	/**
 	 * Comprueba que el desempaquetado de un paquete de CPV con claves de actores
 	 * inválidas no tenga éxito.
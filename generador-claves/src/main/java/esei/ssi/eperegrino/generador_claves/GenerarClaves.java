@@ -14,7 +14,13 @@ import org.bouncycastle.jce.provider.BouncyCastleProvider;
  */
 public class GenerarClaves {
 	public static void main(String[] args) throws Exception {
-		if (args.length != 1) {
+		if (args.length > 0 && args[0].equals(GenerarLoteClaves.OPCION_LOTE)) {
+			// Generar muchos pares de claves en paralelo
+			GenerarLoteClaves.main(args);
+			return;
+		}
+
+		if (args.length < 1 || args.length > 2 || (args.length == 2 && !args[1].equalsIgnoreCase("Ed25519"))) {
 			mensajeAyuda();
 			System.exit(1);
 		}
@@ -23,12 +29,15 @@ public class GenerarClaves {
 		// Anadir provider  (el provider por defecto no soporta RSA)
 		Security.addProvider(new BouncyCastleProvider()); // Cargar el provider BC
 
-		/*** Crear claves RSA 4096 bits  */
-		KeyPairGenerator generadorRSA = KeyPairGenerator.getInstance("RSA", "BC"); // Hace uso del provider BC
-		generadorRSA.initialize(4096);
-		KeyPair clavesRSA = generadorRSA.generateKeyPair();
-		PrivateKey clavePrivada = clavesRSA.getPrivate();
-		PublicKey clavePublica = clavesRSA.getPublic();
+		/*** Crear claves RSA 4096 bits, o Ed25519 para firmar con la suite moderna  */
+		boolean ed25519 = args.length == 2;
+		KeyPairGenerator generador = KeyPairGenerator.getInstance(ed25519 ? "Ed25519" : "RSA", "BC"); // Hace uso del provider BC
+		if (!ed25519) {
+			generador.initialize(4096);
+		}
+		KeyPair claves = generador.generateKeyPair();
+		PrivateKey clavePrivada = claves.getPrivate();
+		PublicKey clavePublica = claves.getPublic();
 
 		/*** 1 Volcar clave privada  a fichero */
 		// 1.1 Recuperar de la clave su codificación en formato PKS8 (necesario para escribirla a disco)
@@ -48,13 +57,16 @@ public class GenerarClaves {
 		out.write(encodedX509);
 		out.close();
 		
-		System.out.println("Generadas claves RSA pública y privada de 4096 bits en ficheros "+args[0] + ".publica"+ " y "+args[0] + ".privada");
+		System.out.println("Generadas claves " + (ed25519 ? "Ed25519" : "RSA") + " pública y privada" + (ed25519 ? "" : " de 4096 bits") + " en ficheros "+args[0] + ".publica"+ " y "+args[0] + ".privada");
 
 	}
 
 	public static void mensajeAyuda() {
-		System.out.println("Generador de pares de clave RSA de 4096 bits");
-		System.out.println("\tSintaxis:   java GenerarClaves prefijo");
+		System.out.println("Generador de pares de clave RSA de 4096 bits, o Ed25519");
+		System.out.println("\tSintaxis:   java GenerarClaves prefijo [Ed25519]");
+		System.out.println("\t            java GenerarClaves --lote num_pares patron_prefijo [Ed25519]");
+		System.out.println("\tEn modo lote se generan num_pares pares en paralelo, con prefijos patron_prefijo con %d sustituido por el numero del par (ej.: albergue-%03d)");
+		System.out.println("\tLas claves Ed25519 solo sirven para firmar (peregrino y albergues), con la suite criptografica moderna");
 		System.out.println();
 	}
 }
@@ -0,0 +1,166 @@
+package esei.ssi.eperegrino.generador_claves;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+
+import esei.ssi.eperegrino.common.ParametrosCriptograficos;
+import esei.ssi.eperegrino.common.ProcesadorLote;
+import esei.ssi.eperegrino.common.ResultadoLote;
+
+/**
+ * Contiene la lógica del modo por lotes del generador de claves, que genera
+ * muchos pares de claves a la vez, como los de todos los albergues de una
+ * región. La búsqueda de primos de las claves RSA es muy costosa, así que los
+ * pares se generan en paralelo, con un generador de claves por hilo.
+ *
+ * @author Alejandro González García
+ */
+final class GenerarLoteClaves {
+	/**
+	 * El primer argumento que indica que se deben de generar varios pares de
+	 * claves.
+	 */
+	static final String OPCION_LOTE = "--lote";
+	/**
+	 * La longitud en bits de las claves RSA generadas.
+	 */
+	private static final int LONGITUD_CLAVE_RSA = 4096;
+
+	private GenerarLoteClaves() {
+		// No permitir instanciar esta clase
+	}
+
+	/**
+	 * Punto de entrada del modo por lotes de la aplicación.
+	 *
+	 * @param args Los argumentos de línea de comandos, cuyo primero es
+	 *             {@link #OPCION_LOTE}.
+	 */
+	static void main(final String[] args) {
+		if (args.length < 3 || args.length > 4 || (args.length == 4 && !args[3].equalsIgnoreCase("Ed25519"))) {
+			mostrarSintaxisYSalir();
+		}
+
+		int numeroPares = 0;
+		try {
+			numeroPares = Integer.parseInt(args[1]);
+			if (numeroPares < 1) {
+				throw new NumberFormatException();
+			}
+		} catch (final NumberFormatException exc) {
+			System.err.println("El número de pares de claves especificado no es un entero positivo");
+			mostrarSintaxisYSalir();
+		}
+
+		final String patronPrefijo = args[2];
+		// Los errores de formato también son IllegalArgumentException
+		try {
+			if (String.format(patronPrefijo, 1).equals(String.format(patronPrefijo, 2))) {
+				throw new IllegalArgumentException();
+			}
+		} catch (final IllegalArgumentException exc) {
+			System.err.println("El patrón de prefijo debe de contener una única conversión %d para el número del par de claves");
+			mostrarSintaxisYSalir();
+		}
+
+		try {
+			generarLote(numeroPares, patronPrefijo, args.length == 4, Runtime.getRuntime().availableProcessors()).mostrar(System.out);
+		} catch (final Exception exc) {
+			System.err.println("Ha ocurrido un error durante la generación del lote de claves");
+			exc.printStackTrace();
+		}
+	}
+
+	/**
+	 * Genera pares de claves en paralelo, escribiendo cada uno en los ficheros
+	 * {@code <prefijo>.publica} y {@code <prefijo>.privada}, donde el prefijo se
+	 * obtiene del patrón con el número del par (el primero es el 1). Se muestra
+	 * por la salida estándar cuánto ha llevado generar cada par.
+	 *
+	 * @param numeroPares   El número de pares de claves a generar.
+	 * @param patronPrefijo El patrón del prefijo de los ficheros de cada par, en
+	 *                      el formato de {@link String#format(String, Object...)},
+	 *                      que recibe el número del par.
+	 * @param ed25519       Verdadero si se deben de generar claves Ed25519, falso
+	 *                      para claves RSA de {@value #LONGITUD_CLAVE_RSA} bits.
+	 * @param hilos         El número de hilos con los que generar los pares.
+	 * @return El resultado de generar el lote.
+	 * @throws InterruptedException     Si se interrumpe la espera a que terminen
+	 *                                  de generarse los pares.
+	 * @throws IllegalArgumentException Si el patrón es nulo, o el número de hilos
+	 *                                  no es positivo.
+	 */
+	static ResultadoLote generarLote(final int numeroPares, final String patronPrefijo, final boolean ed25519, final int hilos) throws InterruptedException {
+		if (patronPrefijo == null) {
+			throw new IllegalArgumentException("El patrón de prefijo de los ficheros de claves no puede ser nulo");
+		}
+
+		// Cada hilo tiene su propio generador, con su propia fuente de aleatoriedad,
+		// para que no compitan por ellos
+		final ThreadLocal<KeyPairGenerator> generadores = ThreadLocal.withInitial(() -> {
+			try {
+				final KeyPairGenerator generador = KeyPairGenerator.getInstance(
+					ed25519 ? "Ed25519" : "RSA", ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS
+				);
+				if (!ed25519) {
+					generador.initialize(LONGITUD_CLAVE_RSA, new SecureRandom());
+				}
+
+				return generador;
+			} catch (final GeneralSecurityException exc) {
+				throw new IllegalStateException("No se ha podido crear un generador de claves", exc);
+			}
+		});
+
+		try (final ProcesadorLote procesador = new ProcesadorLote(hilos)) {
+			for (int i = 1; i <= numeroPares; ++i) {
+				final String prefijo = String.format(patronPrefijo, i);
+
+				procesador.enviar(prefijo, () -> {
+					final long inicio = System.nanoTime();
+					final KeyPair claves = generadores.get().generateKeyPair();
+					final long duracion = System.nanoTime() - inicio;
+
+					escribirClave(Paths.get(prefijo + ".privada"), claves.getPrivate().getEncoded());
+					escribirClave(Paths.get(prefijo + ".publica"), claves.getPublic().getEncoded());
+
+					System.out.printf("Generado el par de claves %s en %.3f s%n", prefijo, duracion / 1e9);
+				});
+			}
+
+			return procesador.finalizar();
+		}
+	}
+
+	/**
+	 * Escribe la representación de una clave en un fichero, creando sus
+	 * directorios padre si no existen.
+	 *
+	 * @param fichero        El fichero a escribir. Si ya existe, se reemplaza.
+	 * @param representacion La representación de la clave.
+	 * @throws IOException Si ocurre un error de E/S al escribir.
+	 */
+	private static void escribirClave(final Path fichero, final byte[] representacion) throws IOException {
+		final Path directorio = fichero.toAbsolutePath().getParent();
+		if (directorio != null) {
+			Files.createDirectories(directorio);
+		}
+
+		Files.write(fichero, representacion);
+	}
+
+	/**
+	 * Muestra la sintaxis del modo por lotes, y finaliza el proceso de la
+	 * aplicación con el código de salida de error 1.
+	 */
+	private static void mostrarSintaxisYSalir() {
+		System.out.println("Sintaxis: java GenerarClaves " + OPCION_LOTE + " (núm. pares) (patrón prefijo, p. ej. albergues/albergue-%03d) [Ed25519]");
+		System.exit(1);
+	}
+}
@@ -0,0 +1,94 @@
+package esei.ssi.eperegrino.generador_cpv;
+
+import java.io.File;
+
+/**
+ * Modela los argumentos de operación del modo por lotes del generador de CPV.
+ *
+ * @author Alejandro González García
+ */
+final class ArgumentosLoteGen {
+	private final File ficheroRegistros;
+	private final File directorioSalida;
+	private final File ficheroClavePrivadaPeregrino;
+	private final File ficheroClavePublicaOficina;
+	private final int hilos;
+
+	/**
+	 * Crea un objeto de argumentos de operación para el modo por lotes del
+	 * generador de CPV.
+	 *
+	 * @param ficheroRegistros             El fichero que contiene los registros de
+	 *                                     datos de peregrinos.
+	 * @param directorioSalida             El directorio donde guardar las CPV
+	 *                                     generadas.
+	 * @param ficheroClavePrivadaPeregrino El fichero que contiene la clave privada
+	 *                                     del peregrino.
+	 * @param ficheroClavePublicaOficina   El fichero que contiene la clave pública
+	 *                                     de la oficina.
+	 * @param hilos                        El número de hilos con los que generar
+	 *                                     las CPV.
+	 * @throws IllegalArgumentException Si algún parámetro es nulo, o el número de
+	 *                                  hilos no es positivo.
+	 */
+	public ArgumentosLoteGen(final File ficheroRegistros, final File directorioSalida, final File ficheroClavePrivadaPeregrino, final File ficheroClavePublicaOficina, final int hilos) {
+		if (ficheroRegistros == null || directorioSalida == null || ficheroClavePrivadaPeregrino == null || ficheroClavePublicaOficina == null) {
+			throw new IllegalArgumentException("Los argumentos no pueden ser nulos");
+		}
+
+		if (hilos < 1) {
+			throw new IllegalArgumentException("El número de hilos debe de ser positivo");
+		}
+
+		this.ficheroRegistros = ficheroRegistros;
+		this.directorioSalida = directorioSalida;
+		this.ficheroClavePrivadaPeregrino = ficheroClavePrivadaPeregrino;
+		this.ficheroClavePublicaOficina = ficheroClavePublicaOficina;
+		this.hilos = hilos;
+	}
+
+	/**
+	 * Obtiene el fichero que contiene los registros de datos de peregrinos.
+	 *
+	 * @return El descrito fichero.
+	 */
+	public File getFicheroRegistros() {
+		return ficheroRegistros;
+	}
+
+	/**
+	 * Obtiene el directorio donde guardar las CPV generadas.
+	 *
+	 * @return El descrito directorio.
+	 */
+	public File getDirectorioSalida() {
+		return directorioSalida;
+	}
+
+	/**
+	 * Obtiene el fichero que contiene la clave privada del peregrino.
+	 *
+	 * @return El descrito fichero.
+	 */
+	public File getFicheroClavePrivadaPeregrino() {
+		return ficheroClavePrivadaPeregrino;
+	}
+
+	/**
+	 * Obtiene el fichero que contiene la clave pública de la oficina del peregrino.
+	 *
+	 * @return El descrito fichero.
+	 */
+	public File getFicheroClavePublicaOficina() {
+		return ficheroClavePublicaOficina;
+	}
+
+	/**
+	 * Obtiene el número de hilos con los que generar las CPV.
+	 *
+	 * @return El descrito número.
+	 */
+	public int getHilos() {
+		return hilos;
+	}
+}
@@ -2,18 +2,17 @@ package esei.ssi.eperegrino.generador_cpv;
 
 import esei.ssi.eperegrino.common.Actor;
 
-import esei.ssi.eperegrino.common.GestorProveedoresJCA;
-import esei.ssi.eperegrino.common.JSONUtils;
+import esei.ssi.eperegrino.common.ClaveSimetricaEncriptada;
+import esei.ssi.eperegrino.common.ClavesActores;
 import esei.ssi.eperegrino.common.Paquete;
 import esei.ssi.eperegrino.common.PaqueteDAO;
-import esei.ssi.eperegrino.common.ParametrosCriptograficos;
+import esei.ssi.eperegrino.common.SuiteCriptografica;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.security.GeneralSecurityException;
-import java.security.MessageDigest;
+import java.security.PrivateKey;
 import java.security.spec.InvalidKeySpecException;
 import java.time.Instant;
 import java.time.ZoneId;
@@ -22,13 +21,10 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Scanner;
 
-import javax.crypto.Cipher;
-import javax.crypto.KeyGenerator;
-import javax.crypto.SecretKey;
-
 import static esei.ssi.eperegrino.common.NombresBloques.TITULO_BLOQUE_DATOS_PEREGRINO;
 import static esei.ssi.eperegrino.common.NombresBloques.TITULO_BLOQUE_CLAVE_DATOS_PEREGRINO;
 import static esei.ssi.eperegrino.common.NombresBloques.TITULO_BLOQUE_RESUMEN_DATOS_PEREGRINO_ENCRIPTADOS;
+import static esei.ssi.eperegrino.common.NombresBloques.TITULO_BLOQUE_SUITE_DATOS_PEREGRINO;
 
 /**
  * Contiene la lógica de negocio de una aplicación que genera una credencial de
@@ -38,8 +34,14 @@ import static esei.ssi.eperegrino.common.NombresBloques.TITULO_BLOQUE_RESUMEN_DA
  */
 public final class GeneradorCpv {
 	// Argumentos de línea de comandos: <nombre paquete> <ficheros con las claves
-	// necesarias>
+	// necesarias>, o --lote <fichero registros> <directorio salida> <ficheros con
+	// las claves necesarias> [núm. hilos]
 	public static void main(final String[] args) {
+		if (args.length > 0 && LectorArgumentosLineaComandosGen.OPCION_LOTE.equals(args[0])) {
+			GeneradorLoteCpv.main(LectorArgumentosLineaComandosGen.interpretarLote(args));
+			return;
+		}
+
 		try {
 			String nombre;
 			String DNI;
@@ -71,8 +73,9 @@ public final class GeneradorCpv {
 			System.out.print("Indique su motivación: ");
 			motivacion = teclado.nextLine();
 
-			Actor.OFICINA_PEREGRINO.setClavePublica(Files.readAllBytes(argumentos.getFicheroClavePublicaOficina().toPath()));
-			Actor.PEREGRINO.setClavePrivada(Files.readAllBytes(argumentos.getFicheroClavePrivadaPeregrino().toPath()));
+			final ClavesActores claves = new ClavesActores()
+				.conClavePublica(Actor.OFICINA_PEREGRINO, Files.readAllBytes(argumentos.getFicheroClavePublicaOficina().toPath()))
+				.conClavePrivada(Actor.PEREGRINO, Files.readAllBytes(argumentos.getFicheroClavePrivadaPeregrino().toPath()));
 
 			map.put("Nombre", nombre);
 			map.put("DNI", DNI);
@@ -81,7 +84,7 @@ public final class GeneradorCpv {
 			map.put("Lugar de creación", lugar);
 			map.put("Motivación", motivacion);
 
-			generarPaqueteCPV(map, new FileOutputStream(argumentos.getFicheroPaquete()));
+			generarPaqueteCPV(map, new FileOutputStream(argumentos.getFicheroPaquete()), claves);
 
 			System.out.println("¡Buen viaje!");
 		} catch (Exception exc) {
@@ -93,7 +96,8 @@ public final class GeneradorCpv {
 	/**
 	 * Genera el paquete inicial de la CPV, conteniendo los datos del peregrino, y
 	 * lo guarda a disco cumpliendo los requisitos de seguridad de la información
-	 * estipulados.
+	 * estipulados. Se usan las claves asociadas a {@link Actor#OFICINA_PEREGRINO}
+	 * y {@link Actor#PEREGRINO}.
 	 *
 	 * @param datos              Los pares clave-valor de datos que conformarán un
 	 *                           bloque del paquete. Pueden experimentar pérdida de
@@ -116,78 +120,89 @@ public final class GeneradorCpv {
 	 */
 	public static void generarPaqueteCPV(final Map<String, String> datos, final OutputStream flujoSalidaPaquete)
 			throws GeneralSecurityException, InvalidKeySpecException, IOException {
-		KeyGenerator generadorClaveCifradorSimetrico;
-		SecretKey claveCifrador;
-		Cipher cifradorSimetrico, cifradorAsimetrico;
-		byte[] datosEncriptados, claveCifradorEncriptada, resumenEncriptadoDatos;
-		Paquete paqueteCpv;
-
 		if (datos == null || flujoSalidaPaquete == null) {
 			throw new IllegalArgumentException(
 				"Un parámetro recibido para generar el paquete de la CPV es nulo, y no debería de serlo"
 			);
 		}
 
-		// Registrar los proveedores JCA que usaremos
-		GestorProveedoresJCA.registrarProveedores();
-
-		// Generar una clave aleatoria para un cifrado simétrico
-		generadorClaveCifradorSimetrico = KeyGenerator.getInstance(
-			ParametrosCriptograficos.ALGORITMO_GENERADOR_CLAVES_SIMETRICO,
-			ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS
+		generarPaqueteCPV(
+			datos,
+			flujoSalidaPaquete,
+			new ClavesActores()
+				.conClavePublica(Actor.OFICINA_PEREGRINO, Actor.OFICINA_PEREGRINO.getClavePublica())
+				.conClavePrivada(Actor.PEREGRINO, Actor.PEREGRINO.getClavePrivada())
 		);
-		generadorClaveCifradorSimetrico.init(ParametrosCriptograficos.LONGITUD_CLAVE_SIMETRICO);
-		claveCifrador = generadorClaveCifradorSimetrico.generateKey();
+	}
 
-		// Inicializar cifrador simétrico
-		cifradorSimetrico = Cipher.getInstance(
-			ParametrosCriptograficos.ALGORITMO_SIMETRICO,
-			ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS
-		);
-		cifradorSimetrico.init(Cipher.ENCRYPT_MODE, claveCifrador);
+	/**
+	 * Genera el paquete inicial de la CPV de la misma manera que
+	 * {@link #generarPaqueteCPV(Map, OutputStream)}, pero usando las claves
+	 * especificadas en lugar de las asociadas a los actores. Es seguro generar
+	 * varios paquetes a la vez desde distintos hilos con este método.
+	 *
+	 * @param datos              Los pares clave-valor de datos que conformarán un
+	 *                           bloque del paquete.
+	 * @param flujoSalidaPaquete El flujo a donde guardar el paquete resultante.
+	 * @param claves             Las claves a usar. Deben de contener la clave
+	 *                           pública de {@link Actor#OFICINA_PEREGRINO} y la
+	 *                           privada de {@link Actor#PEREGRINO}.
+	 * @throws IllegalArgumentException Si algún parámetro recibido no es válido.
+	 * @throws IllegalStateException    Si falta alguna clave necesaria.
+	 * @throws GeneralSecurityException Si ocurre algún error relacionado con las
+	 *                                  operaciones criptográficas.
+	 * @throws IOException              Si ocurre algún error de E/S durante el
+	 *                                  generado del paquete.
+	 */
+	public static void generarPaqueteCPV(final Map<String, String> datos, final OutputStream flujoSalidaPaquete, final ClavesActores claves)
+			throws GeneralSecurityException, IOException {
+		SuiteCriptografica suite;
+		PrivateKey clavePrivadaPeregrino;
+		ClaveSimetricaEncriptada claveCifrador;
+		byte[] datosEncriptados, resumenEncriptadoDatos;
+		Paquete paqueteCpv;
 
-		// Inicializar algoritmo de cifrado asimétrico
-		cifradorAsimetrico = Cipher.getInstance(
-			ParametrosCriptograficos.ALGORITMO_ASIMETRICO,
-			ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS
-		);
-		cifradorAsimetrico.init(Cipher.ENCRYPT_MODE, Actor.OFICINA_PEREGRINO.getClavePublica());
+		if (datos == null || flujoSalidaPaquete == null || claves == null) {
+			throw new IllegalArgumentException(
+				"Un parámetro recibido para generar el paquete de la CPV es nulo, y no debería de serlo"
+			);
+		}
 
-		// Generar la representación encriptada con el cifrador simétrico y la clave
-		// anterior de los pares de datos en JSON
-		datosEncriptados = cifradorSimetrico.doFinal(JSONUtils.map2json(datos).getBytes(StandardCharsets.UTF_8));
+		// Elegir los algoritmos a usar según el tipo de clave del peregrino, que es
+		// quien firma los datos
+		clavePrivadaPeregrino = claves.getClavePrivada(Actor.PEREGRINO);
+		suite = SuiteCriptografica.paraClaveFirma(clavePrivadaPeregrino);
 
-		// Generar la representación encriptada con el cifrador asimétrico de la clave
-		// usada para el cifrador simétrico
+		// Generar una clave aleatoria para un cifrado simétrico, junto con su
+		// representación encriptada con el cifrador asimétrico, que puede venir ya
+		// preparada de la reserva de claves indicada junto a las de los actores
 		try {
-			claveCifradorEncriptada = cifradorAsimetrico.doFinal(claveCifrador.getEncoded());
+			claveCifrador = suite.generarClaveSimetricoEncriptada(claves.getClavePublica(Actor.OFICINA_PEREGRINO), claves.getReservaClaves());
 		} catch (final ArrayIndexOutOfBoundsException exc) {
 			throw new GeneralSecurityException("La clave pública de la oficina del peregrino no tiene longitud suficiente para encriptar los datos requeridos");
 		}
 
-		// Encriptar el resumen de los datos encriptados con la clave privada del
-		// peregrino, usando el cifrador asimétrico. De esta manera garantizamos que fue
-		// el peregrino quien generó este paquete (firma digital)
-		cifradorAsimetrico.init(Cipher.ENCRYPT_MODE, Actor.PEREGRINO.getClavePrivada());
+		// Generar la representación encriptada con el cifrador simétrico y la clave
+		// anterior de los pares de datos en JSON
+		datosEncriptados = suite.encriptarCargaUtil(datos, claveCifrador.getClave());
+
+		// Firmar los datos encriptados con la clave privada del peregrino. De esta
+		// manera garantizamos que fue el peregrino quien generó este paquete
 		try {
-			resumenEncriptadoDatos = cifradorAsimetrico.doFinal(
-				MessageDigest.getInstance(
-					ParametrosCriptograficos.ALGORITMO_RESUMEN,
-					ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS
-				).digest(datosEncriptados)
-			);
+			resumenEncriptadoDatos = suite.firmar(datosEncriptados, clavePrivadaPeregrino);
 		} catch (final ArrayIndexOutOfBoundsException exc) {
 			throw new GeneralSecurityException("La clave privada del peregrino no tiene longitud suficiente para encriptar los datos requeridos");
 		}
 
 		// Se crea el paquete inicial con 3 bloques: los datos del peregrino encriptados
 		// con un cifrador simétrico, la clave de los datos encriptada con un cifrador
-		// asimétrico, y el resumen encriptado con un cifrador asimétrico de los datos
-		// encriptados
+		// asimétrico, y la firma de los datos encriptados. Si no se usa la suite
+		// clásica, se anota cuál se usa en un cuarto bloque
 		paqueteCpv = new Paquete();
 		paqueteCpv.anadirBloque(TITULO_BLOQUE_DATOS_PEREGRINO, datosEncriptados);
-		paqueteCpv.anadirBloque(TITULO_BLOQUE_CLAVE_DATOS_PEREGRINO, claveCifradorEncriptada);
+		paqueteCpv.anadirBloque(TITULO_BLOQUE_CLAVE_DATOS_PEREGRINO, claveCifrador.getClaveEncriptada());
 		paqueteCpv.anadirBloque(TITULO_BLOQUE_RESUMEN_DATOS_PEREGRINO_ENCRIPTADOS, resumenEncriptadoDatos);
+		suite.anotar(paqueteCpv, TITULO_BLOQUE_SUITE_DATOS_PEREGRINO);
 
 		// Finalmente, escribir el paquete al flujo
 		PaqueteDAO.escribirPaquete(flujoSalidaPaquete, paqueteCpv);
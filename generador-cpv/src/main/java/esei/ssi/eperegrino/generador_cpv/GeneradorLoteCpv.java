@@ -0,0 +1,139 @@
+package esei.ssi.eperegrino.generador_cpv;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+
+import esei.ssi.eperegrino.common.Actor;
+import esei.ssi.eperegrino.common.ClavesActores;
+import esei.ssi.eperegrino.common.LectorRegistros;
+import esei.ssi.eperegrino.common.ProcesadorLote;
+import esei.ssi.eperegrino.common.ReservaClavesSimetricas;
+import esei.ssi.eperegrino.common.ResultadoLote;
+import esei.ssi.eperegrino.common.SuiteCriptografica;
+
+/**
+ * Contiene la lógica de negocio del modo por lotes del generador de CPV, que
+ * genera una credencial por cada registro de datos de peregrinos de un fichero.
+ *
+ * @author Alejandro González García
+ */
+final class GeneradorLoteCpv {
+	/**
+	 * El campo de los datos de la CPV con su fecha de creación, que se añade a los
+	 * registros que no lo contienen.
+	 */
+	private static final String CAMPO_FECHA_CREACION = "Fecha de creación";
+	/**
+	 * El formato del nombre de los ficheros de las CPV generadas, a partir del
+	 * número de registro.
+	 */
+	private static final String FORMATO_NOMBRE_PAQUETE = "cpv-%06d.paquete";
+
+	private GeneradorLoteCpv() {
+		// No permitir instanciar esta clase
+	}
+
+	/**
+	 * Punto de entrada del modo por lotes de la aplicación.
+	 *
+	 * @param argumentos Los argumentos de operación del modo por lotes.
+	 */
+	static void main(final ArgumentosLoteGen argumentos) {
+		try {
+			final ClavesActores claves = new ClavesActores()
+				.conClavePublica(Actor.OFICINA_PEREGRINO, Files.readAllBytes(argumentos.getFicheroClavePublicaOficina().toPath()))
+				.conClavePrivada(Actor.PEREGRINO, Files.readAllBytes(argumentos.getFicheroClavePrivadaPeregrino().toPath()));
+
+			// Generar y encriptar para la oficina las claves simétricas de las CPV en
+			// segundo plano, pues siempre se usan la misma suite y el mismo destinatario
+			try (
+				final ReservaClavesSimetricas reserva = ReservaClavesSimetricas.abrir(
+					ReservaClavesSimetricas.CAPACIDAD_PREDETERMINADA,
+					SuiteCriptografica.paraClaveFirma(claves.getClavePrivada(Actor.PEREGRINO)),
+					claves.getClavePublica(Actor.OFICINA_PEREGRINO)
+				);
+				final BufferedReader registros = Files.newBufferedReader(argumentos.getFicheroRegistros().toPath(), StandardCharsets.UTF_8)
+			) {
+				generarLote(registros, argumentos.getDirectorioSalida().toPath(), claves.conReservaClaves(reserva), argumentos.getHilos()).mostrar(System.out);
+				reserva.mostrar(System.out);
+			}
+		} catch (final Exception exc) {
+			System.err.println("Ha ocurrido un error durante la creación del lote de credenciales");
+			exc.printStackTrace();
+		}
+	}
+
+	/**
+	 * Genera una CPV por cada registro de datos de peregrinos leído, guardando
+	 * cada una en un fichero del directorio de salida nombrado según el número
+	 * del registro (el primero es el 1). Los registros se leen con un
+	 * {@link LectorRegistros}, y las CPV se generan en paralelo. Un registro mal
+	 * formado o una CPV que no se pueda generar se anotan como fallos, pero no
+	 * impiden generar las demás.
+	 *
+	 * @param registros        El texto con los registros de datos de peregrinos.
+	 * @param directorioSalida El directorio donde guardar las CPV generadas. Los
+	 *                         ficheros que ya existan se reemplazarán.
+	 * @param claves           Las claves con las que generar las CPV. Véase
+	 *                         {@link GeneradorCpv#generarPaqueteCPV(Map, OutputStream, ClavesActores)}.
+	 * @param hilos            El número de hilos con los que generar las CPV.
+	 * @return El resultado de generar el lote.
+	 * @throws IOException              Si ocurre un error de E/S al leer los
+	 *                                  registros.
+	 * @throws InterruptedException     Si se interrumpe la espera a que terminen
+	 *                                  de generarse las CPV.
+	 * @throws IllegalArgumentException Si algún parámetro es nulo, o el número de
+	 *                                  hilos no es positivo.
+	 */
+	static ResultadoLote generarLote(final BufferedReader registros, final Path directorioSalida, final ClavesActores claves, final int hilos) throws IOException, InterruptedException {
+		if (registros == null || directorioSalida == null || claves == null) {
+			throw new IllegalArgumentException("Un parámetro recibido para generar el lote de CPV es nulo, y no debería de serlo");
+		}
+
+		final LectorRegistros lector = new LectorRegistros(registros);
+
+		try (final ProcesadorLote procesador = new ProcesadorLote(hilos)) {
+			int numeroRegistro = 0;
+
+			while (true) {
+				final Map<String, String> datos;
+
+				try {
+					datos = lector.siguienteRegistro();
+				} catch (final IllegalArgumentException exc) {
+					procesador.anadirFallo("Registro " + (++numeroRegistro), exc);
+					continue;
+				}
+
+				if (datos == null) {
+					break;
+				}
+
+				final String descripcion = "Registro " + (++numeroRegistro) + " (línea " + lector.getNumeroLinea() + ")";
+				final Path ficheroPaquete = directorioSalida.resolve(String.format(FORMATO_NOMBRE_PAQUETE, numeroRegistro));
+
+				datos.putIfAbsent(
+					CAMPO_FECHA_CREACION,
+					DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneId.of("Europe/Madrid")).format(Instant.now())
+				);
+
+				procesador.enviar(descripcion, () -> {
+					try (final OutputStream salida = new BufferedOutputStream(Files.newOutputStream(ficheroPaquete))) {
+						GeneradorCpv.generarPaqueteCPV(datos, salida, claves);
+					}
+				});
+			}
+
+			return procesador.finalizar();
+		}
+	}
+}
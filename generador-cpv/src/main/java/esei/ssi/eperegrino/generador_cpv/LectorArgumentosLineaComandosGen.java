@@ -9,6 +9,11 @@ import java.io.File;
  * @author Pablo Lama Valencia
  */
 final class LectorArgumentosLineaComandosGen {
+	/**
+	 * El primer argumento de línea de comandos que selecciona el modo por lotes.
+	 */
+	static final String OPCION_LOTE = "--lote";
+
 	/**
 	 * Interpreta los argumentos de línea de comandos especificados, deteniendo la
 	 * ejecución de la aplicación si alguno es inválido, o encapsulando dichos
@@ -40,6 +45,54 @@ final class LectorArgumentosLineaComandosGen {
 		return new ArgumentosGen(ficheroPaquete, ficheroPrivadaPeregrino, ficheroPublicaOficina);
 	}
 
+	/**
+	 * Interpreta los argumentos de línea de comandos del modo por lotes, de la
+	 * misma manera que {@link #interpretar(String[])}. Se asume que el primer
+	 * argumento es {@link #OPCION_LOTE}.
+	 *
+	 * @param args Los argumentos de línea de comandos a interpretar, tal cual son
+	 *             pasados al método estático main.
+	 * @return Los descritos argumentos de operación del modo por lotes.
+	 */
+	public static ArgumentosLoteGen interpretarLote(final String[] args) {
+		// Necesitaremos la opción, 4 ficheros y, opcionalmente, el número de hilos
+		if (args.length != 5 && args.length != 6) {
+			mostrarSintaxisYSalir();
+		}
+
+		final File ficheroRegistros = new File(args[1]);
+		comprobarFicheroPlausible(ficheroRegistros, "los registros de datos de peregrinos");
+
+		// Crear el directorio de salida si no existe
+		final File directorioSalida = new File(args[2]);
+		if (!directorioSalida.isDirectory() && !directorioSalida.mkdirs()) {
+			System.err.println("No se puede crear el directorio " + directorioSalida.getAbsolutePath() + " para guardar las CPV");
+			System.exit(2);
+		}
+
+		final File ficheroPrivadaPeregrino = new File(args[3]);
+		comprobarFicheroPlausible(ficheroPrivadaPeregrino, "la clave privada del peregrino");
+
+		final File ficheroPublicaOficina = new File(args[4]);
+		comprobarFicheroPlausible(ficheroPublicaOficina, "la clave pública de la oficina");
+
+		// Por defecto, usar un hilo por procesador
+		int hilos = Runtime.getRuntime().availableProcessors();
+		if (args.length == 6) {
+			try {
+				hilos = Integer.parseInt(args[5]);
+				if (hilos < 1) {
+					throw new NumberFormatException();
+				}
+			} catch (final NumberFormatException exc) {
+				System.err.println("El número de hilos especificado no es un entero positivo");
+				mostrarSintaxisYSalir();
+			}
+		}
+
+		return new ArgumentosLoteGen(ficheroRegistros, directorioSalida, ficheroPrivadaPeregrino, ficheroPublicaOficina, hilos);
+	}
+
 	/**
 	 * Muestra un mensaje por la salida estándar que indica la sintaxis que deben de
 	 * seguir los argumentos de línea de comandos pasados a esta aplicación, y
@@ -47,6 +100,7 @@ final class LectorArgumentosLineaComandosGen {
 	 */
 	private static void mostrarSintaxisYSalir() {
 		System.out.println("Sintaxis: GenerarCredencial (fichero paquete) (fichero clave privada peregrino) (fichero clave pública oficina)");
+		System.out.println("         GenerarCredencial " + OPCION_LOTE + " (fichero registros CSV o líneas JSON) (directorio salida) (fichero clave privada peregrino) (fichero clave pública oficina) [núm. hilos]");
 		System.exit(1);
 	}
 
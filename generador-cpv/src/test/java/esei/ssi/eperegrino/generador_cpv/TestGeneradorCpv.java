@@ -1,8 +1,13 @@
 package esei.ssi.eperegrino.generador_cpv;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.GeneralSecurityException;
 import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
@@ -12,14 +17,21 @@ import java.util.Map;
 import java.util.Random;
 
 import org.junit.After;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import esei.ssi.eperegrino.common.Actor;
+import esei.ssi.eperegrino.common.ClavesActores;
 import esei.ssi.eperegrino.common.GestorProveedoresJCA;
 import esei.ssi.eperegrino.common.PaqueteDAO;
 import esei.ssi.eperegrino.common.ParametrosCriptograficos;
+import esei.ssi.eperegrino.common.ReservaClavesSimetricas;
+import esei.ssi.eperegrino.common.ResultadoLote;
 
 import static org.hamcrest.text.StringContainsInOrder.stringContainsInOrder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 
 /**
@@ -44,6 +56,12 @@ public final class TestGeneradorCpv {
 	 * Un flujo de salida para recoger los resultados de las pruebas.
 	 */
 	private static final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+	/**
+	 * Una carpeta temporal para los lotes generados en cada prueba, que JUnit
+	 * borra al terminarla.
+	 */
+	@Rule
+	public final TemporaryFolder carpetaTemporal = new TemporaryFolder();
 
 	static {
 		// Inicializar pares clave-valor
@@ -122,4 +140,69 @@ public final class TestGeneradorCpv {
 	public void testGenerarPaqueteCpvParametrosInvalidos() throws InvalidKeySpecException, GeneralSecurityException, IOException {
 		GeneradorCpv.generarPaqueteCPV(null, null);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Comprueba que la generación de un lote de CPV a partir de registros CSV
+	 * genere una CPV por registro válido, y anote como fallos los registros mal
+	 * formados.
+	 */
+	@Test
+	public void testGenerarLoteCpv() throws Exception {
+		final String registros =
+			"Nombre,Motivo\n" +
+			"Alejandro,Aprobar\n" +
+			"\"Lama, Pablo\",\"Ver \"\"el\"\" camino\"\n" +
+			"Registro,mal,formado\n" +
+			"\n" +
+			"Ribadas,Corregir\n";
+		final Path directorioSalida = carpetaTemporal.newFolder("lote-cpv").toPath();
+
+		final ResultadoLote resultado = GeneradorLoteCpv.generarLote(
+			new BufferedReader(new StringReader(registros)),
+			directorioSalida,
+			new ClavesActores()
+				.conClavePublica(Actor.OFICINA_PEREGRINO, clavePublicaOficinaPeregrino)
+				.conClavePrivada(Actor.PEREGRINO, clavePrivadaPeregrino),
+			2
+		);
+
+		assertEquals(3, resultado.getCorrectas());
+		assertEquals(1, resultado.getFallos().size());
+		assertFalse(Files.exists(directorioSalida.resolve("cpv-000003.paquete")));
+
+		for (final String nombre : new String[] { "cpv-000001.paquete", "cpv-000002.paquete", "cpv-000004.paquete" }) {
+			try (final InputStream entrada = Files.newInputStream(directorioSalida.resolve(nombre))) {
+				assertEquals(3, PaqueteDAO.leerPaquete(entrada).getNombresBloque().size());
+			}
+		}
+	}
+
+	/**
+	 * Comprueba que la generación de un lote de CPV con una reserva de claves
+	 * simétricas obtenga una clave de la reserva, o generada en el momento, por
+	 * cada CPV generada.
+	 */
+	@Test
+	public void testGenerarLoteCpvReservaClaves() throws Exception {
+		final String registros =
+			"Nombre,Motivo\n" +
+			"Alejandro,Aprobar\n" +
+			"Ribadas,Corregir\n";
+		final Path directorioSalida = carpetaTemporal.newFolder("lote-cpv").toPath();
+
+		try (final ReservaClavesSimetricas reserva = ReservaClavesSimetricas.abrir(4)) {
+			final ResultadoLote resultado = GeneradorLoteCpv.generarLote(
+				new BufferedReader(new StringReader(registros)),
+				directorioSalida,
+				new ClavesActores()
+					.conClavePublica(Actor.OFICINA_PEREGRINO, clavePublicaOficinaPeregrino)
+					.conClavePrivada(Actor.PEREGRINO, clavePrivadaPeregrino)
+					.conReservaClaves(reserva),
+				2
+			);
+
+			assertEquals(2, resultado.getCorrectas());
+			assertEquals(2, reserva.getAciertos() + reserva.getFallos());
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package esei.ssi.eperegrino.sellador_cpv;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Modela los argumentos de operación del modo por lotes del sellador de CPV.
+ *
+ * @author Alejandro González García
+ */
+final class ArgumentosLoteSell {
+	private final String identificadorAlbergue;
+	private final File ficheroClavePrivadaAlbergue;
+	private final File ficheroClavePublicaOficina;
+	private final File ficheroPlantillaSello;
+	private final int hilos;
+	private final int capacidadReservaClaves;
+	private final List<File> ficherosPaquete;
+
+	/**
+	 * Crea un objeto de argumentos de operación para el modo por lotes del
+	 * sellador de CPV.
+	 *
+	 * @param identificadorAlbergue       El identificador del albergue.
+	 * @param ficheroClavePrivadaAlbergue El fichero que contiene la clave privada
+	 *                                    del albergue.
+	 * @param ficheroClavePublicaOficina  El fichero que contiene la clave pública
+	 *                                    de la oficina.
+	 * @param ficheroPlantillaSello       El fichero que contiene los datos del
+	 *                                    sello a poner en todas las CPV.
+	 * @param hilos                       El número de hilos con los que sellar las
+	 *                                    CPV.
+	 * @param capacidadReservaClaves      El número de claves simétricas ya
+	 *                                    encriptadas a mantener preparadas.
+	 * @param ficherosPaquete             Los ficheros que contienen las CPV a
+	 *                                    sellar.
+	 * @throws IllegalArgumentException Si algún parámetro es nulo, o el número de
+	 *                                  hilos o la capacidad de la reserva no son
+	 *                                  positivos.
+	 */
+	public ArgumentosLoteSell(final String identificadorAlbergue, final File ficheroClavePrivadaAlbergue, final File ficheroClavePublicaOficina, final File ficheroPlantillaSello, final int hilos, final int capacidadReservaClaves, final List<File> ficherosPaquete) {
+		if (identificadorAlbergue == null || ficheroClavePrivadaAlbergue == null || ficheroClavePublicaOficina == null || ficheroPlantillaSello == null || ficherosPaquete == null) {
+			throw new IllegalArgumentException("Los argumentos no pueden ser nulos");
+		}
+
+		if (hilos < 1) {
+			throw new IllegalArgumentException("El número de hilos debe de ser positivo");
+		}
+
+		if (capacidadReservaClaves < 1) {
+			throw new IllegalArgumentException("La capacidad de la reserva de claves debe de ser positiva");
+		}
+
+		this.identificadorAlbergue = identificadorAlbergue;
+		this.ficheroClavePrivadaAlbergue = ficheroClavePrivadaAlbergue;
+		this.ficheroClavePublicaOficina = ficheroClavePublicaOficina;
+		this.ficheroPlantillaSello = ficheroPlantillaSello;
+		this.hilos = hilos;
+		this.capacidadReservaClaves = capacidadReservaClaves;
+		this.ficherosPaquete = Collections.unmodifiableList(ficherosPaquete);
+	}
+
+	/**
+	 * Obtiene el identificador del albergue.
+	 *
+	 * @return El descrito identificador.
+	 */
+	public String getIdentificadorAlbergue() {
+		return identificadorAlbergue;
+	}
+
+	/**
+	 * Obtiene el fichero que contiene la clave privada del albergue.
+	 *
+	 * @return El descrito fichero.
+	 */
+	public File getFicheroClavePrivadaAlbergue() {
+		return ficheroClavePrivadaAlbergue;
+	}
+
+	/**
+	 * Obtiene el fichero que contiene la clave pública de la oficina del peregrino.
+	 *
+	 * @return El descrito fichero.
+	 */
+	public File getFicheroClavePublicaOficina() {
+		return ficheroClavePublicaOficina;
+	}
+
+	/**
+	 * Obtiene el fichero que contiene los datos del sello a poner en todas las
+	 * CPV.
+	 *
+	 * @return El descrito fichero.
+	 */
+	public File getFicheroPlantillaSello() {
+		return ficheroPlantillaSello;
+	}
+
+	/**
+	 * Obtiene el número de hilos con los que sellar las CPV.
+	 *
+	 * @return El descrito número.
+	 */
+	public int getHilos() {
+		return hilos;
+	}
+
+	/**
+	 * Obtiene el número de claves simétricas ya encriptadas a mantener preparadas
+	 * mientras se sella el lote.
+	 *
+	 * @return El descrito número.
+	 */
+	public int getCapacidadReservaClaves() {
+		return capacidadReservaClaves;
+	}
+
+	/**
+	 * Obtiene los ficheros que contienen las CPV a sellar.
+	 *
+	 * @return La lista de los descritos ficheros. No es modificable.
+	 */
+	public List<File> getFicherosPaquete() {
+		return ficherosPaquete;
+	}
+}
@@ -1,6 +1,10 @@
 package esei.ssi.eperegrino.sellador_cpv;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import esei.ssi.eperegrino.common.ReservaClavesSimetricas;
 
 /**
  * Contiene la lógica necesaria para leer y validar los argumentos de línea de
@@ -9,6 +13,20 @@ import java.io.File;
  * @author Pablo Lama Valencia
  */
 final class LectorArgumentosLineaComandosSell {
+	/**
+	 * El primer argumento de línea de comandos que selecciona el modo por lotes.
+	 */
+	static final String OPCION_LOTE = "--lote";
+	/**
+	 * La opción del modo por lotes que indica cuántas claves simétricas ya
+	 * encriptadas mantener preparadas.
+	 */
+	static final String OPCION_RESERVA = "--reserva";
+	/**
+	 * La opción del modo por lotes que indica con cuántos hilos sellar las CPV.
+	 */
+	static final String OPCION_HILOS = "--hilos";
+
 	/**
 	 * Interpreta los argumentos de línea de comandos especificados, deteniendo la
 	 * ejecución de la aplicación si alguno es inválido, o encapsulando dichos
@@ -50,6 +68,89 @@ final class LectorArgumentosLineaComandosSell {
 		);
 	}
 
+	/**
+	 * Interpreta los argumentos de línea de comandos del modo por lotes, de la
+	 * misma manera que {@link #interpretar(String[])}. Se asume que el primer
+	 * argumento es {@link #OPCION_LOTE}.
+	 *
+	 * @param args Los argumentos de línea de comandos a interpretar, tal cual son
+	 *             pasados al método estático main.
+	 * @return Los descritos argumentos de operación del modo por lotes.
+	 */
+	public static ArgumentosLoteSell interpretarLote(final String[] args) {
+		// La capacidad de la reserva de claves y el número de hilos son opcionales, y
+		// van justo después de la opción del modo por lotes. Por defecto, usar un
+		// hilo por procesador
+		int capacidadReservaClaves = ReservaClavesSimetricas.CAPACIDAD_PREDETERMINADA;
+		int hilos = Runtime.getRuntime().availableProcessors();
+		int i = 1;
+		while (i + 1 < args.length && (args[i].equals(OPCION_RESERVA) || args[i].equals(OPCION_HILOS))) {
+			if (args[i].equals(OPCION_RESERVA)) {
+				capacidadReservaClaves = interpretarEnteroPositivo(args[i + 1], "El número de claves de la reserva especificado no es un entero positivo");
+			} else {
+				hilos = interpretarEnteroPositivo(args[i + 1], "El número de hilos especificado no es un entero positivo");
+			}
+
+			i += 2;
+		}
+
+		// Como mínimo, siempre necesitaremos 4 argumentos y un paquete
+		if (args.length < i + 5) {
+			mostrarSintaxisYSalir();
+		}
+
+		final String identificadorAlbergue = args[i];
+		if (identificadorAlbergue.trim().isEmpty()) {
+			System.err.println("El identificador del albergue no puede estar en blanco");
+			System.exit(3);
+		}
+
+		final File ficheroPrivadaAlbergue = new File(args[i + 1]);
+		comprobarFicheroPlausible(ficheroPrivadaAlbergue, "la clave privada del albergue");
+
+		final File ficheroPublicaOficina = new File(args[i + 2]);
+		comprobarFicheroPlausible(ficheroPublicaOficina, "la clave pública de la oficina");
+
+		final File ficheroPlantillaSello = new File(args[i + 3]);
+		comprobarFicheroPlausible(ficheroPlantillaSello, "la plantilla del sello");
+
+		// El resto de argumentos son paquetes, o directorios que los contienen
+		final List<File> ficherosPaquete = new ArrayList<>(args.length - i - 4);
+		for (int j = i + 4; j < args.length; ++j) {
+			final File ficheroPaquete = new File(args[j]);
+			if (!ficheroPaquete.isDirectory()) {
+				comprobarFicheroPlausible(ficheroPaquete, "la credencial virtual del peregrino");
+			}
+			ficherosPaquete.add(ficheroPaquete);
+		}
+
+		return new ArgumentosLoteSell(identificadorAlbergue, ficheroPrivadaAlbergue, ficheroPublicaOficina, ficheroPlantillaSello, hilos, capacidadReservaClaves, ficherosPaquete);
+	}
+
+	/**
+	 * Interpreta un argumento de línea de comandos como un entero positivo,
+	 * deteniendo la ejecución de la aplicación si no lo es.
+	 *
+	 * @param argumento El argumento a interpretar.
+	 * @param error     El mensaje a mostrar si no es un entero positivo.
+	 * @return El entero interpretado.
+	 */
+	private static int interpretarEnteroPositivo(final String argumento, final String error) {
+		int valor = 0;
+
+		try {
+			valor = Integer.parseInt(argumento);
+			if (valor < 1) {
+				throw new NumberFormatException();
+			}
+		} catch (final NumberFormatException exc) {
+			System.err.println(error);
+			mostrarSintaxisYSalir();
+		}
+
+		return valor;
+	}
+
 	/**
 	 * Muestra un mensaje por la salida estándar que indica la sintaxis que deben de
 	 * seguir los argumentos de línea de comandos pasados a esta aplicación, y
@@ -57,6 +158,7 @@ final class LectorArgumentosLineaComandosSell {
 	 */
 	private static void mostrarSintaxisYSalir() {
 		System.out.println("Sintaxis: SellarCredencial (fichero paquete) (identificador albergue) (fichero clave privada albergue) (fichero clave pública oficina)");
+		System.out.println("          SellarCredencial " + OPCION_LOTE + " [" + OPCION_RESERVA + " (núm. claves)] (identificador albergue) (fichero clave privada albergue) (fichero clave pública oficina) (fichero plantilla sello) (núm. hilos) (fichero paquete o directorio) ...");
 		System.exit(1);
 	}
 
@@ -1,22 +1,21 @@
 package esei.ssi.eperegrino.sellador_cpv;
 
 import esei.ssi.eperegrino.common.Actor;
-import esei.ssi.eperegrino.common.JSONUtils;
+import esei.ssi.eperegrino.common.ClaveSimetricaEncriptada;
+import esei.ssi.eperegrino.common.ClavesActores;
 import static esei.ssi.eperegrino.common.NombresBloques.*;
 import esei.ssi.eperegrino.common.Paquete;
 import esei.ssi.eperegrino.common.PaqueteDAO;
-import esei.ssi.eperegrino.common.ParametrosCriptograficos;
+import esei.ssi.eperegrino.common.SuiteCriptografica;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
 import java.security.GeneralSecurityException;
-import java.security.MessageDigest;
+import java.security.PrivateKey;
 import java.security.spec.InvalidKeySpecException;
 import java.time.Instant;
 import java.time.ZoneId;
@@ -24,15 +23,17 @@ import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Scanner;
-import javax.crypto.Cipher;
-import javax.crypto.KeyGenerator;
-import javax.crypto.SecretKey;
 
 /**
  * @author Pablo Lama Valencia
  */
 public final class SelladorCpv {
 	public static void main(final String[] args) {
+		if (args.length > 0 && LectorArgumentosLineaComandosSell.OPCION_LOTE.equals(args[0])) {
+			SelladorLoteCpv.main(LectorArgumentosLineaComandosSell.interpretarLote(args));
+			return;
+		}
+
 		try {
 			String nombre;
 			String lugar;
@@ -56,8 +57,9 @@ public final class SelladorCpv {
 			System.out.print("Indique las incidencias (si se han producido): ");
 			incidencias = teclado.nextLine();
 
-			Actor.OFICINA_PEREGRINO.setClavePublica(Files.readAllBytes(argumentos.getFicheroClavePublicaOficina().toPath()));
-			Actor.ALBERGUE.setClavePrivada(Files.readAllBytes(argumentos.getFicheroClavePrivadaAlbergue().toPath()));
+			final ClavesActores claves = new ClavesActores()
+				.conClavePublica(Actor.OFICINA_PEREGRINO, Files.readAllBytes(argumentos.getFicheroClavePublicaOficina().toPath()))
+				.conClavePrivada(Actor.ALBERGUE, Files.readAllBytes(argumentos.getFicheroClavePrivadaAlbergue().toPath()));
 
 			map.put("Nombre", nombre);
 			map.put("Fecha de creación", DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneId.of("Europe/Madrid")).format(Instant.now()));
@@ -66,21 +68,13 @@ public final class SelladorCpv {
 
 			// Usamos la jerarquía de clases de NIO porque tiene semánticas mejor definidas de
 			// apertura de ficheros, que nos permite evitar que al abrir el fichero para escritura
-			// se trunque su contenido
-			sellarCpv(
-				map,
-				Channels.newInputStream(
-					FileChannel.open(
-						argumentos.getFicheroPaquete().toPath(), StandardOpenOption.READ
-					)
-				),
-				Channels.newOutputStream(
-					FileChannel.open(
-						argumentos.getFicheroPaquete().toPath(), StandardOpenOption.WRITE
-					)
-				),
-				argumentos.getIdentificadorAlbergue()
-			);
+			// se trunque su contenido. Además, así podemos añadir el sello al final del paquete
+			// sin reescribir los bloques que ya contiene
+			try (final FileChannel canalPaquete = FileChannel.open(
+				argumentos.getFicheroPaquete().toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE
+			)) {
+				sellarFicheroCpv(map, canalPaquete, argumentos.getIdentificadorAlbergue(), claves);
+			}
 
 			System.out.println("Gracias por su colaboración");
 		} catch (final Exception exc) {
@@ -89,62 +83,193 @@ public final class SelladorCpv {
 		}
 	}
 
+	/**
+	 * Sella una CPV, leyendo el paquete de un flujo de entrada y escribiendo el
+	 * paquete sellado completo en un flujo de salida. Se usan las claves asociadas
+	 * a {@link Actor#OFICINA_PEREGRINO} y {@link Actor#ALBERGUE}.
+	 *
+	 * @param datos                 Los pares clave-valor de datos del sello.
+	 * @param flujoEntradaPaquete   El flujo del que leer el paquete a sellar.
+	 * @param flujoSalidaPaquete    El flujo a donde escribir el paquete sellado.
+	 * @param identificadorAlbergue El identificador del albergue que sella.
+	 * @throws IllegalArgumentException Si algún parámetro recibido no es válido.
+	 * @throws GeneralSecurityException Si ocurre algún error relacionado con las
+	 *                                  operaciones criptográficas.
+	 * @throws InvalidKeySpecException  Si alguna de las claves asociadas a los
+	 *                                  actores no se ha podido interpretar
+	 *                                  correctamente como tal.
+	 * @throws IOException              Si ocurre algún error de E/S.
+	 */
 	public static void sellarCpv(final Map<String, String> datos, final InputStream flujoEntradaPaquete, final OutputStream flujoSalidaPaquete, final String identificadorAlbergue) throws GeneralSecurityException, InvalidKeySpecException, IOException {
-		KeyGenerator generadorClaveCifradorSimetrico;
-		SecretKey claveCifrador;
-		Cipher cifradorSimetrico, cifradorAsimetrico;
-		byte[] datosEncriptados, claveCifradorEncriptada, resumenEncriptadoDatos;
+		if (datos == null || flujoSalidaPaquete == null) {
+			throw new IllegalArgumentException("Un parámetro recibido para generar el paquete de la CPV es nulo, y no debería de serlo");
+		}
+
+		sellarCpv(datos, flujoEntradaPaquete, flujoSalidaPaquete, identificadorAlbergue, clavesActores());
+	}
+
+	/**
+	 * Sella una CPV de la misma manera que
+	 * {@link #sellarCpv(Map, InputStream, OutputStream, String)}, pero usando las
+	 * claves especificadas en lugar de las asociadas a los actores. Es seguro
+	 * sellar varios paquetes a la vez desde distintos hilos con este método.
+	 *
+	 * @param datos                 Los pares clave-valor de datos del sello.
+	 * @param flujoEntradaPaquete   El flujo del que leer el paquete a sellar.
+	 * @param flujoSalidaPaquete    El flujo a donde escribir el paquete sellado.
+	 * @param identificadorAlbergue El identificador del albergue que sella.
+	 * @param claves                Las claves a usar. Deben de contener la clave
+	 *                              pública de {@link Actor#OFICINA_PEREGRINO} y
+	 *                              la privada de {@link Actor#ALBERGUE}.
+	 * @throws IllegalArgumentException Si algún parámetro recibido no es válido.
+	 * @throws IllegalStateException    Si falta alguna clave necesaria.
+	 * @throws GeneralSecurityException Si ocurre algún error relacionado con las
+	 *                                  operaciones criptográficas.
+	 * @throws IOException              Si ocurre algún error de E/S.
+	 */
+	public static void sellarCpv(final Map<String, String> datos, final InputStream flujoEntradaPaquete, final OutputStream flujoSalidaPaquete, final String identificadorAlbergue, final ClavesActores claves) throws GeneralSecurityException, IOException {
 		Paquete paqueteCpv;
 
-		if (datos == null || flujoSalidaPaquete == null) {
+		if (datos == null || flujoSalidaPaquete == null || claves == null) {
 			throw new IllegalArgumentException("Un parámetro recibido para generar el paquete de la CPV es nulo, y no debería de serlo");
 		}
 
-		// Generar una clave aleatoria simétrica
-		generadorClaveCifradorSimetrico = KeyGenerator.getInstance(ParametrosCriptograficos.ALGORITMO_GENERADOR_CLAVES_SIMETRICO, ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS);
-		generadorClaveCifradorSimetrico.init(ParametrosCriptograficos.LONGITUD_CLAVE_SIMETRICO);
-		claveCifrador = generadorClaveCifradorSimetrico.generateKey();
+		final Paquete sello = generarBloquesSello(datos, identificadorAlbergue, claves);
 
-		// Cifrador simétrico con clave aleatoria
-		cifradorSimetrico = Cipher.getInstance(ParametrosCriptograficos.ALGORITMO_SIMETRICO, ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS);
-		cifradorSimetrico.init(Cipher.ENCRYPT_MODE, claveCifrador);
+		// Se lee el paquete inicial, y se le añaden los bloques del sello
+		paqueteCpv = PaqueteDAO.leerPaquete(flujoEntradaPaquete);
+		for (final String nombreBloque : sello.getNombresBloque()) {
+			paqueteCpv.anadirBloque(nombreBloque, sello.getContenidoBloque(nombreBloque));
+		}
 
-		// Cifrado asimétrico de la clave con la pública de la oficina
-		cifradorAsimetrico = Cipher.getInstance(ParametrosCriptograficos.ALGORITMO_ASIMETRICO, ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS);
-		cifradorAsimetrico.init(Cipher.ENCRYPT_MODE, Actor.OFICINA_PEREGRINO.getClavePublica());
+		// Finalmente, escribir el paquete al flujo
+		PaqueteDAO.escribirPaquete(flujoSalidaPaquete, paqueteCpv);
+	}
 
-		// Generar la representación encriptada con el cifrador simétrico y la clave anterior de los pares de datos en JSON
-		datosEncriptados = cifradorSimetrico.doFinal(JSONUtils.map2json(datos).getBytes(StandardCharsets.UTF_8));
+	/**
+	 * Sella una CPV guardada en un fichero, añadiendo los bloques del sello al
+	 * final del paquete. A diferencia de
+	 * {@link #sellarCpv(Map, InputStream, OutputStream, String)}, no se leen ni se
+	 * reescriben los bloques que ya contiene el paquete, por lo que el coste de
+	 * sellar no depende del número de sellos previos. Se usan las claves asociadas
+	 * a {@link Actor#OFICINA_PEREGRINO} y {@link Actor#ALBERGUE}.
+	 *
+	 * @param datos                 Los pares clave-valor de datos del sello.
+	 * @param canalPaquete          El canal del fichero que contiene el paquete,
+	 *                              abierto para lectura y escritura.
+	 * @param identificadorAlbergue El identificador del albergue que sella.
+	 * @throws IllegalArgumentException Si algún parámetro recibido no es válido.
+	 * @throws GeneralSecurityException Si ocurre algún error relacionado con las
+	 *                                  operaciones criptográficas.
+	 * @throws InvalidKeySpecException  Si alguna de las claves asociadas a los
+	 *                                  actores no se ha podido interpretar
+	 *                                  correctamente como tal.
+	 * @throws IOException              Si ocurre algún error de E/S, el fichero
+	 *                                  no contiene un paquete completo, o ya
+	 *                                  contiene un sello del mismo albergue.
+	 */
+	public static void sellarCpv(final Map<String, String> datos, final FileChannel canalPaquete, final String identificadorAlbergue) throws GeneralSecurityException, InvalidKeySpecException, IOException {
+		if (datos == null || canalPaquete == null) {
+			throw new IllegalArgumentException("Un parámetro recibido para generar el paquete de la CPV es nulo, y no debería de serlo");
+		}
 
-		// Generar la representación encriptada con el cifrador asimétrico de la clave usada para el cifrador simétrico
+		sellarFicheroCpv(datos, canalPaquete, identificadorAlbergue, clavesActores());
+	}
+
+	/**
+	 * Sella una CPV guardada en un fichero de la misma manera que
+	 * {@link #sellarCpv(Map, FileChannel, String)}, pero usando las claves
+	 * especificadas en lugar de las asociadas a los actores. Es seguro sellar
+	 * varios ficheros a la vez desde distintos hilos con este método.
+	 *
+	 * @param datos                 Los pares clave-valor de datos del sello.
+	 * @param canalPaquete          El canal del fichero que contiene el paquete,
+	 *                              abierto para lectura y escritura.
+	 * @param identificadorAlbergue El identificador del albergue que sella.
+	 * @param claves                Las claves a usar. Deben de contener la clave
+	 *                              pública de {@link Actor#OFICINA_PEREGRINO} y
+	 *                              la privada de {@link Actor#ALBERGUE}.
+	 * @throws IllegalArgumentException Si algún parámetro recibido no es válido.
+	 * @throws IllegalStateException    Si falta alguna clave necesaria.
+	 * @throws GeneralSecurityException Si ocurre algún error relacionado con las
+	 *                                  operaciones criptográficas.
+	 * @throws IOException              Si ocurre algún error de E/S, el fichero
+	 *                                  no contiene un paquete completo, o ya
+	 *                                  contiene un sello del mismo albergue.
+	 */
+	public static void sellarFicheroCpv(final Map<String, String> datos, final FileChannel canalPaquete, final String identificadorAlbergue, final ClavesActores claves) throws GeneralSecurityException, IOException {
+		if (datos == null || canalPaquete == null || claves == null) {
+			throw new IllegalArgumentException("Un parámetro recibido para generar el paquete de la CPV es nulo, y no debería de serlo");
+		}
+
+		PaqueteDAO.anadirBloques(canalPaquete, generarBloquesSello(datos, identificadorAlbergue, claves));
+	}
+
+	/**
+	 * Obtiene las claves asociadas a los actores que se necesitan para sellar una
+	 * CPV.
+	 *
+	 * @return Un conjunto con la clave pública de la oficina del peregrino y la
+	 *         privada del albergue.
+	 * @throws InvalidKeySpecException Si alguna de las claves asociadas a los
+	 *                                 actores no se ha podido interpretar
+	 *                                 correctamente como tal.
+	 */
+	private static ClavesActores clavesActores() throws InvalidKeySpecException {
+		return new ClavesActores()
+			.conClavePublica(Actor.OFICINA_PEREGRINO, Actor.OFICINA_PEREGRINO.getClavePublica())
+			.conClavePrivada(Actor.ALBERGUE, Actor.ALBERGUE.getClavePrivada());
+	}
+
+	/**
+	 * Genera los bloques que conforman el sello de un albergue: los datos del
+	 * albergue encriptados con un cifrador simétrico, la clave de los datos
+	 * encriptada con un cifrador asimétrico, y la firma de los datos encriptados.
+	 * Si no se usa la suite clásica, se anota también la suite usada.
+	 *
+	 * @param datos                 Los pares clave-valor de datos del sello.
+	 * @param identificadorAlbergue El identificador del albergue que sella.
+	 * @param claves                Las claves con las que sellar.
+	 * @return Un paquete que contiene solamente los bloques del sello.
+	 * @throws GeneralSecurityException Si ocurre algún error relacionado con las
+	 *                                  operaciones criptográficas.
+	 */
+	private static Paquete generarBloquesSello(final Map<String, String> datos, final String identificadorAlbergue, final ClavesActores claves) throws GeneralSecurityException {
+		SuiteCriptografica suite;
+		PrivateKey clavePrivadaAlbergue;
+		ClaveSimetricaEncriptada claveCifrador;
+		byte[] datosEncriptados, resumenEncriptadoDatos;
+		Paquete sello;
+
+		// Los algoritmos a usar dependen del tipo de clave del albergue, que firma el sello
+		clavePrivadaAlbergue = claves.getClavePrivada(Actor.ALBERGUE);
+		suite = SuiteCriptografica.paraClaveFirma(clavePrivadaAlbergue);
+
+		// Generar una clave aleatoria simétrica, junto con su representación encriptada con la clave pública de la oficina,
+		// que puede venir ya preparada de la reserva de claves indicada junto a las de los actores
 		try {
-			claveCifradorEncriptada = cifradorAsimetrico.doFinal(claveCifrador.getEncoded());
+			claveCifrador = suite.generarClaveSimetricoEncriptada(claves.getClavePublica(Actor.OFICINA_PEREGRINO), claves.getReservaClaves());
 		} catch (final ArrayIndexOutOfBoundsException exc) {
 			throw new GeneralSecurityException("La clave pública de la oficina del peregrino no tiene longitud suficiente para encriptar los datos requeridos");
 		}
 
-		// Encriptar el resumen de los datos encriptados con la clave privada del albergue,
+		// Generar la representación encriptada con el cifrador simétrico y la clave anterior de los pares de datos en JSON
+		datosEncriptados = suite.encriptarCargaUtil(datos, claveCifrador.getClave());
+
+		// Firmar los datos encriptados con la clave privada del albergue
 		// De esta manera garantizamos que fue el albergue quien generó este paquete (firma digital)
-		cifradorAsimetrico.init(Cipher.ENCRYPT_MODE, Actor.ALBERGUE.getClavePrivada());
 		try {
-			resumenEncriptadoDatos = cifradorAsimetrico.doFinal(
-				MessageDigest.getInstance(
-					ParametrosCriptograficos.ALGORITMO_RESUMEN, ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS
-				).digest(datosEncriptados)
-			);
+			resumenEncriptadoDatos = suite.firmar(datosEncriptados, clavePrivadaAlbergue);
 		} catch (final ArrayIndexOutOfBoundsException exc) {
 			throw new GeneralSecurityException("La clave privada del albergue no tiene longitud suficiente para encriptar los datos requeridos");
 		}
 
-		// Se lee el paquete inicial, con al menos 3 bloques: los datos del albergue encriptados con un cifrador
-		// simétrico, la clave de los datos encriptada con un cifrador asimétrico, y el resumen encriptado
-		// con un cifrador asimétrico de los datos encriptados
-		paqueteCpv = PaqueteDAO.leerPaquete(flujoEntradaPaquete);
-		paqueteCpv.anadirBloque(TITULO_BLOQUE_DATOS_SELLO_ALBERGUE.replace("{ID}", identificadorAlbergue), datosEncriptados);
-		paqueteCpv.anadirBloque(TITULO_BLOQUE_CLAVE_SELLO_ALBERGUE.replace("{ID}", identificadorAlbergue), claveCifradorEncriptada);
-		paqueteCpv.anadirBloque(TITULO_BLOQUE_RESUMEN_SELLO_ALBERGUE_ENCRIPTADO.replace("{ID}", identificadorAlbergue), resumenEncriptadoDatos);
+		sello = new Paquete();
+		sello.anadirBloque(TITULO_BLOQUE_DATOS_SELLO_ALBERGUE.replace("{ID}", identificadorAlbergue), datosEncriptados);
+		sello.anadirBloque(TITULO_BLOQUE_CLAVE_SELLO_ALBERGUE.replace("{ID}", identificadorAlbergue), claveCifrador.getClaveEncriptada());
+		sello.anadirBloque(TITULO_BLOQUE_RESUMEN_SELLO_ALBERGUE_ENCRIPTADO.replace("{ID}", identificadorAlbergue), resumenEncriptadoDatos);
+		suite.anotar(sello, TITULO_BLOQUE_SUITE_SELLO_ALBERGUE.replace("{ID}", identificadorAlbergue));
 
-		// Finalmente, escribir el paquete al flujo
-		PaqueteDAO.escribirPaquete(flujoSalidaPaquete, paqueteCpv);
+		return sello;
 	}
 }
@@ -0,0 +1,167 @@
+package esei.ssi.eperegrino.sellador_cpv;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import esei.ssi.eperegrino.common.Actor;
+import esei.ssi.eperegrino.common.ClavesActores;
+import esei.ssi.eperegrino.common.LectorRegistros;
+import esei.ssi.eperegrino.common.ProcesadorLote;
+import esei.ssi.eperegrino.common.ReservaClavesSimetricas;
+import esei.ssi.eperegrino.common.ResultadoLote;
+import esei.ssi.eperegrino.common.SuiteCriptografica;
+
+/**
+ * Contiene la lógica de negocio del modo por lotes del sellador de CPV, que
+ * pone el mismo sello de un albergue en muchas credenciales.
+ *
+ * @author Alejandro González García
+ */
+final class SelladorLoteCpv {
+	/**
+	 * El campo de los datos del sello con su fecha de creación, que se añade a la
+	 * plantilla si no lo contiene.
+	 */
+	private static final String CAMPO_FECHA_CREACION = "Fecha de creación";
+
+	private SelladorLoteCpv() {
+		// No permitir instanciar esta clase
+	}
+
+	/**
+	 * Punto de entrada del modo por lotes de la aplicación.
+	 *
+	 * @param argumentos Los argumentos de operación del modo por lotes.
+	 */
+	static void main(final ArgumentosLoteSell argumentos) {
+		try {
+			// Interpretar las claves una sola vez para todo el lote
+			final ClavesActores claves = new ClavesActores()
+				.conClavePublica(Actor.OFICINA_PEREGRINO, Files.readAllBytes(argumentos.getFicheroClavePublicaOficina().toPath()))
+				.conClavePrivada(Actor.ALBERGUE, Files.readAllBytes(argumentos.getFicheroClavePrivadaAlbergue().toPath()));
+
+			final Map<String, String> datosSello;
+			try (final BufferedReader plantilla = Files.newBufferedReader(argumentos.getFicheroPlantillaSello().toPath(), StandardCharsets.UTF_8)) {
+				datosSello = new LectorRegistros(plantilla).siguienteRegistro();
+			}
+			if (datosSello == null) {
+				throw new IllegalArgumentException("La plantilla del sello no contiene ningún registro");
+			}
+
+			datosSello.putIfAbsent(
+				CAMPO_FECHA_CREACION,
+				DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneId.of("Europe/Madrid")).format(Instant.now())
+			);
+
+			// Generar y encriptar para la oficina las claves simétricas de los sellos en
+			// segundo plano, pues siempre se usan la misma suite y el mismo destinatario
+			try (final ReservaClavesSimetricas reserva = ReservaClavesSimetricas.abrir(
+				argumentos.getCapacidadReservaClaves(),
+				SuiteCriptografica.paraClaveFirma(claves.getClavePrivada(Actor.ALBERGUE)),
+				claves.getClavePublica(Actor.OFICINA_PEREGRINO)
+			)) {
+				sellarLote(
+					listarPaquetes(argumentos.getFicherosPaquete()),
+					datosSello,
+					argumentos.getIdentificadorAlbergue(),
+					claves.conReservaClaves(reserva),
+					argumentos.getHilos()
+				).mostrar(System.out, true);
+				reserva.mostrar(System.out);
+			}
+		} catch (final Exception exc) {
+			System.err.println("Ha ocurrido un error durante el sellado del lote de credenciales");
+			exc.printStackTrace();
+		}
+	}
+
+	/**
+	 * Pone el mismo sello en cada una de las CPV especificadas, añadiéndolo al
+	 * final de su fichero con
+	 * {@link SelladorCpv#sellarFicheroCpv(Map, FileChannel, String, ClavesActores)}.
+	 * Las CPV se sellan en paralelo, y un fallo al sellar una de ellas no impide
+	 * sellar las demás.
+	 *
+	 * @param paquetes              Los ficheros de las CPV a sellar.
+	 * @param datosSello            Los pares clave-valor de datos del sello. No
+	 *                              deben de modificarse mientras se sella el lote.
+	 * @param identificadorAlbergue El identificador del albergue que sella.
+	 * @param claves                Las claves con las que sellar.
+	 * @param hilos                 El número de hilos con los que sellar las CPV.
+	 * @return El resultado de sellar el lote, con cada fichero como descripción de
+	 *         su tarea.
+	 * @throws InterruptedException     Si se interrumpe la espera a que terminen
+	 *                                  de sellarse las CPV.
+	 * @throws IllegalArgumentException Si algún parámetro es nulo, o el número de
+	 *                                  hilos no es positivo.
+	 */
+	static ResultadoLote sellarLote(final List<Path> paquetes, final Map<String, String> datosSello, final String identificadorAlbergue, final ClavesActores claves, final int hilos) throws InterruptedException {
+		if (paquetes == null || datosSello == null || identificadorAlbergue == null || claves == null) {
+			throw new IllegalArgumentException("Un parámetro recibido para sellar el lote de CPV es nulo, y no debería de serlo");
+		}
+
+		final Map<String, String> datos = Collections.unmodifiableMap(datosSello);
+
+		try (final ProcesadorLote procesador = new ProcesadorLote(hilos)) {
+			for (final Path paquete : paquetes) {
+				procesador.enviar(paquete.toString(), () -> {
+					try (final FileChannel canalPaquete = FileChannel.open(paquete, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+						SelladorCpv.sellarFicheroCpv(datos, canalPaquete, identificadorAlbergue, claves);
+					}
+				});
+			}
+
+			return procesador.finalizar();
+		}
+	}
+
+	/**
+	 * Obtiene los ficheros de paquete a sellar a partir de los especificados por
+	 * el usuario, sustituyendo cada directorio por los ficheros normales que
+	 * contiene directamente, ordenados por nombre. Cada fichero aparece una sola
+	 * vez, con su ruta real, aunque se haya especificado varias veces o también a
+	 * través de su directorio, pues sellarlo dos veces a la vez lo dañaría.
+	 *
+	 * @param ficheros Los ficheros y directorios especificados.
+	 * @return Los descritos ficheros de paquete.
+	 * @throws IOException Si ocurre un error de E/S al listar algún directorio, o
+	 *                     al obtener la ruta real de algún fichero.
+	 */
+	static List<Path> listarPaquetes(final List<File> ficheros) throws IOException {
+		final Set<Path> paquetes = new LinkedHashSet<>();
+
+		for (final File fichero : ficheros) {
+			if (fichero.isDirectory()) {
+				final List<Path> contenido = new ArrayList<>();
+				try (final DirectoryStream<Path> entradas = Files.newDirectoryStream(fichero.toPath(), Files::isRegularFile)) {
+					entradas.forEach(contenido::add);
+				}
+				Collections.sort(contenido);
+
+				for (final Path paquete : contenido) {
+					paquetes.add(paquete.toRealPath());
+				}
+			} else {
+				paquetes.add(fichero.toPath().toRealPath());
+			}
+		}
+
+		return new ArrayList<>(paquetes);
+	}
+}
@@ -3,18 +3,29 @@ package esei.ssi.eperegrino.sellador_cpv;
 import static org.hamcrest.CoreMatchers.allOf;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.text.StringContainsInOrder.stringContainsInOrder;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.GeneralSecurityException;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 
@@ -22,10 +33,15 @@ import org.junit.After;
 import org.junit.Test;
 
 import esei.ssi.eperegrino.common.Actor;
+import esei.ssi.eperegrino.common.ClavesActores;
 import esei.ssi.eperegrino.common.GestorProveedoresJCA;
 import esei.ssi.eperegrino.common.NombresBloques;
+import esei.ssi.eperegrino.common.Paquete;
 import esei.ssi.eperegrino.common.PaqueteDAO;
 import esei.ssi.eperegrino.common.ParametrosCriptograficos;
+import esei.ssi.eperegrino.common.ReservaClavesSimetricas;
+import esei.ssi.eperegrino.common.ResultadoLote;
+import esei.ssi.eperegrino.common.SuiteCriptografica;
 import esei.ssi.eperegrino.generador_cpv.GeneradorCpv;
 
 /**
@@ -147,6 +163,154 @@ public final class TestSelladorCpv {
 		);
 	}
 
+	/**
+	 * Comprueba que el sellado de una CPV guardada en un fichero, añadiendo el
+	 * sello al final del paquete, dé lugar a los mismos bloques que el sellado
+	 * reescribiendo el paquete completo.
+	 */
+	@Test
+	public void testSellarPaqueteCpvFichero() throws Exception {
+		final String idAlbergue = "Albergue de prueba";
+
+		Actor.OFICINA_PEREGRINO.setClavePublica(clavePublicaOficinaPeregrino);
+		Actor.PEREGRINO.setClavePrivada(clavePrivadaPeregrino);
+
+		GeneradorCpv.generarPaqueteCPV(datos, bos);
+
+		final byte[] salidaPaquete = bos.toByteArray();
+		bos.reset();
+
+		Actor.ALBERGUE.setClavePrivada(clavePrivadaAlbergue);
+
+		final Path ficheroPaquete = Files.createTempFile("cpv", ".paquete");
+		try {
+			Files.write(ficheroPaquete, salidaPaquete);
+
+			try (final FileChannel canalPaquete = FileChannel.open(ficheroPaquete, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				SelladorCpv.sellarCpv(datosSello, canalPaquete, idAlbergue);
+			}
+			SelladorCpv.sellarCpv(datosSello, new ByteArrayInputStream(salidaPaquete), bos, idAlbergue);
+
+			final Paquete paqueteFichero;
+			try (final InputStream flujoPaquete = Files.newInputStream(ficheroPaquete)) {
+				paqueteFichero = PaqueteDAO.leerPaquete(flujoPaquete);
+			}
+			final Paquete paqueteFlujo = PaqueteDAO.leerPaquete(new ByteArrayInputStream(bos.toByteArray()));
+
+			// Los bloques del peregrino no deben de cambiar, y los del sello deben de
+			// estar presentes
+			assertEquals(paqueteFlujo.getNombresBloque(), paqueteFichero.getNombresBloque());
+			for (final String nombreBloque : PaqueteDAO.leerPaquete(new ByteArrayInputStream(salidaPaquete)).getNombresBloque()) {
+				assertArrayEquals(paqueteFlujo.getContenidoBloque(nombreBloque), paqueteFichero.getContenidoBloque(nombreBloque));
+			}
+		} finally {
+			Files.delete(ficheroPaquete);
+		}
+	}
+
+	/**
+	 * Comprueba que el sellado de un lote de CPV selle una sola vez cada fichero
+	 * válido, aunque se especifique también a través de su directorio, y anote
+	 * como fallo los que no contienen un paquete.
+	 */
+	@Test
+	public void testSellarLoteCpv() throws Exception {
+		final String idAlbergue = "Albergue de prueba";
+
+		Actor.OFICINA_PEREGRINO.setClavePublica(clavePublicaOficinaPeregrino);
+		Actor.PEREGRINO.setClavePrivada(clavePrivadaPeregrino);
+
+		GeneradorCpv.generarPaqueteCPV(datos, bos);
+
+		final Path directorio = Files.createTempDirectory("cpv");
+		final Path ficheroPaquete1 = directorio.resolve("cpv1.paquete");
+		final Path ficheroPaquete2 = directorio.resolve("cpv2.paquete");
+		final Path ficheroInvalido = directorio.resolve("cpv3.paquete");
+		try {
+			Files.write(ficheroPaquete1, bos.toByteArray());
+			Files.write(ficheroPaquete2, bos.toByteArray());
+			Files.write(ficheroInvalido, "No es un paquete".getBytes(StandardCharsets.UTF_8));
+
+			final List<Path> paquetes = SelladorLoteCpv.listarPaquetes(Arrays.asList(directorio.toFile(), ficheroPaquete1.toFile()));
+			assertEquals(3, paquetes.size());
+
+			final ResultadoLote resultado = SelladorLoteCpv.sellarLote(
+				paquetes,
+				datosSello,
+				idAlbergue,
+				new ClavesActores()
+					.conClavePublica(Actor.OFICINA_PEREGRINO, clavePublicaOficinaPeregrino)
+					.conClavePrivada(Actor.ALBERGUE, clavePrivadaAlbergue),
+				2
+			);
+
+			assertEquals(2, resultado.getCorrectas());
+			assertEquals(1, resultado.getFallos().size());
+			assertThat(resultado.getFallos().get(0), containsString(ficheroInvalido.getFileName().toString()));
+
+			for (final Path ficheroPaquete : new Path[] { ficheroPaquete1, ficheroPaquete2 }) {
+				try (final InputStream flujoPaquete = Files.newInputStream(ficheroPaquete)) {
+					assertEquals(6, PaqueteDAO.leerPaquete(flujoPaquete).getNombresBloque().size());
+				}
+			}
+		} finally {
+			Files.delete(ficheroPaquete1);
+			Files.delete(ficheroPaquete2);
+			Files.delete(ficheroInvalido);
+			Files.delete(directorio);
+		}
+	}
+
+	/**
+	 * Comprueba que el sellado con una reserva de claves simétricas encriptadas de
+	 * antemano tome de ella la clave cuando coinciden la suite y el destinatario,
+	 * y la genere en el momento, sin gastar las de la reserva, cuando el albergue
+	 * usa otra suite.
+	 */
+	@Test
+	public void testSellarPaqueteCpvReservaClaves() throws Exception {
+		final ClavesActores clavesGenerador = new ClavesActores()
+			.conClavePublica(Actor.OFICINA_PEREGRINO, clavePublicaOficinaPeregrino)
+			.conClavePrivada(Actor.PEREGRINO, clavePrivadaPeregrino);
+		final ClavesActores clavesClasico = new ClavesActores()
+			.conClavePublica(Actor.OFICINA_PEREGRINO, clavePublicaOficinaPeregrino)
+			.conClavePrivada(Actor.ALBERGUE, clavePrivadaAlbergue);
+		final ClavesActores clavesModerno = new ClavesActores()
+			.conClavePublica(Actor.OFICINA_PEREGRINO, clavePublicaOficinaPeregrino)
+			.conClavePrivada(Actor.ALBERGUE, KeyPairGenerator.getInstance(
+				ParametrosCriptograficos.ALGORITMO_FIRMA, ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS
+			).generateKeyPair().getPrivate());
+
+		GeneradorCpv.generarPaqueteCPV(datos, bos, clavesGenerador);
+
+		final byte[] salidaPaquete = bos.toByteArray();
+		bos.reset();
+
+		try (final ReservaClavesSimetricas reserva = ReservaClavesSimetricas.abrir(
+			2, SuiteCriptografica.paraClaveFirma(clavesClasico.getClavePrivada(Actor.ALBERGUE)), clavesClasico.getClavePublica(Actor.OFICINA_PEREGRINO)
+		)) {
+			// Esperar a que la reserva esté llena, para que no dependa de la velocidad
+			// del hilo que la llena
+			final long limite = System.nanoTime() + 60_000_000_000L;
+			while (reserva.getClavesDisponibles() < 2) {
+				assertTrue("La reserva de claves no se ha llenado a tiempo", System.nanoTime() < limite);
+				Thread.sleep(10);
+			}
+
+			SelladorCpv.sellarCpv(datosSello, new ByteArrayInputStream(salidaPaquete), bos, "Albergue clasico", clavesClasico.conReservaClaves(reserva));
+			bos.reset();
+
+			assertEquals(1, reserva.getAciertos());
+			assertEquals(0, reserva.getFallos());
+
+			SelladorCpv.sellarCpv(datosSello, new ByteArrayInputStream(salidaPaquete), bos, "Albergue moderno", clavesModerno.conReservaClaves(reserva));
+
+			assertEquals(1, reserva.getAciertos());
+			assertEquals(1, reserva.getFallos());
+			assertNull(reserva.getErrorRelleno());
+		}
+	}
+
 	/**
 	 * Comprueba que el sellado de un paquete de CPV con claves de actores
 	 * inválidas no tenga éxito.
@@ -0,0 +1,111 @@
+package esei.ssi.eperegrino.servicio_cpv;
+
+import java.io.File;
+
+/**
+ * Modela los argumentos de operación del modo cliente del servicio de CPV.
+ *
+ * @author Alejandro González García
+ */
+final class ArgumentosClienteServicio {
+	private final int puerto;
+	private final File ficheroToken;
+	private final String operacion;
+	private final String identificadorAlbergue;
+	private final File ficheroDatos;
+	private final File ficheroPaquete;
+
+	/**
+	 * Crea un objeto de argumentos de operación para el modo cliente del
+	 * servicio de CPV.
+	 *
+	 * @param puerto                El puerto de la interfaz de bucle local en el
+	 *                              que atiende el servicio.
+	 * @param ficheroToken          El fichero con el token compartido con el
+	 *                              servicio.
+	 * @param operacion             La ruta de la operación a pedir al servicio,
+	 *                              como {@link ServicioCpv#RUTA_GENERAR}.
+	 * @param identificadorAlbergue El identificador del albergue que sella, o
+	 *                              nulo si la operación no es sellar.
+	 * @param ficheroDatos          El fichero con los datos en formato JSON a
+	 *                              enviar, o nulo si la operación no los
+	 *                              necesita.
+	 * @param ficheroPaquete        El fichero del paquete de la CPV.
+	 * @throws IllegalArgumentException Si el fichero del token, la operación o
+	 *                                  el fichero del paquete son nulos, o el
+	 *                                  puerto no es válido.
+	 */
+	public ArgumentosClienteServicio(
+		final int puerto, final File ficheroToken, final String operacion, final String identificadorAlbergue, final File ficheroDatos, final File ficheroPaquete
+	) {
+		if (ficheroToken == null || operacion == null || ficheroPaquete == null) {
+			throw new IllegalArgumentException("Los argumentos del cliente del servicio de CPV no pueden ser nulos");
+		}
+
+		if (puerto < 1 || puerto > 65535) {
+			throw new IllegalArgumentException("El puerto debe de estar entre 1 y 65535");
+		}
+
+		this.puerto = puerto;
+		this.ficheroToken = ficheroToken;
+		this.operacion = operacion;
+		this.identificadorAlbergue = identificadorAlbergue;
+		this.ficheroDatos = ficheroDatos;
+		this.ficheroPaquete = ficheroPaquete;
+	}
+
+	/**
+	 * Obtiene el puerto de la interfaz de bucle local en el que atiende el
+	 * servicio.
+	 *
+	 * @return El descrito puerto.
+	 */
+	public int getPuerto() {
+		return puerto;
+	}
+
+	/**
+	 * Obtiene el fichero con el token compartido con el servicio.
+	 *
+	 * @return El descrito fichero.
+	 */
+	public File getFicheroToken() {
+		return ficheroToken;
+	}
+
+	/**
+	 * Obtiene la ruta de la operación a pedir al servicio.
+	 *
+	 * @return La descrita ruta.
+	 */
+	public String getOperacion() {
+		return operacion;
+	}
+
+	/**
+	 * Obtiene el identificador del albergue que sella.
+	 *
+	 * @return El descrito identificador, o nulo si la operación no es sellar.
+	 */
+	public String getIdentificadorAlbergue() {
+		return identificadorAlbergue;
+	}
+
+	/**
+	 * Obtiene el fichero con los datos en formato JSON a enviar.
+	 *
+	 * @return El descrito fichero, o nulo si la operación no los necesita.
+	 */
+	public File getFicheroDatos() {
+		return ficheroDatos;
+	}
+
+	/**
+	 * Obtiene el fichero del paquete de la CPV.
+	 *
+	 * @return El descrito fichero.
+	 */
+	public File getFicheroPaquete() {
+		return ficheroPaquete;
+	}
+}
@@ -0,0 +1,85 @@
+package esei.ssi.eperegrino.servicio_cpv;
+
+import java.io.File;
+
+/**
+ * Modela los argumentos de operación del servicio de CPV.
+ *
+ * @author Alejandro González García
+ */
+final class ArgumentosServicio {
+	private final int puerto;
+	private final int hilos;
+	private final File ficheroToken;
+	private final File directorioClaves;
+
+	/**
+	 * Crea un objeto de argumentos de operación para el servicio de CPV.
+	 *
+	 * @param puerto           El puerto de la interfaz de bucle local en el que
+	 *                         atender peticiones.
+	 * @param hilos            El número de hilos con los que atender peticiones.
+	 * @param ficheroToken     El fichero con el token compartido con los
+	 *                         clientes.
+	 * @param directorioClaves El directorio que contiene las claves de los actores
+	 *                         y el almacén de claves de albergues.
+	 * @throws IllegalArgumentException Si algún parámetro es nulo, el puerto no es
+	 *                                  válido o el número de hilos no es positivo.
+	 */
+	public ArgumentosServicio(final int puerto, final int hilos, final File ficheroToken, final File directorioClaves) {
+		if (ficheroToken == null || directorioClaves == null) {
+			throw new IllegalArgumentException("Los argumentos del servicio de CPV no pueden ser nulos");
+		}
+
+		if (puerto < 0 || puerto > 65535) {
+			throw new IllegalArgumentException("El puerto debe de estar entre 0 y 65535");
+		}
+
+		if (hilos < 1) {
+			throw new IllegalArgumentException("El número de hilos debe de ser positivo");
+		}
+
+		this.puerto = puerto;
+		this.hilos = hilos;
+		this.ficheroToken = ficheroToken;
+		this.directorioClaves = directorioClaves;
+	}
+
+	/**
+	 * Obtiene el puerto de la interfaz de bucle local en el que atender
+	 * peticiones.
+	 *
+	 * @return El descrito puerto.
+	 */
+	public int getPuerto() {
+		return puerto;
+	}
+
+	/**
+	 * Obtiene el número de hilos con los que atender peticiones.
+	 *
+	 * @return El descrito número.
+	 */
+	public int getHilos() {
+		return hilos;
+	}
+
+	/**
+	 * Obtiene el fichero con el token compartido con los clientes.
+	 *
+	 * @return El descrito fichero.
+	 */
+	public File getFicheroToken() {
+		return ficheroToken;
+	}
+
+	/**
+	 * Obtiene el directorio que contiene las claves de los actores y el almacén de
+	 * claves de albergues.
+	 *
+	 * @return El descrito directorio.
+	 */
+	public File getDirectorioClaves() {
+		return directorioClaves;
+	}
+}
@@ -0,0 +1,194 @@
+package esei.ssi.eperegrino.servicio_cpv;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Pide operaciones a un {@link ServicioCpv} que se ejecuta en la misma máquina.
+ * No usa ninguna clase de la JCA, así que no paga el coste de registrar sus
+ * proveedores ni de interpretar claves. Se identifica ante el servicio con el
+ * token que comparten.
+ *
+ * @author Alejandro González García
+ */
+final class ClienteServicioCpv {
+	private static final int TAMANO_BUFER = 8192;
+
+	private ClienteServicioCpv() {
+		// No permitir instanciar esta clase
+	}
+
+	/**
+	 * Punto de entrada del modo cliente de la aplicación.
+	 *
+	 * @param argumentos Los argumentos de operación del modo cliente.
+	 */
+	static void main(final ArgumentosClienteServicio argumentos) {
+		try {
+			final String token = ServicioCpv.leerToken(argumentos.getFicheroToken().toPath());
+
+			switch (argumentos.getOperacion()) {
+				case ServicioCpv.RUTA_GENERAR: {
+					Files.write(
+						argumentos.getFicheroPaquete().toPath(),
+						solicitar(argumentos.getPuerto(), token, ServicioCpv.RUTA_GENERAR, Collections.emptyMap(), leerDatos(argumentos))
+					);
+					break;
+				}
+				case ServicioCpv.RUTA_SELLAR: {
+					final Map<String, String> parametros = new LinkedHashMap<>();
+					parametros.put(ServicioCpv.PARAMETRO_ALBERGUE, argumentos.getIdentificadorAlbergue());
+
+					// Solo se reemplaza el fichero si el servicio ha podido sellar la CPV
+					Files.write(
+						argumentos.getFicheroPaquete().toPath(),
+						solicitar(
+							argumentos.getPuerto(), token, ServicioCpv.RUTA_SELLAR, parametros,
+							componerCuerpoSellar(leerDatos(argumentos), Files.readAllBytes(argumentos.getFicheroPaquete().toPath()))
+						)
+					);
+					break;
+				}
+				default: {
+					System.out.print(new String(
+						solicitar(
+							argumentos.getPuerto(), token, ServicioCpv.RUTA_DESEMPAQUETAR, Collections.emptyMap(),
+							Files.readAllBytes(argumentos.getFicheroPaquete().toPath())
+						),
+						StandardCharsets.UTF_8
+					));
+				}
+			}
+		} catch (final Exception exc) {
+			System.err.println("Ha ocurrido un error durante la comunicación con el servicio");
+			exc.printStackTrace();
+		}
+	}
+
+	/**
+	 * Pide una operación al servicio, y espera a su resultado.
+	 *
+	 * @param puerto     El puerto de la interfaz de bucle local en el que atiende
+	 *                   el servicio.
+	 * @param token      El token compartido con el servicio.
+	 * @param ruta       La ruta de la operación, como {@link ServicioCpv#RUTA_GENERAR}.
+	 * @param parametros Los parámetros de la operación que van en la cadena de
+	 *                   consulta, por nombre. No deben de contener datos
+	 *                   personales, que van en el cuerpo.
+	 * @param cuerpo     El cuerpo de la petición.
+	 * @return El resultado de la operación.
+	 * @throws IOException Si ocurre un error de E/S durante la comunicación con
+	 *                     el servicio, o el servicio no ha podido hacer la
+	 *                     operación. En tal caso, el mensaje de la excepción
+	 *                     contiene el código de estado y el mensaje de error del
+	 *                     servicio. También si el cuerpo es mayor que
+	 *                     {@link ServicioCpv#TAMANO_MAXIMO_CUERPO}.
+	 */
+	static byte[] solicitar(final int puerto, final String token, final String ruta, final Map<String, String> parametros, final byte[] cuerpo) throws IOException {
+		// El servicio rechazaría la petición sin leerla entera
+		if (cuerpo.length > ServicioCpv.TAMANO_MAXIMO_CUERPO) {
+			throw new IOException("La petición ocupa más de " + ServicioCpv.TAMANO_MAXIMO_CUERPO + " bytes, el máximo que acepta el servicio");
+		}
+
+		final StringBuilder consulta = new StringBuilder(ruta);
+		char separador = '?';
+		for (final Entry<String, String> parametro : parametros.entrySet()) {
+			consulta
+				.append(separador)
+				.append(URLEncoder.encode(parametro.getKey(), StandardCharsets.UTF_8.name()))
+				.append('=')
+				.append(URLEncoder.encode(parametro.getValue(), StandardCharsets.UTF_8.name()));
+			separador = '&';
+		}
+
+		final HttpURLConnection conexion = (HttpURLConnection) new URL(
+			"http", InetAddress.getLoopbackAddress().getHostAddress(), puerto, consulta.toString()
+		).openConnection();
+		try {
+			conexion.setRequestMethod("POST");
+			conexion.setRequestProperty(ServicioCpv.CABECERA_AUTORIZACION, ServicioCpv.ESQUEMA_AUTORIZACION + token);
+			conexion.setDoOutput(true);
+			conexion.setFixedLengthStreamingMode(cuerpo.length);
+
+			try (final OutputStream salida = conexion.getOutputStream()) {
+				salida.write(cuerpo);
+			}
+
+			if (conexion.getResponseCode() != ServicioCpv.ESTADO_CORRECTO) {
+				final InputStream error = conexion.getErrorStream();
+				throw new IOException(
+					"El servicio no ha podido hacer la operación (" + conexion.getResponseCode() + "): " +
+					(error == null ? conexion.getResponseMessage() : new String(leerTodo(error), StandardCharsets.UTF_8))
+				);
+			}
+
+			try (final InputStream entrada = conexion.getInputStream()) {
+				return leerTodo(entrada);
+			}
+		} finally {
+			conexion.disconnect();
+		}
+	}
+
+	/**
+	 * Compone el cuerpo de una petición de sellado, en el formato que espera
+	 * {@link ServicioCpv}: la longitud de los datos del sello, los datos y la
+	 * CPV.
+	 *
+	 * @param datos Los datos del sello, en formato JSON.
+	 * @param cpv   El paquete de la CPV a sellar.
+	 * @return El cuerpo compuesto.
+	 */
+	static byte[] componerCuerpoSellar(final byte[] datos, final byte[] cpv) {
+		return ByteBuffer.allocate(Integer.BYTES + datos.length + cpv.length)
+			.putInt(datos.length)
+			.put(datos)
+			.put(cpv)
+			.array();
+	}
+
+	/**
+	 * Lee los datos a enviar al servicio, en formato JSON.
+	 *
+	 * @param argumentos Los argumentos de operación del modo cliente.
+	 * @return Los datos leídos, codificados en UTF-8.
+	 * @throws IOException Si ocurre un error de E/S al leer los datos.
+	 */
+	private static byte[] leerDatos(final ArgumentosClienteServicio argumentos) throws IOException {
+		return new String(Files.readAllBytes(argumentos.getFicheroDatos().toPath()), StandardCharsets.UTF_8).trim().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Lee todos los bytes de un flujo de entrada, cerrándolo después.
+	 *
+	 * @param entrada El flujo a leer.
+	 * @return Los bytes leídos.
+	 * @throws IOException Si ocurre un error de E/S al leer.
+	 */
+	private static byte[] leerTodo(final InputStream entrada) throws IOException {
+		try (final InputStream flujo = entrada) {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final byte[] bufer = new byte[TAMANO_BUFER];
+			int leidos;
+
+			while ((leidos = flujo.read(bufer)) != -1) {
+				bytes.write(bufer, 0, leidos);
+			}
+
+			return bytes.toByteArray();
+		}
+	}
+}
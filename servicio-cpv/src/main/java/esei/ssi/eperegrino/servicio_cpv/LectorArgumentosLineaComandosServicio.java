@@ -0,0 +1,185 @@
+package esei.ssi.eperegrino.servicio_cpv;
+
+import java.io.File;
+
+/**
+ * Contiene la lógica necesaria para leer y validar los argumentos de línea de
+ * comandos.
+ *
+ * @author Alejandro González García
+ */
+final class LectorArgumentosLineaComandosServicio {
+	/**
+	 * El primer argumento que indica que se debe de pedir una operación a un
+	 * servicio, en vez de atender peticiones.
+	 */
+	static final String OPCION_CLIENTE = "--cliente";
+	/**
+	 * Los nombres de las operaciones que se pueden pedir a un servicio.
+	 */
+	private static final String OPERACION_GENERAR = "generar";
+	private static final String OPERACION_SELLAR = "sellar";
+	private static final String OPERACION_DESEMPAQUETAR = "desempaquetar";
+
+	/**
+	 * Interpreta los argumentos de línea de comandos especificados, deteniendo la
+	 * ejecución de la aplicación si alguno es inválido, o encapsulando dichos
+	 * argumentos en un objeto si todo va bien para un procesamiento más fácil.
+	 *
+	 * @param args Los argumentos de línea de comandos a interpretar, tal cual son
+	 *             pasados al método estático main.
+	 * @return Los descritos argumentos de operación del servicio de CPV.
+	 */
+	public static ArgumentosServicio interpretar(final String[] args) {
+		if (args.length != 4) {
+			mostrarSintaxisYSalir();
+		}
+
+		final int puerto = leerPuerto(args[0]);
+
+		int hilos = 0;
+		try {
+			hilos = Integer.parseInt(args[1]);
+			if (hilos < 1) {
+				throw new NumberFormatException();
+			}
+		} catch (final NumberFormatException exc) {
+			System.err.println("El número de hilos especificado no es un entero positivo");
+			mostrarSintaxisYSalir();
+		}
+
+		final File ficheroToken = new File(args[2]);
+		comprobarFicheroPlausible(ficheroToken, "el token del servicio");
+
+		final File directorioClaves = new File(args[3]);
+		if (!directorioClaves.canRead() || !directorioClaves.isDirectory()) {
+			System.err.println("No se puede leer el directorio de claves " + directorioClaves.getAbsolutePath() + ", o no es un directorio");
+			System.exit(2);
+		}
+
+		return new ArgumentosServicio(puerto, hilos, ficheroToken, directorioClaves);
+	}
+
+	/**
+	 * Interpreta los argumentos de línea de comandos del modo cliente, de la misma
+	 * manera que {@link #interpretar(String[])}. Se asume que el primer argumento
+	 * es {@link #OPCION_CLIENTE}.
+	 *
+	 * @param args Los argumentos de línea de comandos a interpretar, tal cual son
+	 *             pasados al método estático main.
+	 * @return Los descritos argumentos de operación del modo cliente.
+	 */
+	public static ArgumentosClienteServicio interpretarCliente(final String[] args) {
+		if (args.length < 5) {
+			mostrarSintaxisYSalir();
+		}
+
+		final int puerto = leerPuerto(args[1]);
+
+		final File ficheroToken = new File(args[2]);
+		comprobarFicheroPlausible(ficheroToken, "el token del servicio");
+
+		ArgumentosClienteServicio argumentos = null;
+
+		switch (args[3]) {
+			case OPERACION_GENERAR: {
+				if (args.length != 6) {
+					mostrarSintaxisYSalir();
+				}
+
+				final File ficheroDatos = new File(args[4]);
+				comprobarFicheroPlausible(ficheroDatos, "los datos del peregrino");
+
+				argumentos = new ArgumentosClienteServicio(puerto, ficheroToken, ServicioCpv.RUTA_GENERAR, null, ficheroDatos, new File(args[5]));
+				break;
+			}
+			case OPERACION_SELLAR: {
+				if (args.length != 7) {
+					mostrarSintaxisYSalir();
+				}
+
+				final File ficheroDatos = new File(args[5]);
+				comprobarFicheroPlausible(ficheroDatos, "los datos del sello");
+
+				final File ficheroPaquete = new File(args[6]);
+				comprobarFicheroPlausible(ficheroPaquete, "la credencial virtual del peregrino");
+
+				argumentos = new ArgumentosClienteServicio(puerto, ficheroToken, ServicioCpv.RUTA_SELLAR, args[4], ficheroDatos, ficheroPaquete);
+				break;
+			}
+			case OPERACION_DESEMPAQUETAR: {
+				if (args.length != 5) {
+					mostrarSintaxisYSalir();
+				}
+
+				final File ficheroPaquete = new File(args[4]);
+				comprobarFicheroPlausible(ficheroPaquete, "la credencial virtual del peregrino");
+
+				argumentos = new ArgumentosClienteServicio(puerto, ficheroToken, ServicioCpv.RUTA_DESEMPAQUETAR, null, null, ficheroPaquete);
+				break;
+			}
+			default: {
+				System.err.println("La operación especificada no es " + OPERACION_GENERAR + ", " + OPERACION_SELLAR + " ni " + OPERACION_DESEMPAQUETAR);
+				mostrarSintaxisYSalir();
+			}
+		}
+
+		return argumentos;
+	}
+
+	/**
+	 * Interpreta el puerto especificado como argumento, finalizando el proceso de
+	 * la aplicación si no es válido.
+	 *
+	 * @param argumento El argumento a interpretar.
+	 * @return El puerto.
+	 */
+	private static int leerPuerto(final String argumento) {
+		int puerto = 0;
+
+		try {
+			puerto = Integer.parseInt(argumento);
+			if (puerto < 1 || puerto > 65535) {
+				throw new NumberFormatException();
+			}
+		} catch (final NumberFormatException exc) {
+			System.err.println("El puerto especificado no es un entero entre 1 y 65535");
+			mostrarSintaxisYSalir();
+		}
+
+		return puerto;
+	}
+
+	/**
+	 * Muestra un mensaje por la salida estándar que indica la sintaxis que deben de
+	 * seguir los argumentos de línea de comandos pasados a esta aplicación, y
+	 * finaliza su proceso con el código de salida de error 1.
+	 */
+	private static void mostrarSintaxisYSalir() {
+		System.out.println("Sintaxis: ServicioCredenciales (puerto) (núm. hilos) (fichero token, con permisos 0600) (directorio de claves: " +
+			ServicioCpv.FICHERO_CLAVE_PRIVADA_OFICINA + ", " + ServicioCpv.FICHERO_CLAVE_PUBLICA_OFICINA + ", " +
+			ServicioCpv.FICHERO_CLAVE_PRIVADA_PEREGRINO + ", " + ServicioCpv.FICHERO_CLAVE_PUBLICA_PEREGRINO + ", " +
+			ServicioCpv.FICHERO_CLAVE_PRIVADA_ALBERGUE + " y " + ServicioCpv.ALMACEN_ALBERGUES + ", solo las de las operaciones a atender)");
+		System.out.println("         ServicioCredenciales " + OPCION_CLIENTE + " (puerto) (fichero token) " + OPERACION_GENERAR + " (fichero datos JSON) (fichero paquete)");
+		System.out.println("         ServicioCredenciales " + OPCION_CLIENTE + " (puerto) (fichero token) " + OPERACION_SELLAR + " (identificador albergue) (fichero datos JSON) (fichero paquete)");
+		System.out.println("         ServicioCredenciales " + OPCION_CLIENTE + " (puerto) (fichero token) " + OPERACION_DESEMPAQUETAR + " (fichero paquete)");
+		System.exit(1);
+	}
+
+	/**
+	 * Si el fichero pasado como parámetro no es plausible (legible en el momento
+	 * presente), finaliza el proceso de la aplicación con código de salida de error
+	 * 2, mostrando antes un mensaje por el flujo de salida de error con más
+	 * información acerca del fichero que se ha comprobado.
+	 *
+	 * @param fichero   El fichero a comprobar si es plausible.
+	 * @param contenido Una descripción textual del contenido esperado del fichero,
+	 *                  que se mostrará al usuario.
+	 */
+	private static void comprobarFicheroPlausible(final File fichero, final String contenido) {
+		if (!fichero.canRead() || !fichero.isFile()) {
+			System.err.println("No se puede leer el fichero " + fichero.getAbsolutePath() + " con " + contenido + ", o no es un fichero");
+			System.exit(2);
+		}
+	}
+}
@@ -0,0 +1,672 @@
+package esei.ssi.eperegrino.servicio_cpv;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.spec.InvalidKeySpecException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import esei.ssi.eperegrino.common.Actor;
+import esei.ssi.eperegrino.common.ClavesActores;
+import esei.ssi.eperegrino.common.GestorProveedoresJCA;
+import esei.ssi.eperegrino.common.JSONUtils;
+import esei.ssi.eperegrino.common.PaqueteDAO;
+import esei.ssi.eperegrino.common.ReservaClavesSimetricas;
+import esei.ssi.eperegrino.desempaquetador_cpv.AlmacenClavesAlbergues;
+import esei.ssi.eperegrino.desempaquetador_cpv.DesempaquetadorCpv;
+import esei.ssi.eperegrino.generador_cpv.GeneradorCpv;
+import esei.ssi.eperegrino.sellador_cpv.SelladorCpv;
+
+/**
+ * Atiende peticiones para generar, sellar y desempaquetar CPV desde un proceso
+ * de larga duración, de manera que el coste de iniciar la máquina virtual,
+ * registrar los proveedores de la JCA e interpretar las claves se paga una sola
+ * vez, y no en cada operación. Las operaciones se hacen en un conjunto fijo de
+ * hilos, que conservan sus objetos de la JCA entre peticiones.
+ * <p>
+ * Las peticiones se reciben por HTTP, solo desde la interfaz de bucle local, y
+ * solo se atienden si su cabecera {@value #CABECERA_AUTORIZACION} contiene el
+ * token compartido con los clientes, que se lee de un fichero al que solo puede
+ * acceder su propietario. Cada operación se pide con una petición POST a su
+ * ruta, con sus datos en el cuerpo, que no puede ocupar más de
+ * {@value #TAMANO_MAXIMO_CUERPO} bytes:
+ * <ul>
+ * <li>{@value #RUTA_GENERAR}: genera una CPV con los datos del peregrino del
+ * cuerpo, en formato JSON, y la responde.</li>
+ * <li>{@value #RUTA_SELLAR}: sella la CPV del cuerpo en nombre del albergue del
+ * parámetro {@value #PARAMETRO_ALBERGUE} de la cadena de consulta, y responde la
+ * CPV sellada. El cuerpo empieza por la longitud en bytes de los datos del
+ * sello, como entero de 4 bytes, seguida de esos datos en formato JSON, y
+ * después la CPV.</li>
+ * <li>{@value #RUTA_DESEMPAQUETAR}: desempaqueta la CPV del cuerpo, y responde
+ * sus contenidos tal y como los mostraría el desempaquetador.</li>
+ * </ul>
+ * Solo se atienden las operaciones para las que se tienen las claves
+ * necesarias. Para que un fallo en el servicio no comprometa las claves
+ * privadas de todos los actores a la vez, conviene ejecutar un servicio por
+ * actor, cada uno con un directorio de claves que solo contenga las que
+ * necesita.
+ * <p>
+ * Si la operación no se puede hacer, se responde un código de estado de error
+ * con un mensaje fijo. El motivo solo se muestra por la salida de error del
+ * servicio.
+ *
+ * @author Alejandro González García
+ */
+public final class ServicioCpv implements Closeable {
+	static final String RUTA_GENERAR = "/generar";
+	static final String RUTA_SELLAR = "/sellar";
+	static final String RUTA_DESEMPAQUETAR = "/desempaquetar";
+	static final String PARAMETRO_ALBERGUE = "albergue";
+	static final String CABECERA_AUTORIZACION = "Authorization";
+	static final String ESQUEMA_AUTORIZACION = "Bearer ";
+	/**
+	 * El tamaño máximo en bytes del cuerpo de una petición. Las peticiones
+	 * mayores se rechazan sin terminar de leerlas.
+	 */
+	static final int TAMANO_MAXIMO_CUERPO = 4 * 1024 * 1024;
+	/**
+	 * El número mínimo de caracteres del token compartido con los clientes.
+	 */
+	static final int LONGITUD_MINIMA_TOKEN = 16;
+
+	/**
+	 * Los nombres de los ficheros del directorio de claves del servicio que
+	 * contienen la clave de cada actor. Ninguno es obligatorio, pero sin ellos no
+	 * se podrán hacer las operaciones que los necesiten.
+	 */
+	static final String FICHERO_CLAVE_PRIVADA_OFICINA = "oficina.privada";
+	static final String FICHERO_CLAVE_PUBLICA_OFICINA = "oficina.publica";
+	static final String FICHERO_CLAVE_PRIVADA_PEREGRINO = "peregrino.privada";
+	static final String FICHERO_CLAVE_PUBLICA_PEREGRINO = "peregrino.publica";
+	static final String FICHERO_CLAVE_PRIVADA_ALBERGUE = "albergue.privada";
+	/**
+	 * El nombre del almacén de claves públicas de albergues en el directorio de
+	 * claves del servicio, como directorio o fichero paquete.
+	 */
+	static final String ALMACEN_ALBERGUES = "albergues";
+
+	static final int ESTADO_CORRECTO = 200;
+	static final int ESTADO_PETICION_INVALIDA = 400;
+	static final int ESTADO_NO_AUTORIZADO = 401;
+	static final int ESTADO_METODO_NO_PERMITIDO = 405;
+	static final int ESTADO_CUERPO_DEMASIADO_GRANDE = 413;
+	static final int ESTADO_CPV_INVALIDA = 422;
+	static final int ESTADO_ERROR_INTERNO = 500;
+
+	private static final int TAMANO_BUFER = 8192;
+	/**
+	 * Los permisos que no debe de tener el fichero del token, para que solo lo
+	 * pueda leer su propietario.
+	 */
+	private static final Set<PosixFilePermission> PERMISOS_AJENOS_TOKEN = Collections.unmodifiableSet(EnumSet.of(
+		PosixFilePermission.GROUP_READ, PosixFilePermission.GROUP_WRITE, PosixFilePermission.GROUP_EXECUTE,
+		PosixFilePermission.OTHERS_READ, PosixFilePermission.OTHERS_WRITE, PosixFilePermission.OTHERS_EXECUTE
+	));
+
+	private final HttpServer servidor;
+	private final ExecutorService ejecutor;
+	private final byte[] autorizacionEsperada;
+	private final ClavesActores claves;
+	private final AlmacenClavesAlbergues almacen;
+	private final List<String> rutas = new ArrayList<>();
+
+	/**
+	 * Crea un servicio de CPV, sin empezar a atender peticiones. Solo se atienden
+	 * las operaciones para las que las claves especificadas son suficientes.
+	 *
+	 * @param puerto  El puerto de la interfaz de bucle local en el que atender
+	 *                peticiones, o 0 para elegir uno libre.
+	 * @param hilos   El número de hilos con los que atender peticiones.
+	 * @param token   El token que deben de enviar los clientes para que se
+	 *                atiendan sus peticiones.
+	 * @param claves  Las claves de los actores con las que hacer las operaciones.
+	 * @param almacen El almacén del que obtener las claves públicas de los
+	 *                albergues al desempaquetar. Se cerrará junto con el
+	 *                servicio.
+	 * @throws IOException              Si no se puede escuchar en el puerto.
+	 * @throws IllegalArgumentException Si algún parámetro es nulo, el número de
+	 *                                  hilos no es positivo, el token es
+	 *                                  demasiado corto o las claves no permiten
+	 *                                  hacer ninguna operación.
+	 */
+	ServicioCpv(final int puerto, final int hilos, final String token, final ClavesActores claves, final AlmacenClavesAlbergues almacen) throws IOException {
+		if (token == null || claves == null || almacen == null) {
+			throw new IllegalArgumentException("Un parámetro recibido para crear el servicio de CPV es nulo, y no debería de serlo");
+		}
+
+		if (hilos < 1) {
+			throw new IllegalArgumentException("El número de hilos debe de ser positivo");
+		}
+
+		if (token.length() < LONGITUD_MINIMA_TOKEN) {
+			throw new IllegalArgumentException("El token del servicio debe de tener al menos " + LONGITUD_MINIMA_TOKEN + " caracteres");
+		}
+
+		if (claves.contieneClavePrivada(Actor.PEREGRINO) && claves.contieneClavePublica(Actor.OFICINA_PEREGRINO)) {
+			rutas.add(RUTA_GENERAR);
+		}
+
+		if (claves.contieneClavePrivada(Actor.ALBERGUE) && claves.contieneClavePublica(Actor.OFICINA_PEREGRINO)) {
+			rutas.add(RUTA_SELLAR);
+		}
+
+		if (claves.contieneClavePrivada(Actor.OFICINA_PEREGRINO) && claves.contieneClavePublica(Actor.PEREGRINO)) {
+			rutas.add(RUTA_DESEMPAQUETAR);
+		}
+
+		if (rutas.isEmpty()) {
+			throw new IllegalArgumentException("Las claves del servicio no son suficientes para hacer ninguna operación");
+		}
+
+		this.autorizacionEsperada = (ESQUEMA_AUTORIZACION + token).getBytes(StandardCharsets.UTF_8);
+		this.claves = claves;
+		this.almacen = almacen;
+
+		servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), puerto), 0);
+		for (final String ruta : rutas) {
+			final OperacionServicio operacion;
+			switch (ruta) {
+				case RUTA_GENERAR:
+					operacion = this::generar;
+					break;
+				case RUTA_SELLAR:
+					operacion = this::sellar;
+					break;
+				default:
+					operacion = this::desempaquetar;
+			}
+
+			servidor.createContext(ruta, intercambio -> atender(intercambio, operacion));
+		}
+
+		ejecutor = Executors.newFixedThreadPool(hilos);
+		servidor.setExecutor(ejecutor);
+	}
+
+	/**
+	 * Punto de entrada de la aplicación.
+	 *
+	 * @param args Los argumentos de línea de comandos, en el formato dictaminado
+	 *             por {@link LectorArgumentosLineaComandosServicio}.
+	 */
+	public static void main(final String[] args) {
+		if (args.length > 0 && LectorArgumentosLineaComandosServicio.OPCION_CLIENTE.equals(args[0])) {
+			ClienteServicioCpv.main(LectorArgumentosLineaComandosServicio.interpretarCliente(args));
+			return;
+		}
+
+		ejecutar(LectorArgumentosLineaComandosServicio.interpretar(args));
+	}
+
+	/**
+	 * Ejecuta el servicio, atendiendo peticiones hasta que se termine el proceso.
+	 *
+	 * @param argumentos Los argumentos de operación del servicio.
+	 */
+	private static void ejecutar(final ArgumentosServicio argumentos) {
+		try {
+			GestorProveedoresJCA.registrarProveedores();
+
+			// Generar las claves simétricas de las operaciones en segundo plano. El hilo
+			// que llena la reserva no impide que termine el proceso
+			final ReservaClavesSimetricas reserva = ReservaClavesSimetricas.abrir(ReservaClavesSimetricas.CAPACIDAD_PREDETERMINADA);
+
+			final Path directorioClaves = argumentos.getDirectorioClaves().toPath();
+			final ServicioCpv servicio = new ServicioCpv(
+				argumentos.getPuerto(), argumentos.getHilos(), leerToken(argumentos.getFicheroToken().toPath()),
+				leerClaves(directorioClaves).conReservaClaves(reserva), abrirAlmacen(directorioClaves)
+			);
+
+			final CountDownLatch fin = new CountDownLatch(1);
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				try {
+					servicio.close();
+				} catch (final IOException exc) {
+					exc.printStackTrace();
+				} finally {
+					reserva.mostrar(System.out);
+					fin.countDown();
+				}
+			}));
+
+			servicio.iniciar();
+			System.out.println(
+				"Atendiendo peticiones a " + String.join(", ", servicio.getRutas()) +
+				" en el puerto " + servicio.getPuerto() + " de la interfaz de bucle local"
+			);
+
+			fin.await();
+		} catch (final InterruptedException exc) {
+			Thread.currentThread().interrupt();
+		} catch (final Exception exc) {
+			System.err.println("Ha ocurrido un error durante la ejecución del servicio");
+			exc.printStackTrace();
+		}
+	}
+
+	/**
+	 * Empieza a atender peticiones en segundo plano.
+	 */
+	void iniciar() {
+		servidor.start();
+	}
+
+	/**
+	 * Obtiene el puerto de la interfaz de bucle local en el que se atienden
+	 * peticiones.
+	 *
+	 * @return El descrito puerto.
+	 */
+	int getPuerto() {
+		return servidor.getAddress().getPort();
+	}
+
+	/**
+	 * Obtiene las rutas de las operaciones que atiende el servicio, según las
+	 * claves que tiene.
+	 *
+	 * @return Las descritas rutas, que no se pueden modificar.
+	 */
+	List<String> getRutas() {
+		return Collections.unmodifiableList(rutas);
+	}
+
+	/**
+	 * Deja de atender peticiones, y libera los recursos asociados al servicio.
+	 *
+	 * @throws IOException Si ocurre un error de E/S al cerrar el almacén de
+	 *                     claves de albergues.
+	 */
+	@Override
+	public void close() throws IOException {
+		servidor.stop(0);
+		ejecutor.shutdownNow();
+		almacen.close();
+	}
+
+	/**
+	 * Lee el token compartido entre un servicio y sus clientes de un fichero,
+	 * comprobando que solo pueda acceder a él su propietario, si el sistema de
+	 * ficheros tiene permisos POSIX.
+	 *
+	 * @param fichero El fichero del token.
+	 * @return El token leído, sin espacios en blanco al principio ni al final.
+	 * @throws IOException Si ocurre un error de E/S al leer el fichero, otros
+	 *                     usuarios pueden acceder a él, o el token no es válido.
+	 */
+	static String leerToken(final Path fichero) throws IOException {
+		final PosixFileAttributeView vistaPermisos = Files.getFileAttributeView(fichero, PosixFileAttributeView.class);
+		if (vistaPermisos != null) {
+			final Set<PosixFilePermission> permisos = vistaPermisos.readAttributes().permissions();
+			permisos.retainAll(PERMISOS_AJENOS_TOKEN);
+
+			if (!permisos.isEmpty()) {
+				throw new IOException("Otros usuarios pueden acceder al fichero del token " + fichero.toAbsolutePath() + ", y solo debería de poder hacerlo su propietario (permisos 0600)");
+			}
+		}
+
+		final String token = new String(Files.readAllBytes(fichero), StandardCharsets.UTF_8).trim();
+		if (token.length() < LONGITUD_MINIMA_TOKEN || token.chars().anyMatch(Character::isISOControl)) {
+			throw new IOException("El token del fichero " + fichero.toAbsolutePath() + " debe de tener al menos " + LONGITUD_MINIMA_TOKEN + " caracteres, y ninguno de control");
+		}
+
+		return token;
+	}
+
+	/**
+	 * Genera una CPV con los datos del peregrino recibidos.
+	 */
+	private void generar(final Map<String, String> parametros, final byte[] cuerpo, final OutputStream respuesta) throws GeneralSecurityException, IOException {
+		GeneradorCpv.generarPaqueteCPV(leerDatos(new String(cuerpo, StandardCharsets.UTF_8)), respuesta, claves);
+	}
+
+	/**
+	 * Sella la CPV recibida con los datos del sello recibidos.
+	 */
+	private void sellar(final Map<String, String> parametros, final byte[] cuerpo, final OutputStream respuesta) throws GeneralSecurityException, IOException {
+		final int longitudDatos = cuerpo.length < Integer.BYTES ? -1 : ByteBuffer.wrap(cuerpo).getInt();
+		if (longitudDatos < 0 || longitudDatos > cuerpo.length - Integer.BYTES) {
+			throw new IllegalArgumentException("La longitud de los datos del sello no es válida");
+		}
+
+		final int inicioCpv = Integer.BYTES + longitudDatos;
+
+		SelladorCpv.sellarCpv(
+			leerDatos(new String(cuerpo, Integer.BYTES, longitudDatos, StandardCharsets.UTF_8)),
+			new ByteArrayInputStream(cuerpo, inicioCpv, cuerpo.length - inicioCpv), respuesta,
+			leerParametro(parametros, PARAMETRO_ALBERGUE), claves
+		);
+	}
+
+	/**
+	 * Desempaqueta la CPV recibida, respondiendo sus contenidos.
+	 */
+	private void desempaquetar(final Map<String, String> parametros, final byte[] cuerpo, final OutputStream respuesta) throws GeneralSecurityException, IOException {
+		final PrintStream salida = new PrintStream(respuesta, false, StandardCharsets.UTF_8.name());
+
+		DesempaquetadorCpv.desempaquetarCPV(PaqueteDAO.leerPaquete(new ByteArrayInputStream(cuerpo)), almacen, claves, ForkJoinPool.commonPool(), salida);
+		salida.flush();
+	}
+
+	/**
+	 * Atiende una petición, haciendo la operación pedida y enviando su resultado o
+	 * un mensaje fijo que describe el tipo de error que haya ocurrido, para no
+	 * revelar a los clientes detalles de las CPV ni del servicio. El error
+	 * concreto se muestra por la salida de error. El resultado se acumula en
+	 * memoria antes de enviarlo, para poder responder un error si la operación
+	 * falla a medias.
+	 *
+	 * @param intercambio La petición y su respuesta.
+	 * @param operacion   La operación a hacer.
+	 * @throws IOException Si ocurre un error de E/S al enviar la respuesta.
+	 */
+	private void atender(final HttpExchange intercambio, final OperacionServicio operacion) throws IOException {
+		try {
+			final String peticion = intercambio.getRequestMethod() + " " + intercambio.getRequestURI().getPath();
+			int estado = ESTADO_CORRECTO;
+			byte[] respuesta = null;
+
+			try {
+				if (!"POST".equals(intercambio.getRequestMethod())) {
+					estado = ESTADO_METODO_NO_PERMITIDO;
+				} else if (!estaAutorizada(intercambio)) {
+					estado = ESTADO_NO_AUTORIZADO;
+				} else {
+					final byte[] cuerpo = leerCuerpo(intercambio);
+
+					if (cuerpo == null) {
+						estado = ESTADO_CUERPO_DEMASIADO_GRANDE;
+					} else {
+						final ByteArrayOutputStream resultado = new ByteArrayOutputStream();
+						operacion.hacer(leerParametros(intercambio.getRequestURI().getRawQuery()), cuerpo, resultado);
+						respuesta = resultado.toByteArray();
+					}
+				}
+
+				if (estado != ESTADO_CORRECTO) {
+					System.err.println("Petición rechazada (" + estado + "): " + peticion);
+				}
+			} catch (final IllegalArgumentException exc) {
+				estado = ESTADO_PETICION_INVALIDA;
+				System.err.println("Petición no válida (" + estado + "): " + peticion + ": " + exc);
+			} catch (final GeneralSecurityException | NoSuchElementException | IOException exc) {
+				// La CPV recibida no es válida, o no se ha podido leer
+				estado = ESTADO_CPV_INVALIDA;
+				System.err.println("CPV no válida (" + estado + "): " + peticion + ": " + exc);
+			} catch (final Exception exc) {
+				estado = ESTADO_ERROR_INTERNO;
+				System.err.println("Ha ocurrido un error al atender la petición " + peticion);
+				exc.printStackTrace();
+			}
+
+			if (estado != ESTADO_CORRECTO) {
+				respuesta = getMensajeError(estado).getBytes(StandardCharsets.UTF_8);
+			}
+
+			intercambio.sendResponseHeaders(estado, respuesta.length);
+			try (final OutputStream cuerpoRespuesta = intercambio.getResponseBody()) {
+				cuerpoRespuesta.write(respuesta);
+			}
+		} finally {
+			intercambio.close();
+		}
+	}
+
+	/**
+	 * Comprueba si una petición contiene el token del servicio. La comparación
+	 * tarda lo mismo sea cual sea el token recibido, para no revelar cuántos de
+	 * sus caracteres son correctos.
+	 *
+	 * @param intercambio La petición y su respuesta.
+	 * @return Verdadero si la petición contiene el token, falso en caso
+	 *         contrario.
+	 */
+	private boolean estaAutorizada(final HttpExchange intercambio) {
+		final String autorizacion = intercambio.getRequestHeaders().getFirst(CABECERA_AUTORIZACION);
+
+		return autorizacion != null && MessageDigest.isEqual(autorizacion.getBytes(StandardCharsets.UTF_8), autorizacionEsperada);
+	}
+
+	/**
+	 * Lee el cuerpo de una petición, si no ocupa más de
+	 * {@value #TAMANO_MAXIMO_CUERPO} bytes. Si la petición declara una longitud
+	 * mayor, se rechaza sin leer nada; si no la declara, se deja de leer en cuanto
+	 * se supera el máximo.
+	 *
+	 * @param intercambio La petición y su respuesta.
+	 * @return El cuerpo leído, o nulo si ocupa demasiado.
+	 * @throws IOException              Si ocurre un error de E/S al leer el
+	 *                                  cuerpo.
+	 * @throws IllegalArgumentException Si la longitud declarada no es un número.
+	 */
+	private static byte[] leerCuerpo(final HttpExchange intercambio) throws IOException {
+		final String longitudDeclarada = intercambio.getRequestHeaders().getFirst("Content-Length");
+		if (longitudDeclarada != null) {
+			try {
+				if (Long.parseLong(longitudDeclarada.trim()) > TAMANO_MAXIMO_CUERPO) {
+					return null;
+				}
+			} catch (final NumberFormatException exc) {
+				throw new IllegalArgumentException("La longitud declarada del cuerpo de la petición no es un número");
+			}
+		}
+
+		// El flujo del cuerpo se cierra junto con el intercambio
+		final InputStream entrada = intercambio.getRequestBody();
+		final ByteArrayOutputStream cuerpo = new ByteArrayOutputStream();
+		final byte[] bufer = new byte[TAMANO_BUFER];
+		int leidos;
+
+		while ((leidos = entrada.read(bufer)) != -1) {
+			if (cuerpo.size() + leidos > TAMANO_MAXIMO_CUERPO) {
+				return null;
+			}
+
+			cuerpo.write(bufer, 0, leidos);
+		}
+
+		return cuerpo.toByteArray();
+	}
+
+	/**
+	 * Obtiene el mensaje fijo con el que se responde un código de estado de
+	 * error.
+	 *
+	 * @param estado El código de estado.
+	 * @return El descrito mensaje.
+	 */
+	private static String getMensajeError(final int estado) {
+		switch (estado) {
+			case ESTADO_PETICION_INVALIDA:
+				return "La petición no es válida";
+			case ESTADO_NO_AUTORIZADO:
+				return "La petición no contiene el token del servicio";
+			case ESTADO_METODO_NO_PERMITIDO:
+				return "Las operaciones se deben de pedir con el método POST";
+			case ESTADO_CUERPO_DEMASIADO_GRANDE:
+				return "El cuerpo de la petición ocupa más de " + TAMANO_MAXIMO_CUERPO + " bytes";
+			case ESTADO_CPV_INVALIDA:
+				return "La CPV recibida no es válida";
+			default:
+				return "Ha ocurrido un error interno en el servicio";
+		}
+	}
+
+	/**
+	 * Interpreta los parámetros de la cadena de consulta de una petición.
+	 *
+	 * @param consulta La cadena de consulta, sin decodificar. Puede ser nula.
+	 * @return Los parámetros de la consulta, decodificados, por nombre.
+	 * @throws IOException Si no se puede decodificar algún parámetro.
+	 */
+	private static Map<String, String> leerParametros(final String consulta) throws IOException {
+		final Map<String, String> parametros = new HashMap<>();
+
+		if (consulta != null && !consulta.isEmpty()) {
+			for (final String parametro : consulta.split("&")) {
+				final int separador = parametro.indexOf('=');
+
+				if (separador < 0) {
+					parametros.put(URLDecoder.decode(parametro, StandardCharsets.UTF_8.name()), "");
+				} else {
+					parametros.put(
+						URLDecoder.decode(parametro.substring(0, separador), StandardCharsets.UTF_8.name()),
+						URLDecoder.decode(parametro.substring(separador + 1), StandardCharsets.UTF_8.name())
+					);
+				}
+			}
+		}
+
+		return parametros;
+	}
+
+	/**
+	 * Obtiene un parámetro obligatorio de una petición.
+	 *
+	 * @param parametros Los parámetros de la petición.
+	 * @param nombre     El nombre del parámetro.
+	 * @return El valor del parámetro.
+	 * @throws IllegalArgumentException Si la petición no contiene el parámetro.
+	 */
+	private static String leerParametro(final Map<String, String> parametros, final String nombre) {
+		final String valor = parametros.get(nombre);
+
+		if (valor == null) {
+			throw new IllegalArgumentException("Falta el parámetro \"" + nombre + "\" en la petición");
+		}
+
+		return valor;
+	}
+
+	/**
+	 * Obtiene los pares clave-valor de datos de una petición, a partir de su
+	 * representación JSON.
+	 *
+	 * @param json La representación JSON de los datos.
+	 * @return Los pares clave-valor de datos.
+	 * @throws IllegalArgumentException Si los datos no siguen el formato JSON, o
+	 *                                  están vacíos.
+	 */
+	private static Map<String, String> leerDatos(final String json) {
+		final Map<String, String> datos = JSONUtils.json2map(json);
+
+		if (datos.isEmpty()) {
+			throw new IllegalArgumentException("Los datos de la petición no siguen el formato JSON, o están vacíos");
+		}
+
+		return datos;
+	}
+
+	/**
+	 * Lee las claves de los actores que contiene el directorio de claves del
+	 * servicio. Las que no contiene se omiten.
+	 *
+	 * @param directorio El directorio de claves del servicio.
+	 * @return Las claves leídas.
+	 * @throws IOException             Si ocurre un error de E/S al leer alguna
+	 *                                 clave.
+	 * @throws InvalidKeySpecException Si alguna clave no se puede interpretar.
+	 */
+	private static ClavesActores leerClaves(final Path directorio) throws IOException, InvalidKeySpecException {
+		ClavesActores claves = new ClavesActores();
+
+		Path fichero = directorio.resolve(FICHERO_CLAVE_PRIVADA_OFICINA);
+		if (Files.isRegularFile(fichero)) {
+			claves = claves.conClavePrivada(Actor.OFICINA_PEREGRINO, Files.readAllBytes(fichero));
+		}
+
+		fichero = directorio.resolve(FICHERO_CLAVE_PUBLICA_OFICINA);
+		if (Files.isRegularFile(fichero)) {
+			claves = claves.conClavePublica(Actor.OFICINA_PEREGRINO, Files.readAllBytes(fichero));
+		}
+
+		fichero = directorio.resolve(FICHERO_CLAVE_PRIVADA_PEREGRINO);
+		if (Files.isRegularFile(fichero)) {
+			claves = claves.conClavePrivada(Actor.PEREGRINO, Files.readAllBytes(fichero));
+		}
+
+		fichero = directorio.resolve(FICHERO_CLAVE_PUBLICA_PEREGRINO);
+		if (Files.isRegularFile(fichero)) {
+			claves = claves.conClavePublica(Actor.PEREGRINO, Files.readAllBytes(fichero));
+		}
+
+		fichero = directorio.resolve(FICHERO_CLAVE_PRIVADA_ALBERGUE);
+		if (Files.isRegularFile(fichero)) {
+			claves = claves.conClavePrivada(Actor.ALBERGUE, Files.readAllBytes(fichero));
+		}
+
+		return claves;
+	}
+
+	/**
+	 * Abre el almacén de claves de albergues del directorio de claves del
+	 * servicio. Si no existe, se usa uno vacío, con el que solo se podrán
+	 * desempaquetar CPV sin sellos.
+	 *
+	 * @param directorio El directorio de claves del servicio.
+	 * @return El almacén abierto.
+	 * @throws IOException Si ocurre un error de E/S al abrir el almacén.
+	 */
+	private static AlmacenClavesAlbergues abrirAlmacen(final Path directorio) throws IOException {
+		final Path ruta = directorio.resolve(ALMACEN_ALBERGUES);
+
+		if (!Files.exists(ruta)) {
+			return new AlmacenClavesAlbergues(1) {
+				@Override
+				protected byte[] leerClavePublica(final String idNormalizado) {
+					return null;
+				}
+			};
+		}
+
+		return AlmacenClavesAlbergues.abrir(ruta, AlmacenClavesAlbergues.CAPACIDAD_PREDETERMINADA);
+	}
+
+	/**
+	 * Una operación que puede atender el servicio.
+	 *
+	 * @author Alejandro González García
+	 */
+	@FunctionalInterface
+	private interface OperacionServicio {
+		/**
+		 * Hace la operación.
+		 *
+		 * @param parametros Los parámetros de la petición, por nombre.
+		 * @param cuerpo     El cuerpo de la petición.
+		 * @param respuesta  Donde escribir el resultado de la operación.
+		 * @throws Exception Si la operación no se ha podido hacer.
+		 */
+		void hacer(Map<String, String> parametros, byte[] cuerpo, OutputStream respuesta) throws Exception;
+	}
+}
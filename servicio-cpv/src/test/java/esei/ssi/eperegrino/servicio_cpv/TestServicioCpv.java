@@ -0,0 +1,271 @@
+package esei.ssi.eperegrino.servicio_cpv;
+
+import static org.hamcrest.CoreMatchers.allOf;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import esei.ssi.eperegrino.common.Actor;
+import esei.ssi.eperegrino.common.ClavesActores;
+import esei.ssi.eperegrino.common.GestorProveedoresJCA;
+import esei.ssi.eperegrino.common.JSONUtils;
+import esei.ssi.eperegrino.common.ParametrosCriptograficos;
+import esei.ssi.eperegrino.desempaquetador_cpv.AlmacenClavesAlbergues;
+
+/**
+ * La batería de tests de JUnit a ejecutar sobre la clase ServicioCpv.
+ *
+ * @author Alejandro González García
+ */
+public final class TestServicioCpv {
+	/**
+	 * El token compartido entre el servicio y sus clientes en las pruebas.
+	 */
+	private static final String TOKEN = "token-de-prueba-del-servicio";
+	/**
+	 * La clave pública de la oficina del peregrino, generada aleatoriamente.
+	 */
+	private static final byte[] clavePublicaOficinaPeregrino;
+	/**
+	 * La clave privada de la oficina del peregrino, generada aleatoriamente.
+	 */
+	private static final byte[] clavePrivadaOficinaPeregrino;
+	/**
+	 * La clave pública del peregrino, generada aleatoriamente.
+	 */
+	private static final byte[] clavePublicaPeregrino;
+	/**
+	 * La clave privada del peregrino, generada aleatoriamente.
+	 */
+	private static final byte[] clavePrivadaPeregrino;
+	/**
+	 * La clave pública del albergue, generada aleatoriamente.
+	 */
+	private static final byte[] clavePublicaAlbergue;
+	/**
+	 * La clave privada del albergue, generada aleatoriamente.
+	 */
+	private static final byte[] clavePrivadaAlbergue;
+	/**
+	 * Unos pares de datos clave-valor a probar su conversión.
+	 */
+	private static final Map<String, String> datos = new HashMap<>();
+	/**
+	 * Unos pares de datos clave-valor a probar su conversión.
+	 */
+	private static final Map<String, String> datosSello = new HashMap<>();
+
+	static {
+		// Inicializar pares clave-valor
+		datos.put("Nombre", "Alejandro");
+		datos.put("Motivo", "Aprobar");
+		datosSello.put("Nombre", "Albergue de prueba");
+		datosSello.put("Incidencias", "Ninguna");
+
+		GestorProveedoresJCA.registrarProveedores();
+
+		KeyPairGenerator generadorClaves;
+		try {
+			generadorClaves = KeyPairGenerator.getInstance(ParametrosCriptograficos.ALGORITMO_GENERADOR_CLAVES_ASIMETRICO, ParametrosCriptograficos.PROVEEDOR_ALGORITMOS_CRIPTOGRAFICOS);
+		} catch (final NoSuchAlgorithmException exc) {
+			throw new AssertionError(exc);
+		}
+		generadorClaves.initialize(4096); // Clave grande para evitar problemas de longitud insuficiente en tests
+
+		// Generar claves aleatorias para probar los casos de uso
+		final KeyPair parClavesPeregrino = generadorClaves.generateKeyPair();
+		final KeyPair parClavesOficinaPeregrino = generadorClaves.generateKeyPair();
+		final KeyPair parClavesAlbergue = generadorClaves.generateKeyPair();
+
+		clavePublicaPeregrino = parClavesPeregrino.getPublic().getEncoded();
+		clavePrivadaPeregrino = parClavesPeregrino.getPrivate().getEncoded();
+		clavePublicaOficinaPeregrino = parClavesOficinaPeregrino.getPublic().getEncoded();
+		clavePrivadaOficinaPeregrino = parClavesOficinaPeregrino.getPrivate().getEncoded();
+		clavePublicaAlbergue = parClavesAlbergue.getPublic().getEncoded();
+		clavePrivadaAlbergue = parClavesAlbergue.getPrivate().getEncoded();
+	}
+
+	/**
+	 * Comprueba que un servicio de CPV genere, selle y desempaquete una CPV
+	 * pedida por un cliente, y que informe al cliente de las CPV no válidas sin
+	 * revelarle el motivo concreto.
+	 */
+	@Test
+	public void testServicioCpv() throws Exception {
+		final ClavesActores claves = new ClavesActores()
+			.conClavePublica(Actor.OFICINA_PEREGRINO, clavePublicaOficinaPeregrino)
+			.conClavePrivada(Actor.OFICINA_PEREGRINO, clavePrivadaOficinaPeregrino)
+			.conClavePublica(Actor.PEREGRINO, clavePublicaPeregrino)
+			.conClavePrivada(Actor.PEREGRINO, clavePrivadaPeregrino)
+			.conClavePrivada(Actor.ALBERGUE, clavePrivadaAlbergue);
+
+		try (final ServicioCpv servicio = new ServicioCpv(0, 2, TOKEN, claves, crearAlmacen())) {
+			servicio.iniciar();
+
+			byte[] cpv = ClienteServicioCpv.solicitar(
+				servicio.getPuerto(), TOKEN, ServicioCpv.RUTA_GENERAR, Collections.emptyMap(),
+				JSONUtils.map2json(datos).getBytes(StandardCharsets.UTF_8)
+			);
+
+			final Map<String, String> parametros = new HashMap<>();
+			parametros.put(ServicioCpv.PARAMETRO_ALBERGUE, "Albergue de prueba");
+			cpv = ClienteServicioCpv.solicitar(
+				servicio.getPuerto(), TOKEN, ServicioCpv.RUTA_SELLAR, parametros,
+				ClienteServicioCpv.componerCuerpoSellar(JSONUtils.map2json(datosSello).getBytes(StandardCharsets.UTF_8), cpv)
+			);
+
+			final String salida = new String(
+				ClienteServicioCpv.solicitar(servicio.getPuerto(), TOKEN, ServicioCpv.RUTA_DESEMPAQUETAR, Collections.emptyMap(), cpv),
+				StandardCharsets.UTF_8
+			);
+
+			assertThat(salida, allOf(
+				containsString(JSONUtils.map2json(datos)),
+				containsString(JSONUtils.map2json(datosSello))
+			));
+
+			// Modificar un byte de la CPV, que deja de ser válida
+			cpv[cpv.length / 2] ^= 1;
+			try {
+				ClienteServicioCpv.solicitar(servicio.getPuerto(), TOKEN, ServicioCpv.RUTA_DESEMPAQUETAR, Collections.emptyMap(), cpv);
+				fail("Se esperaba que el servicio no pudiese desempaquetar una CPV modificada");
+			} catch (final IOException exc) {
+				assertThat(exc.getMessage(), allOf(
+					containsString(Integer.toString(ServicioCpv.ESTADO_CPV_INVALIDA)),
+					not(containsString("Exception"))
+				));
+			}
+		}
+	}
+
+	/**
+	 * Comprueba que un servicio de CPV rechace las peticiones sin el token
+	 * correcto y las que declaran un cuerpo demasiado grande.
+	 */
+	@Test
+	public void testServicioCpvRechazaPeticiones() throws Exception {
+		final ClavesActores claves = new ClavesActores()
+			.conClavePrivada(Actor.OFICINA_PEREGRINO, clavePrivadaOficinaPeregrino)
+			.conClavePublica(Actor.PEREGRINO, clavePublicaPeregrino);
+
+		try (final ServicioCpv servicio = new ServicioCpv(0, 1, TOKEN, claves, crearAlmacen())) {
+			servicio.iniciar();
+
+			try {
+				ClienteServicioCpv.solicitar(servicio.getPuerto(), TOKEN + "x", ServicioCpv.RUTA_DESEMPAQUETAR, Collections.emptyMap(), new byte[0]);
+				fail("Se esperaba que el servicio rechazase una petición con otro token");
+			} catch (final IOException exc) {
+				assertThat(exc.getMessage(), containsString(Integer.toString(ServicioCpv.ESTADO_NO_AUTORIZADO)));
+			}
+
+			// Declarar un cuerpo demasiado grande sin enviarlo, pues el servicio debe
+			// de rechazarlo sin leerlo
+			try (final Socket socket = new Socket(InetAddress.getLoopbackAddress(), servicio.getPuerto())) {
+				final OutputStream salida = socket.getOutputStream();
+				salida.write((
+					"POST " + ServicioCpv.RUTA_DESEMPAQUETAR + " HTTP/1.1\r\n" +
+					"Host: localhost\r\n" +
+					ServicioCpv.CABECERA_AUTORIZACION + ": " + ServicioCpv.ESQUEMA_AUTORIZACION + TOKEN + "\r\n" +
+					"Content-Length: " + (ServicioCpv.TAMANO_MAXIMO_CUERPO + 1) + "\r\n" +
+					"\r\n"
+				).getBytes(StandardCharsets.US_ASCII));
+				salida.flush();
+
+				final BufferedReader entrada = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+				assertThat(entrada.readLine(), containsString(" " + ServicioCpv.ESTADO_CUERPO_DEMASIADO_GRANDE + " "));
+			}
+		}
+	}
+
+	/**
+	 * Comprueba que un servicio de CPV solo atienda las operaciones para las que
+	 * tiene claves.
+	 */
+	@Test
+	public void testServicioCpvSoloOperacionesConClaves() throws Exception {
+		final ClavesActores claves = new ClavesActores()
+			.conClavePublica(Actor.OFICINA_PEREGRINO, clavePublicaOficinaPeregrino)
+			.conClavePrivada(Actor.ALBERGUE, clavePrivadaAlbergue);
+
+		try (final ServicioCpv servicio = new ServicioCpv(0, 1, TOKEN, claves, crearAlmacen())) {
+			servicio.iniciar();
+
+			assertEquals(Collections.singletonList(ServicioCpv.RUTA_SELLAR), servicio.getRutas());
+
+			try {
+				ClienteServicioCpv.solicitar(
+					servicio.getPuerto(), TOKEN, ServicioCpv.RUTA_GENERAR, Collections.emptyMap(),
+					JSONUtils.map2json(datos).getBytes(StandardCharsets.UTF_8)
+				);
+				fail("Se esperaba que el servicio no atendiese una operación para la que no tiene claves");
+			} catch (final IOException exc) {
+				assertThat(exc.getMessage(), containsString("404"));
+			}
+		}
+	}
+
+	/**
+	 * Comprueba que no se acepte un fichero de token al que pueden acceder otros
+	 * usuarios.
+	 */
+	@Test
+	public void testLeerTokenPermisos() throws Exception {
+		assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+
+		final Path fichero = Files.createTempFile("token", ".txt");
+		try {
+			Files.write(fichero, (TOKEN + "\n").getBytes(StandardCharsets.UTF_8));
+
+			Files.setPosixFilePermissions(fichero, PosixFilePermissions.fromString("rw-------"));
+			assertEquals(TOKEN, ServicioCpv.leerToken(fichero));
+
+			Files.setPosixFilePermissions(fichero, PosixFilePermissions.fromString("rw-r--r--"));
+			try {
+				ServicioCpv.leerToken(fichero);
+				fail("Se ha aceptado un fichero de token que pueden leer otros usuarios");
+			} catch (final IOException exc) {
+				// Lo esperado
+			}
+		} finally {
+			Files.delete(fichero);
+		}
+	}
+
+	/**
+	 * Crea un almacén de claves de albergues que devuelve la clave del albergue
+	 * de prueba para cualquier identificador.
+	 *
+	 * @return El almacén creado.
+	 */
+	private static AlmacenClavesAlbergues crearAlmacen() {
+		return new AlmacenClavesAlbergues(1) {
+			@Override
+			protected byte[] leerClavePublica(final String idNormalizado) {
+				return clavePublicaAlbergue;
+			}
+		};
+	}
+}